@@ -0,0 +1,147 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link PoolingOptions.ConcurrencyLimit per-host concurrency limits} against a {@link
+ * StubCluster} where one node degrades: all nodes answer in {@code latency} microseconds, but from
+ * the second warmup iteration on, the first one only processes {@code degradedCapacity} requests at
+ * a time (instead of {@code capacity}), the others queue up on the server side. The node is healthy
+ * during the first iteration so that the adaptive limits learn its normal latency, as they would
+ * before a compaction or a GC storm in production.
+ *
+ * <p>With the static limit, the driver keeps sending a third of the requests to the degraded node,
+ * where they wait behind each other, and the whole batch waits for them. The adaptive limits detect
+ * the queueing, from the latency ({@code GRADIENT}) or from the timeouts ({@code AIMD}), and shrink
+ * the degraded node's limit: since the pools don't queue requests in this benchmark, the excess
+ * goes to the next host of the query plan. Requests are idempotent, so the ones that time out are
+ * retried on the next host; the {@code errors} counter reports those that failed anyway.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar AdaptiveConcurrencyBenchmark -p concurrencyLimit=STATIC,GRADIENT
+ * </pre>
+ *
+ * Since the driver and the stub share the machine, use a machine with a few cores: if the client is
+ * CPU bound, its own queueing hides the one of the degraded node. This benchmark requires the
+ * {@code 127.0.0.0/8} range to be routed to the loopback interface (Linux only).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdaptiveConcurrencyBenchmark {
+
+  private static final String QUERY = "INSERT INTO ks.t (pk, v) VALUES (0, 0)";
+  private static final int IN_FLIGHT = 256;
+
+  @Param({"STATIC", "AIMD", "GRADIENT"})
+  public PoolingOptions.ConcurrencyLimit concurrencyLimit;
+
+  @Param({"5000"})
+  public int latency;
+
+  @Param({"128"})
+  public int capacity;
+
+  @Param({"16"})
+  public int degradedCapacity;
+
+  @Param({"20"})
+  public int readTimeoutMillis;
+
+  private StubCluster stub;
+  private Cluster cluster;
+  private Session session;
+  private Statement statement;
+  private int iterations;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+    public long errors;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      errors = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stub = StubCluster.builder().withNodes(3).withPort(0).withIoThreads(2).build().init();
+    stub.setLatency(StubLatency.fixed(latency, TimeUnit.MICROSECONDS));
+    for (StubNode node : stub.nodes()) node.setMaxConcurrentRequests(capacity);
+
+    cluster =
+        stub.clusterBuilder()
+            .withLoadBalancingPolicy(new RoundRobinPolicy())
+            .withPoolingOptions(
+                new PoolingOptions()
+                    .setConnectionsPerHost(HostDistance.LOCAL, 1, 1)
+                    .setMaxQueueSize(0)
+                    .setConcurrencyLimit(concurrencyLimit)
+                    .setHeartbeatIntervalSeconds(0))
+            .build();
+    session = cluster.connect();
+    statement =
+        new SimpleStatement(QUERY).setIdempotent(true).setReadTimeoutMillis(readTimeoutMillis);
+    iterations = 0;
+  }
+
+  @Setup(Level.Iteration)
+  public void degrade() {
+    if (++iterations == 2) stub.node(1).setMaxConcurrentRequests(degradedCapacity);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    cluster.close();
+    stub.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public List<ResultSet> writeAsync(Counters counters) throws Exception {
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(IN_FLIGHT);
+    for (int i = 0; i < IN_FLIGHT; i++) futures.add(session.executeAsync(statement));
+    List<ResultSet> results = Futures.successfulAsList(futures).get();
+    for (ResultSet result : results) if (result == null) counters.errors += 1;
+    return results;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.extras.async.CompletionStages;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the overhead of consuming the result of a request through a callback: a {@link
+ * DefaultResultSetFuture} is created, a continuation is registered, and the future is completed as
+ * the request handler would.
+ *
+ * <ul>
+ *   <li>{@code listenableFuture}: a Guava {@link FutureCallback}, the baseline;
+ *   <li>{@code completionStage}: a {@code CompletionStage} from {@link CompletionStages}, completed
+ *       directly by the listener of the future;
+ *   <li>{@code callbackAdapter}: the adapter that applications usually write, that completes a
+ *       {@link CompletableFuture} from a {@link FutureCallback}.
+ * </ul>
+ *
+ * Use {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncResultBenchmark {
+
+  @Benchmark
+  public void listenableFuture(final Blackhole blackhole) {
+    DefaultResultSetFuture future = newFuture();
+    GuavaCompatibility.INSTANCE.addCallback(
+        future,
+        new FutureCallback<ResultSet>() {
+          @Override
+          public void onSuccess(ResultSet result) {
+            blackhole.consume(result);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            blackhole.consume(t);
+          }
+        });
+    future.setResult(null);
+  }
+
+  @Benchmark
+  public void completionStage(Blackhole blackhole) {
+    DefaultResultSetFuture future = newFuture();
+    CompletionStages.toCompletionStage(future, (Executor) null).thenAccept(blackhole::consume);
+    future.setResult(null);
+  }
+
+  @Benchmark
+  public void callbackAdapter(Blackhole blackhole) {
+    DefaultResultSetFuture future = newFuture();
+    final CompletableFuture<ResultSet> stage = new CompletableFuture<ResultSet>();
+    Futures.addCallback(
+        future,
+        new FutureCallback<ResultSet>() {
+          @Override
+          public void onSuccess(ResultSet result) {
+            stage.complete(result);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            stage.completeExceptionally(t);
+          }
+        });
+    stage.thenAccept(blackhole::consume);
+    future.setResult(null);
+  }
+
+  private static DefaultResultSetFuture newFuture() {
+    // The session and the request are only used when the response is received
+    return new DefaultResultSetFuture(null, ProtocolVersion.V4, null);
+  }
+}
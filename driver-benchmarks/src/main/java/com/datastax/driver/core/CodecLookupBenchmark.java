@@ -0,0 +1,89 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.reflect.TypeToken;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link CodecRegistry} lookups from concurrent threads, for the most
+ * common variants of {@code codecFor}.
+ *
+ * <p>The thread count can be changed with {@code -t}; run with {@code -prof gc} to check that
+ * lookups don't allocate:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar CodecLookupBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class CodecLookupBenchmark {
+
+  private static final DataType LIST_OF_INT = DataType.list(DataType.cint());
+  private static final DataType MAP_OF_TEXT_TO_DOUBLE =
+      DataType.map(DataType.text(), DataType.cdouble());
+  private static final TypeToken<Map<String, Double>> MAP_OF_STRING_TO_DOUBLE =
+      TypeTokens.mapOf(String.class, Double.class);
+
+  private final CodecRegistry registry = new CodecRegistry();
+
+  /** What {@code BoundStatement.setInt} and {@code Row.getInt} do. */
+  @Benchmark
+  public TypeCodec<Integer> primitiveByClass() {
+    return registry.codecFor(DataType.cint(), Integer.class);
+  }
+
+  /** What {@code Row.getObject} does. */
+  @Benchmark
+  public TypeCodec<Object> primitiveByCqlTypeOnly() {
+    return registry.codecFor(DataType.varchar());
+  }
+
+  /** What {@code Row.getList} does: the type token is created for each call. */
+  @Benchmark
+  public TypeCodec<List<Integer>> listByTypeToken() {
+    return registry.codecFor(LIST_OF_INT, TypeTokens.listOf(Integer.class));
+  }
+
+  @Benchmark
+  public TypeCodec<Map<String, Double>> mapByTypeToken() {
+    return registry.codecFor(MAP_OF_TEXT_TO_DOUBLE, MAP_OF_STRING_TO_DOUBLE);
+  }
+
+  /** What {@code SimpleStatement} does for each value. */
+  @Benchmark
+  public TypeCodec<Long> primitiveByValue() {
+    return registry.codecFor(42L);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the built-in collection codecs with fixed-size elements, such as the {@code
+ * list<double>} columns of time series rows.
+ *
+ * <p>Run with {@code -prof gc} to compare allocation rates:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar CollectionCodecBenchmark -p size=5000 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionCodecBenchmark {
+
+  private static final ProtocolVersion VERSION = ProtocolVersion.V4;
+
+  private static final TypeCodec<List<Double>> LIST_OF_DOUBLE = TypeCodec.list(TypeCodec.cdouble());
+  private static final TypeCodec<Map<String, Double>> MAP_OF_TEXT_TO_DOUBLE =
+      TypeCodec.map(TypeCodec.varchar(), TypeCodec.cdouble());
+
+  @Param({"10", "1000", "5000"})
+  int size;
+
+  private List<Double> list;
+  private Map<String, Double> map;
+  private ByteBuffer serializedList;
+  private ByteBuffer serializedMap;
+
+  @Setup
+  public void setup() {
+    list = new ArrayList<Double>(size);
+    map = new LinkedHashMap<String, Double>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(i * 1.5D);
+      map.put("key" + i, i * 1.5D);
+    }
+    serializedList = LIST_OF_DOUBLE.serialize(list, VERSION);
+    serializedMap = MAP_OF_TEXT_TO_DOUBLE.serialize(map, VERSION);
+  }
+
+  @Benchmark
+  public ByteBuffer serializeList() {
+    return LIST_OF_DOUBLE.serialize(list, VERSION);
+  }
+
+  @Benchmark
+  public List<Double> deserializeList() {
+    return LIST_OF_DOUBLE.deserialize(serializedList, VERSION);
+  }
+
+  @Benchmark
+  public ByteBuffer serializeMap() {
+    return MAP_OF_TEXT_TO_DOUBLE.serialize(map, VERSION);
+  }
+
+  @Benchmark
+  public Map<String, Double> deserializeMap() {
+    return MAP_OF_TEXT_TO_DOUBLE.deserialize(serializedMap, VERSION);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.extras.async.CompletionStages;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures complete requests, from {@link Session#execute} to the decoded result, against an
+ * in-process {@link StubCluster}: the whole driver is exercised (load balancing, pools, stream ids,
+ * encoding, decoding, futures), but the server answers with canned responses so that it is not the
+ * bottleneck.
+ *
+ * <p>Use the sample time mode to get the latency percentiles, and the throughput mode with many
+ * threads to find the maximum number of requests per second:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar EndToEndBenchmark.read -bm sample -t 16
+ * java -jar target/benchmarks.jar EndToEndBenchmark.writeAsync -bm thrpt -p nodes=3 -p latency=500:5000
+ * </pre>
+ *
+ * {@code latency} is either {@code 0} or the median and 99th percentile, in microseconds, of the
+ * log-normal latency distribution of the stub nodes. More than one node requires the {@code
+ * 127.0.0.0/8} range to be routed to the loopback interface (Linux only).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+  private static final String READ = "SELECT c0, c1, c2 FROM ks.t WHERE pk = ?";
+  private static final String WRITE = "INSERT INTO ks.t (pk, c0, c1, c2) VALUES (?, ?, ?, ?)";
+  private static final int IN_FLIGHT = 128;
+
+  @Param({"1"})
+  public int nodes;
+
+  @Param({"0"})
+  public String latency;
+
+  @Param({"10"})
+  public int rows;
+
+  private StubCluster stub;
+  private Cluster cluster;
+  private Session session;
+  private PreparedStatement read;
+  private PreparedStatement write;
+  private ByteBuffer blob;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    stub = StubCluster.builder().withNodes(nodes).withPort(0).withIoThreads(2).build().init();
+    if (!latency.equals("0")) {
+      String[] bounds = latency.split(":");
+      stub.setLatency(
+          StubLatency.logNormal(
+              Long.parseLong(bounds[0]), Long.parseLong(bounds[1]), TimeUnit.MICROSECONDS));
+    }
+
+    StubResult.RowsBuilder result =
+        StubResult.rows("ks", "t")
+            .withColumn("c0", DataType.text())
+            .withColumn("c1", DataType.cint())
+            .withColumn("c2", DataType.blob());
+    for (int i = 0; i < rows; i++)
+      result.withRow("value " + i, i, ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    stub.prime(
+        READ,
+        result.build().withVariables(ImmutableMap.<String, DataType>of("pk", DataType.bigint())));
+    stub.prime(
+        WRITE,
+        StubResult.voidResult()
+            .withVariables(
+                ImmutableMap.<String, DataType>of(
+                    "pk", DataType.bigint(),
+                    "c0", DataType.text(),
+                    "c1", DataType.cint(),
+                    "c2", DataType.blob())));
+
+    cluster =
+        stub.clusterBuilder()
+            .withPoolingOptions(new PoolingOptions().setHeartbeatIntervalSeconds(0))
+            .build();
+    session = cluster.connect();
+    read = session.prepare(READ);
+    write = session.prepare(WRITE);
+    blob = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    cluster.close();
+    stub.stop();
+  }
+
+  @Benchmark
+  public int read() {
+    ResultSet rs = session.execute(read.bind(ThreadLocalRandom.current().nextLong()));
+    int count = 0;
+    for (Row row : rs) count += row.getInt("c1");
+    return count;
+  }
+
+  @Benchmark
+  public ResultSet write() {
+    return session.execute(bindWrite());
+  }
+
+  /** Keeps {@value #IN_FLIGHT} writes in flight per thread, as a typical loader does. */
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public List<ResultSet> writeAsync() throws Exception {
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(IN_FLIGHT);
+    for (int i = 0; i < IN_FLIGHT; i++) futures.add(session.executeAsync(bindWrite()));
+    return Futures.allAsList(futures).get();
+  }
+
+  /** Same as {@link #writeAsync()}, with the {@code CompletionStage} API of driver-extras. */
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public Void writeAsyncStage() throws Exception {
+    CompletableFuture<?>[] stages = new CompletableFuture<?>[IN_FLIGHT];
+    for (int i = 0; i < IN_FLIGHT; i++)
+      stages[i] = CompletionStages.executeAsync(session, bindWrite()).toCompletableFuture();
+    return CompletableFuture.allOf(stages).get();
+  }
+
+  private BoundStatement bindWrite() {
+    return write.bind(ThreadLocalRandom.current().nextLong(), "value", 42, blob);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the frame layer of the protocol, with each {@link ProtocolOptions.Compression
+ * compression} algorithm: encoding a {@code QUERY} request into the buffers written to the socket,
+ * and decoding the bytes of a {@code ROWS} response into a message.
+ *
+ * <p>The pipelines are the same as on a real connection ({@link Frame.Encoder}, {@link
+ * Frame.Compressor}, {@link Message.ProtocolEncoder} on the way out; {@link Frame.Decoder}, {@link
+ * Frame.Decompressor}, {@link Message.ProtocolDecoder} on the way in), but run on an embedded
+ * channel. The LZ4 and Snappy libraries must be on the classpath (they are included in the
+ * benchmark jar).
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar FrameCodecBenchmark -p rows=1000 -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final ProtocolVersion VERSION = ProtocolVersion.V4;
+
+  @Param({"NONE", "LZ4", "SNAPPY"})
+  public ProtocolOptions.Compression compression;
+
+  @Param({"100"})
+  public int rows;
+
+  private EmbeddedChannel outbound;
+  private EmbeddedChannel inbound;
+  private Requests.Query request;
+  private byte[] response;
+
+  @Setup
+  public void setup() throws Exception {
+    FrameCompressor compressor = compression.compressor();
+    if (compression != ProtocolOptions.Compression.NONE && compressor == null)
+      throw new IllegalStateException(compression + " compression is not available");
+
+    List<ChannelHandler> encoders = new ArrayList<ChannelHandler>();
+    List<ChannelHandler> decoders = new ArrayList<ChannelHandler>();
+    encoders.add(new Frame.Encoder());
+    decoders.add(new Frame.Decoder());
+    if (compressor != null) {
+      encoders.add(new Frame.Compressor(compressor));
+      decoders.add(new Frame.Decompressor(compressor));
+    }
+    encoders.add(new Message.ProtocolEncoder(VERSION));
+    decoders.add(new Message.ProtocolDecoder(false));
+    outbound = new EmbeddedChannel(encoders.toArray(new ChannelHandler[encoders.size()]));
+    inbound = new EmbeddedChannel(decoders.toArray(new ChannelHandler[decoders.size()]));
+    inbound.attr(Message.CODEC_REGISTRY_ATTRIBUTE_KEY).set(CodecRegistry.DEFAULT_INSTANCE);
+
+    request =
+        new Requests.Query(
+            "SELECT id, name, score, updated FROM ks.users WHERE bucket = 42 LIMIT " + rows);
+    response = responseFrame(compressor);
+  }
+
+  @TearDown
+  public void teardown() {
+    outbound.finish();
+    inbound.finish();
+  }
+
+  @Benchmark
+  public int encodeRequest() {
+    outbound.writeOutbound(request);
+    int size = 0;
+    ByteBuf buf;
+    while ((buf = (ByteBuf) outbound.readOutbound()) != null) {
+      size += buf.readableBytes();
+      buf.release();
+    }
+    return size;
+  }
+
+  @Benchmark
+  public Message.Response decodeResponse() {
+    inbound.writeInbound(Unpooled.wrappedBuffer(response));
+    return (Message.Response) inbound.readInbound();
+  }
+
+  /**
+   * Builds the bytes of a {@code RESULT} frame with {@code rows} rows of four columns (int,
+   * varchar, double, bigint), as they would be read from the socket.
+   */
+  private byte[] responseFrame(FrameCompressor compressor) throws Exception {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(2); // ROWS
+    body.writeInt(0x0001); // global table spec
+    body.writeInt(4);
+    writeString(body, "ks");
+    writeString(body, "users");
+    writeColumn(body, "id", DataType.Name.INT);
+    writeColumn(body, "name", DataType.Name.VARCHAR);
+    writeColumn(body, "score", DataType.Name.DOUBLE);
+    writeColumn(body, "updated", DataType.Name.BIGINT);
+    body.writeInt(rows);
+    for (int i = 0; i < rows; i++) {
+      body.writeInt(4).writeInt(i);
+      byte[] name = ("user-" + i).getBytes(UTF_8);
+      body.writeInt(name.length).writeBytes(name);
+      body.writeInt(8).writeDouble(i * 1.5);
+      body.writeInt(8).writeLong(1500000000000L + i);
+    }
+
+    EnumSet<Frame.Header.Flag> flags = EnumSet.noneOf(Frame.Header.Flag.class);
+    if (compressor != null) {
+      flags.add(Frame.Header.Flag.COMPRESSED);
+      ByteBuf uncompressed = body;
+      body = compressor.compress(Frame.create(VERSION, 8, 0, flags, uncompressed)).body;
+      uncompressed.release();
+    }
+
+    ByteBuf frame = Unpooled.buffer();
+    frame.writeByte(VERSION.toInt() | 0x80); // response
+    frame.writeByte(Frame.Header.Flag.serialize(flags));
+    frame.writeShort(0);
+    frame.writeByte(Message.Response.Type.RESULT.opcode);
+    frame.writeInt(body.readableBytes());
+    frame.writeBytes(body);
+    body.release();
+    byte[] bytes = new byte[frame.readableBytes()];
+    frame.readBytes(bytes);
+    return bytes;
+  }
+
+  private static void writeColumn(ByteBuf body, String name, DataType.Name type) {
+    writeString(body, name);
+    body.writeShort(type.protocolId);
+  }
+
+  private static void writeString(ByteBuf body, String s) {
+    byte[] bytes = s.getBytes(UTF_8);
+    body.writeShort(bytes.length).writeBytes(bytes);
+  }
+}
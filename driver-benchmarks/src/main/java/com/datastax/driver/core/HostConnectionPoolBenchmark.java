@@ -0,0 +1,106 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link HostConnectionPool#borrowConnection} (immediately followed by
+ * {@link HostConnectionPool#returnConnection}) for each {@link PoolingOptions.ConnectionSelection}
+ * strategy.
+ *
+ * <p>To observe how each strategy scales, run it with increasing thread counts, for example:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar HostConnectionPoolBenchmark -t 1
+ * java -jar target/benchmarks.jar HostConnectionPoolBenchmark -t 8
+ * java -jar target/benchmarks.jar HostConnectionPoolBenchmark -t 32
+ * </pre>
+ *
+ * Borrowing does not send anything on the wire, but the pool needs live connections: they are
+ * opened to an in-process {@link StubCluster}, unless {@code -Dcontact.point=...} is set to a
+ * reachable node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HostConnectionPoolBenchmark {
+
+  @Param({"LEAST_BUSY", "POWER_OF_TWO_CHOICES", "THREAD_AFFINITY"})
+  public PoolingOptions.ConnectionSelection selection;
+
+  @Param({"8"})
+  public int connections;
+
+  private StubCluster stub;
+  private Cluster cluster;
+  private HostConnectionPool pool;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String contactPoint = System.getProperty("contact.point");
+    Cluster.Builder builder;
+    if (contactPoint == null) {
+      stub = StubCluster.builder().withPort(0).build().init();
+      builder = stub.clusterBuilder();
+    } else {
+      builder = Cluster.builder().addContactPoint(contactPoint);
+    }
+    cluster =
+        builder
+            .withPoolingOptions(
+                new PoolingOptions()
+                    .setConnectionsPerHost(HostDistance.LOCAL, connections, connections)
+                    .setMaxRequestsPerConnection(HostDistance.LOCAL, 32768)
+                    .setHeartbeatIntervalSeconds(0)
+                    .setConnectionSelection(selection))
+            .build();
+    SessionManager session = (SessionManager) cluster.connect();
+    pool = session.pools.values().iterator().next();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    cluster.close();
+    if (stub != null) stub.stop();
+  }
+
+  @Benchmark
+  public Connection borrowAndReturn() throws Exception {
+    // With no keyspace change, the future is already completed
+    Connection connection =
+        Uninterruptibles.getUninterruptibly(pool.borrowConnection(0, TimeUnit.MILLISECONDS, 0));
+    pool.returnConnection(connection);
+    return connection;
+  }
+}
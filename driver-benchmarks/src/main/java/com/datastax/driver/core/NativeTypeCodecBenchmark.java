@@ -0,0 +1,151 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.utils.UUIDs;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the serialization and deserialization of a single value with the built-in codec of each
+ * CQL native type. Collections are covered by {@link CollectionCodecBenchmark}.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar NativeTypeCodecBenchmark -p type=text,timeuuid -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeTypeCodecBenchmark {
+
+  private static final ProtocolVersion VERSION = ProtocolVersion.V4;
+
+  @Param({
+    "ascii",
+    "bigint",
+    "blob",
+    "boolean",
+    "counter",
+    "date",
+    "decimal",
+    "double",
+    "duration",
+    "float",
+    "inet",
+    "int",
+    "smallint",
+    "text",
+    "time",
+    "timestamp",
+    "timeuuid",
+    "tinyint",
+    "uuid",
+    "varint"
+  })
+  public String type;
+
+  private TypeCodec<Object> codec;
+  private Object value;
+  private ByteBuffer serialized;
+
+  @Setup
+  public void setup() throws Exception {
+    DataType dataType = null;
+    for (DataType candidate : DataType.allPrimitiveTypes())
+      if (candidate.getName().toString().equals(type)) dataType = candidate;
+    if (dataType == null) throw new IllegalArgumentException("Unknown type " + type);
+    codec = CodecRegistry.DEFAULT_INSTANCE.codecFor(dataType);
+    value = sampleValue(dataType.getName());
+    serialized = codec.serialize(value, VERSION);
+  }
+
+  @Benchmark
+  public ByteBuffer serialize() {
+    return codec.serialize(value, VERSION);
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return codec.deserialize(serialized.duplicate(), VERSION);
+  }
+
+  private static Object sampleValue(DataType.Name name) throws Exception {
+    switch (name) {
+      case ASCII:
+        return "The quick brown fox";
+      case BIGINT:
+      case COUNTER:
+        return 1234567890123L;
+      case BLOB:
+        return ByteBuffer.wrap(new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15});
+      case BOOLEAN:
+        return true;
+      case DATE:
+        return LocalDate.fromDaysSinceEpoch(17000);
+      case DECIMAL:
+        return new BigDecimal("12345678.9012345");
+      case DOUBLE:
+        return Math.PI;
+      case DURATION:
+        return Duration.newInstance(1, 15, 3600000000000L);
+      case FLOAT:
+        return 2.71828f;
+      case INET:
+        return InetAddress.getByName("192.168.1.100");
+      case INT:
+        return 123456;
+      case SMALLINT:
+        return (short) 1234;
+      case TIME:
+        return TimeUnit.HOURS.toNanos(13) + 42;
+      case TIMESTAMP:
+        return new Date(1500000000000L);
+      case TIMEUUID:
+        return UUIDs.timeBased();
+      case TINYINT:
+        return (byte) 12;
+      case UUID:
+        return UUID.randomUUID();
+      case TEXT:
+      case VARCHAR:
+        return "Le c\u0153ur a ses raisons que la raison ne conna\u00eet point";
+      case VARINT:
+        return new BigInteger("123456789012345678901234567890");
+      default:
+        throw new IllegalArgumentException("Unsupported type " + name);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy.ReplicaOrdering;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the creation and iteration of query plans on a synthetic two-datacenter topology (see
+ * {@link SyntheticTopology}), with the local datacenter {@code dc0} and 2 hosts per remote
+ * datacenter.
+ *
+ * <ul>
+ *   <li>{@code firstHost}: creates a plan and takes its first host, which is all that most requests
+ *       need;
+ *   <li>{@code fullPlan}: creates a plan and iterates over all of its hosts.
+ * </ul>
+ *
+ * Token-aware plans use random partition keys of a keyspace replicated 3 times in each datacenter.
+ * Run with the GC profiler to compare allocation rates:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar QueryPlanBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryPlanBenchmark {
+
+  @Param({"dcAware", "tokenAware", "tokenAwareTopological", "tokenAwareLeastLoaded"})
+  public String policy;
+
+  @Param({"30"})
+  public int nodes;
+
+  private SyntheticTopology topology;
+  private Cluster cluster;
+  private LoadBalancingPolicy lbp;
+  private Statement[] statements;
+  private int nextStatement;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    topology = new SyntheticTopology(nodes, 16, 1);
+    for (Host host : topology.hosts) host.setUp();
+
+    // Serves the synthetic metadata without connecting
+    cluster =
+        new Cluster(
+            "bench",
+            Collections.singletonList(new InetSocketAddress("127.0.0.1", 9042)),
+            Cluster.builder().addContactPoint("127.0.0.1").getConfiguration()) {
+          @Override
+          public Metadata getMetadata() {
+            return topology.metadata;
+          }
+        };
+
+    LoadBalancingPolicy dcAware =
+        DCAwareRoundRobinPolicy.builder().withLocalDc("dc0").withUsedHostsPerRemoteDc(2).build();
+    if (policy.equals("dcAware")) lbp = dcAware;
+    else if (policy.equals("tokenAware")) lbp = new TokenAwarePolicy(dcAware);
+    else if (policy.equals("tokenAwareTopological"))
+      lbp = new TokenAwarePolicy(dcAware, ReplicaOrdering.TOPOLOGICAL);
+    else if (policy.equals("tokenAwareLeastLoaded"))
+      lbp = new TokenAwarePolicy(dcAware, ReplicaOrdering.LEAST_LOADED, "rack0");
+    else throw new IllegalArgumentException("Unknown policy " + policy);
+    lbp.init(cluster, topology.hosts);
+
+    Random random = new Random(42);
+    statements = new Statement[1024];
+    for (int i = 0; i < statements.length; i++) {
+      ByteBuffer key = ByteBuffer.allocate(8);
+      key.putLong(0, random.nextLong());
+      statements[i] = new SimpleStatement("SELECT * FROM t WHERE k = ?").setRoutingKey(key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    lbp.close();
+    cluster.close();
+    topology.close();
+  }
+
+  @Benchmark
+  public Host firstHost() {
+    return lbp.newQueryPlan("ks0", nextStatement()).next();
+  }
+
+  @Benchmark
+  public void fullPlan(Blackhole blackhole) {
+    Iterator<Host> plan = lbp.newQueryPlan("ks0", nextStatement());
+    while (plan.hasNext()) blackhole.consume(plan.next());
+  }
+
+  private Statement nextStatement() {
+    Statement statement = statements[nextStatement];
+    nextStatement = (nextStatement + 1) & (statements.length - 1);
+    return statement;
+  }
+}
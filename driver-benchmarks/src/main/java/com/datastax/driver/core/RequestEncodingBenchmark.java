@@ -0,0 +1,115 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of turning an {@code EXECUTE} request into the buffers that get written to the
+ * socket (request and frame encoders), for various value sizes and kinds of buffers.
+ *
+ * <p>Large direct values are wrapped into the frame instead of being copied (see {@link
+ * ZeroCopyBody}). To compare with the copying path, run the benchmark a second time with wrapping
+ * disabled, and use the GC profiler to observe allocations:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar RequestEncodingBenchmark -prof gc
+ * java -jar target/benchmarks.jar RequestEncodingBenchmark -prof gc \
+ *     -jvmArgs -Dcom.datastax.driver.ZERO_COPY_VALUE_THRESHOLD=2147483647
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestEncodingBenchmark {
+
+  @Param({"1024", "65536", "1048576"})
+  public int valueSize;
+
+  @Param({"4"})
+  public int valueCount;
+
+  @Param({"true", "false"})
+  public boolean direct;
+
+  private EmbeddedChannel channel;
+  private Requests.Execute request;
+
+  @Setup
+  public void setup() {
+    List<ByteBuffer> values = new ArrayList<ByteBuffer>(valueCount);
+    for (int i = 0; i < valueCount; i++) {
+      ByteBuffer value =
+          direct ? ByteBuffer.allocateDirect(valueSize) : ByteBuffer.allocate(valueSize);
+      while (value.hasRemaining()) value.put((byte) value.position());
+      value.flip();
+      values.add(value);
+    }
+    Requests.QueryProtocolOptions options =
+        new Requests.QueryProtocolOptions(
+            Message.Request.Type.EXECUTE,
+            ConsistencyLevel.ONE,
+            values,
+            Collections.<String, ByteBuffer>emptyMap(),
+            true,
+            5000,
+            null,
+            ConsistencyLevel.SERIAL,
+            Long.MIN_VALUE);
+    MD5Digest id = MD5Digest.wrap(new byte[16]);
+    request = new Requests.Execute(id, id, options, false);
+    channel =
+        new EmbeddedChannel(new Frame.Encoder(), new Message.ProtocolEncoder(ProtocolVersion.V4));
+  }
+
+  @TearDown
+  public void teardown() {
+    channel.finish();
+  }
+
+  @Benchmark
+  public int encode() {
+    channel.writeOutbound(request);
+    int size = 0;
+    ByteBuf buf;
+    while ((buf = (ByteBuf) channel.readOutbound()) != null) {
+      size += buf.readableBytes();
+      buf.release();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the acquisition and release of a stream id on a single connection ({@link
+ * StreamIdGenerator#next()} immediately followed by {@link StreamIdGenerator#release(int)}).
+ *
+ * <p>{@code inFlight} ids are acquired beforehand and never released, to simulate a busy
+ * connection: the generator has to skip over more occupied ids. Run with several threads to measure
+ * contention, since all threads share the same connection:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar StreamIdGeneratorBenchmark -t 8
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamIdGeneratorBenchmark {
+
+  @Param({"0", "1024", "30000"})
+  public int inFlight;
+
+  private StreamIdGenerator generator;
+
+  @Setup
+  public void setup() {
+    generator = StreamIdGenerator.newInstance(ProtocolVersion.V4);
+    for (int i = 0; i < inFlight; i++) generator.next();
+  }
+
+  @Benchmark
+  public int nextAndRelease() {
+    int id = generator.next();
+    if (id >= 0) generator.release(id);
+    return id;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.ImmutableMap;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A fake Murmur3 cluster for metadata benchmarks: hosts with random vnode tokens, spread over two
+ * datacenters and three racks, and keyspaces with a mix of replication settings.
+ *
+ * <p>Nothing is connected: the hosts and metadata are attached to a {@link Cluster} that is never
+ * initialized.
+ */
+class SyntheticTopology {
+
+  final Cluster cluster;
+  final Metadata metadata;
+  final List<Host> hosts = new ArrayList<Host>();
+  final Map<Host, Set<Token>> allTokens = new HashMap<Host, Set<Token>>();
+  final List<KeyspaceMetadata> keyspaces = new ArrayList<KeyspaceMetadata>();
+
+  private final Random random = new Random(42);
+  private int nextAddress;
+
+  SyntheticTopology(int nodes, int vnodes, int keyspaceCount) {
+    cluster = Cluster.builder().addContactPoint("127.0.0.1").build();
+    metadata = new Metadata(cluster.manager);
+    for (int i = 0; i < nodes; i++) addHost(vnodes);
+    for (int i = 0; i < keyspaceCount; i++) {
+      // Typical deployments have many keyspaces, but only a few distinct replication settings
+      Map<String, String> replication;
+      switch (i % 3) {
+        case 0:
+          replication =
+              ImmutableMap.of(
+                  "class", "org.apache.cassandra.locator.NetworkTopologyStrategy",
+                  "dc0", "3",
+                  "dc1", "3");
+          break;
+        case 1:
+          replication =
+              ImmutableMap.of(
+                  "class", "org.apache.cassandra.locator.NetworkTopologyStrategy", "dc0", "3");
+          break;
+        default:
+          replication =
+              ImmutableMap.of(
+                  "class", "org.apache.cassandra.locator.SimpleStrategy",
+                  "replication_factor", "3");
+      }
+      KeyspaceMetadata keyspace = new KeyspaceMetadata("ks" + i, true, replication);
+      keyspaces.add(keyspace);
+      metadata.keyspaces.put(keyspace.getName(), keyspace);
+    }
+    metadata.rebuildTokenMap(Token.M3PToken.FACTORY, allTokens);
+  }
+
+  Host addHost(int vnodes) {
+    int n = nextAddress++;
+    InetSocketAddress address;
+    try {
+      address =
+          new InetSocketAddress(
+              InetAddress.getByAddress(
+                  new byte[] {10, (byte) (n >> 16), (byte) (n >> 8), (byte) n}),
+              9042);
+    } catch (UnknownHostException e) {
+      throw new AssertionError(e);
+    }
+    Host host = new Host(address, cluster.manager.convictionPolicyFactory, cluster.manager);
+    host.setLocationInfo("dc" + (n % 2), "rack" + (n % 3));
+    Set<Token> tokens = new LinkedHashSet<Token>();
+    while (tokens.size() < vnodes)
+      tokens.add(Token.M3PToken.FACTORY.fromString(Long.toString(random.nextLong())));
+    hosts.add(host);
+    allTokens.put(host, tokens);
+    return host;
+  }
+
+  /** Builds new metadata for the current hosts and keyspaces, with a full token map computation. */
+  Metadata newMetadata() {
+    Metadata metadata = new Metadata(cluster.manager);
+    metadata.keyspaces.putAll(this.metadata.keyspaces);
+    metadata.rebuildTokenMap(Token.M3PToken.FACTORY, allTokens);
+    return metadata;
+  }
+
+  void close() {
+    cluster.close();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the token map with the structure it replaced (a {@code Map<Token, Set<Host>>} per
+ * replication strategy, searched with {@code Collections.binarySearch}), on a synthetic Murmur3
+ * topology.
+ *
+ * <p>The {@code getReplicas*} benchmarks measure replica lookups for random partition keys, the
+ * {@code build*} benchmarks measure a full rebuild. Run with the GC profiler to compare allocation
+ * rates:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TokenMapBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenMapBenchmark {
+
+  @Param({"30", "300"})
+  public int nodes;
+
+  @Param({"256"})
+  public int vnodes;
+
+  @Param({"24"})
+  public int keyspaces;
+
+  private SyntheticTopology topology;
+  private LegacyTokenMap legacy;
+  private ByteBuffer[] keys;
+  private int nextKey;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    topology = new SyntheticTopology(nodes, vnodes, keyspaces);
+    legacy = LegacyTokenMap.build(topology);
+    Random random = new Random(42);
+    keys = new ByteBuffer[1024];
+    for (int i = 0; i < keys.length; i++) {
+      byte[] key = new byte[16];
+      random.nextBytes(key);
+      keys[i] = ByteBuffer.wrap(key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    topology.close();
+  }
+
+  @Benchmark
+  public Set<Host> getReplicas() {
+    return topology.metadata.getReplicas("ks1", nextKey());
+  }
+
+  @Benchmark
+  public Set<Host> getReplicasLegacy() {
+    return legacy.getReplicas("ks1", nextKey());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Metadata build() {
+    return topology.newMetadata();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public LegacyTokenMap buildLegacy() {
+    return LegacyTokenMap.build(topology);
+  }
+
+  private ByteBuffer nextKey() {
+    return keys[nextKey++ & (keys.length - 1)];
+  }
+
+  /** The replica lookup structures that the token map used before it was made compact. */
+  static class LegacyTokenMap {
+    private final Token.Factory factory = Token.M3PToken.FACTORY;
+    private final List<Token> ring;
+    private final Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace;
+
+    private LegacyTokenMap(
+        List<Token> ring, Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace) {
+      this.ring = ring;
+      this.tokenToHostsByKeyspace = tokenToHostsByKeyspace;
+    }
+
+    static LegacyTokenMap build(SyntheticTopology topology) {
+      Map<Token, Host> tokenToPrimary = new HashMap<Token, Host>();
+      Set<Token> allSorted = new TreeSet<Token>();
+      for (Map.Entry<Host, Set<Token>> entry : topology.allTokens.entrySet()) {
+        for (Token t : entry.getValue()) {
+          allSorted.add(t);
+          tokenToPrimary.put(t, entry.getKey());
+        }
+      }
+      List<Token> ring = new ArrayList<Token>(allSorted);
+      Map<String, Map<Token, Set<Host>>> tokenToHosts =
+          new HashMap<String, Map<Token, Set<Host>>>();
+      Map<ReplicationStrategy, Map<Token, Set<Host>>> replStrategyToHosts =
+          new HashMap<ReplicationStrategy, Map<Token, Set<Host>>>();
+      for (KeyspaceMetadata keyspace : topology.keyspaces) {
+        ReplicationStrategy strategy = keyspace.replicationStrategy();
+        Map<Token, Set<Host>> ksTokens = replStrategyToHosts.get(strategy);
+        if (ksTokens == null) {
+          ksTokens = strategy.computeTokenToReplicaMap(keyspace.getName(), tokenToPrimary, ring);
+          replStrategyToHosts.put(strategy, ksTokens);
+        }
+        tokenToHosts.put(keyspace.getName(), ksTokens);
+      }
+      return new LegacyTokenMap(ring, tokenToHosts);
+    }
+
+    Set<Host> getReplicas(String keyspace, ByteBuffer partitionKey) {
+      Token token = factory.hash(partitionKey);
+      Map<Token, Set<Host>> tokenToHosts = tokenToHostsByKeyspace.get(keyspace);
+      if (tokenToHosts == null) return Collections.emptySet();
+
+      Set<Host> hosts = tokenToHosts.get(token);
+      if (hosts != null) return hosts;
+
+      int i = Collections.binarySearch(ring, token);
+      if (i < 0) {
+        i = -i - 1;
+        if (i >= ring.size()) i = 0;
+      }
+      return tokenToHosts.get(ring.get(i));
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures token map rebuilds on a large synthetic Murmur3 topology.
+ *
+ * <p>{@code fullRebuild} computes everything from scratch, which is what every rebuild used to do;
+ * {@code nodeJoin} and {@code schemaRefresh} measure the incremental rebuilds triggered by a new
+ * node and by a schema change.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TokenMapRebuildBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TokenMapRebuildBenchmark {
+
+  @Param({"1000"})
+  public int nodes;
+
+  @Param({"256"})
+  public int vnodes;
+
+  @Param({"24"})
+  public int keyspaces;
+
+  private SyntheticTopology topology;
+  private Host joiningHost;
+  private Set<Token> joiningTokens;
+  private int nextKeyspace;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    topology = new SyntheticTopology(nodes, vnodes, keyspaces);
+    joiningHost = topology.addHost(vnodes);
+    joiningTokens = topology.allTokens.remove(joiningHost);
+    topology.metadata.rebuildTokenMap(Token.M3PToken.FACTORY, topology.allTokens);
+  }
+
+  @Setup(Level.Invocation)
+  public void removeJoiningHost() {
+    if (topology.allTokens.remove(joiningHost) != null)
+      topology.metadata.rebuildTokenMap(Token.M3PToken.FACTORY, topology.allTokens);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    topology.close();
+  }
+
+  @Benchmark
+  public Metadata fullRebuild() {
+    return topology.newMetadata();
+  }
+
+  @Benchmark
+  public Metadata nodeJoin() {
+    topology.allTokens.put(joiningHost, joiningTokens);
+    topology.metadata.rebuildTokenMap(Token.M3PToken.FACTORY, topology.allTokens);
+    return topology.metadata;
+  }
+
+  @Benchmark
+  public Metadata schemaRefresh() {
+    // A new keyspace with the same replication settings as an existing one
+    String name = "new_ks" + (nextKeyspace++ % 16);
+    topology.metadata.keyspaces.put(
+        name,
+        new KeyspaceMetadata(
+            name,
+            true,
+            ImmutableMap.of(
+                "class", "org.apache.cassandra.locator.SimpleStrategy",
+                "replication_factor", "3")));
+    topology.metadata.rebuildTokenMap();
+    return topology.metadata;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.policies.LatencyAwarePolicy.IntervalSampler;
+import com.datastax.driver.core.policies.LatencyAwarePolicy.PercentileSampler;
+import com.datastax.driver.core.policies.LatencyAwarePolicy.StripedMeanSampler;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of recording a latency in {@link LatencyAwarePolicy} when all threads complete
+ * requests on the same host, which is the path of every response:
+ *
+ * <ul>
+ *   <li>{@code cas}: the moving average updated by a compare-and-set loop on each latency, which
+ *       allocates a new average per latency (the implementation used before 3.7.0, for reference);
+ *   <li>{@code mean}: the striped cells of the default scoring;
+ *   <li>{@code percentile}: the HdrHistogram recorder of percentile scoring.
+ * </ul>
+ *
+ * Folding the recorded latencies into the score is done by the updater, off the request path, and
+ * is not measured. Run with several threads to measure contention:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar LatencyScoringBenchmark -t 8 -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyScoringBenchmark {
+
+  @Param({"cas", "mean", "percentile"})
+  public String scoring;
+
+  private IntervalSampler sampler;
+
+  @Setup
+  public void setup() {
+    if (scoring.equals("cas")) sampler = new CasAverage(TimeUnit.MILLISECONDS.toNanos(100), 50);
+    else if (scoring.equals("mean")) sampler = new StripedMeanSampler();
+    else if (scoring.equals("percentile")) sampler = new PercentileSampler(99);
+    else throw new IllegalArgumentException("Unknown scoring " + scoring);
+  }
+
+  @Benchmark
+  public void record() {
+    // between 0.5 and 5 milliseconds
+    sampler.record(ThreadLocalRandom.current().nextLong(500000, 5000000));
+  }
+
+  /** The per-latency moving average that the samplers replaced. */
+  private static class CasAverage extends IntervalSampler {
+
+    private final double scale;
+    private final long thresholdToAccount;
+    private final AtomicReference<Average> current = new AtomicReference<Average>();
+
+    CasAverage(long scale, long thresholdToAccount) {
+      this.scale = (double) scale;
+      this.thresholdToAccount = thresholdToAccount;
+    }
+
+    @Override
+    void record(long latencyNanos) {
+      Average previous, next;
+      do {
+        previous = current.get();
+        next = next(previous, latencyNanos);
+      } while (next != null && !current.compareAndSet(previous, next));
+    }
+
+    private Average next(Average previous, long latencyNanos) {
+      long now = System.nanoTime();
+      long nbMeasure = previous == null ? 1 : previous.nbMeasure + 1;
+      if (nbMeasure < thresholdToAccount) return new Average(now, -1L, nbMeasure);
+      if (previous == null || previous.average < 0)
+        return new Average(now, latencyNanos, nbMeasure);
+      long delay = now - previous.timestamp;
+      if (delay <= 0) return null;
+      double scaledDelay = ((double) delay) / scale;
+      double prevWeight = Math.log(scaledDelay + 1) / scaledDelay;
+      long average = (long) ((1.0 - prevWeight) * latencyNanos + prevWeight * previous.average);
+      return new Average(now, average, nbMeasure);
+    }
+
+    @Override
+    long nextInterval() {
+      Average average = current.get();
+      return average == null ? 0 : average.nbMeasure;
+    }
+
+    @Override
+    long intervalScore() {
+      Average average = current.get();
+      return average == null ? -1 : average.average;
+    }
+  }
+
+  private static class Average {
+    final long timestamp;
+    final long average;
+    final long nbMeasure;
+
+    Average(long timestamp, long average, long nbMeasure) {
+      this.timestamp = timestamp;
+      this.average = average;
+      this.nbMeasure = nbMeasure;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core.querybuilder;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gt;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a statement with the query builder and rendering its query string ({@link
+ * BuiltStatement#getQueryString()}), as done by applications that build a new statement per request
+ * instead of preparing it once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuiltStatementBenchmark {
+
+  @Benchmark
+  public String selectWithClauses() {
+    return select("id", "name", "score")
+        .from("ks", "users")
+        .where(eq("bucket", 42))
+        .and(in("region", "eu", "us", "apac"))
+        .and(gt("updated", 1500000000000L))
+        .limit(100)
+        .getQueryString();
+  }
+
+  @Benchmark
+  public String insertWithValues() {
+    return insertInto("ks", "users")
+        .value("id", 12345)
+        .value("name", "John O'Reilly")
+        .value("tags", Arrays.asList("a", "b", "c"))
+        .using(ttl(3600))
+        .getQueryString();
+  }
+
+  @Benchmark
+  public String updateWithBindMarkers() {
+    return update("ks", "users")
+        .with(set("name", bindMarker()))
+        .and(set("score", bindMarker()))
+        .where(eq("id", bindMarker()))
+        .getQueryString();
+  }
+}
@@ -98,6 +98,19 @@ public abstract class AbstractSession implements Session {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public TableScan scan(TableMetadata table, TableScanOptions options) {
+    checkNotInEventLoop();
+    return TableScan.start(this, table, options);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public BulkWriter newBulkWriter(BulkWriterOptions options) {
+    return new BulkWriter(this, options);
+  }
+
   /** {@inheritDoc} */
   @Override
   public ListenableFuture<PreparedStatement> prepareAsync(String query) {
@@ -22,7 +22,6 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.Uninterruptibles;
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
@@ -33,16 +32,16 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Default implementation of a result set, backed by an ArrayDeque of ArrayList. */
+/** Default implementation of a result set, backed by {@link RowsPage}s. */
 abstract class ArrayBackedResultSet implements ResultSet {
 
   private static final Logger logger = LoggerFactory.getLogger(ResultSet.class);
 
-  private static final Queue<List<ByteBuffer>> EMPTY_QUEUE = new ArrayDeque<List<ByteBuffer>>(0);
-
   protected volatile ColumnDefinitions metadata;
   protected final Token.Factory tokenFactory;
   private final boolean wasApplied;
@@ -53,14 +52,14 @@ abstract class ArrayBackedResultSet implements ResultSet {
   private ArrayBackedResultSet(
       ColumnDefinitions metadata,
       Token.Factory tokenFactory,
-      List<ByteBuffer> firstRow,
+      RowsPage firstPage,
       ProtocolVersion protocolVersion,
       CodecRegistry codecRegistry) {
     this.metadata = metadata;
     this.protocolVersion = protocolVersion;
     this.codecRegistry = codecRegistry;
     this.tokenFactory = tokenFactory;
-    this.wasApplied = checkWasApplied(firstRow, metadata, protocolVersion);
+    this.wasApplied = checkWasApplied(firstPage, metadata, protocolVersion);
   }
 
   static ArrayBackedResultSet fromMessage(
@@ -122,10 +121,12 @@ abstract class ArrayBackedResultSet implements ResultSet {
         // this explicitly because MultiPage implementation doesn't support info == null.
         assert r.metadata.pagingState == null || info != null;
 
-        return r.metadata.pagingState == null
-            ? new SinglePage(
-                columnDefs, tokenFactory, protocolVersion, columnDefs.codecRegistry, r.data, info)
-            : new MultiPage(
+        if (r.metadata.pagingState == null)
+          return new SinglePage(
+              columnDefs, tokenFactory, protocolVersion, columnDefs.codecRegistry, r.data, info);
+
+        MultiPage multiPage =
+            new MultiPage(
                 columnDefs,
                 tokenFactory,
                 protocolVersion,
@@ -134,6 +135,8 @@ abstract class ArrayBackedResultSet implements ResultSet {
                 info,
                 r.metadata.pagingState,
                 session);
+        multiPage.maybePrefetch();
+        return multiPage;
 
       case VOID:
       case SET_KEYSPACE:
@@ -168,7 +171,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
   private static ArrayBackedResultSet empty(ExecutionInfo info) {
     // We could pass the protocol version but we know we won't need it so passing a bogus value
     // (null)
-    return new SinglePage(ColumnDefinitions.EMPTY, null, null, null, EMPTY_QUEUE, info);
+    return new SinglePage(ColumnDefinitions.EMPTY, null, null, null, RowsPage.EMPTY, info);
   }
 
   @Override
@@ -223,34 +226,36 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
   private static class SinglePage extends ArrayBackedResultSet {
 
-    private final Queue<List<ByteBuffer>> rows;
+    private final RowsPage rows;
     private final ExecutionInfo info;
+    private int nextRow;
 
     private SinglePage(
         ColumnDefinitions metadata,
         Token.Factory tokenFactory,
         ProtocolVersion protocolVersion,
         CodecRegistry codecRegistry,
-        Queue<List<ByteBuffer>> rows,
+        RowsPage rows,
         ExecutionInfo info) {
-      super(metadata, tokenFactory, rows.peek(), protocolVersion, codecRegistry);
+      super(metadata, tokenFactory, rows, protocolVersion, codecRegistry);
       this.info = info;
       this.rows = rows;
     }
 
     @Override
     public boolean isExhausted() {
-      return rows.isEmpty();
+      return nextRow >= rows.size();
     }
 
     @Override
     public Row one() {
-      return ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, rows.poll());
+      if (isExhausted()) return null;
+      return ArrayBackedRow.fromPage(metadata, tokenFactory, protocolVersion, rows, nextRow++);
     }
 
     @Override
     public int getAvailableWithoutFetching() {
-      return rows.size();
+      return rows.size() - nextRow;
     }
 
     @Override
@@ -276,7 +281,11 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
   private static class MultiPage extends ArrayBackedResultSet {
 
-    private Queue<List<ByteBuffer>> currentPage;
+    private static final AtomicReferenceFieldUpdater<MultiPage, FetchingState> FETCH_STATE_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(MultiPage.class, FetchingState.class, "fetchState");
+
+    private RowsPage currentPage;
+    private int nextRow;
     private final Queue<NextPage> nextPages = new ConcurrentLinkedQueue<NextPage>();
 
     private final Deque<ExecutionInfo> infos = new LinkedBlockingDeque<ExecutionInfo>();
@@ -298,12 +307,18 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
     private final SessionManager session;
 
+    // Read-ahead settings: how many pages to fetch in the background, and how many bytes they may
+    // use before we stop fetching (bufferedBytes is the total size of the pages in nextPages).
+    private final int prefetchPages;
+    private final int maxPrefetchBytes;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
     private MultiPage(
         ColumnDefinitions metadata,
         Token.Factory tokenFactory,
         ProtocolVersion protocolVersion,
         CodecRegistry codecRegistry,
-        Queue<List<ByteBuffer>> rows,
+        RowsPage rows,
         ExecutionInfo info,
         ByteBuffer pagingState,
         SessionManager session) {
@@ -313,29 +328,37 @@ abstract class ArrayBackedResultSet implements ResultSet {
       // we could hard-code the result of wasApplied in this class to "true". However, we can not be
       // sure
       // that this will never change, so apply the generic check by peeking at the first row.
-      super(metadata, tokenFactory, rows.peek(), protocolVersion, codecRegistry);
+      super(metadata, tokenFactory, rows, protocolVersion, codecRegistry);
       this.currentPage = rows;
       this.infos.offer(info);
 
       this.fetchState = new FetchingState(pagingState, null);
       this.session = session;
+
+      QueryOptions queryOptions = session.configuration().getQueryOptions();
+      int statementPrefetchPages = info.getStatement().getPrefetchPages();
+      this.prefetchPages =
+          statementPrefetchPages >= 0 ? statementPrefetchPages : queryOptions.getPrefetchPages();
+      this.maxPrefetchBytes = queryOptions.getMaxPrefetchBytes();
     }
 
     @Override
     public boolean isExhausted() {
       prepareNextRow();
-      return currentPage.isEmpty();
+      return nextRow >= currentPage.size();
     }
 
     @Override
     public Row one() {
       prepareNextRow();
-      return ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, currentPage.poll());
+      if (nextRow >= currentPage.size()) return null;
+      return ArrayBackedRow.fromPage(
+          metadata, tokenFactory, protocolVersion, currentPage, nextRow++);
     }
 
     @Override
     public int getAvailableWithoutFetching() {
-      int available = currentPage.size();
+      int available = currentPage.size() - nextRow;
       for (NextPage page : nextPages) available += page.data.size();
       return available;
     }
@@ -346,22 +369,36 @@ abstract class ArrayBackedResultSet implements ResultSet {
     }
 
     // Ensure that after the call the next row to consume is in 'currentPage', i.e. that
-    // 'currentPage' is empty IFF the ResultSet if fully exhausted.
+    // 'currentPage' has no rows left IFF the ResultSet if fully exhausted.
     private void prepareNextRow() {
-      while (currentPage.isEmpty()) {
+      boolean stalled = false;
+      while (nextRow >= currentPage.size()) {
         // Grab the current state now to get a consistent view in this iteration.
         FetchingState fetchingState = this.fetchState;
 
         NextPage nextPage = nextPages.poll();
         if (nextPage != null) {
+          bufferedBytes.addAndGet(-nextPage.data.sizeInBytes());
           if (nextPage.metadata != null) {
             this.metadata = nextPage.metadata;
           }
           currentPage = nextPage.data;
+          nextRow = 0;
+          if (prefetchPages > 0) {
+            Metrics metrics = session.cluster.manager.metrics;
+            if (metrics != null && !stalled) metrics.getPrefetchHits().inc();
+            maybePrefetch();
+          }
           continue;
         }
         if (fetchingState == null) return;
 
+        if (prefetchPages > 0 && !stalled) {
+          stalled = true;
+          Metrics metrics = session.cluster.manager.metrics;
+          if (metrics != null) metrics.getPrefetchStalls().inc();
+        }
+
         // We need to know if there is more result, so fetch the next page and
         // wait on it.
         try {
@@ -379,15 +416,33 @@ abstract class ArrayBackedResultSet implements ResultSet {
     }
 
     private ListenableFuture<ResultSet> fetchMoreResults(FetchingState fetchState) {
-      if (fetchState == null) return Futures.<ResultSet>immediateFuture(this);
+      // Background fetches can race with the application, so the transition to the in-progress
+      // state must be atomic to ensure that a page is never requested twice.
+      while (true) {
+        if (fetchState == null) return Futures.<ResultSet>immediateFuture(this);
+
+        if (fetchState.inProgress != null) return fetchState.inProgress;
+
+        assert fetchState.nextStart != null;
+        ByteBuffer state = fetchState.nextStart;
+        SettableFuture<ResultSet> future = SettableFuture.create();
+        if (FETCH_STATE_UPDATER.compareAndSet(this, fetchState, new FetchingState(null, future)))
+          return queryNextPage(state, future);
+        fetchState = this.fetchState;
+      }
+    }
+
+    // Requests the next page in the background if read-ahead is enabled for this result set, and
+    // the pages that are already buffered are within the limits.
+    private void maybePrefetch() {
+      if (prefetchPages == 0) return;
+
+      FetchingState fetchState = this.fetchState;
+      if (fetchState == null || fetchState.inProgress != null) return;
 
-      if (fetchState.inProgress != null) return fetchState.inProgress;
+      if (nextPages.size() >= prefetchPages || bufferedBytes.get() >= maxPrefetchBytes) return;
 
-      assert fetchState.nextStart != null;
-      ByteBuffer state = fetchState.nextStart;
-      SettableFuture<ResultSet> future = SettableFuture.create();
-      this.fetchState = new FetchingState(null, future);
-      return queryNextPage(state, future);
+      fetchMoreResults(fetchState);
     }
 
     private ListenableFuture<ResultSet> queryNextPage(
@@ -442,6 +497,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
                             new PreparedId.PreparedMetadata(
                                 rows.metadata.metadataId, rows.metadata.columns);
                       }
+                      MultiPage.this.bufferedBytes.addAndGet(rows.data.sizeInBytes());
                       MultiPage.this.nextPages.offer(new NextPage(newMetadata, rows.data));
                       MultiPage.this.fetchState =
                           rows.metadata.pagingState == null
@@ -479,6 +535,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
                     MultiPage.this.infos.offer(info);
                     future.set(MultiPage.this);
+                    maybePrefetch();
                     break;
                   case ERROR:
                     future.setException(
@@ -561,9 +618,9 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
     private static class NextPage {
       final ColumnDefinitions metadata;
-      final Queue<List<ByteBuffer>> data;
+      final RowsPage data;
 
-      NextPage(ColumnDefinitions metadata, Queue<List<ByteBuffer>> data) {
+      NextPage(ColumnDefinitions metadata, RowsPage data) {
         this.metadata = metadata;
         this.data = data;
       }
@@ -574,17 +631,17 @@ abstract class ArrayBackedResultSet implements ResultSet {
   // ArrayBackedRow
   // object that we would throw away immediately.
   private static boolean checkWasApplied(
-      List<ByteBuffer> firstRow, ColumnDefinitions metadata, ProtocolVersion protocolVersion) {
+      RowsPage firstPage, ColumnDefinitions metadata, ProtocolVersion protocolVersion) {
     // If the column is not present or not a boolean, we assume the query
     // was not a conditional statement, and therefore return true.
-    if (firstRow == null) return true;
+    if (firstPage.size() == 0) return true;
     int[] is = metadata.findAllIdx("[applied]");
     if (is == null) return true;
     int i = is[0];
     if (!DataType.cboolean().equals(metadata.getType(i))) return true;
 
     // Otherwise return the value of the column
-    ByteBuffer value = firstRow.get(i);
+    ByteBuffer value = firstPage.getValue(0, i);
     if (value == null || value.remaining() == 0) return false;
 
     return TypeCodec.cboolean().deserializeNoBoxing(value, protocolVersion);
@@ -20,7 +20,12 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.regex.Pattern;
 
-/** Implementation of a Row backed by an ArrayList. */
+/**
+ * Implementation of a Row backed by a {@link RowsPage}.
+ *
+ * <p>Rows are lightweight views over their page: cells are only extracted when they are read. Note
+ * that this means that holding on to a row keeps its whole page in memory.
+ */
 class ArrayBackedRow extends AbstractGettableData implements Row {
 
   /**
@@ -32,17 +37,20 @@ class ArrayBackedRow extends AbstractGettableData implements Row {
 
   private final ColumnDefinitions metadata;
   private final Token.Factory tokenFactory;
-  private final List<ByteBuffer> data;
+  private final RowsPage page;
+  private final int row;
 
   private ArrayBackedRow(
       ColumnDefinitions metadata,
       Token.Factory tokenFactory,
       ProtocolVersion protocolVersion,
-      List<ByteBuffer> data) {
+      RowsPage page,
+      int row) {
     super(protocolVersion);
     this.metadata = metadata;
     this.tokenFactory = tokenFactory;
-    this.data = data;
+    this.page = page;
+    this.row = row;
   }
 
   static Row fromData(
@@ -52,7 +60,17 @@ class ArrayBackedRow extends AbstractGettableData implements Row {
       List<ByteBuffer> data) {
     if (data == null) return null;
 
-    return new ArrayBackedRow(metadata, tokenFactory, protocolVersion, data);
+    return new ArrayBackedRow(
+        metadata, tokenFactory, protocolVersion, RowsPage.fromValues(data), 0);
+  }
+
+  static Row fromPage(
+      ColumnDefinitions metadata,
+      Token.Factory tokenFactory,
+      ProtocolVersion protocolVersion,
+      RowsPage page,
+      int row) {
+    return new ArrayBackedRow(metadata, tokenFactory, protocolVersion, page, row);
   }
 
   @Override
@@ -72,7 +90,7 @@ class ArrayBackedRow extends AbstractGettableData implements Row {
 
   @Override
   protected ByteBuffer getValue(int i) {
-    return data.get(i);
+    return page.getValue(row, i);
   }
 
   @Override
@@ -93,7 +111,7 @@ class ArrayBackedRow extends AbstractGettableData implements Row {
 
     checkType(i, tokenFactory.getTokenType().getName());
 
-    ByteBuffer value = data.get(i);
+    ByteBuffer value = page.getValue(row, i);
     if (value == null || value.remaining() == 0) return null;
 
     return tokenFactory.deserialize(value, protocolVersion);
@@ -121,7 +139,7 @@ class ArrayBackedRow extends AbstractGettableData implements Row {
     sb.append("Row[");
     for (int i = 0; i < metadata.size(); i++) {
       if (i != 0) sb.append(", ");
-      ByteBuffer bb = data.get(i);
+      ByteBuffer bb = page.getValue(row, i);
       if (bb == null) sb.append("NULL");
       else
         sb.append(
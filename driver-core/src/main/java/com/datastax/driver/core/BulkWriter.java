@@ -0,0 +1,382 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.FutureCallback;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a stream of statements as token-aware {@link BatchStatement.Type#UNLOGGED unlogged}
+ * batches.
+ *
+ * <p>Each statement is assigned to a group, according to its {@link
+ * Statement#getRoutingKey(ProtocolVersion, CodecRegistry) routing key} and {@link
+ * Statement#getKeyspace() keyspace}: either its partition, or the set of replicas of its partition
+ * (see {@link BulkWriterOptions#getGrouping()}). A group is sent as a batch when it reaches {@link
+ * BulkWriterOptions#getMaxBatchStatements()} statements, when adding the next statement would
+ * exceed {@link BulkWriterOptions#getMaxBatchBytes()}, when too many statements are buffered
+ * overall, or when {@link #flush()} is called.
+ *
+ * <p>Each batch is executed on the least loaded of its replicas that is up, preferably one that is
+ * at distance {@link HostDistance#LOCAL} according to the load balancing policy. The number of
+ * concurrent batches on each host is bounded by {@link
+ * BulkWriterOptions#getMaxInFlightBatchesPerHost()}; batches wait in a per-host queue until a slot
+ * is available, and {@link #add(Statement)} blocks when too many batches are waiting.
+ *
+ * <p>Statements that can't be routed (no routing key or keyspace, or no replica known for it), and
+ * statements that can't be part of a batch (batches themselves, and statements with named values),
+ * are executed on their own, and routed by the load balancing policy. Note that all the statements
+ * of a batch get the same default timestamp, unless they specify one explicitly.
+ *
+ * <p>Statements are executed asynchronously, so errors are not reported by {@code add}: they are
+ * counted by {@link #getFailedStatements()}, and the first one is thrown by the next call to {@link
+ * #flush()} or {@link #close()}.
+ *
+ * <p>This class is thread-safe, but {@code add}, {@code flush} and {@code close} block and must not
+ * be called from a driver I/O thread (for example in a callback of an asynchronous query).
+ *
+ * @see Session#newBulkWriter(BulkWriterOptions)
+ */
+public class BulkWriter implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(BulkWriter.class);
+
+  private final Session session;
+  private final Metadata metadata;
+  private final ProtocolVersion protocolVersion;
+  private final CodecRegistry codecRegistry;
+
+  private final BulkWriterOptions.Grouping grouping;
+  private final int maxBatchStatements;
+  private final int maxBatchBytes;
+  private final int maxBufferedStatements;
+  private final int maxRetriesPerBatch;
+  private final ConsistencyLevel consistencyLevel;
+
+  // Incomplete batches, in creation order so that the oldest one gets sent first when too many
+  // statements are buffered. Guarded by 'this'.
+  private final LinkedHashMap<Object, Group> groups = new LinkedHashMap<Object, Group>();
+  private int bufferedStatements;
+  private boolean closed;
+
+  private final ReplicaScheduler<Group> scheduler;
+
+  // Permits for pending batches (waiting or in flight).
+  private final Semaphore pendingPermits;
+  // Guards the count of pending batches, to wait for it to drop to 0.
+  private final Object pendingLock = new Object();
+  private int pendingBatches;
+
+  private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+  private final Meter writtenStatements = new Meter();
+  private final Counter failedStatements = new Counter();
+  private final Histogram batchSizes = new Histogram(new ExponentiallyDecayingReservoir());
+  private final Histogram batchSizesInBytes = new Histogram(new ExponentiallyDecayingReservoir());
+
+  BulkWriter(Session session, BulkWriterOptions options) {
+    this.session = session;
+    Cluster cluster = session.getCluster();
+    Configuration configuration = cluster.getConfiguration();
+    this.metadata = cluster.getMetadata();
+    this.protocolVersion = configuration.getProtocolOptions().getProtocolVersion();
+    this.codecRegistry = configuration.getCodecRegistry();
+    this.grouping = options.getGrouping();
+    this.maxBatchStatements = options.getMaxBatchStatements();
+    this.maxBatchBytes = options.getMaxBatchBytes();
+    this.maxBufferedStatements = options.getMaxBufferedStatements();
+    this.maxRetriesPerBatch = options.getMaxRetriesPerBatch();
+    this.consistencyLevel = options.getConsistencyLevel();
+    this.pendingPermits = new Semaphore(options.getMaxPendingBatches());
+    this.scheduler =
+        new ReplicaScheduler<Group>(
+            configuration.getPolicies().getLoadBalancingPolicy(),
+            options.getMaxInFlightBatchesPerHost()) {
+          @Override
+          void execute(Group group) {
+            BulkWriter.this.execute(group);
+          }
+        };
+  }
+
+  /**
+   * Adds a statement to this writer.
+   *
+   * <p>The statement is buffered until its batch is complete. This method blocks if too many
+   * batches are pending (see {@link BulkWriterOptions#getMaxPendingBatches()}).
+   *
+   * @param statement the statement to write. It must not be modified after this call.
+   * @throws IllegalStateException if this writer was closed.
+   */
+  public void add(Statement statement) {
+    int size = statement.requestSizeInBytes(protocolVersion, codecRegistry);
+    Object key = null;
+    Set<Host> replicas = Collections.emptySet();
+    if (isBatchable(statement)) {
+      String keyspace = statement.getKeyspace();
+      ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+      if (keyspace != null && routingKey != null) {
+        replicas = metadata.getReplicas(Metadata.quote(keyspace), routingKey);
+        if (!replicas.isEmpty())
+          key =
+              (grouping == BulkWriterOptions.Grouping.REPLICA_SET)
+                  ? replicas
+                  : Arrays.asList(keyspace, routingKey);
+      }
+    }
+
+    List<Group> toSend = new ArrayList<Group>(2);
+    synchronized (this) {
+      if (closed) throw new IllegalStateException("This BulkWriter was closed");
+
+      if (key == null || maxBatchStatements == 1 || size >= maxBatchBytes) {
+        toSend.add(new Group(statement, size, replicas));
+      } else {
+        Group group = groups.get(key);
+        if (group != null && group.bytes + size > maxBatchBytes) {
+          toSend.add(removeGroup(key));
+          group = null;
+        }
+        if (group == null) {
+          group = new Group(replicas);
+          groups.put(key, group);
+        }
+        group.add(statement, size);
+        bufferedStatements += 1;
+        if (group.statements.size() >= maxBatchStatements) toSend.add(removeGroup(key));
+
+        Iterator<Map.Entry<Object, Group>> eldest = groups.entrySet().iterator();
+        while (bufferedStatements > maxBufferedStatements && eldest.hasNext()) {
+          Group evicted = eldest.next().getValue();
+          eldest.remove();
+          bufferedStatements -= evicted.statements.size();
+          toSend.add(evicted);
+        }
+      }
+    }
+    for (Group group : toSend) send(group);
+  }
+
+  /**
+   * Sends all incomplete batches, and waits until all pending batches have completed.
+   *
+   * @throws com.datastax.driver.core.exceptions.DriverException the first error that occurred since
+   *     the previous call to this method, if any. Note that other batches might have succeeded
+   *     after that error.
+   */
+  public void flush() {
+    List<Group> toSend;
+    synchronized (this) {
+      toSend = new ArrayList<Group>(groups.values());
+      groups.clear();
+      bufferedStatements = 0;
+    }
+    for (Group group : toSend) send(group);
+
+    boolean interrupted = false;
+    synchronized (pendingLock) {
+      while (pendingBatches > 0) {
+        try {
+          pendingLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+
+    Throwable t = error.getAndSet(null);
+    if (t != null) throw DriverThrowables.propagateCause(new ExecutionException(t));
+  }
+
+  /**
+   * Flushes this writer, and prevents further statements from being added.
+   *
+   * @throws com.datastax.driver.core.exceptions.DriverException see {@link #flush()}.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    flush();
+  }
+
+  /**
+   * Returns the statements that were successfully written by this writer.
+   *
+   * <p>The meter's count is the total number of statements, and its rates reflect the throughput of
+   * the writer.
+   *
+   * @return the meter.
+   */
+  public Meter getWrittenStatements() {
+    return writtenStatements;
+  }
+
+  /**
+   * Returns the number of statements that failed (after retries).
+   *
+   * @return the counter.
+   */
+  public Counter getFailedStatements() {
+    return failedStatements;
+  }
+
+  /**
+   * Returns the distribution of the number of statements per batch.
+   *
+   * <p>Statements executed on their own count as batches of size 1.
+   *
+   * @return the histogram.
+   */
+  public Histogram getBatchSizes() {
+    return batchSizes;
+  }
+
+  /**
+   * Returns the distribution of the (estimated) size of batches, in bytes.
+   *
+   * @return the histogram.
+   */
+  public Histogram getBatchSizesInBytes() {
+    return batchSizesInBytes;
+  }
+
+  private static boolean isBatchable(Statement statement) {
+    if (statement instanceof StatementWrapper)
+      statement = ((StatementWrapper) statement).getWrappedStatement();
+    return !(statement instanceof BatchStatement)
+        && !(statement instanceof RegularStatement
+            && ((RegularStatement) statement).usesNamedValues());
+  }
+
+  // Must be called while holding the lock.
+  private Group removeGroup(Object key) {
+    Group group = groups.remove(key);
+    bufferedStatements -= group.statements.size();
+    return group;
+  }
+
+  private void send(Group group) {
+    pendingPermits.acquireUninterruptibly();
+    synchronized (pendingLock) {
+      pendingBatches += 1;
+    }
+    batchSizes.update(group.statements.size());
+    batchSizesInBytes.update(group.bytes);
+
+    scheduler.submit(group);
+  }
+
+  private void complete() {
+    pendingPermits.release();
+    synchronized (pendingLock) {
+      pendingBatches -= 1;
+      if (pendingBatches == 0) pendingLock.notifyAll();
+    }
+  }
+
+  private void execute(final Group group) {
+    final Statement statement = group.toStatement();
+    GuavaCompatibility.INSTANCE.addCallback(
+        session.executeAsync(statement),
+        new FutureCallback<ResultSet>() {
+          @Override
+          public void onSuccess(ResultSet rs) {
+            writtenStatements.mark(group.size());
+            scheduler.release(group);
+            complete();
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            onError(group, statement, t);
+          }
+        });
+  }
+
+  private void onError(Group group, Statement statement, Throwable t) {
+    if (group.retries >= maxRetriesPerBatch
+        || !statement.isIdempotentWithDefault(
+            session.getCluster().getConfiguration().getQueryOptions())) {
+      logger.debug("Error while writing batch of {} statements, giving up", group.size(), t);
+      failedStatements.inc(group.size());
+      error.compareAndSet(null, t);
+      scheduler.release(group);
+      complete();
+      return;
+    }
+
+    logger.debug("Error while writing batch on {}, retrying", group.host, t);
+    group.retries += 1;
+    scheduler.retry(group);
+  }
+
+  private class Group extends ReplicaScheduler.Task {
+    final List<Statement> statements;
+    int bytes;
+
+    Group(Set<Host> replicas) {
+      super(replicas);
+      this.statements = new ArrayList<Statement>(Math.min(maxBatchStatements, 16));
+    }
+
+    Group(Statement statement, int bytes, Set<Host> replicas) {
+      super(replicas);
+      this.statements = Collections.singletonList(statement);
+      this.bytes = bytes;
+    }
+
+    void add(Statement statement, int size) {
+      statements.add(statement);
+      bytes += size;
+    }
+
+    int size() {
+      return statements.size();
+    }
+
+    Statement toStatement() {
+      if (statements.size() == 1 && !isBatchable(statements.get(0))) {
+        // Executed as is, so don't modify it
+        return statements.get(0);
+      }
+      Statement statement = new BatchStatement(BatchStatement.Type.UNLOGGED).addAll(statements);
+      if (consistencyLevel != null) statement.setConsistencyLevel(consistencyLevel);
+      if (host != null) statement.setHost(host);
+      return statement;
+    }
+  }
+}
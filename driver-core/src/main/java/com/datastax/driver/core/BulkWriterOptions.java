@@ -0,0 +1,268 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options to configure a bulk writer.
+ *
+ * @see Session#newBulkWriter(BulkWriterOptions)
+ */
+public class BulkWriterOptions {
+
+  /** How statements are grouped into batches. */
+  public enum Grouping {
+    /**
+     * Only statements that target the same partition are batched together. Cassandra applies such a
+     * batch as a single mutation, but batches will be small unless the input has many rows per
+     * partition.
+     */
+    PARTITION,
+
+    /**
+     * Statements that target partitions with the same replicas are batched together. The
+     * coordinator is one of these replicas, so it does not need to forward the batch to other nodes
+     * than the ones it would have to contact anyway.
+     */
+    REPLICA_SET
+  }
+
+  /** The default grouping: {@link Grouping#REPLICA_SET}. */
+  public static final Grouping DEFAULT_GROUPING = Grouping.REPLICA_SET;
+
+  /**
+   * The default maximum number of statements in a batch: 10 (Cassandra's default {@code
+   * unlogged_batch_across_partitions_warn_threshold}).
+   */
+  public static final int DEFAULT_MAX_BATCH_STATEMENTS = 10;
+
+  /**
+   * The default maximum size of a batch: 5120 bytes (Cassandra's default {@code
+   * batch_size_warn_threshold_in_kb}).
+   */
+  public static final int DEFAULT_MAX_BATCH_BYTES = 5 * 1024;
+
+  /** The default maximum number of batches that are executed concurrently on each host: 8. */
+  public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_HOST = 8;
+
+  /** The default maximum number of batches waiting to be executed, or in flight: 1024. */
+  public static final int DEFAULT_MAX_PENDING_BATCHES = 1024;
+
+  /** The default maximum number of statements waiting for their batch to fill up: 10000. */
+  public static final int DEFAULT_MAX_BUFFERED_STATEMENTS = 10000;
+
+  /** The default number of times that a failed batch is retried: 3. */
+  public static final int DEFAULT_MAX_RETRIES_PER_BATCH = 3;
+
+  private volatile Grouping grouping = DEFAULT_GROUPING;
+  private volatile int maxBatchStatements = DEFAULT_MAX_BATCH_STATEMENTS;
+  private volatile int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+  private volatile int maxInFlightBatchesPerHost = DEFAULT_MAX_IN_FLIGHT_BATCHES_PER_HOST;
+  private volatile int maxPendingBatches = DEFAULT_MAX_PENDING_BATCHES;
+  private volatile int maxBufferedStatements = DEFAULT_MAX_BUFFERED_STATEMENTS;
+  private volatile int maxRetriesPerBatch = DEFAULT_MAX_RETRIES_PER_BATCH;
+  private volatile ConsistencyLevel consistencyLevel;
+
+  /**
+   * Creates a new {@link BulkWriterOptions} instance with the default values.
+   *
+   * <p>The default consistency level is that of {@link QueryOptions}.
+   */
+  public BulkWriterOptions() {}
+
+  /**
+   * Sets how statements are grouped into batches.
+   *
+   * @param grouping the grouping.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setGrouping(Grouping grouping) {
+    Preconditions.checkNotNull(grouping);
+    this.grouping = grouping;
+    return this;
+  }
+
+  /**
+   * Returns how statements are grouped into batches.
+   *
+   * @return the grouping.
+   */
+  public Grouping getGrouping() {
+    return grouping;
+  }
+
+  /**
+   * Sets the maximum number of statements in a batch.
+   *
+   * @param maxBatchStatements the maximum. It must be strictly positive; 1 disables batching.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxBatchStatements(int maxBatchStatements) {
+    Preconditions.checkArgument(maxBatchStatements > 0, "maxBatchStatements must be > 0");
+    this.maxBatchStatements = maxBatchStatements;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of statements in a batch.
+   *
+   * @return the maximum.
+   */
+  public int getMaxBatchStatements() {
+    return maxBatchStatements;
+  }
+
+  /**
+   * Sets the maximum size of a batch, in bytes.
+   *
+   * <p>The size of each statement is estimated with {@link Statement#requestSizeInBytes(
+   * ProtocolVersion, CodecRegistry)}. A statement that is larger than this limit is executed on its
+   * own.
+   *
+   * @param maxBatchBytes the maximum. It must be strictly positive.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxBatchBytes(int maxBatchBytes) {
+    Preconditions.checkArgument(maxBatchBytes > 0, "maxBatchBytes must be > 0");
+    this.maxBatchBytes = maxBatchBytes;
+    return this;
+  }
+
+  /**
+   * Returns the maximum size of a batch, in bytes.
+   *
+   * @return the maximum.
+   */
+  public int getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /**
+   * Sets the maximum number of batches that can be executed concurrently on a given host.
+   *
+   * @param maxInFlightBatchesPerHost the maximum. It must be strictly positive.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxInFlightBatchesPerHost(int maxInFlightBatchesPerHost) {
+    Preconditions.checkArgument(
+        maxInFlightBatchesPerHost > 0, "maxInFlightBatchesPerHost must be > 0");
+    this.maxInFlightBatchesPerHost = maxInFlightBatchesPerHost;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of batches that can be executed concurrently on a given host.
+   *
+   * @return the maximum.
+   */
+  public int getMaxInFlightBatchesPerHost() {
+    return maxInFlightBatchesPerHost;
+  }
+
+  /**
+   * Sets the maximum number of batches that can be waiting for a host, or in flight.
+   *
+   * <p>When this limit is reached, {@link BulkWriter#add(Statement)} blocks until a batch
+   * completes.
+   *
+   * @param maxPendingBatches the maximum. It must be strictly positive.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxPendingBatches(int maxPendingBatches) {
+    Preconditions.checkArgument(maxPendingBatches > 0, "maxPendingBatches must be > 0");
+    this.maxPendingBatches = maxPendingBatches;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of batches that can be waiting for a host, or in flight.
+   *
+   * @return the maximum.
+   */
+  public int getMaxPendingBatches() {
+    return maxPendingBatches;
+  }
+
+  /**
+   * Sets the maximum number of statements that can be buffered while their batch fills up.
+   *
+   * <p>When this limit is reached, the oldest incomplete batch is sent as is. This bounds the
+   * memory used by the writer when the input spans many partitions (or replica sets).
+   *
+   * @param maxBufferedStatements the maximum. It must be strictly positive.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxBufferedStatements(int maxBufferedStatements) {
+    Preconditions.checkArgument(maxBufferedStatements > 0, "maxBufferedStatements must be > 0");
+    this.maxBufferedStatements = maxBufferedStatements;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of statements that can be buffered while their batch fills up.
+   *
+   * @return the maximum.
+   */
+  public int getMaxBufferedStatements() {
+    return maxBufferedStatements;
+  }
+
+  /**
+   * Sets how many times a failed batch is retried on another replica.
+   *
+   * <p>Only idempotent batches are retried (see {@link Statement#isIdempotent()}); this comes in
+   * addition to the retries decided by the {@link com.datastax.driver.core.policies.RetryPolicy}.
+   *
+   * @param maxRetriesPerBatch the number of retries. It must be positive or 0.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setMaxRetriesPerBatch(int maxRetriesPerBatch) {
+    Preconditions.checkArgument(maxRetriesPerBatch >= 0, "maxRetriesPerBatch must be >= 0");
+    this.maxRetriesPerBatch = maxRetriesPerBatch;
+    return this;
+  }
+
+  /**
+   * Returns how many times a failed batch is retried on another replica.
+   *
+   * @return the number of retries.
+   */
+  public int getMaxRetriesPerBatch() {
+    return maxRetriesPerBatch;
+  }
+
+  /**
+   * Sets the consistency level of the batches issued by the writer.
+   *
+   * @param consistencyLevel the consistency level. If it is {@code null}, {@link
+   *     QueryOptions#getConsistencyLevel() the default consistency level} will be used.
+   * @return this {@code BulkWriterOptions} instance.
+   */
+  public BulkWriterOptions setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+    this.consistencyLevel = consistencyLevel;
+    return this;
+  }
+
+  /**
+   * Returns the consistency level of the batches issued by the writer.
+   *
+   * @return the consistency level, or {@code null} if the default will be used.
+   */
+  public ConsistencyLevel getConsistencyLevel() {
+    return consistencyLevel;
+  }
+}
@@ -306,7 +306,9 @@ abstract class CBUtil { // TODO rename
     }
 
     cb.writeInt(bytes.remaining());
-    cb.writeBytes(bytes.duplicate());
+    if (cb instanceof ZeroCopyBody && ZeroCopyBody.isWrappable(bytes))
+      ((ZeroCopyBody) cb).appendValue(bytes);
+    else cb.writeBytes(bytes.duplicate());
   }
 
   public static int sizeOfValue(byte[] bytes) {
@@ -50,6 +50,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.Closeable;
@@ -72,10 +73,12 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -461,6 +464,18 @@ public class Cluster implements Closeable {
     return manager.configuration;
   }
 
+  /**
+   * The executor that completes the {@code CompletionStage}s returned by the Java 8 API of the
+   * driver-extras module.
+   *
+   * @return the executor built by {@link ThreadingOptions#createContinuationExecutor(String)}, or
+   *     {@code null} if stages are completed on the thread that completes the request, or if this
+   *     cluster has not yet been {@link #init() initialized}.
+   */
+  public Executor getContinuationExecutor() {
+    return manager.continuationExecutor;
+  }
+
   /**
    * The cluster metrics.
    *
@@ -1293,6 +1308,20 @@ public class Cluster implements Closeable {
       return this;
     }
 
+    /**
+     * Sets the ThrottlingOptions to use for the newly created Cluster.
+     *
+     * <p>If no throttling options are set through this method, default throttling options will be
+     * used, which means that requests are not throttled.
+     *
+     * @param options the throttling options to use.
+     * @return this builder.
+     */
+    public Builder withThrottlingOptions(ThrottlingOptions options) {
+      configurationBuilder.withThrottlingOptions(options);
+      return this;
+    }
+
     /**
      * Set the {@link NettyOptions} to use for the newly created Cluster.
      *
@@ -1411,6 +1440,7 @@ public class Cluster implements Closeable {
     ListeningExecutorService blockingExecutor;
     ScheduledExecutorService reconnectionExecutor;
     ScheduledExecutorService scheduledTasksExecutor;
+    ExecutorService continuationExecutor;
 
     BlockingQueue<Runnable> executorQueue;
     BlockingQueue<Runnable> blockingExecutorQueue;
@@ -1429,6 +1459,8 @@ public class Cluster implements Closeable {
     // this would yield a slightly less clear behavior.
     ConcurrentMap<MD5Digest, PreparedStatement> preparedQueries;
 
+    final PendingReprepares pendingReprepares = new PendingReprepares(this);
+
     final Set<Host.StateListener> listeners;
     final Set<LatencyTracker> latencyTrackers = new CopyOnWriteArraySet<LatencyTracker>();
     final Set<SchemaChangeListener> schemaChangeListeners =
@@ -1494,6 +1526,9 @@ public class Cluster implements Closeable {
                 ? ((ThreadPoolExecutor) scheduledTasksExecutor).getQueue()
                 : null;
 
+        // continuation executor (null by default)
+        this.continuationExecutor = threadingOptions.createContinuationExecutor(clusterName);
+
         this.reaper = new ConnectionReaper(threadingOptions.createReaperExecutor(clusterName));
         this.metadata = new Metadata(this);
         this.connectionFactory = new Connection.Factory(this, configuration);
@@ -1764,6 +1799,9 @@ public class Cluster implements Closeable {
         if (executor != null) {
           executor.shutdown();
         }
+        if (continuationExecutor != null) {
+          continuationExecutor.shutdown();
+        }
 
         // We also close the metrics
         if (metrics != null) metrics.shutdown();
@@ -2392,6 +2430,11 @@ public class Cluster implements Closeable {
         // of different keyspace (possibly only one), and to avoid setting the current keyspace more
         // than needed,
         // we first sort the query per keyspace.
+        QueryOptions queryOptions = configuration.getQueryOptions();
+        final Semaphore permits = new Semaphore(queryOptions.getMaxConcurrentReprepares());
+        int perSecond = queryOptions.getMaxRepreparesPerSecond();
+        RateLimiter rateLimiter = (perSecond > 0) ? RateLimiter.create(perSecond) : null;
+
         SetMultimap<String, String> perKeyspace = HashMultimap.create();
         for (PreparedStatement ps : preparedQueries.values()) {
           // It's possible for a query to not have a current keyspace. But since null doesn't work
@@ -2408,7 +2451,24 @@ public class Cluster implements Closeable {
           List<Connection.Future> futures =
               new ArrayList<Connection.Future>(preparedQueries.size());
           for (String query : perKeyspace.get(keyspace)) {
-            futures.add(connection.write(new Requests.Prepare(query)));
+            // Don't flood the node (which typically just restarted) with all the statements at once
+            if (rateLimiter != null) rateLimiter.acquire();
+            permits.acquire();
+            final long start = System.nanoTime();
+            Connection.Future future = connection.write(new Requests.Prepare(query));
+            future.addListener(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    permits.release();
+                    if (metrics != null)
+                      metrics
+                          .getRepreparesTimer()
+                          .update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                  }
+                },
+                GuavaCompatibility.INSTANCE.sameThreadExecutor());
+            futures.add(future);
           }
           for (Connection.Future future : futures) {
             try {
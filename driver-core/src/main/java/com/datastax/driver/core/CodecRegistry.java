@@ -33,12 +33,14 @@ import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -144,7 +146,8 @@ import org.slf4j.LoggerFactory;
  * </ol>
  *
  * The javadoc for each {@link #codecFor(DataType) codecFor} variant specifies whether the result
- * can be cached or not.
+ * can be cached or not. Lookups of built-in codecs by value are an exception: since built-in codecs
+ * only look at the class of the value, the registry remembers which one matched each class.
  *
  * <h3>Codec order </h3>
  *
@@ -257,6 +260,72 @@ public final class CodecRegistry {
     }
   }
 
+  /**
+   * A lock-free tier in front of the codecs cache, that resolves common lookups without allocating
+   * a {@link CacheKey} (or a {@link TypeToken} when the Java type is a class).
+   *
+   * <p>For each CQL type name, it holds a small copy-on-write array of (CQL type, Java type) to
+   * codec mappings, scanned linearly; types are compared by identity first, so that lookups with
+   * the same instances (built-in CQL types, classes) are the cheapest. When the array for a name is
+   * full, new mappings are not added anymore, and lookups fall back to the slower path.
+   */
+  private static final class CodecFastPath {
+
+    private static final int MAX_ENTRIES_PER_NAME = 16;
+
+    // Indexed by the ordinal of the CQL type name; the last slot is for lookups without CQL type
+    private final AtomicReferenceArray<FastPathEntry[]> entries =
+        new AtomicReferenceArray<FastPathEntry[]>(DataType.Name.values().length + 1);
+
+    CodecFastPath() {
+      for (int i = 0; i < entries.length(); i++) entries.set(i, new FastPathEntry[0]);
+    }
+
+    TypeCodec<?> get(DataType cqlType, Type javaType) {
+      for (FastPathEntry entry : entries.get(index(cqlType))) {
+        if (entry.matches(cqlType, javaType)) return entry.codec;
+      }
+      return null;
+    }
+
+    void put(DataType cqlType, Type javaType, TypeCodec<?> codec) {
+      int index = index(cqlType);
+      while (true) {
+        FastPathEntry[] current = entries.get(index);
+        if (current.length >= MAX_ENTRIES_PER_NAME) return;
+        for (FastPathEntry entry : current) if (entry.matches(cqlType, javaType)) return;
+        FastPathEntry[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = new FastPathEntry(cqlType, javaType, codec);
+        if (entries.compareAndSet(index, current, updated)) return;
+      }
+    }
+
+    private int index(DataType cqlType) {
+      return cqlType == null ? entries.length() - 1 : cqlType.getName().ordinal();
+    }
+  }
+
+  private static final class FastPathEntry {
+
+    private final DataType cqlType;
+
+    private final Type javaType;
+
+    private final TypeCodec<?> codec;
+
+    FastPathEntry(DataType cqlType, Type javaType, TypeCodec<?> codec) {
+      this.cqlType = cqlType;
+      this.javaType = javaType;
+      this.codec = codec;
+    }
+
+    boolean matches(DataType cqlType, Type javaType) {
+      return (this.cqlType == cqlType || (this.cqlType != null && this.cqlType.equals(cqlType)))
+          && (this.javaType == javaType
+              || (this.javaType != null && this.javaType.equals(javaType)));
+    }
+  }
+
   /** Cache loader for the codecs cache. */
   private class TypeCodecCacheLoader extends CacheLoader<CacheKey, TypeCodec<?>> {
     @Override
@@ -361,6 +430,16 @@ public final class CodecRegistry {
    */
   private final LoadingCache<CacheKey, TypeCodec<?>> cache;
 
+  /** Lookups by CQL type and Java type, or by CQL type only. */
+  private final CodecFastPath typeLookups = new CodecFastPath();
+
+  /**
+   * Lookups by (optional) CQL type and value, that resolved to a built-in codec. Built-in codecs
+   * accept values based on their class only, and take precedence over other codecs, so the result
+   * only depends on the value's class.
+   */
+  private final CodecFastPath valueLookups = new CodecFastPath();
+
   /** Creates a new instance initialized with built-in codecs for all the base CQL types. */
   public CodecRegistry() {
     this.codecs = new CopyOnWriteArrayList<TypeCodec<?>>();
@@ -510,8 +589,13 @@ public final class CodecRegistry {
    * @return A suitable codec.
    * @throws CodecNotFoundException if a suitable codec cannot be found.
    */
+  @SuppressWarnings("unchecked")
   public <T> TypeCodec<T> codecFor(DataType cqlType, Class<T> javaType)
       throws CodecNotFoundException {
+    if (cqlType != null && javaType != null) {
+      TypeCodec<?> codec = typeLookups.get(cqlType, javaType);
+      if (codec != null) return (TypeCodec<T>) codec;
+    }
     return codecFor(cqlType, TypeToken.of(javaType));
   }
 
@@ -559,9 +643,14 @@ public final class CodecRegistry {
   @SuppressWarnings("unchecked")
   private <T> TypeCodec<T> lookupCodec(DataType cqlType, TypeToken<T> javaType) {
     checkNotNull(cqlType, "Parameter cqlType cannot be null");
-    TypeCodec<?> codec = BUILT_IN_CODECS_MAP.get(cqlType.getName());
+    Type fastPathKey = (javaType == null) ? null : javaType.getType();
+    TypeCodec<?> codec = typeLookups.get(cqlType, fastPathKey);
+    if (codec != null) return (TypeCodec<T>) codec;
+
+    codec = BUILT_IN_CODECS_MAP.get(cqlType.getName());
     if (codec != null && (javaType == null || codec.accepts(javaType))) {
       logger.trace("Returning built-in codec {}", codec);
+      typeLookups.put(cqlType, fastPathKey, codec);
       return (TypeCodec<T>) codec;
     }
     if (logger.isTraceEnabled())
@@ -580,6 +669,7 @@ public final class CodecRegistry {
       throw new CodecNotFoundException(e.getCause(), cqlType, javaType);
     }
     logger.trace("Returning cached codec {}", codec);
+    typeLookups.put(cqlType, fastPathKey, codec);
     return (TypeCodec<T>) codec;
   }
 
@@ -610,6 +700,8 @@ public final class CodecRegistry {
   @SuppressWarnings("unchecked")
   private <T> TypeCodec<T> findCodec(DataType cqlType, T value) {
     checkNotNull(value, "Parameter value cannot be null");
+    TypeCodec<?> cached = valueLookups.get(cqlType, value.getClass());
+    if (cached != null) return (TypeCodec<T>) cached;
     if (logger.isTraceEnabled())
       logger.trace("Looking for codec [{} <-> {}]", toString(cqlType), value.getClass());
 
@@ -617,6 +709,7 @@ public final class CodecRegistry {
     for (TypeCodec<?> codec : BUILT_IN_CODECS) {
       if ((cqlType == null || codec.accepts(cqlType)) && codec.accepts(value)) {
         logger.trace("Built-in codec found: {}", codec);
+        valueLookups.put(cqlType, value.getClass(), codec);
         return (TypeCodec<T>) codec;
       }
     }
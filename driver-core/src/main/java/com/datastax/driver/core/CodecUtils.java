@@ -209,7 +209,7 @@ public final class CodecUtils {
     return ((long) days + EPOCH_AS_CQL_LONG);
   }
 
-  private static int sizeOfCollectionSize(ProtocolVersion version) {
+  static int sizeOfCollectionSize(ProtocolVersion version) {
     switch (version) {
       case V1:
       case V2:
@@ -223,7 +223,7 @@ public final class CodecUtils {
     }
   }
 
-  private static int sizeOfValue(ByteBuffer value, ProtocolVersion version) {
+  static int sizeOfValue(ByteBuffer value, ProtocolVersion version) {
     switch (version) {
       case V1:
       case V2:
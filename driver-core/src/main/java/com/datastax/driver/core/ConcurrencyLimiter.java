@@ -0,0 +1,184 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adjusts the number of requests that a {@link HostConnectionPool} allows in flight, from the
+ * outcome of the requests it completes. See {@link PoolingOptions.ConcurrencyLimit}.
+ *
+ * <p>Samples are recorded on I/O threads, for every response: if another thread is already updating
+ * the limit, a successful sample is simply dropped, the estimation does not need all of them.
+ * Timeouts are never dropped, but only the first of a burst shrinks the limit.
+ */
+abstract class ConcurrencyLimiter {
+
+  static final int MIN_LIMIT = 1;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  final int maxLimit;
+  // Guarded by lock
+  private double estimate;
+  private boolean backedOff;
+  private long lastBackoffNanos;
+  private volatile int limit;
+
+  ConcurrencyLimiter(int maxLimit) {
+    this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+    this.estimate = Math.max(MIN_LIMIT, this.maxLimit / 4);
+    this.limit = (int) estimate;
+  }
+
+  /** The maximum number of requests in flight to the host. */
+  int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Records the outcome of a request.
+   *
+   * @param exception the error of the request, or {@code null} if it succeeded.
+   * @param latencyNanos the time between the request was written and its response (or timeout).
+   * @param inFlight the number of requests in flight to the host.
+   */
+  void onRequestCompleted(Exception exception, long latencyNanos, int inFlight) {
+    if (exception == null) onSample(System.nanoTime(), latencyNanos, inFlight, false);
+    else if (isDrop(exception)) onSample(System.nanoTime(), latencyNanos, inFlight, true);
+    // Other errors (connection errors, syntax errors...) say nothing about the host's capacity
+  }
+
+  void onSample(long now, long latencyNanos, int inFlight, boolean dropped) {
+    if (dropped) lock.lock();
+    else if (!lock.tryLock()) return;
+    try {
+      if (dropped) {
+        // A request sent before the last backoff was admitted under the old limit: like TCP, back
+        // off at most once per round trip, not once per request of a burst of timeouts
+        if (backedOff && now - latencyNanos - lastBackoffNanos < 0) return;
+        backedOff = true;
+        lastBackoffNanos = now;
+      }
+      estimate =
+          Math.max(
+              MIN_LIMIT,
+              Math.min(maxLimit, update(estimate, now, latencyNanos, inFlight, dropped)));
+      limit = (int) estimate;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Computes the new limit, invoked while holding the lock. */
+  abstract double update(double limit, long now, long latencyNanos, int inFlight, boolean dropped);
+
+  private static boolean isDrop(Exception exception) {
+    return exception instanceof OperationTimedOutException
+        || exception instanceof OverloadedException;
+  }
+
+  /**
+   * Additive increase, multiplicative decrease: the limit grows by one per round trip while the
+   * host is busy, and shrinks by 10% on timeouts.
+   */
+  static class Aimd extends ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    Aimd(int maxLimit) {
+      super(maxLimit);
+    }
+
+    @Override
+    double update(double limit, long now, long latencyNanos, int inFlight, boolean dropped) {
+      if (dropped) return limit * BACKOFF_RATIO;
+      // Only grow if the limit is what constrains the requests, not the application
+      if (inFlight * 2 >= limit) return limit + 1 / limit;
+      return limit;
+    }
+  }
+
+  /**
+   * Compares the average latency of recent requests to the long term latency of the host: while
+   * they are similar, the limit grows by a few requests per window; when recent requests get
+   * slower, the limit shrinks in proportion. Timeouts shrink it by 10%.
+   *
+   * <p>This is the gradient2 algorithm of Netflix's concurrency-limits library, with averages over
+   * windows of at least {@value #MIN_WINDOW_SAMPLES} samples and 100 milliseconds, and a long term
+   * latency that follows improvements immediately.
+   */
+  static class Gradient extends ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // The long term latency is averaged over ~500 windows (about a minute)
+    private static final double LONG_WINDOW_WEIGHT = 0.002;
+    // How much slower recent requests can be before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    // How many requests can queue up on the host while the latency is stable
+    private static final int QUEUE_SIZE = 4;
+
+    private long windowStart;
+    private int windowSamples;
+    private long windowLatencySum;
+    private int windowMaxInFlight;
+    private double longLatency;
+
+    Gradient(int maxLimit) {
+      super(maxLimit);
+      this.windowStart = System.nanoTime();
+    }
+
+    @Override
+    double update(double limit, long now, long latencyNanos, int inFlight, boolean dropped) {
+      if (dropped) {
+        resetWindow(now);
+        return limit * BACKOFF_RATIO;
+      }
+      windowSamples += 1;
+      windowLatencySum += latencyNanos;
+      windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+      if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < MIN_WINDOW_NANOS) return limit;
+
+      double shortLatency = (double) windowLatencySum / windowSamples;
+      int maxInFlight = windowMaxInFlight;
+      resetWindow(now);
+
+      // Follow improvements immediately (for example at the end of the JVM warmup, or after a GC
+      // pause), but degradations slowly, so that they shrink the limit
+      if (longLatency == 0 || shortLatency < longLatency) longLatency = shortLatency;
+      else longLatency += (shortLatency - longLatency) * LONG_WINDOW_WEIGHT;
+
+      double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+      double newLimit = limit * gradient + QUEUE_SIZE;
+      newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+      // Only grow if the limit is what constrains the requests, not the application
+      return (maxInFlight * 2 < limit) ? Math.min(limit, newLimit) : newLimit;
+    }
+
+    private void resetWindow(long now) {
+      windowStart = now;
+      windowSamples = 0;
+      windowLatencySum = 0;
+      windowMaxInFlight = 0;
+    }
+  }
+}
@@ -53,6 +53,7 @@ public class Configuration {
   private final MetricsOptions metricsOptions;
   private final QueryOptions queryOptions;
   private final ThreadingOptions threadingOptions;
+  private final ThrottlingOptions throttlingOptions;
   private final NettyOptions nettyOptions;
   private final CodecRegistry codecRegistry;
 
@@ -64,6 +65,7 @@ public class Configuration {
       MetricsOptions metricsOptions,
       QueryOptions queryOptions,
       ThreadingOptions threadingOptions,
+      ThrottlingOptions throttlingOptions,
       NettyOptions nettyOptions,
       CodecRegistry codecRegistry) {
     this.policies = policies;
@@ -73,6 +75,7 @@ public class Configuration {
     this.metricsOptions = metricsOptions;
     this.queryOptions = queryOptions;
     this.threadingOptions = threadingOptions;
+    this.throttlingOptions = throttlingOptions;
     this.nettyOptions = nettyOptions;
     this.codecRegistry = codecRegistry;
   }
@@ -91,6 +94,7 @@ public class Configuration {
         toCopy.getMetricsOptions(),
         toCopy.getQueryOptions(),
         toCopy.getThreadingOptions(),
+        toCopy.getThrottlingOptions(),
         toCopy.getNettyOptions(),
         toCopy.getCodecRegistry());
   }
@@ -163,6 +167,15 @@ public class Configuration {
     return threadingOptions;
   }
 
+  /**
+   * Returns the request throttling configuration.
+   *
+   * @return the throttling options.
+   */
+  public ThrottlingOptions getThrottlingOptions() {
+    return throttlingOptions;
+  }
+
   /**
    * Returns the {@link NettyOptions} instance for this configuration.
    *
@@ -195,6 +208,7 @@ public class Configuration {
     private MetricsOptions metricsOptions;
     private QueryOptions queryOptions;
     private ThreadingOptions threadingOptions;
+    private ThrottlingOptions throttlingOptions;
     private NettyOptions nettyOptions;
     private CodecRegistry codecRegistry;
 
@@ -279,6 +293,17 @@ public class Configuration {
       return this;
     }
 
+    /**
+     * Sets the throttling options for this cluster.
+     *
+     * @param throttlingOptions the throttling options.
+     * @return this builder.
+     */
+    public Builder withThrottlingOptions(ThrottlingOptions throttlingOptions) {
+      this.throttlingOptions = throttlingOptions;
+      return this;
+    }
+
     /**
      * Sets the Netty options for this cluster.
      *
@@ -317,6 +342,7 @@ public class Configuration {
           metricsOptions != null ? metricsOptions : new MetricsOptions(),
           queryOptions != null ? queryOptions : new QueryOptions(),
           threadingOptions != null ? threadingOptions : new ThreadingOptions(),
+          throttlingOptions != null ? throttlingOptions : new ThrottlingOptions(),
           nettyOptions != null ? nettyOptions : NettyOptions.DEFAULT_INSTANCE,
           codecRegistry != null ? codecRegistry : CodecRegistry.DEFAULT_INSTANCE);
     }
@@ -18,6 +18,7 @@ package com.datastax.driver.core;
 import static com.datastax.driver.core.Message.Response.Type.ERROR;
 import static io.netty.handler.timeout.IdleState.READER_IDLE;
 
+import com.codahale.metrics.Histogram;
 import com.datastax.driver.core.Responses.Result.SetKeyspace;
 import com.datastax.driver.core.exceptions.AuthenticationException;
 import com.datastax.driver.core.exceptions.BusyConnectionException;
@@ -49,6 +50,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
@@ -67,8 +69,10 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -79,6 +83,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -185,7 +190,8 @@ class Connection {
               factory.configuration.getCodecRegistry(),
               factory.configuration.getMetricsOptions().isEnabled()
                   ? factory.manager.metrics
-                  : null));
+                  : null,
+              factory.configuration.getQueryOptions().isPhaseTimingsEnabled()));
 
       ChannelFuture future = bootstrap.connect(address);
 
@@ -707,8 +713,18 @@ class Connection {
   ResponseHandler write(
       ResponseCallback callback, long statementReadTimeoutMillis, boolean startTimeout)
       throws ConnectionException, BusyConnectionException {
+    return write(callback, statementReadTimeoutMillis, startTimeout, null);
+  }
+
+  ResponseHandler write(
+      ResponseCallback callback,
+      long statementReadTimeoutMillis,
+      boolean startTimeout,
+      RequestPhaseTimings timings)
+      throws ConnectionException, BusyConnectionException {
 
-    ResponseHandler handler = new ResponseHandler(this, statementReadTimeoutMillis, callback);
+    ResponseHandler handler =
+        new ResponseHandler(this, statementReadTimeoutMillis, callback, timings);
     dispatcher.add(handler);
 
     Message.Request request = callback.request().setStreamId(handler.streamId);
@@ -732,6 +748,7 @@ class Connection {
     logger.trace("{}, stream {}, writing request {}", this, request.getStreamId(), request);
     writer.incrementAndGet();
 
+    if (timings != null) timings.queued = System.nanoTime();
     if (DISABLE_COALESCING) {
       channel.writeAndFlush(request).addListener(writeHandler(request, handler));
     } else {
@@ -748,6 +765,11 @@ class Connection {
       @Override
       public void operationComplete(ChannelFuture writeFuture) {
 
+        // The future only completes once the frame was flushed to the socket, so this includes the
+        // time spent in the flusher, even if it held the write back to coalesce it with others
+        if (handler.timings != null && writeFuture.isSuccess())
+          handler.timings.written = System.nanoTime();
+
         writer.decrementAndGet();
 
         if (!writeFuture.isSuccess()) {
@@ -872,7 +894,7 @@ class Connection {
       logger.debug("{} has already terminated", this);
       return true;
     } else {
-      if (force || dispatcher.pending.isEmpty()) {
+      if (force || !dispatcher.hasPendingHandlers()) {
         if (force)
           logger.warn(
               "Forcing termination of {}. This should not happen and is likely a bug, please report.",
@@ -914,6 +936,9 @@ class Connection {
     volatile ProtocolVersion protocolVersion;
     private final NettyOptions nettyOptions;
 
+    private final ConcurrentMap<EventLoop, Flusher> coalescingFlusherLookup =
+        new MapMaker().concurrencyLevel(16).weakKeys().makeMap();
+
     Factory(Cluster.Manager manager, Configuration configuration) {
       this.defaultHandler = manager;
       this.manager = manager;
@@ -1064,7 +1089,7 @@ class Connection {
     }
   }
 
-  private static final class Flusher implements Runnable {
+  private static class Flusher implements Runnable {
     final WeakReference<EventLoop> eventLoopRef;
     final Queue<FlushItem> queued = new ConcurrentLinkedQueue<FlushItem>();
     final AtomicBoolean running = new AtomicBoolean(false);
@@ -1090,17 +1115,15 @@ class Connection {
       while (null != (flush = queued.poll())) {
         Channel channel = flush.channel;
         if (channel.isActive()) {
-          channels.add(channel);
           channel.write(flush.request).addListener(flush.listener);
+          onWrite(channel);
           doneWork = true;
         }
       }
 
-      // Always flush what we have (don't artificially delay to try to coalesce more messages)
-      for (Channel channel : channels) channel.flush();
-      channels.clear();
+      boolean hasUnflushedWrites = flushChannels();
 
-      if (doneWork) {
+      if (doneWork || hasUnflushedWrites) {
         runsWithNoWork = 0;
       } else {
         // either reschedule or cancel
@@ -1119,6 +1142,139 @@ class Connection {
         }
       }
     }
+
+    /** Called (on the event loop) after a request has been written to the given channel. */
+    void onWrite(Channel channel) {
+      channels.add(channel);
+    }
+
+    /**
+     * Flushes the channels that were written to since the last run.
+     *
+     * @return whether some channels still have unflushed writes, in which case this flusher must
+     *     not stop.
+     */
+    boolean flushChannels() {
+      // Always flush what we have (don't artificially delay to try to coalesce more messages)
+      for (Channel channel : channels) channel.flush();
+      channels.clear();
+      return false;
+    }
+  }
+
+  /**
+   * A flusher that holds writes on each channel until a frame, byte or delay budget is exhausted.
+   *
+   * <p>The delay budget adapts to the write rate observed on each channel: if the next write is not
+   * expected before the maximum delay, the channel is flushed right away.
+   *
+   * @see SocketOptions#setWriteCoalescingEnabled(boolean)
+   */
+  private static final class CoalescingFlusher extends Flusher {
+    private final SocketOptions options;
+    private final Histogram framesPerFlush;
+
+    // Only accessed from the event loop
+    private final Map<Channel, ChannelWrites> channelWrites =
+        new IdentityHashMap<Channel, ChannelWrites>();
+    private long runStartNanos;
+
+    private CoalescingFlusher(EventLoop eventLoop, SocketOptions options, Metrics metrics) {
+      super(eventLoop);
+      this.options = options;
+      this.framesPerFlush = metrics == null ? null : metrics.getFramesPerFlush();
+    }
+
+    @Override
+    public void run() {
+      runStartNanos = System.nanoTime();
+      super.run();
+    }
+
+    @Override
+    void onWrite(Channel channel) {
+      ChannelWrites writes = channelWrites.get(channel);
+      if (writes == null) {
+        writes = new ChannelWrites();
+        channelWrites.put(channel, writes);
+      }
+      if (writes.unflushedFrames == 0) writes.firstWriteNanos = runStartNanos;
+      writes.unflushedFrames += 1;
+      writes.framesThisRun += 1;
+    }
+
+    @Override
+    boolean flushChannels() {
+      int maxFrames = options.getWriteCoalescingMaxFrames();
+      int maxBytes = options.getWriteCoalescingMaxBytes();
+      long maxDelayNanos =
+          TimeUnit.MICROSECONDS.toNanos(options.getWriteCoalescingMaxDelayMicros());
+      long now = System.nanoTime();
+
+      boolean hasUnflushedWrites = false;
+      Iterator<Map.Entry<Channel, ChannelWrites>> iterator = channelWrites.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Channel, ChannelWrites> entry = iterator.next();
+        Channel channel = entry.getKey();
+        ChannelWrites writes = entry.getValue();
+
+        if (writes.framesThisRun > 0) {
+          writes.recordWrites(runStartNanos);
+        }
+        if (writes.unflushedFrames == 0) {
+          // Keep the write rate statistics of live channels between bursts
+          if (!channel.isActive()) iterator.remove();
+          continue;
+        }
+
+        if (writes.unflushedFrames >= maxFrames
+            || pendingBytes(channel) >= maxBytes
+            || now - writes.firstWriteNanos >= writes.delayNanos(maxFrames, maxDelayNanos)
+            || !channel.isActive()) {
+          channel.flush();
+          if (framesPerFlush != null) framesPerFlush.update(writes.unflushedFrames);
+          writes.unflushedFrames = 0;
+        } else {
+          hasUnflushedWrites = true;
+        }
+      }
+      return hasUnflushedWrites;
+    }
+
+    private static long pendingBytes(Channel channel) {
+      ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+      return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+  }
+
+  /** The coalescing state of a channel, in a {@link CoalescingFlusher}. */
+  private static final class ChannelWrites {
+    int unflushedFrames;
+    long firstWriteNanos;
+    int framesThisRun;
+    long lastWriteNanos = -1;
+    // Exponentially weighted moving average of the interval between two writes, or -1 if unknown
+    long averageIntervalNanos = -1;
+
+    void recordWrites(long now) {
+      if (lastWriteNanos >= 0) {
+        long interval = (now - lastWriteNanos) / framesThisRun;
+        averageIntervalNanos =
+            averageIntervalNanos < 0
+                ? interval
+                : averageIntervalNanos + (interval - averageIntervalNanos) / 8;
+      }
+      lastWriteNanos = now;
+      framesThisRun = 0;
+    }
+
+    long delayNanos(int maxFrames, long maxDelayNanos) {
+      // If we don't expect another write within the budget, waiting would only add latency
+      if (averageIntervalNanos < 0 || averageIntervalNanos >= maxDelayNanos) return 0;
+      // Otherwise, wait until the batch is expected to be full, but not longer than the budget
+      long expectedFillNanos = averageIntervalNanos * (maxFrames - unflushedFrames);
+      return Math.min(expectedFillNanos, maxDelayNanos);
+    }
   }
 
   private static final ConcurrentMap<EventLoop, Flusher> flusherLookup =
@@ -1138,10 +1294,30 @@ class Connection {
 
   private void flush(FlushItem item) {
     EventLoop loop = item.channel.eventLoop();
-    Flusher flusher = flusherLookup.get(loop);
-    if (flusher == null) {
-      Flusher alt = flusherLookup.putIfAbsent(loop, flusher = new Flusher(loop));
-      if (alt != null) flusher = alt;
+    SocketOptions socketOptions = factory.configuration.getSocketOptions();
+    Flusher flusher;
+    if (socketOptions.isWriteCoalescingEnabled()) {
+      // Coalescing settings are per cluster, so are the flushers
+      flusher = factory.coalescingFlusherLookup.get(loop);
+      if (flusher == null) {
+        Flusher alt =
+            factory.coalescingFlusherLookup.putIfAbsent(
+                loop,
+                flusher =
+                    new CoalescingFlusher(
+                        loop,
+                        socketOptions,
+                        factory.configuration.getMetricsOptions().isEnabled()
+                            ? factory.manager.metrics
+                            : null));
+        if (alt != null) flusher = alt;
+      }
+    } else {
+      flusher = flusherLookup.get(loop);
+      if (flusher == null) {
+        Flusher alt = flusherLookup.putIfAbsent(loop, flusher = new Flusher(loop));
+        if (alt != null) flusher = alt;
+      }
     }
 
     flusher.queued.add(item);
@@ -1151,8 +1327,10 @@ class Connection {
   class Dispatcher extends SimpleChannelInboundHandler<Message.Response> {
 
     final StreamIdGenerator streamIdHandler;
-    private final ConcurrentMap<Integer, ResponseHandler> pending =
-        new ConcurrentHashMap<Integer, ResponseHandler>();
+    // Stream ids are dense and bounded (see StreamIdGenerator), so pending handlers are indexed
+    // directly by id: this avoids boxing and hashing on every request and response.
+    private final AtomicReferenceArray<ResponseHandler> pending;
+    private final AtomicInteger pendingCount = new AtomicInteger();
 
     Dispatcher() {
       ProtocolVersion protocolVersion = factory.protocolVersion;
@@ -1162,11 +1340,26 @@ class Connection {
         protocolVersion = ProtocolVersion.V2;
       }
       streamIdHandler = StreamIdGenerator.newInstance(protocolVersion);
+      pending = new AtomicReferenceArray<ResponseHandler>(streamIdHandler.maxIds());
     }
 
     void add(ResponseHandler handler) {
-      ResponseHandler old = pending.put(handler.streamId, handler);
+      ResponseHandler old = pending.getAndSet(handler.streamId, handler);
       assert old == null;
+      if (old == null) pendingCount.incrementAndGet();
+    }
+
+    boolean hasPendingHandlers() {
+      return pendingCount.get() > 0;
+    }
+
+    /** Removes and returns the handler of the given stream id, or null if there is none. */
+    private ResponseHandler remove(int streamId) {
+      // Guard against invalid ids sent by a misbehaving server
+      if (streamId >= pending.length()) return null;
+      ResponseHandler handler = pending.getAndSet(streamId, null);
+      if (handler != null) pendingCount.decrementAndGet();
+      return handler;
     }
 
     void removeHandler(ResponseHandler handler, boolean releaseStreamId) {
@@ -1180,12 +1373,13 @@ class Connection {
       // messageReceived could have already released the streamId, which could have already been
       // reused by another request. We must not remove the handler
       // if it's not ours, because that would cause the other request to hang forever.
-      boolean removed = pending.remove(handler.streamId, handler);
+      boolean removed = pending.compareAndSet(handler.streamId, handler, null);
       if (!removed) {
         // We raced, so if we marked the streamId above, that was wrong.
         if (!releaseStreamId) streamIdHandler.unmark(handler.streamId);
         return;
       }
+      pendingCount.decrementAndGet();
       handler.cancelTimeout();
 
       if (releaseStreamId) streamIdHandler.release(handler.streamId);
@@ -1207,7 +1401,7 @@ class Connection {
         return;
       }
 
-      ResponseHandler handler = pending.remove(streamId);
+      ResponseHandler handler = remove(streamId);
       streamIdHandler.release(streamId);
       if (handler == null) {
         /*
@@ -1230,6 +1424,12 @@ class Connection {
         return;
       }
       handler.cancelTimeout();
+      RequestPhaseTimings timings = handler.timings;
+      if (timings != null) {
+        timings.decodeStart = response.decodeStart;
+        timings.decodeEnd = response.decodeEnd;
+        timings.dispatched = System.nanoTime();
+      }
       handler.callback.onSet(
           Connection.this, response, System.nanoTime() - handler.startTime, handler.retryCount);
 
@@ -1280,7 +1480,7 @@ class Connection {
         if (error != null && error instanceof FrameTooLongException) {
           FrameTooLongException ftle = (FrameTooLongException) error;
           int streamId = ftle.getStreamId();
-          ResponseHandler handler = pending.remove(streamId);
+          ResponseHandler handler = remove(streamId);
           streamIdHandler.release(streamId);
           if (handler == null) {
             streamIdHandler.unmark(streamId);
@@ -1304,13 +1504,14 @@ class Connection {
     }
 
     void errorOutAllHandler(ConnectionException ce) {
-      Iterator<ResponseHandler> iter = pending.values().iterator();
-      while (iter.hasNext()) {
-        ResponseHandler handler = iter.next();
+      for (int streamId = 0; streamId < pending.length(); streamId++) {
+        ResponseHandler handler = pending.get(streamId);
+        // Skip empty slots, and handlers that were concurrently completed or removed
+        if (handler == null || !pending.compareAndSet(streamId, handler, null)) continue;
+        pendingCount.decrementAndGet();
         handler.cancelTimeout();
         handler.callback.onException(
             Connection.this, ce, System.nanoTime() - handler.startTime, handler.retryCount);
-        iter.remove();
       }
     }
   }
@@ -1519,6 +1720,7 @@ class Connection {
     final int streamId;
     final ResponseCallback callback;
     final int retryCount;
+    final RequestPhaseTimings timings;
     private final long readTimeoutMillis;
 
     private final long startTime;
@@ -1527,7 +1729,10 @@ class Connection {
     private final AtomicBoolean isCancelled = new AtomicBoolean();
 
     ResponseHandler(
-        Connection connection, long statementReadTimeoutMillis, ResponseCallback callback)
+        Connection connection,
+        long statementReadTimeoutMillis,
+        ResponseCallback callback,
+        RequestPhaseTimings timings)
         throws BusyConnectionException {
       this.connection = connection;
       this.readTimeoutMillis =
@@ -1538,6 +1743,7 @@ class Connection {
       if (streamId == -1) throw new BusyConnectionException(connection.address);
       this.callback = callback;
       this.retryCount = callback.retryCount();
+      this.timings = timings;
 
       this.startTime = System.nanoTime();
     }
@@ -1585,7 +1791,10 @@ class Connection {
 
   private static class Initializer extends ChannelInitializer<SocketChannel> {
     // Stateless handlers
-    private static final Message.ProtocolDecoder messageDecoder = new Message.ProtocolDecoder();
+    private static final Message.ProtocolDecoder messageDecoder =
+        new Message.ProtocolDecoder(false);
+    private static final Message.ProtocolDecoder timedMessageDecoder =
+        new Message.ProtocolDecoder(true);
     private static final Message.ProtocolEncoder messageEncoderV1 =
         new Message.ProtocolEncoder(ProtocolVersion.V1);
     private static final Message.ProtocolEncoder messageEncoderV2 =
@@ -1606,6 +1815,7 @@ class Connection {
     private final ChannelHandler idleStateHandler;
     private final CodecRegistry codecRegistry;
     private final Metrics metrics;
+    private final boolean phaseTimingsEnabled;
 
     Initializer(
         Connection connection,
@@ -1615,7 +1825,8 @@ class Connection {
         int heartBeatIntervalSeconds,
         NettyOptions nettyOptions,
         CodecRegistry codecRegistry,
-        Metrics metrics) {
+        Metrics metrics,
+        boolean phaseTimingsEnabled) {
       this.connection = connection;
       this.protocolVersion = protocolVersion;
       this.compressor = compressor;
@@ -1624,6 +1835,7 @@ class Connection {
       this.codecRegistry = codecRegistry;
       this.idleStateHandler = new IdleStateHandler(heartBeatIntervalSeconds, 0, 0);
       this.metrics = metrics;
+      this.phaseTimingsEnabled = phaseTimingsEnabled;
     }
 
     @Override
@@ -1663,7 +1875,8 @@ class Connection {
         pipeline.addLast("frameCompressor", new Frame.Compressor(compressor));
       }
 
-      pipeline.addLast("messageDecoder", messageDecoder);
+      pipeline.addLast(
+          "messageDecoder", phaseTimingsEnabled ? timedMessageDecoder : messageDecoder);
       pipeline.addLast("messageEncoder", messageEncoderFor(protocolVersion));
 
       pipeline.addLast("idleStateHandler", idleStateHandler);
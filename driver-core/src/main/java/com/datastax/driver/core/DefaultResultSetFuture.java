@@ -258,6 +258,19 @@ class DefaultResultSetFuture extends AbstractFuture<ResultSet>
     return true;
   }
 
+  @Override
+  protected boolean set(ResultSet rs) {
+    ExecutionInfo info = rs == null ? null : rs.getExecutionInfo();
+    RequestPhaseTimings timings = info == null ? null : info.getPhaseTimings();
+    if (timings == null) return super.set(rs);
+
+    timings.completed = System.nanoTime();
+    boolean set = super.set(rs);
+    Metrics metrics = session.cluster.manager.metrics;
+    if (set && metrics != null) metrics.getRequestPhases().update(timings);
+    return set;
+  }
+
   // We sometimes need (in the driver) to set the future from outside this class,
   // but AbstractFuture#set is protected so this method. We don't want it public
   // however, no particular reason to give users rope to hang themselves.
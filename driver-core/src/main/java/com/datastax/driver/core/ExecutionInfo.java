@@ -38,6 +38,7 @@ public class ExecutionInfo {
   private volatile boolean schemaInAgreement;
   private final List<String> warnings;
   private final Map<String, ByteBuffer> incomingPayload;
+  private final RequestPhaseTimings phaseTimings;
 
   private ExecutionInfo(
       int speculativeExecutions,
@@ -51,7 +52,8 @@ public class ExecutionInfo {
       Statement statement,
       boolean schemaAgreement,
       List<String> warnings,
-      Map<String, ByteBuffer> incomingPayload) {
+      Map<String, ByteBuffer> incomingPayload,
+      RequestPhaseTimings phaseTimings) {
     this.speculativeExecutions = speculativeExecutions;
     this.successfulExecutionIndex = successfulExecutionIndex;
     this.triedHosts = triedHosts;
@@ -64,6 +66,7 @@ public class ExecutionInfo {
     this.schemaInAgreement = schemaAgreement;
     this.warnings = warnings;
     this.incomingPayload = incomingPayload;
+    this.phaseTimings = phaseTimings;
   }
 
   ExecutionInfo(Host singleHost) {
@@ -79,6 +82,7 @@ public class ExecutionInfo {
         null,
         true,
         Collections.<String>emptyList(),
+        null,
         null);
   }
 
@@ -88,6 +92,22 @@ public class ExecutionInfo {
       List<Host> triedHosts,
       ConsistencyLevel achievedConsistency,
       Map<String, ByteBuffer> customPayload) {
+    this(
+        speculativeExecutions,
+        successfulExecutionIndex,
+        triedHosts,
+        achievedConsistency,
+        customPayload,
+        null);
+  }
+
+  ExecutionInfo(
+      int speculativeExecutions,
+      int successfulExecutionIndex,
+      List<Host> triedHosts,
+      ConsistencyLevel achievedConsistency,
+      Map<String, ByteBuffer> customPayload,
+      RequestPhaseTimings phaseTimings) {
     this(
         speculativeExecutions,
         successfulExecutionIndex,
@@ -100,7 +120,8 @@ public class ExecutionInfo {
         null,
         false,
         null,
-        customPayload);
+        customPayload,
+        phaseTimings);
   }
 
   ExecutionInfo with(
@@ -122,7 +143,8 @@ public class ExecutionInfo {
         newStatement,
         schemaInAgreement,
         newWarnings,
-        incomingPayload);
+        incomingPayload,
+        phaseTimings);
   }
 
   /**
@@ -242,6 +264,16 @@ public class ExecutionInfo {
     return Futures.immediateFuture(trace);
   }
 
+  /**
+   * Return the time spent by this query in the different phases of its execution, if {@link
+   * QueryOptions#setPhaseTimingsEnabled(boolean) phase timings} are enabled.
+   *
+   * @return the breakdown for this query, or {@code null} if phase timings are disabled.
+   */
+  public RequestPhaseTimings getPhaseTimings() {
+    return phaseTimings;
+  }
+
   /**
    * The paging state of the query.
    *
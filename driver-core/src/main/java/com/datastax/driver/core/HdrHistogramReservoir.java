@@ -0,0 +1,147 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A metrics {@link Reservoir} backed by an HdrHistogram {@link Recorder}.
+ *
+ * <p>Recording a value is wait-free and does not allocate. Snapshots cover the last complete
+ * interval: the live histogram is swapped out when a snapshot is requested and the current one is
+ * older than the interval, so the actual interval length depends on how often snapshots are read
+ * (typically by a metrics reporter). Nothing is available before the end of the first interval.
+ *
+ * <p>Values above the highest trackable value are recorded as that value.
+ */
+class HdrHistogramReservoir implements Reservoir {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Recorder recorder;
+  private final long highestTrackableValue;
+  private final long intervalNanos;
+
+  // Guarded by this
+  private long lastRollover = System.nanoTime();
+  private HdrSnapshot snapshot;
+
+  HdrHistogramReservoir(
+      long highestTrackableValue, int numberOfSignificantValueDigits, long intervalNanos) {
+    this.recorder = new Recorder(highestTrackableValue, numberOfSignificantValueDigits);
+    this.highestTrackableValue = highestTrackableValue;
+    this.intervalNanos = intervalNanos;
+    this.snapshot = new HdrSnapshot(new Histogram(highestTrackableValue, 0));
+  }
+
+  @Override
+  public void update(long value) {
+    recorder.recordValue(value < 0 ? 0 : Math.min(value, highestTrackableValue));
+  }
+
+  /** @return the number of values in the current snapshot. */
+  @Override
+  public int size() {
+    return getSnapshot().size();
+  }
+
+  @Override
+  public synchronized Snapshot getSnapshot() {
+    long now = System.nanoTime();
+    if (now - lastRollover >= intervalNanos) {
+      // Don't recycle the previous histogram, it may still be referenced by a snapshot
+      snapshot = new HdrSnapshot(recorder.getIntervalHistogram());
+      lastRollover = now;
+    }
+    return snapshot;
+  }
+
+  /** A read-only view of an interval histogram. */
+  static class HdrSnapshot extends Snapshot {
+
+    private final Histogram histogram;
+
+    HdrSnapshot(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      return histogram.getValueAtPercentile(quantile * 100);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This returns one value per distinct recorded value (up to the histogram's precision),
+     * rather than one per recorded occurrence.
+     */
+    @Override
+    public long[] getValues() {
+      long[] values = new long[countDistinctValues()];
+      int i = 0;
+      for (HistogramIterationValue value : histogram.recordedValues())
+        values[i++] = value.getValueIteratedTo();
+      return values;
+    }
+
+    private int countDistinctValues() {
+      int count = 0;
+      for (HistogramIterationValue ignored : histogram.recordedValues()) count += 1;
+      return count;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+      return histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+      return histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+      return histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+      return histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, UTF_8));
+      for (long value : getValues()) writer.printf("%d%n", value);
+      writer.flush();
+    }
+  }
+}
@@ -424,6 +424,25 @@ public class Host {
     return state.name();
   }
 
+  /**
+   * Returns the number of requests currently in flight to this host, across all the sessions of the
+   * cluster.
+   *
+   * <p>This is the sum of {@link Session.State#getInFlightQueries(Host)} for each session, read
+   * without taking a snapshot of the sessions' state, so that it is cheap enough to be called by
+   * load balancing policies for each query plan.
+   *
+   * @return the number of in-flight requests, or 0 if no session is connected to this host.
+   */
+  public int getInFlightQueries() {
+    int inFlight = 0;
+    for (SessionManager session : manager.sessions) {
+      HostConnectionPool pool = session.pools.get(this);
+      if (pool != null) inFlight += pool.totalInFlight.get();
+    }
+    return inFlight;
+  }
+
   /**
    * Returns a {@code ListenableFuture} representing the completion of the reconnection attempts
    * scheduled after a host is marked {@code DOWN}.
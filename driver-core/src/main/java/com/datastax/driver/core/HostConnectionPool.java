@@ -83,6 +83,9 @@ class HostConnectionPool implements Connection.Owner {
 
   private final EventExecutor timeoutsExecutor;
 
+  // null with PoolingOptions.ConcurrencyLimit.STATIC
+  final ConcurrencyLimiter limiter;
+
   private final AtomicReference<CloseFuture> closeFuture = new AtomicReference<CloseFuture>();
 
   private enum Phase {
@@ -119,6 +122,13 @@ class HostConnectionPool implements Connection.Owner {
 
     this.minAllowedStreams = options().getMaxRequestsPerConnection(hostDistance) * 3 / 4;
 
+    this.limiter =
+        options()
+            .getConcurrencyLimit()
+            .newLimiter(
+                options().getMaxRequestsPerConnection(hostDistance)
+                    * options().getMaxConnectionsPerHost(hostDistance));
+
     this.timeoutsExecutor = manager.getCluster().manager.connectionFactory.eventLoopGroup.next();
   }
 
@@ -256,17 +266,16 @@ class HostConnectionPool implements Connection.Owner {
       }
     }
 
-    int minInFlight = Integer.MAX_VALUE;
-    Connection leastBusy = null;
-    for (Connection connection : connections) {
-      int inFlight = connection.inFlight.get();
-      if (inFlight < minInFlight) {
-        minInFlight = inFlight;
-        leastBusy = connection;
-      }
-    }
+    // Count the request against the limit of the host before looking for a connection
+    int totalInFlightCount = tryReserveInFlight();
+    if (totalInFlightCount < 0) return enqueue(timeout, unit, maxQueueSize);
+
+    int maxRequests = options().getMaxRequestsPerConnection(hostDistance);
+    PoolingOptions.ConnectionSelection selection = options().getConnectionSelection();
+    Connection candidate = selection.select(connections, maxRequests);
 
-    if (leastBusy == null) {
+    if (candidate == null) {
+      totalInFlight.decrementAndGet();
       // We could have raced with a shutdown since the last check
       if (isClosed())
         return Futures.immediateFailedFuture(
@@ -277,22 +286,19 @@ class HostConnectionPool implements Connection.Owner {
       // trigger the creation of
       // a new connection, so just wait that connection and move on
       return enqueue(timeout, unit, maxQueueSize);
-    } else {
-      while (true) {
-        int inFlight = leastBusy.inFlight.get();
-
-        if (inFlight
-            >= Math.min(
-                leastBusy.maxAvailableStreams(),
-                options().getMaxRequestsPerConnection(hostDistance))) {
-          return enqueue(timeout, unit, maxQueueSize);
-        }
-
-        if (leastBusy.inFlight.compareAndSet(inFlight, inFlight + 1)) break;
+    } else if (!tryAcquire(candidate, maxRequests)) {
+      // The candidate is full, but others might not be (unless it was already the least busy one)
+      Connection leastBusy =
+          selection == PoolingOptions.ConnectionSelection.LEAST_BUSY
+              ? null
+              : PoolingOptions.ConnectionSelection.leastBusy(connections);
+      if (leastBusy == null || leastBusy == candidate || !tryAcquire(leastBusy, maxRequests)) {
+        totalInFlight.decrementAndGet();
+        return enqueue(timeout, unit, maxQueueSize);
       }
+      candidate = leastBusy;
     }
 
-    int totalInFlightCount = totalInFlight.incrementAndGet();
     // update max atomically:
     while (true) {
       int oldMax = maxTotalInFlight.get();
@@ -311,7 +317,52 @@ class HostConnectionPool implements Connection.Owner {
       if (totalInFlightCount > currentCapacity) maybeSpawnNewConnection();
     }
 
-    return leastBusy.setKeyspaceAsync(manager.poolsState.keyspace);
+    return candidate.setKeyspaceAsync(manager.poolsState.keyspace);
+  }
+
+  /**
+   * Counts a new request in {@link #totalInFlight}, unless the host has reached its adaptive limit.
+   * The limit applies to the host as a whole, each connection is still bounded by the static
+   * maximum number of requests per connection.
+   *
+   * @return the new number of in-flight requests, or -1 if the limit is reached.
+   */
+  private int tryReserveInFlight() {
+    ConcurrencyLimiter limiter = this.limiter;
+    if (limiter == null) return totalInFlight.incrementAndGet();
+    int limit = limiter.getLimit();
+    while (true) {
+      int current = totalInFlight.get();
+      if (current >= limit) return -1;
+      if (totalInFlight.compareAndSet(current, current + 1)) return current + 1;
+    }
+  }
+
+  /** Undoes the accounting of a borrow that did not go through. */
+  private void cancelBorrow(Connection connection) {
+    connection.inFlight.decrementAndGet();
+    totalInFlight.decrementAndGet();
+  }
+
+  /** Reports the outcome of a request sent to this host, to adjust the adaptive limit. */
+  void onRequestCompleted(Exception exception, long latencyNanos) {
+    if (limiter != null) limiter.onRequestCompleted(exception, latencyNanos, totalInFlight.get());
+  }
+
+  /**
+   * Tries to reserve a stream on the given connection, if it's under its maximum number of
+   * in-flight requests.
+   */
+  private static boolean tryAcquire(Connection connection, int maxRequests) {
+    while (true) {
+      int inFlight = connection.inFlight.get();
+
+      if (inFlight >= Math.min(connection.maxAvailableStreams(), maxRequests)) {
+        return false;
+      }
+
+      if (connection.inFlight.compareAndSet(inFlight, inFlight + 1)) return true;
+    }
   }
 
   private ListenableFuture<Connection> enqueue(long timeout, TimeUnit unit, int maxQueueSize) {
@@ -371,17 +422,19 @@ class HostConnectionPool implements Connection.Owner {
   // When a connection gets returned to the pool, check if there are pending borrows that can be
   // completed with it.
   private void dequeue(final Connection connection) {
+    int maxRequests = options().getMaxRequestsPerConnection(hostDistance);
     while (!pendingBorrows.isEmpty()) {
 
+      // The host must be under its limit
+      if (tryReserveInFlight() < 0) return;
+
       // We can only reuse the connection if it's under its maximum number of inFlight requests.
       // Do this atomically, as we could be competing with other borrowConnection or dequeue calls.
       while (true) {
         int inFlight = connection.inFlight.get();
-        if (inFlight
-            >= Math.min(
-                connection.maxAvailableStreams(),
-                options().getMaxRequestsPerConnection(hostDistance))) {
+        if (inFlight >= Math.min(connection.maxAvailableStreams(), maxRequests)) {
           // Connection is full again, stop dequeuing
+          totalInFlight.decrementAndGet();
           return;
         }
         if (connection.inFlight.compareAndSet(inFlight, inFlight + 1)) {
@@ -392,8 +445,8 @@ class HostConnectionPool implements Connection.Owner {
 
       final PendingBorrow pendingBorrow = pendingBorrows.poll();
       if (pendingBorrow == null) {
-        // Another thread has emptied the queue since our last check, restore the count
-        connection.inFlight.decrementAndGet();
+        // Another thread has emptied the queue since our last check, restore the counts
+        cancelBorrow(connection);
       } else {
         pendingBorrowCount.decrementAndGet();
         // Ensure that the keyspace set on the connection is the one set on the pool state, in the
@@ -404,14 +457,12 @@ class HostConnectionPool implements Connection.Owner {
         // simply complete it here.
         if (setKeyspaceFuture.isDone()) {
           try {
-            if (pendingBorrow.set(Uninterruptibles.getUninterruptibly(setKeyspaceFuture))) {
-              totalInFlight.incrementAndGet();
-            } else {
-              connection.inFlight.decrementAndGet();
+            if (!pendingBorrow.set(Uninterruptibles.getUninterruptibly(setKeyspaceFuture))) {
+              cancelBorrow(connection);
             }
           } catch (ExecutionException e) {
             pendingBorrow.setException(e.getCause());
-            connection.inFlight.decrementAndGet();
+            cancelBorrow(connection);
           }
         } else {
           // Otherwise the keyspace did need to be set, tie the pendingBorrow future to the set
@@ -422,17 +473,15 @@ class HostConnectionPool implements Connection.Owner {
 
                 @Override
                 public void onSuccess(Connection c) {
-                  if (pendingBorrow.set(c)) {
-                    totalInFlight.incrementAndGet();
-                  } else {
-                    connection.inFlight.decrementAndGet();
+                  if (!pendingBorrow.set(c)) {
+                    cancelBorrow(connection);
                   }
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
                   pendingBorrow.setException(t);
-                  connection.inFlight.decrementAndGet();
+                  cancelBorrow(connection);
                 }
               });
         }
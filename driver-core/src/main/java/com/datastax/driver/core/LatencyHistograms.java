@@ -0,0 +1,478 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link LatencyTracker} that records request latencies in separate histograms per host, per
+ * statement and per error type, and exposes them through the cluster's {@link Metrics}.
+ *
+ * <p>This is opt-in: create an instance with {@link #builder()} and register it with {@link
+ * Cluster#register(LatencyTracker)}. Once registered, the histograms are added to the cluster's
+ * {@link Metrics#getRegistry() metric registry} as they get created, with the following names
+ * (latencies are in microseconds):
+ *
+ * <ul>
+ *   <li>{@code latencies.host.<address>}: one per host, where the address is formatted like in
+ *       other per-host metrics (for example {@code 127_0_0_1});
+ *   <li>{@code latencies.statement.<label>}: one per statement label. By default, only bound
+ *       statements are tracked, and their label is the id of the prepared statement (as an
+ *       hexadecimal string); see {@link Builder#withStatementLabeler(StatementLabeler)} to provide
+ *       your own labels;
+ *   <li>{@code latencies.error.<class>}: one per type of error, identified by the simple name of
+ *       the exception class.
+ * </ul>
+ *
+ * The number of histograms of each category is bounded; once the limit is reached, the latencies of
+ * new hosts, statements or errors are recorded in a shared {@code other} histogram of that
+ * category, which is only created at that point. The histogram of a host is dropped when that host
+ * is removed from the cluster.
+ *
+ * <p>Histograms are backed by <a
+ * href="http://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a> recorders, so recording a
+ * latency is wait-free and does not allocate; this requires HdrHistogram to be on the classpath.
+ * Their snapshots (percentiles, mean, etc.) cover the last complete interval, which is rolled over
+ * lazily when a snapshot is read and the current one is older than {@link
+ * Builder#withInterval(long, TimeUnit) the interval}. The count of each histogram covers all
+ * recorded values since it was created.
+ *
+ * <p>The memory used by a histogram depends on its range and precision. With the defaults (up to 2
+ * minutes, 2 significant digits), an HdrHistogram holds 2,688 counters, or about 21KB; two of them
+ * are live for each histogram (the one being recorded into, and the last interval), so plan for
+ * about 42KB per histogram. Each additional significant digit multiplies that by about 7 (roughly
+ * 300KB with 3 digits).
+ */
+public class LatencyHistograms implements LatencyTracker {
+
+  private static final Logger logger = LoggerFactory.getLogger(LatencyHistograms.class);
+
+  /** Computes the label of a statement, for per-statement histograms. */
+  public interface StatementLabeler {
+
+    /**
+     * Returns the label of a statement.
+     *
+     * <p>This is called for each request, so implementations should be fast, and return the same
+     * instance for a given statement if possible (for example a constant, or a field of a custom
+     * statement class) to avoid allocating on the request path.
+     *
+     * @param statement the statement that was executed.
+     * @return the label, or {@code null} if this statement should not be tracked.
+     */
+    String label(Statement statement);
+  }
+
+  private final StatementLabeler statementLabeler;
+  private final Category hosts;
+  private final Category statements;
+  private final Category errors;
+
+  private volatile MetricRegistry registry;
+
+  private final Host.StateListener hostListener =
+      new Host.StateListener() {
+        @Override
+        public void onAdd(Host host) {}
+
+        @Override
+        public void onUp(Host host) {}
+
+        @Override
+        public void onDown(Host host) {}
+
+        @Override
+        public void onRemove(Host host) {
+          hosts.remove(host);
+        }
+
+        @Override
+        public void onRegister(Cluster cluster) {}
+
+        @Override
+        public void onUnregister(Cluster cluster) {}
+      };
+
+  private LatencyHistograms(Builder builder) {
+    this.statementLabeler = builder.statementLabeler;
+    this.hosts = builder.perHost ? new Category("host", builder.maxHosts, builder) : null;
+    this.statements =
+        builder.perStatement ? new Category("statement", builder.maxStatements, builder) : null;
+    this.errors = builder.perError ? new Category("error", builder.maxErrors, builder) : null;
+  }
+
+  /**
+   * Returns a builder to create a new instance.
+   *
+   * @return the builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+    long latencyMicros = NANOSECONDS.toMicros(newLatencyNanos);
+    if (hosts != null) hosts.update(host, latencyMicros);
+    if (statements != null) {
+      Object key = statementKey(statement);
+      if (key != null) statements.update(key, latencyMicros);
+    }
+    if (errors != null && exception != null) errors.update(exception.getClass(), latencyMicros);
+  }
+
+  private Object statementKey(Statement statement) {
+    if (statementLabeler != null) return statementLabeler.label(statement);
+    if (statement instanceof StatementWrapper)
+      statement = ((StatementWrapper) statement).getWrappedStatement();
+    return statement instanceof BoundStatement
+        ? ((BoundStatement) statement).preparedStatement().getPreparedId().boundValuesMetadata.id
+        : null;
+  }
+
+  /**
+   * Returns the per-host histograms created so far.
+   *
+   * @return an immutable map of the histograms, keyed by the last component of their metric name.
+   */
+  public Map<String, Histogram> getHostHistograms() {
+    return hosts == null ? ImmutableMap.<String, Histogram>of() : hosts.histograms();
+  }
+
+  /**
+   * Returns the per-statement histograms created so far.
+   *
+   * @return an immutable map of the histograms, keyed by the last component of their metric name.
+   */
+  public Map<String, Histogram> getStatementHistograms() {
+    return statements == null ? ImmutableMap.<String, Histogram>of() : statements.histograms();
+  }
+
+  /**
+   * Returns the per-error histograms created so far.
+   *
+   * @return an immutable map of the histograms, keyed by the last component of their metric name.
+   */
+  public Map<String, Histogram> getErrorHistograms() {
+    return errors == null ? ImmutableMap.<String, Histogram>of() : errors.histograms();
+  }
+
+  @Override
+  public void onRegister(Cluster cluster) {
+    if (hosts != null) cluster.register(hostListener);
+    Metrics metrics = cluster.getMetrics();
+    if (metrics == null) {
+      logger.warn(
+          "Metrics are disabled on {}, latency histograms won't be exposed in the metric registry",
+          cluster.getClusterName());
+      return;
+    }
+    registry = metrics.getRegistry();
+    for (Category category : new Category[] {hosts, statements, errors})
+      if (category != null) category.registerAll(registry);
+  }
+
+  @Override
+  public void onUnregister(Cluster cluster) {
+    if (hosts != null) cluster.unregister(hostListener);
+    MetricRegistry registry = this.registry;
+    if (registry == null) return;
+    this.registry = null;
+    for (Category category : new Category[] {hosts, statements, errors})
+      if (category != null) category.unregisterAll(registry);
+  }
+
+  private static String name(Object key) {
+    if (key instanceof Host) return MetricsUtil.hostMetricName("", (Host) key);
+    if (key instanceof Class) return ((Class<?>) key).getSimpleName();
+    return key.toString();
+  }
+
+  private class Category {
+    private final String prefix;
+    private final int maxHistograms;
+    private final long highestTrackableLatencyMicros;
+    private final int numberOfSignificantValueDigits;
+    private final long intervalNanos;
+
+    private final ConcurrentMap<Object, Histogram> byKey =
+        new ConcurrentHashMap<Object, Histogram>();
+    private final ConcurrentMap<String, Histogram> byName =
+        new ConcurrentHashMap<String, Histogram>();
+    private final AtomicInteger count = new AtomicInteger();
+    private volatile Histogram other;
+
+    Category(String category, int maxHistograms, Builder builder) {
+      this.prefix = "latencies." + category + ".";
+      this.maxHistograms = maxHistograms;
+      this.highestTrackableLatencyMicros = builder.highestTrackableLatencyMicros;
+      this.numberOfSignificantValueDigits = builder.numberOfSignificantValueDigits;
+      this.intervalNanos = builder.intervalNanos;
+    }
+
+    void update(Object key, long latencyMicros) {
+      Histogram histogram = byKey.get(key);
+      if (histogram == null) histogram = create(key);
+      histogram.update(latencyMicros);
+    }
+
+    private Histogram create(Object key) {
+      // Keys over the limit end up here for each request, keep that path cheap
+      if (count.get() >= maxHistograms || count.incrementAndGet() > maxHistograms) {
+        Histogram other = this.other;
+        return other == null ? createOther() : other;
+      }
+      Histogram histogram = newHistogram();
+      Histogram previous = byKey.putIfAbsent(key, histogram);
+      if (previous != null) {
+        count.decrementAndGet();
+        return previous;
+      }
+      add(name(key), histogram);
+      return histogram;
+    }
+
+    private synchronized Histogram createOther() {
+      if (other == null) {
+        Histogram histogram = newHistogram();
+        add("other", histogram);
+        other = histogram;
+      }
+      return other;
+    }
+
+    void remove(Object key) {
+      Histogram histogram = byKey.remove(key);
+      if (histogram == null) return;
+      count.decrementAndGet();
+      String name = name(key);
+      if (byName.remove(name, histogram)) {
+        MetricRegistry registry = LatencyHistograms.this.registry;
+        if (registry != null) unregister(registry, name, histogram);
+      }
+    }
+
+    private Histogram newHistogram() {
+      return new Histogram(
+          new HdrHistogramReservoir(
+              highestTrackableLatencyMicros, numberOfSignificantValueDigits, intervalNanos));
+    }
+
+    private void add(String name, Histogram histogram) {
+      if (byName.putIfAbsent(name, histogram) != null) return;
+      MetricRegistry registry = LatencyHistograms.this.registry;
+      if (registry != null) register(registry, name, histogram);
+    }
+
+    private void register(MetricRegistry registry, String name, Histogram histogram) {
+      try {
+        registry.register(prefix + name, histogram);
+      } catch (IllegalArgumentException e) {
+        // Another key with the same name (e.g. two hosts with the same address), or another
+        // instance of this class registered with the same cluster
+        logger.warn("Could not register latency histogram {}: {}", prefix + name, e.getMessage());
+      }
+    }
+
+    void registerAll(MetricRegistry registry) {
+      for (Map.Entry<String, Histogram> entry : byName.entrySet())
+        register(registry, entry.getKey(), entry.getValue());
+    }
+
+    void unregisterAll(MetricRegistry registry) {
+      for (Map.Entry<String, Histogram> entry : byName.entrySet())
+        unregister(registry, entry.getKey(), entry.getValue());
+    }
+
+    private void unregister(MetricRegistry registry, String name, Histogram histogram) {
+      String fullName = prefix + name;
+      if (registry.getHistograms().get(fullName) == histogram) registry.remove(fullName);
+    }
+
+    Map<String, Histogram> histograms() {
+      return ImmutableMap.copyOf(byName);
+    }
+  }
+
+  /** Helper class to build {@link LatencyHistograms} instances with a fluent interface. */
+  public static class Builder {
+
+    private boolean perHost = true;
+    private boolean perStatement = true;
+    private boolean perError = true;
+    private int maxHosts = 256;
+    private int maxStatements = 100;
+    private int maxErrors = 32;
+    private StatementLabeler statementLabeler;
+    private long highestTrackableLatencyMicros = MINUTES.toMicros(2);
+    private int numberOfSignificantValueDigits = 2;
+    private long intervalNanos = MINUTES.toNanos(1);
+
+    private Builder() {}
+
+    /**
+     * Whether to track latencies per host.
+     *
+     * <p>If not set explicitly, this defaults to {@code true}.
+     *
+     * @param perHost the new value.
+     * @return this builder.
+     */
+    public Builder withPerHostHistograms(boolean perHost) {
+      this.perHost = perHost;
+      return this;
+    }
+
+    /**
+     * Whether to track latencies per statement.
+     *
+     * <p>If not set explicitly, this defaults to {@code true}.
+     *
+     * @param perStatement the new value.
+     * @return this builder.
+     */
+    public Builder withPerStatementHistograms(boolean perStatement) {
+      this.perStatement = perStatement;
+      return this;
+    }
+
+    /**
+     * Whether to track the latencies of failed requests per error type.
+     *
+     * <p>If not set explicitly, this defaults to {@code true}.
+     *
+     * @param perError the new value.
+     * @return this builder.
+     */
+    public Builder withPerErrorHistograms(boolean perError) {
+      this.perError = perError;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of histograms of each category. Latencies of hosts, statements or
+     * errors that come after the limit is reached are recorded in the {@code other} histogram of
+     * their category.
+     *
+     * <p>If not set explicitly, the limits are 256 hosts, 100 statements and 32 errors.
+     *
+     * @param maxHosts the maximum number of per-host histograms.
+     * @param maxStatements the maximum number of per-statement histograms.
+     * @param maxErrors the maximum number of per-error histograms.
+     * @return this builder.
+     */
+    public Builder withMaxHistograms(int maxHosts, int maxStatements, int maxErrors) {
+      checkArgument(
+          maxHosts >= 0 && maxStatements >= 0 && maxErrors >= 0,
+          "Limits cannot be negative (got %s, %s, %s)",
+          maxHosts,
+          maxStatements,
+          maxErrors);
+      this.maxHosts = maxHosts;
+      this.maxStatements = maxStatements;
+      this.maxErrors = maxErrors;
+      return this;
+    }
+
+    /**
+     * Sets the labeler that determines which statements get tracked, and in which histogram.
+     *
+     * <p>If not set explicitly, only bound statements are tracked, and grouped by prepared
+     * statement id.
+     *
+     * @param statementLabeler the new value.
+     * @return this builder.
+     */
+    public Builder withStatementLabeler(StatementLabeler statementLabeler) {
+      this.statementLabeler = statementLabeler;
+      return this;
+    }
+
+    /**
+     * Sets the highest latency that can be tracked. Higher latencies are recorded as this value.
+     *
+     * <p>If not set explicitly, this defaults to 2 minutes.
+     *
+     * @param highestTrackableLatency the new value.
+     * @param unit the unit that the latency is expressed in.
+     * @return this builder.
+     */
+    public Builder withHighestTrackableLatency(long highestTrackableLatency, TimeUnit unit) {
+      this.highestTrackableLatencyMicros = unit.toMicros(highestTrackableLatency);
+      checkArgument(
+          highestTrackableLatencyMicros >= 2,
+          "Highest trackable latency must be at least 2 microseconds");
+      return this;
+    }
+
+    /**
+     * Sets the number of significant decimal digits to which histograms will maintain value
+     * resolution and separation. This must be an integer between 0 and 5.
+     *
+     * <p>If not set explicitly, this value defaults to 2, which is enough to tell latencies apart
+     * at a 1% resolution. Each additional digit multiplies the memory used by each histogram by
+     * about 7.
+     *
+     * @param numberOfSignificantValueDigits the new value.
+     * @return this builder.
+     */
+    public Builder withNumberOfSignificantValueDigits(int numberOfSignificantValueDigits) {
+      checkArgument(
+          numberOfSignificantValueDigits >= 0 && numberOfSignificantValueDigits <= 5,
+          "numberOfSignificantValueDigits must be between 0 and 5 (got %s)",
+          numberOfSignificantValueDigits);
+      this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+      return this;
+    }
+
+    /**
+     * Sets the time interval covered by histogram snapshots.
+     *
+     * <p>If not set explicitly, this value defaults to 1 minute.
+     *
+     * @param interval the new interval.
+     * @param unit the unit that the interval is expressed in.
+     * @return this builder.
+     */
+    public Builder withInterval(long interval, TimeUnit unit) {
+      checkArgument(interval > 0, "interval must be strictly positive (got %s)", interval);
+      this.intervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Builds the {@code LatencyHistograms} instance configured with this builder.
+     *
+     * @return the instance.
+     */
+    public LatencyHistograms build() {
+      return new LatencyHistograms(this);
+    }
+  }
+}
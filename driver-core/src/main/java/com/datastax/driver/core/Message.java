@@ -246,6 +246,11 @@ abstract class Message {
     protected volatile UUID tracingId;
     protected volatile List<String> warnings;
 
+    // Only set if phase timings are enabled, see ProtocolDecoder. Written and read on the event
+    // loop.
+    long decodeStart;
+    long decodeEnd;
+
     protected Response(Type type) {
       this.type = type;
     }
@@ -268,9 +273,16 @@ abstract class Message {
   @ChannelHandler.Sharable
   static class ProtocolDecoder extends MessageToMessageDecoder<Frame> {
 
+    private final boolean recordDecodeTimes;
+
+    ProtocolDecoder(boolean recordDecodeTimes) {
+      this.recordDecodeTimes = recordDecodeTimes;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, Frame frame, List<Object> out)
         throws Exception {
+      long decodeStart = recordDecodeTimes ? System.nanoTime() : 0;
       boolean isTracing = frame.header.flags.contains(Frame.Header.Flag.TRACING);
       boolean isCustomPayload = frame.header.flags.contains(Frame.Header.Flag.CUSTOM_PAYLOAD);
       UUID tracingId = isTracing ? CBUtil.readUUID(frame.body) : null;
@@ -300,6 +312,10 @@ abstract class Message {
             .setWarnings(warnings)
             .setCustomPayload(customPayload)
             .setStreamId(frame.header.streamId);
+        if (recordDecodeTimes) {
+          response.decodeStart = decodeStart;
+          response.decodeEnd = System.nanoTime();
+        }
         out.add(response);
       } finally {
         frame.body.release();
@@ -338,7 +354,13 @@ abstract class Message {
         payloadLength = CBUtil.sizeOfBytesMap(customPayload);
         messageSize += payloadLength;
       }
-      ByteBuf body = ctx.alloc().buffer(messageSize);
+      int wrappedSize = ZeroCopyBody.sizeOfWrappableValues(request);
+      if (customPayload != null)
+        wrappedSize += ZeroCopyBody.sizeOfWrappableValues(customPayload.values());
+      ByteBuf body =
+          wrappedSize == 0
+              ? ctx.alloc().buffer(messageSize)
+              : new ZeroCopyBody(ctx.alloc(), messageSize - wrappedSize);
       if (customPayload != null) {
         CBUtil.writeBytesMap(customPayload, body);
         if (logger.isTraceEnabled()) {
@@ -15,8 +15,10 @@
  */
 package com.datastax.driver.core;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import io.netty.util.collection.IntObjectHashMap;
 import java.net.InetSocketAddress;
@@ -123,14 +125,7 @@ public class Metadata {
     lock.lock();
     try {
       if (tokenMap == null) return;
-      this.tokenMap =
-          TokenMap.build(
-              tokenMap.factory,
-              tokenMap.primaryToTokens,
-              keyspaces.values(),
-              tokenMap.ring,
-              tokenMap.tokenRanges,
-              tokenMap.tokenToPrimary);
+      this.tokenMap = TokenMap.build(tokenMap, keyspaces.values());
     } finally {
       lock.unlock();
     }
@@ -140,7 +135,7 @@ public class Metadata {
   void rebuildTokenMap(Token.Factory factory, Map<Host, Set<Token>> allTokens) {
     lock.lock();
     try {
-      this.tokenMap = TokenMap.build(factory, allTokens, keyspaces.values());
+      this.tokenMap = TokenMap.build(tokenMap, factory, allTokens, keyspaces.values());
     } finally {
       lock.unlock();
     }
@@ -430,7 +425,7 @@ public class Metadata {
     if (current == null) {
       return Collections.emptySet();
     } else {
-      Map<Host, Set<TokenRange>> dcRanges = current.hostsToRangesByKeyspace.get(keyspace);
+      Map<Host, Set<TokenRange>> dcRanges = current.getHostsToRanges(keyspace);
       if (dcRanges == null) {
         return Collections.emptySet();
       } else {
@@ -458,7 +453,7 @@ public class Metadata {
     if (current == null) {
       return Collections.emptySet();
     } else {
-      Set<Host> hosts = current.getReplicas(keyspace, current.factory.hash(partitionKey));
+      Set<Host> hosts = current.getReplicas(keyspace, partitionKey);
       return hosts == null ? Collections.<Host>emptySet() : hosts;
     }
   }
@@ -550,7 +545,10 @@ public class Metadata {
 
   KeyspaceMetadata removeKeyspace(String keyspace) {
     KeyspaceMetadata removed = keyspaces.remove(keyspace);
-    if (tokenMap != null) tokenMap.tokenToHostsByKeyspace.remove(keyspace);
+    TokenMap current = tokenMap;
+    if (current != null) {
+      current.replicasByKeyspace.remove(keyspace);
+    }
     return removed;
   }
 
@@ -780,9 +778,17 @@ public class Metadata {
 
     private final Token.Factory factory;
     private final Map<Host, Set<Token>> primaryToTokens;
-    private final Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace;
-    private final Map<String, Map<Host, Set<TokenRange>>> hostsToRangesByKeyspace;
+    private final ConcurrentMap<String, ReplicaMap> replicasByKeyspace;
+    // The replicas computed for each distinct replication strategy (keyspaces with the same
+    // replication settings share them). They are reused by the next rebuild when possible.
+    private final Map<ReplicationStrategy, ReplicaMap> replicasByStrategy;
+    // The datacenter and rack of each host when the map was built. If any of them changes, the
+    // next rebuild can't reuse anything.
+    private final Map<Host, List<String>> hostLocations;
     private final List<Token> ring;
+    // The values of the ring's tokens with Murmur3Partitioner (null with other partitioners), to
+    // look up replicas without allocating tokens.
+    private final long[] murmur3Ring;
     private final Set<TokenRange> tokenRanges;
     private final Map<Token, Host> tokenToPrimary;
 
@@ -792,110 +798,274 @@ public class Metadata {
         Set<TokenRange> tokenRanges,
         Map<Token, Host> tokenToPrimary,
         Map<Host, Set<Token>> primaryToTokens,
-        Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace,
-        Map<String, Map<Host, Set<TokenRange>>> hostsToRangesByKeyspace) {
+        ConcurrentMap<String, ReplicaMap> replicasByKeyspace,
+        Map<ReplicationStrategy, ReplicaMap> replicasByStrategy,
+        Map<Host, List<String>> hostLocations) {
       this.factory = factory;
       this.ring = ring;
+      this.murmur3Ring = makeMurmur3Ring(factory, ring);
       this.tokenRanges = tokenRanges;
       this.tokenToPrimary = tokenToPrimary;
       this.primaryToTokens = primaryToTokens;
-      this.tokenToHostsByKeyspace = tokenToHostsByKeyspace;
-      this.hostsToRangesByKeyspace = hostsToRangesByKeyspace;
+      this.replicasByKeyspace = replicasByKeyspace;
+      this.replicasByStrategy = replicasByStrategy;
+      this.hostLocations = hostLocations;
       for (Map.Entry<Host, Set<Token>> entry : primaryToTokens.entrySet()) {
         Host host = entry.getKey();
         host.setTokens(ImmutableSet.copyOf(entry.getValue()));
       }
     }
 
+    // Builds a map for a new set of hosts and tokens. If a previous map is provided, only the ring
+    // positions affected by the differences between the two topologies are recomputed.
     private static TokenMap build(
+        TokenMap previous,
         Token.Factory factory,
         Map<Host, Set<Token>> allTokens,
         Collection<KeyspaceMetadata> keyspaces) {
       Map<Token, Host> tokenToPrimary = new HashMap<Token, Host>();
-      Set<Token> allSorted = new TreeSet<Token>();
-      for (Map.Entry<Host, ? extends Collection<Token>> entry : allTokens.entrySet()) {
-        Host host = entry.getKey();
-        for (Token t : entry.getValue()) {
-          try {
-            allSorted.add(t);
-            tokenToPrimary.put(t, host);
-          } catch (IllegalArgumentException e) {
-            // If we failed parsing that token, skip it
+      if (previous == null || !canReuse(previous, factory, allTokens.keySet())) {
+        Set<Token> allSorted = new TreeSet<Token>();
+        for (Map.Entry<Host, ? extends Collection<Token>> entry : allTokens.entrySet()) {
+          Host host = entry.getKey();
+          for (Token t : entry.getValue()) {
+            try {
+              allSorted.add(t);
+              tokenToPrimary.put(t, host);
+            } catch (IllegalArgumentException e) {
+              // If we failed parsing that token, skip it
+            }
           }
         }
+        List<Token> ring = new ArrayList<Token>(allSorted);
+        Set<TokenRange> tokenRanges = makeTokenRanges(ring, factory);
+        return build(null, null, factory, allTokens, keyspaces, ring, tokenRanges, tokenToPrimary);
       }
-      List<Token> ring = new ArrayList<Token>(allSorted);
+
+      for (Map.Entry<Host, ? extends Collection<Token>> entry : allTokens.entrySet()) {
+        Host host = entry.getKey();
+        for (Token t : entry.getValue()) tokenToPrimary.put(t, host);
+      }
+      RingChanges changes = new RingChanges(previous.ring, previous.tokenToPrimary, tokenToPrimary);
+      if (changes.isEmpty()) {
+        // Same ring as before (e.g. a node list refresh with no topology change)
+        return build(
+            previous,
+            changes,
+            factory,
+            allTokens,
+            keyspaces,
+            previous.ring,
+            previous.tokenRanges,
+            previous.tokenToPrimary);
+      }
+      List<Token> ring = changes.mergeRing(previous.ring, tokenToPrimary);
       Set<TokenRange> tokenRanges = makeTokenRanges(ring, factory);
-      return build(factory, allTokens, keyspaces, ring, tokenRanges, tokenToPrimary);
+      return build(
+          previous, changes, factory, allTokens, keyspaces, ring, tokenRanges, tokenToPrimary);
+    }
+
+    // Builds a map for a new set of keyspaces, on the same ring as the previous map.
+    private static TokenMap build(TokenMap previous, Collection<KeyspaceMetadata> keyspaces) {
+      boolean reusable = canReuse(previous, previous.factory, previous.primaryToTokens.keySet());
+      return build(
+          reusable ? previous : null,
+          reusable ? RingChanges.NONE : null,
+          previous.factory,
+          previous.primaryToTokens,
+          keyspaces,
+          previous.ring,
+          previous.tokenRanges,
+          previous.tokenToPrimary);
     }
 
     private static TokenMap build(
+        TokenMap previous,
+        RingChanges changes,
         Token.Factory factory,
         Map<Host, Set<Token>> allTokens,
         Collection<KeyspaceMetadata> keyspaces,
         List<Token> ring,
         Set<TokenRange> tokenRanges,
         Map<Token, Host> tokenToPrimary) {
-      Set<Host> hosts = allTokens.keySet();
-      Map<String, Map<Token, Set<Host>>> tokenToHosts =
-          new HashMap<String, Map<Token, Set<Host>>>();
-      Map<ReplicationStrategy, Map<Token, Set<Host>>> replStrategyToHosts =
-          new HashMap<ReplicationStrategy, Map<Token, Set<Host>>>();
-      Map<String, Map<Host, Set<TokenRange>>> hostsToRanges =
-          new HashMap<String, Map<Host, Set<TokenRange>>>();
+      ConcurrentMap<String, ReplicaMap> replicasByKeyspace =
+          new ConcurrentHashMap<String, ReplicaMap>();
+      Map<ReplicationStrategy, ReplicaMap> replicasByStrategy =
+          new HashMap<ReplicationStrategy, ReplicaMap>();
       for (KeyspaceMetadata keyspace : keyspaces) {
         ReplicationStrategy strategy = keyspace.replicationStrategy();
-        Map<Token, Set<Host>> ksTokens = replStrategyToHosts.get(strategy);
-        if (ksTokens == null) {
-          ksTokens =
-              (strategy == null)
-                  ? makeNonReplicatedMap(tokenToPrimary)
-                  : strategy.computeTokenToReplicaMap(keyspace.getName(), tokenToPrimary, ring);
-          replStrategyToHosts.put(strategy, ksTokens);
+        ReplicaMap replicas = replicasByStrategy.get(strategy);
+        if (replicas == null) {
+          if (previous != null && changes.isEmpty())
+            // If the ring didn't change, the replicas of known strategies didn't either
+            replicas = previous.replicasByStrategy.get(strategy);
+          if (replicas == null)
+            replicas =
+                computeReplicas(
+                    keyspace.getName(), strategy, ring, tokenToPrimary, previous, changes);
+          replicasByStrategy.put(strategy, replicas);
         }
+        replicasByKeyspace.put(keyspace.getName(), replicas);
+      }
+      Set<Host> hosts = allTokens.keySet();
+      return new TokenMap(
+          factory,
+          ring,
+          tokenRanges,
+          tokenToPrimary,
+          allTokens,
+          replicasByKeyspace,
+          replicasByStrategy,
+          (previous != null && previous.hostLocations.keySet().equals(hosts))
+              ? previous.hostLocations
+              : locations(hosts));
+    }
 
-        tokenToHosts.put(keyspace.getName(), ksTokens);
+    // Whether a new map for the given hosts can reuse the replicas computed for a previous map
+    private static boolean canReuse(TokenMap previous, Token.Factory factory, Set<Host> hosts) {
+      if (!previous.factory.equals(factory)) return false;
+      for (Host host : hosts) {
+        List<String> location = previous.hostLocations.get(host);
+        if (location != null && !location.equals(location(host))) return false;
+      }
+      return true;
+    }
 
-        Map<Host, Set<TokenRange>> ksRanges;
-        if (ring.size() == 1) {
-          // We forced the single range to ]minToken,minToken], make sure to use that instead of
-          // relying on the host's token
-          ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
-          for (Host host : allTokens.keySet()) builder.put(host, tokenRanges);
-          ksRanges = builder.build();
-        } else {
-          ksRanges = computeHostsToRangesMap(tokenRanges, ksTokens, hosts.size());
+    private static Map<Host, List<String>> locations(Set<Host> hosts) {
+      Map<Host, List<String>> locations = Maps.newHashMapWithExpectedSize(hosts.size());
+      for (Host host : hosts) locations.put(host, location(host));
+      return locations;
+    }
+
+    private static List<String> location(Host host) {
+      return Arrays.asList(host.getDatacenter(), host.getRack());
+    }
+
+    private static ReplicaMap computeReplicas(
+        String keyspaceName,
+        ReplicationStrategy strategy,
+        List<Token> ring,
+        Map<Token, Host> tokenToPrimary,
+        TokenMap previous,
+        RingChanges changes) {
+      if (strategy == null) {
+        ReplicaMap.Builder builder = new ReplicaMap.Builder(ring.size(), null);
+        for (int i = 0; i < ring.size(); i++)
+          builder.add(i, ImmutableSet.of(tokenToPrimary.get(ring.get(i))), -1);
+        return builder.build(null, null);
+      }
+
+      ReplicationStrategy.ReplicaCalculator calculator =
+          strategy.newCalculator(keyspaceName, tokenToPrimary, ring);
+      Object context = calculator.context();
+      ReplicaMap previousReplicas =
+          (previous == null) ? null : previous.replicasByStrategy.get(strategy);
+      if (previousReplicas != null && !context.equals(previousReplicas.context))
+        previousReplicas = null;
+
+      ReplicaMap.Builder builder = new ReplicaMap.Builder(ring.size(), previousReplicas);
+      int[] walkLengths = new int[ring.size()];
+      int reused = 0;
+      // Both rings are sorted, so we can find the previous position of each token as we go
+      int previousPosition = 0;
+      for (int i = 0; i < ring.size(); i++) {
+        int samePosition = -1;
+        if (previousReplicas != null) {
+          Token token = ring.get(i);
+          List<Token> previousRing = previous.ring;
+          while (previousPosition < previousRing.size()
+              && previousRing.get(previousPosition).compareTo(token) < 0) previousPosition++;
+          if (previousPosition < previousRing.size()
+              && previousRing.get(previousPosition).equals(token)) {
+            samePosition = previousPosition;
+            int walkLength = previousReplicas.walkLengths[samePosition];
+            if (!changes.affect(samePosition, walkLength)) {
+              builder.reuse(i, samePosition);
+              walkLengths[i] = walkLength;
+              reused += 1;
+              continue;
+            }
+          }
         }
-        hostsToRanges.put(keyspace.getName(), ksRanges);
+        builder.add(i, calculator.replicasAt(i), samePosition);
+        walkLengths[i] = calculator.lastWalkLength();
       }
-      return new TokenMap(
-          factory, ring, tokenRanges, tokenToPrimary, allTokens, tokenToHosts, hostsToRanges);
+      logger.debug(
+          "Computed replicas of keyspace {} ({} of {} ring positions reused)",
+          keyspaceName,
+          reused,
+          ring.size());
+      return builder.build(walkLengths, context);
+    }
+
+    private Map<Host, Set<TokenRange>> getHostsToRanges(String keyspace) {
+      ReplicaMap replicas = replicasByKeyspace.get(keyspace);
+      if (replicas == null) return null;
+      if (ring.size() == 1) {
+        // We forced the single range to ]minToken,minToken], make sure to use that instead of
+        // relying on the host's token
+        ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
+        for (Host host : primaryToTokens.keySet()) builder.put(host, tokenRanges);
+        return builder.build();
+      }
+      // Computed on demand: most clients never call this, and it's expensive on large rings.
+      // Replicas are only reused across maps with the same ranges, so it's safe to cache there.
+      Map<Host, Set<TokenRange>> ranges = replicas.hostsToRanges;
+      if (ranges == null) {
+        ranges = computeHostsToRangesMap(tokenRanges, replicas, primaryToTokens.size());
+        replicas.hostsToRanges = ranges;
+      }
+      return ranges;
     }
 
     private Set<Host> getReplicas(String keyspace, Token token) {
+      ReplicaMap replicas = replicasByKeyspace.get(keyspace);
+      if (replicas == null || ring.isEmpty()) return Collections.emptySet();
+
+      int i =
+          (murmur3Ring != null)
+              ? ringPosition(murmur3Ring, ((Token.M3PToken) token).longValue())
+              : ringPosition(ring, token);
+      return replicas.get(i);
+    }
 
-      Map<Token, Set<Host>> tokenToHosts = tokenToHostsByKeyspace.get(keyspace);
-      if (tokenToHosts == null) return Collections.emptySet();
+    private Set<Host> getReplicas(String keyspace, ByteBuffer partitionKey) {
+      ReplicaMap replicas = replicasByKeyspace.get(keyspace);
+      if (replicas == null || ring.isEmpty()) return Collections.emptySet();
 
-      // If the token happens to be one of the "primary" tokens, get result directly
-      Set<Host> hosts = tokenToHosts.get(token);
-      if (hosts != null) return hosts;
+      int i =
+          (murmur3Ring != null)
+              ? ringPosition(murmur3Ring, Token.M3PToken.hashToLong(partitionKey))
+              : ringPosition(ring, factory.hash(partitionKey));
+      return replicas.get(i);
+    }
+
+    // Returns the index of the first token of the ring that is greater than or equal to the given
+    // token, wrapping around to 0 if there is none.
+    private static int ringPosition(long[] ring, long token) {
+      int i = Arrays.binarySearch(ring, token);
+      if (i < 0) {
+        i = -i - 1;
+        if (i >= ring.length) i = 0;
+      }
+      return i;
+    }
 
-      // Otherwise, find closest "primary" token on the ring
+    private static int ringPosition(List<Token> ring, Token token) {
       int i = Collections.binarySearch(ring, token);
       if (i < 0) {
         i = -i - 1;
         if (i >= ring.size()) i = 0;
       }
-
-      return tokenToHosts.get(ring.get(i));
+      return i;
     }
 
-    private static Map<Token, Set<Host>> makeNonReplicatedMap(Map<Token, Host> input) {
-      Map<Token, Set<Host>> output = new HashMap<Token, Set<Host>>(input.size());
-      for (Map.Entry<Token, Host> entry : input.entrySet())
-        output.put(entry.getKey(), ImmutableSet.of(entry.getValue()));
-      return output;
+    private static long[] makeMurmur3Ring(Token.Factory factory, List<Token> ring) {
+      if (factory != Token.M3PToken.FACTORY) return null;
+      long[] values = new long[ring.size()];
+      for (int i = 0; i < values.length; i++)
+        values[i] = ((Token.M3PToken) ring.get(i)).longValue();
+      return values;
     }
 
     private static Set<TokenRange> makeTokenRanges(List<Token> ring, Token.Factory factory) {
@@ -914,12 +1084,14 @@ public class Metadata {
     }
 
     private static Map<Host, Set<TokenRange>> computeHostsToRangesMap(
-        Set<TokenRange> tokenRanges, Map<Token, Set<Host>> ksTokens, int hostCount) {
+        Set<TokenRange> tokenRanges, ReplicaMap replicas, int hostCount) {
       Map<Host, ImmutableSet.Builder<TokenRange>> builders =
           Maps.newHashMapWithExpectedSize(hostCount);
+      // The ranges are in ring order: the i-th range ends at the token at position i + 1
+      int end = 0;
       for (TokenRange range : tokenRanges) {
-        Set<Host> replicas = ksTokens.get(range.getEnd());
-        for (Host host : replicas) {
+        end = (end + 1) % tokenRanges.size();
+        for (Host host : replicas.get(end)) {
           ImmutableSet.Builder<TokenRange> hostRanges = builders.get(host);
           if (hostRanges == null) {
             hostRanges = ImmutableSet.builder();
@@ -935,4 +1107,185 @@ public class Metadata {
       return ksRanges;
     }
   }
+
+  /** The differences between the ring of a previous token map and a new set of tokens. */
+  private static class RingChanges {
+
+    static final RingChanges NONE =
+        new RingChanges(
+            Collections.<Token>emptyList(),
+            Collections.<Token, Host>emptyMap(),
+            Collections.<Token, Host>emptyMap());
+
+    // The positions of the previous ring whose token was removed or assigned to another host
+    private final boolean[] changedPositions;
+    // The gaps of the previous ring where tokens were added: gap i is just before position i (gap
+    // 0 is between the last and first positions)
+    private final boolean[] changedGaps;
+    private final List<Token> addedTokens;
+    private final int count;
+
+    RingChanges(
+        List<Token> previousRing,
+        Map<Token, Host> previousTokenToPrimary,
+        Map<Token, Host> tokenToPrimary) {
+      int n = previousRing.size();
+      int count = 0;
+      changedPositions = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        Token token = previousRing.get(i);
+        if (tokenToPrimary.get(token) != previousTokenToPrimary.get(token)) {
+          changedPositions[i] = true;
+          count += 1;
+        }
+      }
+      addedTokens = new ArrayList<Token>();
+      for (Token token : tokenToPrimary.keySet()) {
+        if (!previousTokenToPrimary.containsKey(token)) addedTokens.add(token);
+      }
+      Collections.sort(addedTokens);
+      changedGaps = new boolean[n];
+      if (n > 0) {
+        for (Token token : addedTokens) {
+          changedGaps[(-Collections.binarySearch(previousRing, token) - 1) % n] = true;
+        }
+      }
+      this.count = count + addedTokens.size();
+    }
+
+    boolean isEmpty() {
+      return count == 0;
+    }
+
+    // The new ring: the remaining tokens of the previous ring, and the added tokens
+    List<Token> mergeRing(List<Token> previousRing, Map<Token, Host> tokenToPrimary) {
+      List<Token> ring = new ArrayList<Token>(tokenToPrimary.size());
+      int i = 0, j = 0;
+      while (i < previousRing.size() || j < addedTokens.size()) {
+        if (j == addedTokens.size()
+            || (i < previousRing.size() && previousRing.get(i).compareTo(addedTokens.get(j)) < 0)) {
+          Token token = previousRing.get(i++);
+          if (tokenToPrimary.containsKey(token)) ring.add(token);
+        } else {
+          ring.add(addedTokens.get(j++));
+        }
+      }
+      return ring;
+    }
+
+    // Whether the changes affect the portion of the previous ring that was examined to compute the
+    // replicas of a given position (see ReplicationStrategy.ReplicaCalculator)
+    boolean affect(int start, int walkLength) {
+      int n = changedPositions.length;
+      if (walkLength >= n) return count > 0;
+      for (int k = 0; k < walkLength; k++) {
+        int i = (start + k) % n;
+        // A token added right before the start would not have been examined
+        if (changedPositions[i] || (k > 0 && changedGaps[i])) return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * The replicas of each token of the ring, for a given replication strategy.
+   *
+   * <p>Many tokens share the same replicas (in the same order), so the sets are deduplicated, and
+   * each position of the ring only stores the index of its set.
+   *
+   * <p>It also remembers how the replicas were computed (see {@link
+   * ReplicationStrategy.ReplicaCalculator}), so that the next rebuild can reuse them.
+   */
+  private static class ReplicaMap {
+
+    private final int[] indexes;
+    private final Set<Host>[] sets;
+    // The number of tokens examined to compute the replicas of each position (null if the map is
+    // not reusable)
+    private final int[] walkLengths;
+    private final Object context;
+    // Lazily computed by TokenMap.getHostsToRanges
+    private volatile Map<Host, Set<TokenRange>> hostsToRanges;
+
+    private ReplicaMap(int[] indexes, Set<Host>[] sets, int[] walkLengths, Object context) {
+      this.indexes = indexes;
+      this.sets = sets;
+      this.walkLengths = walkLengths;
+      this.context = context;
+    }
+
+    Set<Host> get(int ringPosition) {
+      return sets[indexes[ringPosition]];
+    }
+
+    static class Builder {
+      private final int[] indexes;
+      private final List<Set<Host>> sets;
+      // Replica order matters (the first replica is the primary one), so compare sets as lists
+      private final Map<List<Host>, Integer> setIndexes = new HashMap<List<Host>, Integer>();
+      private final ReplicaMap previous;
+
+      /**
+       * @param previous a map whose sets can be reused with {@link #reuse(int, int)}, or {@code
+       *     null}.
+       */
+      Builder(int size, ReplicaMap previous) {
+        this.indexes = new int[size];
+        this.previous = previous;
+        this.sets =
+            (previous == null)
+                ? new ArrayList<Set<Host>>()
+                : new ArrayList<Set<Host>>(Arrays.asList(previous.sets));
+      }
+
+      /** Gives a position the same replicas as a position of the previous map. */
+      void reuse(int position, int previousPosition) {
+        indexes[position] = previous.indexes[previousPosition];
+      }
+
+      /**
+       * Sets the replicas of a position.
+       *
+       * @param previousPosition the position of the same token in the previous map, or -1. If it
+       *     had the same replicas, its set is reused.
+       */
+      void add(int position, Set<Host> replicas, int previousPosition) {
+        if (previousPosition >= 0) {
+          int index = previous.indexes[previousPosition];
+          if (Iterables.elementsEqual(sets.get(index), replicas)) {
+            indexes[position] = index;
+            return;
+          }
+        }
+        List<Host> key = ImmutableList.copyOf(replicas);
+        Integer index = setIndexes.get(key);
+        if (index == null) {
+          index = sets.size();
+          sets.add(replicas);
+          setIndexes.put(key, index);
+        }
+        indexes[position] = index;
+      }
+
+      @SuppressWarnings("unchecked")
+      ReplicaMap build(int[] walkLengths, Object context) {
+        if (previous != null) {
+          // Drop the sets of the previous map that are not used anymore
+          int[] newIndexes = new int[sets.size()];
+          for (int index : indexes) newIndexes[index] = 1;
+          List<Set<Host>> usedSets = new ArrayList<Set<Host>>();
+          for (int i = 0; i < newIndexes.length; i++) {
+            if (newIndexes[i] == 1) {
+              newIndexes[i] = usedSets.size();
+              usedSets.add(sets.get(i));
+            }
+          }
+          for (int i = 0; i < indexes.length; i++) indexes[i] = newIndexes[indexes[i]];
+          sets.clear();
+          sets.addAll(usedSets);
+        }
+        return new ReplicaMap(indexes, sets.toArray(new Set[sets.size()]), walkLengths, context);
+      }
+    }
+  }
 }
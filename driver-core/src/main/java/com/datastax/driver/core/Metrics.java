@@ -17,6 +17,7 @@ package com.datastax.driver.core;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
@@ -26,6 +27,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Metrics exposed by the driver.
@@ -45,10 +47,18 @@ public class Metrics {
   private final MetricRegistry registry = new MetricRegistry();
   private final JmxReporter jmxReporter;
   private final Errors errors = new Errors();
+  private final RequestPhases requestPhases = new RequestPhases();
 
   private final Timer requests = registry.timer("requests");
   private final Meter bytesSent = registry.meter("bytes-sent");
   private final Meter bytesReceived = registry.meter("bytes-received");
+  private final Histogram framesPerFlush = registry.histogram("frames-per-flush");
+  private final Counter prefetchHits = registry.counter("prefetch-hits");
+  private final Counter prefetchStalls = registry.counter("prefetch-stalls");
+  private final Timer reprepares = registry.timer("reprepares");
+  private final Counter deduplicatedReprepares = registry.counter("deduplicated-reprepares");
+  private final Timer throttlingWait = registry.timer("throttling-wait");
+  private final Counter throttlingRejections = registry.counter("throttling-rejections");
 
   private final Gauge<Integer> knownHosts =
       registry.register(
@@ -122,6 +132,19 @@ public class Metrics {
             }
           });
 
+  private final Gauge<Integer> throttlingQueueDepth =
+      registry.register(
+          "throttling-queue-depth",
+          new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+              int value = 0;
+              for (SessionManager session : manager.sessions)
+                if (session.throttler != null) value += session.throttler.getQueueSize();
+              return value;
+            }
+          });
+
   private final Gauge<Integer> executorQueueDepth;
   private final Gauge<Integer> blockingExecutorQueueDepth;
   private final Gauge<Integer> reconnectionSchedulerQueueSize;
@@ -221,6 +244,19 @@ public class Metrics {
     return errors;
   }
 
+  /**
+   * Returns an object grouping metrics related to the time spent by requests in the different
+   * phases of their execution.
+   *
+   * <p>These metrics are only updated if {@link QueryOptions#setPhaseTimingsEnabled(boolean) phase
+   * timings} are enabled.
+   *
+   * @return an object grouping metrics related to request phases.
+   */
+  public RequestPhases getRequestPhases() {
+    return requestPhases;
+  }
+
   /**
    * Returns the number of Cassandra hosts currently known by the driver (that is whether they are
    * currently considered up or down).
@@ -371,6 +407,104 @@ public class Metrics {
     return bytesReceived;
   }
 
+  /**
+   * Returns the distribution of the number of frames written to a connection between two flushes.
+   *
+   * <p>This metric is only updated when {@link SocketOptions#setWriteCoalescingEnabled(boolean)
+   * write coalescing} is enabled; it can be used to check how effective coalescing is with the
+   * current workload.
+   *
+   * @return the distribution of the number of frames written per flush.
+   */
+  public Histogram getFramesPerFlush() {
+    return framesPerFlush;
+  }
+
+  /**
+   * Returns the number of times the iteration of a result set moved to a page that had already been
+   * fetched in the background.
+   *
+   * <p>This metric is only updated for statements that {@link Statement#setPrefetchPages(int) fetch
+   * pages ahead}.
+   *
+   * @return the number of prefetched pages that were ready when needed.
+   */
+  public Counter getPrefetchHits() {
+    return prefetchHits;
+  }
+
+  /**
+   * Returns the number of times the iteration of a result set had to wait for the next page,
+   * although background fetching was enabled.
+   *
+   * <p>This metric is only updated for statements that {@link Statement#setPrefetchPages(int) fetch
+   * pages ahead}. A high value compared to {@link #getPrefetchHits()} means that the application
+   * consumes rows faster than the driver fetches them, or that {@link
+   * QueryOptions#getMaxPrefetchBytes() the memory budget} is too low.
+   *
+   * @return the number of times the iteration waited for a page.
+   */
+  public Counter getPrefetchStalls() {
+    return prefetchStalls;
+  }
+
+  /**
+   * Returns the rate and latency of the re-preparations of prepared statements.
+   *
+   * <p>This covers both the statements re-prepared on a node that comes back up (see {@link
+   * QueryOptions#setReprepareOnUp(boolean)}), and the ones re-prepared on the fly because a node
+   * replied that it did not know them.
+   *
+   * @return a {@code Timer} metric object exposing the rate and latency of re-preparations.
+   */
+  public Timer getRepreparesTimer() {
+    return reprepares;
+  }
+
+  /**
+   * Returns the number of times a request that needed to re-prepare its statement on a node waited
+   * for a re-preparation already in progress, instead of sending its own.
+   *
+   * @return the number of deduplicated re-preparations.
+   */
+  public Counter getDeduplicatedReprepares() {
+    return deduplicatedReprepares;
+  }
+
+  /**
+   * Returns the total number of requests waiting for capacity in the throttlers of all sessions.
+   *
+   * <p>This metric is only updated if throttling is enabled (see {@link ThrottlingOptions}).
+   *
+   * @return the number of requests waiting for capacity.
+   */
+  public Gauge<Integer> getThrottlingQueueDepth() {
+    return throttlingQueueDepth;
+  }
+
+  /**
+   * Returns the time that throttled requests waited for capacity, before being started.
+   *
+   * <p>This metric is only updated if throttling is enabled (see {@link ThrottlingOptions}); it
+   * does not include requests that were started immediately, or that were rejected.
+   *
+   * @return a {@code Timer} metric object exposing the rate and wait time of throttled requests.
+   */
+  public Timer getThrottlingWaitTimer() {
+    return throttlingWait;
+  }
+
+  /**
+   * Returns the number of requests that failed with a {@link
+   * com.datastax.driver.core.exceptions.RequestThrottlingException}, because the throttling queue
+   * was full or because they waited too long.
+   *
+   * @return the number of requests rejected by throttling.
+   */
+  public Counter getThrottlingRejections() {
+    return throttlingRejections;
+  }
+
   void shutdown() {
     if (jmxReporter != null) jmxReporter.stop();
   }
@@ -665,4 +799,82 @@ public class Metrics {
       return speculativeExecutions;
     }
   }
+
+  /**
+   * Metrics on the time spent by successful requests in the different phases of their execution.
+   *
+   * @see RequestPhaseTimings
+   */
+  public class RequestPhases {
+
+    private final Timer poolWait = registry.timer("phases.pool-wait");
+    private final Timer flushQueue = registry.timer("phases.flush-queue");
+    private final Timer wire = registry.timer("phases.wire");
+    private final Timer decode = registry.timer("phases.decode");
+    private final Timer completion = registry.timer("phases.completion");
+
+    void update(RequestPhaseTimings timings) {
+      update(poolWait, timings.getPoolWaitNanos());
+      update(flushQueue, timings.getFlushQueueNanos());
+      update(wire, timings.getWireNanos());
+      update(decode, timings.getDecodeNanos());
+      update(completion, timings.getCompletionNanos());
+    }
+
+    private void update(Timer timer, long nanos) {
+      if (nanos >= 0) timer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time spent by requests waiting for a connection in the pool.
+     *
+     * @return the timer.
+     * @see RequestPhaseTimings#getPoolWaitNanos()
+     */
+    public Timer getPoolWait() {
+      return poolWait;
+    }
+
+    /**
+     * Returns the time spent by requests waiting to be written to the channel.
+     *
+     * @return the timer.
+     * @see RequestPhaseTimings#getFlushQueueNanos()
+     */
+    public Timer getFlushQueue() {
+      return flushQueue;
+    }
+
+    /**
+     * Returns the time spent by requests between being written to the channel, and their response
+     * being decoded.
+     *
+     * @return the timer.
+     * @see RequestPhaseTimings#getWireNanos()
+     */
+    public Timer getWire() {
+      return wire;
+    }
+
+    /**
+     * Returns the time spent decoding responses.
+     *
+     * @return the timer.
+     * @see RequestPhaseTimings#getDecodeNanos()
+     */
+    public Timer getDecode() {
+      return decode;
+    }
+
+    /**
+     * Returns the time spent between the dispatch of responses and the completion of the futures
+     * returned to the client.
+     *
+     * @return the timer.
+     * @see RequestPhaseTimings#getCompletionNanos()
+     */
+    public Timer getCompletion() {
+      return completion;
+    }
+  }
 }
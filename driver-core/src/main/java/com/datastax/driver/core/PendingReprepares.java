@@ -0,0 +1,124 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The re-preparations of prepared statements that are in progress, triggered by UNPREPARED
+ * responses.
+ *
+ * <p>When a node loses its prepared statement cache, all the requests that execute a given
+ * statement on it get an UNPREPARED response at about the same time. This makes sure that only one
+ * of them sends a PREPARE message; the others wait for it to complete, and then retry on the same
+ * node.
+ */
+class PendingReprepares {
+
+  private final Cluster.Manager manager;
+  private final ConcurrentMap<Key, SettableFuture<Void>> pending =
+      new ConcurrentHashMap<Key, SettableFuture<Void>>();
+
+  PendingReprepares(Cluster.Manager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Joins the re-preparation of a statement on a node, or starts a new one if none is in progress.
+   */
+  Reprepare join(InetSocketAddress address, MD5Digest id) {
+    Key key = new Key(address, id);
+    SettableFuture<Void> future = SettableFuture.create();
+    SettableFuture<Void> previous = pending.putIfAbsent(key, future);
+    if (previous == null) return new Reprepare(key, future, true);
+
+    Metrics metrics = manager.metrics;
+    if (metrics != null) metrics.getDeduplicatedReprepares().inc();
+    return new Reprepare(key, previous, false);
+  }
+
+  /** A view of a re-preparation for one of the requests that joined it. */
+  class Reprepare {
+    private final Key key;
+    private final SettableFuture<Void> future;
+    private final boolean owner;
+    private final long startNanos = System.nanoTime();
+
+    private Reprepare(Key key, SettableFuture<Void> future, boolean owner) {
+      this.key = key;
+      this.future = future;
+      this.owner = owner;
+    }
+
+    /**
+     * Whether the request started the re-preparation. If so, it must send the PREPARE message, and
+     * call {@link #complete()} once it's done.
+     */
+    boolean isOwner() {
+      return owner;
+    }
+
+    /**
+     * A future that completes when the PREPARE message has completed (successfully or not). It
+     * never fails.
+     */
+    ListenableFuture<Void> future() {
+      return future;
+    }
+
+    /**
+     * Signals that the PREPARE message has completed, or will never complete. This can be called
+     * multiple times.
+     */
+    void complete() {
+      assert owner;
+      if (pending.remove(key, future)) {
+        Metrics metrics = manager.metrics;
+        if (metrics != null)
+          metrics.getRepreparesTimer().update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        future.set(null);
+      }
+    }
+  }
+
+  private static class Key {
+    private final InetSocketAddress address;
+    private final MD5Digest id;
+
+    private Key(InetSocketAddress address, MD5Digest id) {
+      this.address = address;
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof Key)) return false;
+      Key that = (Key) o;
+      return this.address.equals(that.address) && this.id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * address.hashCode() + id.hashCode();
+    }
+  }
+}
@@ -20,8 +20,11 @@ import static com.datastax.driver.core.HostDistance.REMOTE;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Options related to connection pooling.
@@ -46,6 +49,192 @@ import java.util.concurrent.Executor;
  */
 public class PoolingOptions {
 
+  /**
+   * The strategy used to pick a connection when a request borrows one from a host's pool.
+   *
+   * @see #setConnectionSelection(ConnectionSelection)
+   */
+  public enum ConnectionSelection {
+
+    /**
+     * Scans all the connections of the pool and picks the one with the fewest in-flight requests.
+     *
+     * <p>This gives the best balance between connections, but with many cores and large pools, all
+     * concurrent requests tend to compete for the same "least busy" connection.
+     */
+    LEAST_BUSY {
+      @Override
+      Connection select(List<Connection> connections, int maxRequestsPerConnection) {
+        return leastBusy(connections);
+      }
+    },
+
+    /**
+     * Picks two connections at random, and keeps the one with the fewest in-flight requests.
+     *
+     * <p>This avoids scanning the whole pool, and spreads concurrent requests across connections,
+     * while still providing a good balance (see "The Power of Two Choices in Randomized Load
+     * Balancing", Mitzenmacher).
+     */
+    POWER_OF_TWO_CHOICES {
+      @Override
+      Connection select(List<Connection> connections, int maxRequestsPerConnection) {
+        return twoChoices(connections, SelectionState.get());
+      }
+    },
+
+    /**
+     * Assigns each thread a "home" connection, and only picks another one (using {@link
+     * #POWER_OF_TWO_CHOICES}) if the home connection is more than half full.
+     *
+     * <p>This works best when requests are issued from a fixed set of threads: each thread mostly
+     * updates the counters of its own connection, which removes contention between threads.
+     */
+    THREAD_AFFINITY {
+      @Override
+      Connection select(List<Connection> connections, int maxRequestsPerConnection) {
+        SelectionState state = SelectionState.get();
+        int size = connections.size();
+        if (size > 0) {
+          try {
+            Connection home = connections.get(state.stripe % size);
+            if (home.inFlight.get() < maxRequestsPerConnection / 2) return home;
+          } catch (IndexOutOfBoundsException e) {
+            // The pool shrunk concurrently, fall through
+          }
+        }
+        return twoChoices(connections, state);
+      }
+    };
+
+    /**
+     * Picks a connection from the given list.
+     *
+     * <p>The returned connection is only a candidate: the caller must still acquire a stream on it,
+     * and fall back to {@link #leastBusy(List)} if it turns out to be full.
+     *
+     * @param connections the pool's connections. Note that the list might be modified concurrently.
+     * @param maxRequestsPerConnection the maximum number of in-flight requests per connection.
+     * @return the candidate, or {@code null} if the list is empty.
+     */
+    abstract Connection select(List<Connection> connections, int maxRequestsPerConnection);
+
+    static Connection leastBusy(List<Connection> connections) {
+      int minInFlight = Integer.MAX_VALUE;
+      Connection leastBusy = null;
+      for (Connection connection : connections) {
+        int inFlight = connection.inFlight.get();
+        if (inFlight < minInFlight) {
+          minInFlight = inFlight;
+          leastBusy = connection;
+        }
+      }
+      return leastBusy;
+    }
+
+    private static Connection twoChoices(List<Connection> connections, SelectionState state) {
+      int size = connections.size();
+      if (size <= 2) return leastBusy(connections);
+      int i = state.nextInt(size);
+      // Pick a different index for the second choice
+      int j = state.nextInt(size - 1);
+      if (j >= i) j += 1;
+      try {
+        Connection first = connections.get(i);
+        Connection second = connections.get(j);
+        return first.inFlight.get() <= second.inFlight.get() ? first : second;
+      } catch (IndexOutOfBoundsException e) {
+        // The pool shrunk concurrently, not worth optimizing
+        return leastBusy(connections);
+      }
+    }
+  }
+
+  /**
+   * How the driver limits the number of requests in flight to a host.
+   *
+   * @see #setConcurrencyLimit(ConcurrencyLimit)
+   */
+  public enum ConcurrencyLimit {
+
+    /**
+     * Each connection accepts up to {@link #getMaxRequestsPerConnection(HostDistance)} requests.
+     */
+    STATIC {
+      @Override
+      ConcurrencyLimiter newLimiter(int maxLimit) {
+        return null;
+      }
+    },
+
+    /**
+     * Additive increase, multiplicative decrease: the limit of each host grows by one request per
+     * round trip while the host is busy, and shrinks by 10% on client timeouts and {@code
+     * OVERLOADED} errors (at most once per round trip).
+     *
+     * <p>This only reacts to errors; it is simple and predictable, but lets the latency of a
+     * degraded host grow until requests time out.
+     */
+    AIMD {
+      @Override
+      ConcurrencyLimiter newLimiter(int maxLimit) {
+        return new ConcurrencyLimiter.Aimd(maxLimit);
+      }
+    },
+
+    /**
+     * Compares the recent latency of each host to its long term latency: the limit grows while they
+     * are similar, and shrinks in proportion when the host gets slower, before requests time out.
+     * Client timeouts and {@code OVERLOADED} errors also shrink it by 10%.
+     */
+    GRADIENT {
+      @Override
+      ConcurrencyLimiter newLimiter(int maxLimit) {
+        return new ConcurrencyLimiter.Gradient(maxLimit);
+      }
+    };
+
+    abstract ConcurrencyLimiter newLimiter(int maxLimit);
+  }
+
+  /** Per-thread state for {@link ConnectionSelection}, to avoid any shared mutable state. */
+  private static final class SelectionState {
+
+    private static final AtomicInteger STRIPES = new AtomicInteger();
+
+    private static final FastThreadLocal<SelectionState> STATE =
+        new FastThreadLocal<SelectionState>() {
+          @Override
+          protected SelectionState initialValue() {
+            return new SelectionState(STRIPES.getAndIncrement() & Integer.MAX_VALUE);
+          }
+        };
+
+    static SelectionState get() {
+      return STATE.get();
+    }
+
+    final int stripe;
+    private int seed;
+
+    private SelectionState(int stripe) {
+      this.stripe = stripe;
+      // any non-zero value will do
+      this.seed = (stripe + 1) * 0x9E3779B9;
+      if (this.seed == 0) this.seed = 1;
+    }
+
+    /** Returns a pseudo-random value in [0, bound) (xorshift generator). */
+    int nextInt(int bound) {
+      int x = seed;
+      x ^= x << 13;
+      x ^= x >>> 17;
+      x ^= x << 5;
+      seed = x;
+      return (x & Integer.MAX_VALUE) % bound;
+    }
+  }
+
   /**
    * The value returned for connection options when they have not been set by the client, and the
    * protocol version is not known yet.
@@ -134,6 +323,16 @@ public class PoolingOptions {
   /** The default value for {@link #getHeartbeatIntervalSeconds()} ({@value}). */
   public static final int DEFAULT_HEARTBEAT_INTERVAL_SECONDS = 30;
 
+  /**
+   * The default value for {@link #getConnectionSelection()}: {@link
+   * ConnectionSelection#LEAST_BUSY}.
+   */
+  public static final ConnectionSelection DEFAULT_CONNECTION_SELECTION =
+      ConnectionSelection.LEAST_BUSY;
+
+  /** The default value for {@link #getConcurrencyLimit()}: {@link ConcurrencyLimit#STATIC}. */
+  public static final ConcurrencyLimit DEFAULT_CONCURRENCY_LIMIT = ConcurrencyLimit.STATIC;
+
   private static final Executor DEFAULT_INITIALIZATION_EXECUTOR =
       GuavaCompatibility.INSTANCE.sameThreadExecutor();
 
@@ -154,6 +353,8 @@ public class PoolingOptions {
   private volatile int poolTimeoutMillis = DEFAULT_POOL_TIMEOUT_MILLIS;
   private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
   private volatile int heartbeatIntervalSeconds = DEFAULT_HEARTBEAT_INTERVAL_SECONDS;
+  private volatile ConnectionSelection connectionSelection = DEFAULT_CONNECTION_SELECTION;
+  private volatile ConcurrencyLimit concurrencyLimit = DEFAULT_CONCURRENCY_LIMIT;
 
   private volatile Executor initializationExecutor = DEFAULT_INITIALIZATION_EXECUTOR;
 
@@ -535,6 +736,78 @@ public class PoolingOptions {
     return this;
   }
 
+  /**
+   * Returns the strategy used to pick a connection when a request borrows one from a host's pool.
+   *
+   * @return the strategy.
+   * @see #setConnectionSelection(ConnectionSelection)
+   */
+  public ConnectionSelection getConnectionSelection() {
+    return connectionSelection;
+  }
+
+  /**
+   * Sets the strategy used to pick a connection when a request borrows one from a host's pool.
+   *
+   * <p>This only matters when pools have more than one connection (see {@link
+   * #setMaxConnectionsPerHost(HostDistance, int)}). The default, {@link
+   * ConnectionSelection#LEAST_BUSY}, scans every connection on each request; with many client
+   * threads and large pools, consider {@link ConnectionSelection#POWER_OF_TWO_CHOICES} or {@link
+   * ConnectionSelection#THREAD_AFFINITY}, which scale better.
+   *
+   * <p>Whatever the strategy, if the selected connection is full, the driver falls back to the
+   * least busy one before enqueuing the request.
+   *
+   * <p>This option can be changed at runtime, the new value will be used for subsequent requests.
+   *
+   * @param connectionSelection the new value.
+   * @return this {@code PoolingOptions}
+   * @throws java.lang.NullPointerException if the strategy is null
+   */
+  public PoolingOptions setConnectionSelection(ConnectionSelection connectionSelection) {
+    Preconditions.checkNotNull(connectionSelection);
+    this.connectionSelection = connectionSelection;
+    return this;
+  }
+
+  /**
+   * Returns how the driver limits the number of requests in flight to a host.
+   *
+   * @return the strategy.
+   * @see #setConcurrencyLimit(ConcurrencyLimit)
+   */
+  public ConcurrencyLimit getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  /**
+   * Sets how the driver limits the number of requests in flight to a host.
+   *
+   * <p>With the default, {@link ConcurrencyLimit#STATIC}, each connection accepts up to {@link
+   * #getMaxRequestsPerConnection(HostDistance)} requests: a value that is too low wastes capacity,
+   * and one that is too high lets requests pile up on a node that degrades, until they time out.
+   *
+   * <p>With {@link ConcurrencyLimit#AIMD} or {@link ConcurrencyLimit#GRADIENT}, the driver adjusts
+   * a limit for each host from the latency and the timeouts of its requests, between 1 and the
+   * static capacity of the pool ({@code maxRequestsPerConnection * maxConnectionsPerHost}). The
+   * limit applies to all the connections to the host together, each of them is still bounded by
+   * {@code maxRequestsPerConnection}. Requests over the limit go to the {@link
+   * #setMaxQueueSize(int) acquisition queue}; consider a small queue (or none), so that the driver
+   * moves them to the next host of the query plan instead of waiting for the slow one.
+   *
+   * <p>This option is read when a pool is created: changing it at runtime only affects the hosts
+   * that the driver connects to afterwards.
+   *
+   * @param concurrencyLimit the new value.
+   * @return this {@code PoolingOptions}
+   * @throws java.lang.NullPointerException if the strategy is null
+   */
+  public PoolingOptions setConcurrencyLimit(ConcurrencyLimit concurrencyLimit) {
+    Preconditions.checkNotNull(concurrencyLimit);
+    this.concurrencyLimit = concurrencyLimit;
+    return this;
+  }
+
   /**
    * Returns the executor to use for connection initialization.
    *
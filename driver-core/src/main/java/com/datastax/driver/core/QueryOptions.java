@@ -33,6 +33,18 @@ public class QueryOptions {
   /** The default fetch size for SELECT queries: 5000. */
   public static final int DEFAULT_FETCH_SIZE = 5000;
 
+  /** The default number of pages to fetch ahead in the background: 0 (disabled). */
+  public static final int DEFAULT_PREFETCH_PAGES = 0;
+
+  /** The default maximum number of bytes buffered by background page fetches: 32 MB. */
+  public static final int DEFAULT_MAX_PREFETCH_BYTES = 32 * 1024 * 1024;
+
+  /** The default maximum number of concurrent PREPARE messages when a node comes back up: 32. */
+  public static final int DEFAULT_MAX_CONCURRENT_REPREPARES = 32;
+
+  /** The default maximum rate of PREPARE messages when a node comes back up: 0 (unlimited). */
+  public static final int DEFAULT_MAX_REPREPARES_PER_SECOND = 0;
+
   /** The default value for {@link #getDefaultIdempotence()}: {@code false}. */
   public static final boolean DEFAULT_IDEMPOTENCE = false;
 
@@ -51,6 +63,8 @@ public class QueryOptions {
   private volatile ConsistencyLevel consistency = DEFAULT_CONSISTENCY_LEVEL;
   private volatile ConsistencyLevel serialConsistency = DEFAULT_SERIAL_CONSISTENCY_LEVEL;
   private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+  private volatile int prefetchPages = DEFAULT_PREFETCH_PAGES;
+  private volatile int maxPrefetchBytes = DEFAULT_MAX_PREFETCH_BYTES;
   private volatile boolean defaultIdempotence = DEFAULT_IDEMPOTENCE;
 
   private volatile boolean metadataEnabled = true;
@@ -66,8 +80,11 @@ public class QueryOptions {
   private volatile int refreshSchemaIntervalMillis = DEFAULT_REFRESH_SCHEMA_INTERVAL_MILLIS;
 
   private volatile boolean reprepareOnUp = true;
+  private volatile int maxConcurrentReprepares = DEFAULT_MAX_CONCURRENT_REPREPARES;
+  private volatile int maxRepreparesPerSecond = DEFAULT_MAX_REPREPARES_PER_SECOND;
   private volatile Cluster.Manager manager;
   private volatile boolean prepareOnAllHosts = true;
+  private volatile boolean phaseTimingsEnabled = false;
 
   /**
    * Creates a new {@link QueryOptions} instance using the {@link #DEFAULT_CONSISTENCY_LEVEL},
@@ -161,6 +178,65 @@ public class QueryOptions {
     return fetchSize;
   }
 
+  /**
+   * Sets the default number of pages to fetch ahead in the background when iterating over a paged
+   * result set.
+   *
+   * <p>The value set through this method will be used for statements that don't explicitly have
+   * one, i.e. when {@link Statement#getPrefetchPages} is negative. See {@link
+   * Statement#setPrefetchPages(int)} for a description of the feature.
+   *
+   * @param prefetchPages the new value to set as default. It must be positive or 0 (which disables
+   *     background fetching).
+   * @return this {@code QueryOptions} instance.
+   * @throws IllegalArgumentException if {@code prefetchPages &lt; 0}.
+   */
+  public QueryOptions setPrefetchPages(int prefetchPages) {
+    if (prefetchPages < 0)
+      throw new IllegalArgumentException(
+          "Invalid prefetchPages, should be >= 0, got " + prefetchPages);
+    this.prefetchPages = prefetchPages;
+    return this;
+  }
+
+  /**
+   * The default number of pages to fetch ahead in the background.
+   *
+   * @return the default number of pages to fetch ahead in the background.
+   */
+  public int getPrefetchPages() {
+    return prefetchPages;
+  }
+
+  /**
+   * Sets the maximum number of bytes that a result set may buffer through background page fetches.
+   *
+   * <p>This applies to each result set independently, and only counts the pages that were fetched
+   * but not yet reached by the iteration. Once the limit is reached, no new page is requested in
+   * the background until the application consumes the buffered ones. A single page is always
+   * allowed, so this is not a strict limit if the fetch size yields very large pages.
+   *
+   * @param maxPrefetchBytes the new maximum. It must be strictly positive.
+   * @return this {@code QueryOptions} instance.
+   * @throws IllegalArgumentException if {@code maxPrefetchBytes &lte; 0}.
+   */
+  public QueryOptions setMaxPrefetchBytes(int maxPrefetchBytes) {
+    if (maxPrefetchBytes <= 0)
+      throw new IllegalArgumentException(
+          "Invalid maxPrefetchBytes, should be > 0, got " + maxPrefetchBytes);
+    this.maxPrefetchBytes = maxPrefetchBytes;
+    return this;
+  }
+
+  /**
+   * The maximum number of bytes that a result set may buffer through background page fetches.
+   *
+   * @return the maximum number of bytes.
+   */
+  public int getMaxPrefetchBytes() {
+    return maxPrefetchBytes;
+  }
+
   /**
    * Sets the default idempotence for queries.
    *
@@ -263,6 +339,99 @@ public class QueryOptions {
     return this.reprepareOnUp;
   }
 
+  /**
+   * Sets the maximum number of statements that the driver re-prepares concurrently on a host when
+   * it marks it back up (see {@link #setReprepareOnUp(boolean)}).
+   *
+   * <p>Re-preparation happens on a single connection before the host is used for queries; a lower
+   * value reduces the load on a node that just restarted, at the expense of a longer reconnection
+   * when there are many prepared statements.
+   *
+   * @param maxConcurrentReprepares the new maximum. It must be strictly positive.
+   * @return this {@code QueryOptions} instance.
+   * @throws IllegalArgumentException if {@code maxConcurrentReprepares &lte; 0}.
+   */
+  public QueryOptions setMaxConcurrentReprepares(int maxConcurrentReprepares) {
+    if (maxConcurrentReprepares <= 0)
+      throw new IllegalArgumentException(
+          "Invalid maxConcurrentReprepares, should be > 0, got " + maxConcurrentReprepares);
+    this.maxConcurrentReprepares = maxConcurrentReprepares;
+    return this;
+  }
+
+  /**
+   * The maximum number of statements that the driver re-prepares concurrently on a host when it
+   * marks it back up.
+   *
+   * @return the maximum.
+   * @see #setMaxConcurrentReprepares(int)
+   */
+  public int getMaxConcurrentReprepares() {
+    return maxConcurrentReprepares;
+  }
+
+  /**
+   * Sets the maximum number of statements per second that the driver re-prepares on a host when it
+   * marks it back up (see {@link #setReprepareOnUp(boolean)}).
+   *
+   * <p>The limit applies to each host independently.
+   *
+   * @param maxRepreparesPerSecond the new maximum. It must be positive or 0 (which means no limit).
+   * @return this {@code QueryOptions} instance.
+   * @throws IllegalArgumentException if {@code maxRepreparesPerSecond &lt; 0}.
+   */
+  public QueryOptions setMaxRepreparesPerSecond(int maxRepreparesPerSecond) {
+    if (maxRepreparesPerSecond < 0)
+      throw new IllegalArgumentException(
+          "Invalid maxRepreparesPerSecond, should be >= 0, got " + maxRepreparesPerSecond);
+    this.maxRepreparesPerSecond = maxRepreparesPerSecond;
+    return this;
+  }
+
+  /**
+   * The maximum number of statements per second that the driver re-prepares on a host when it marks
+   * it back up.
+   *
+   * @return the maximum, or 0 if there is no limit.
+   * @see #setMaxRepreparesPerSecond(int)
+   */
+  public int getMaxRepreparesPerSecond() {
+    return maxRepreparesPerSecond;
+  }
+
+  /**
+   * Sets whether the driver should record how long each request spends in the different phases of
+   * its execution: waiting for a connection in the pool, waiting to be written to the socket, on
+   * the wire (including the server processing time), decoding the response, and completing the
+   * future.
+   *
+   * <p>This option is disabled by default. When enabled, the breakdown of each successful request
+   * is available through {@link ExecutionInfo#getPhaseTimings()}, and aggregated in {@link
+   * Metrics#getRequestPhases()} if metrics are enabled. Recording costs a few {@link
+   * System#nanoTime()} calls and one small allocation per request.
+   *
+   * <p>This should be set before the cluster is initialized: decoding times are only measured on
+   * connections that were opened while the option was enabled.
+   *
+   * @param phaseTimingsEnabled whether to record phase timings.
+   * @return this {@code QueryOptions} instance.
+   */
+  public QueryOptions setPhaseTimingsEnabled(boolean phaseTimingsEnabled) {
+    this.phaseTimingsEnabled = phaseTimingsEnabled;
+    return this;
+  }
+
+  /**
+   * Whether the driver records how long each request spends in the different phases of its
+   * execution.
+   *
+   * @return the value.
+   * @see #setPhaseTimingsEnabled(boolean)
+   */
+  public boolean isPhaseTimingsEnabled() {
+    return phaseTimingsEnabled;
+  }
+
   /**
    * Toggle client-side token and schema metadata.
    *
@@ -485,6 +654,8 @@ public class QueryOptions {
     return (this.consistency.equals(other.consistency)
         && this.serialConsistency.equals(other.serialConsistency)
         && this.fetchSize == other.fetchSize
+        && this.prefetchPages == other.prefetchPages
+        && this.maxPrefetchBytes == other.maxPrefetchBytes
         && this.defaultIdempotence == other.defaultIdempotence
         && this.metadataEnabled == other.metadataEnabled
         && this.maxPendingRefreshNodeListRequests == other.maxPendingRefreshNodeListRequests
@@ -494,7 +665,10 @@ public class QueryOptions {
         && this.refreshNodeIntervalMillis == other.refreshNodeIntervalMillis
         && this.refreshSchemaIntervalMillis == other.refreshSchemaIntervalMillis
         && this.reprepareOnUp == other.reprepareOnUp
-        && this.prepareOnAllHosts == prepareOnAllHosts);
+        && this.maxConcurrentReprepares == other.maxConcurrentReprepares
+        && this.maxRepreparesPerSecond == other.maxRepreparesPerSecond
+        && this.prepareOnAllHosts == prepareOnAllHosts
+        && this.phaseTimingsEnabled == other.phaseTimingsEnabled);
   }
 
   public int hashCode() {
@@ -502,6 +676,8 @@ public class QueryOptions {
         consistency,
         serialConsistency,
         fetchSize,
+        prefetchPages,
+        maxPrefetchBytes,
         defaultIdempotence,
         metadataEnabled,
         maxPendingRefreshNodeListRequests,
@@ -511,6 +687,9 @@ public class QueryOptions {
         refreshNodeIntervalMillis,
         refreshSchemaIntervalMillis,
         reprepareOnUp,
-        prepareOnAllHosts);
+        maxConcurrentReprepares,
+        maxRepreparesPerSecond,
+        prepareOnAllHosts,
+        phaseTimingsEnabled);
   }
 }
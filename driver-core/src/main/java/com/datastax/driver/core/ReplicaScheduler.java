@@ -0,0 +1,195 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executes tasks on the replicas of the data they target, with a bounded number of tasks in flight
+ * on each host.
+ *
+ * <p>Each task is queued on the least loaded of its replicas that is up, preferring replicas at
+ * distance {@link HostDistance#LOCAL} according to the load balancing policy, and replicas that the
+ * task has not failed on yet. A task with no such replica is queued under a {@code null} host: the
+ * load balancing policy will choose its coordinator.
+ *
+ * <p>Once a task started by {@link #execute(Task)} is done, the caller must either {@link
+ * #release(Task) release} its slot or {@link #retry(Task) retry} it.
+ *
+ * @see TableScan
+ * @see BulkWriter
+ */
+abstract class ReplicaScheduler<T extends ReplicaScheduler.Task> {
+
+  private final LoadBalancingPolicy loadBalancingPolicy;
+  private final int maxInFlightPerHost;
+
+  // Tasks waiting to be executed, by host. Guarded by 'this'.
+  private final Map<Host, HostQueue<T>> hostQueues = new HashMap<Host, HostQueue<T>>();
+  private boolean stopped;
+
+  ReplicaScheduler(LoadBalancingPolicy loadBalancingPolicy, int maxInFlightPerHost) {
+    this.loadBalancingPolicy = loadBalancingPolicy;
+    this.maxInFlightPerHost = maxInFlightPerHost;
+  }
+
+  /** Executes a task on {@link Task#host}, invoked outside of the scheduler's lock. */
+  abstract void execute(T task);
+
+  /** Queues the given tasks, and starts as many as their hosts allow. */
+  void submit(Collection<? extends T> tasks) {
+    Set<Host> hosts = new HashSet<Host>();
+    synchronized (this) {
+      for (T task : tasks) hosts.add(enqueue(task));
+    }
+    for (Host host : hosts) schedule(host);
+  }
+
+  /** Queues the given task, and starts it if its host allows. */
+  void submit(T task) {
+    Host host;
+    synchronized (this) {
+      host = enqueue(task);
+    }
+    schedule(host);
+  }
+
+  /** Frees the slot of a task that is done, and starts the next task queued on its host. */
+  void release(T task) {
+    release(task.host);
+  }
+
+  /**
+   * Frees the slot of a task that failed, and queues it again, on another replica if there is one
+   * that it has not failed on yet.
+   */
+  void retry(T task) {
+    Host previous = task.host;
+    if (previous != null) task.triedHosts.add(previous);
+    Host next;
+    synchronized (this) {
+      next = enqueue(task);
+    }
+    release(previous);
+    if (next != previous) schedule(next);
+  }
+
+  /** Drops all queued tasks, and stops starting new ones. Tasks in flight are not affected. */
+  synchronized void stop() {
+    stopped = true;
+    hostQueues.clear();
+  }
+
+  // Adds a task to the queue of its least loaded replica, and returns that replica. Must be called
+  // while holding the lock.
+  private Host enqueue(T task) {
+    Host host = pickHost(task);
+    task.host = host;
+    if (!stopped) {
+      HostQueue<T> queue = hostQueues.get(host);
+      if (queue == null) {
+        queue = new HostQueue<T>();
+        hostQueues.put(host, queue);
+      }
+      queue.tasks.add(task);
+    }
+    return host;
+  }
+
+  // Starts queued tasks on a host, as long as it has capacity.
+  private void schedule(Host host) {
+    List<T> toStart = new ArrayList<T>();
+    synchronized (this) {
+      HostQueue<T> queue = hostQueues.get(host);
+      if (queue == null) return;
+      while (queue.inFlight < maxInFlightPerHost && !queue.tasks.isEmpty()) {
+        queue.inFlight += 1;
+        toStart.add(queue.tasks.poll());
+      }
+    }
+    for (T task : toStart) execute(task);
+  }
+
+  private void release(Host host) {
+    synchronized (this) {
+      HostQueue<T> queue = hostQueues.get(host);
+      if (queue == null) return;
+      queue.inFlight -= 1;
+      if (queue.inFlight == 0 && queue.tasks.isEmpty()) hostQueues.remove(host);
+    }
+    schedule(host);
+  }
+
+  // Must be called while holding the lock.
+  private int load(Host host) {
+    HostQueue<T> queue = hostQueues.get(host);
+    return (queue == null) ? 0 : queue.tasks.size() + queue.inFlight;
+  }
+
+  // Must be called while holding the lock.
+  private Host pickHost(T task) {
+    Host host = pickHost(task, HostDistance.LOCAL, false);
+    if (host == null) host = pickHost(task, HostDistance.REMOTE, false);
+    if (host == null) host = pickHost(task, HostDistance.LOCAL, true);
+    if (host == null) host = pickHost(task, HostDistance.REMOTE, true);
+    return host;
+  }
+
+  private Host pickHost(T task, HostDistance distance, boolean allowTried) {
+    Host best = null;
+    int bestLoad = Integer.MAX_VALUE;
+    for (Host candidate : task.replicas) {
+      if (!candidate.isUp()
+          || (!allowTried && task.triedHosts.contains(candidate))
+          || loadBalancingPolicy.distance(candidate) != distance) continue;
+      int load = load(candidate);
+      if (load < bestLoad) {
+        best = candidate;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  private static class HostQueue<T> {
+    final Deque<T> tasks = new ArrayDeque<T>();
+    int inFlight;
+  }
+
+  /** A unit of work that targets the given replicas. */
+  static class Task {
+    final Collection<Host> replicas;
+
+    // The fields below are only modified by the execution that is in flight for this task (or
+    // while holding the scheduler's lock, when it's queued).
+    final Set<Host> triedHosts = new HashSet<Host>();
+    volatile Host host;
+    volatile int retries;
+
+    Task(Collection<Host> replicas) {
+      this.replicas = replicas;
+    }
+  }
+}
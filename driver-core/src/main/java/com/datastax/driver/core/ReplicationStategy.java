@@ -18,6 +18,7 @@ package com.datastax.driver.core;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -67,13 +68,73 @@ abstract class ReplicationStrategy {
     }
   }
 
-  abstract Map<Token, Set<Host>> computeTokenToReplicaMap(
+  Map<Token, Set<Host>> computeTokenToReplicaMap(
+      String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+
+    logger.debug("Computing token to replica map for keyspace: {}.", keyspaceName);
+
+    // Track how long it takes to compute the token to replica map
+    long startTime = System.currentTimeMillis();
+
+    ReplicaCalculator calculator = newCalculator(keyspaceName, tokenToPrimary, ring);
+    Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
+    for (int i = 0; i < ring.size(); i++) {
+      replicaMap.put(ring.get(i), calculator.replicasAt(i));
+    }
+
+    long duration = System.currentTimeMillis() - startTime;
+    logger.debug(
+        "Token to replica map computation for keyspace {} completed in {} milliseconds",
+        keyspaceName,
+        duration);
+
+    return replicaMap;
+  }
+
+  /**
+   * Prepares the computation of the replicas of each position of the given ring.
+   *
+   * <p>This is what allows the token map to recompute only the positions affected by a topology
+   * change, see {@link ReplicaCalculator}.
+   */
+  abstract ReplicaCalculator newCalculator(
       String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring);
 
   private static Token getTokenWrapping(int i, List<Token> ring) {
     return ring.get(i % ring.size());
   }
 
+  /*
+   * Computes the replicas of individual ring positions.
+   *
+   * The replicas of a position only depend on the primary hosts of the tokens that were examined
+   * while walking the ring from that position (their number is exposed by lastWalkLength()), and on
+   * a strategy-specific context derived from the whole topology (context()). As long as the context
+   * is the same, a replica set computed for a previous ring remains valid if none of the tokens in
+   * its walk was added, removed or reassigned.
+   */
+  abstract static class ReplicaCalculator {
+
+    int lastWalkLength;
+
+    /** Computes the replicas of the token at the given position, primary replica first. */
+    abstract Set<Host> replicasAt(int position);
+
+    /**
+     * The number of ring positions (including the starting position) that were examined by the last
+     * call to {@link #replicasAt(int)}.
+     */
+    int lastWalkLength() {
+      return lastWalkLength;
+    }
+
+    /**
+     * The topology-wide inputs of the computation; results computed with different contexts can't
+     * be mixed.
+     */
+    abstract Object context();
+  }
+
   static class SimpleStrategy extends ReplicationStrategy {
 
     private final int replicationFactor;
@@ -83,20 +144,28 @@ abstract class ReplicationStrategy {
     }
 
     @Override
-    Map<Token, Set<Host>> computeTokenToReplicaMap(
-        String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
-
-      int rf = Math.min(replicationFactor, ring.size());
-
-      Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
-      for (int i = 0; i < ring.size(); i++) {
-        // Consecutive sections of the ring can assigned to the same host
-        Set<Host> replicas = new LinkedHashSet<Host>();
-        for (int j = 0; j < ring.size() && replicas.size() < rf; j++)
-          replicas.add(tokenToPrimary.get(getTokenWrapping(i + j, ring)));
-        replicaMap.put(ring.get(i), ImmutableSet.copyOf(replicas));
-      }
-      return replicaMap;
+    ReplicaCalculator newCalculator(
+        String keyspaceName, final Map<Token, Host> tokenToPrimary, final List<Token> ring) {
+
+      final int rf = Math.min(replicationFactor, ring.size());
+
+      return new ReplicaCalculator() {
+        @Override
+        Set<Host> replicasAt(int position) {
+          // Consecutive sections of the ring can assigned to the same host
+          Set<Host> replicas = new LinkedHashSet<Host>();
+          int j = 0;
+          for (; j < ring.size() && replicas.size() < rf; j++)
+            replicas.add(tokenToPrimary.get(getTokenWrapping(position + j, ring)));
+          lastWalkLength = j;
+          return ImmutableSet.copyOf(replicas);
+        }
+
+        @Override
+        Object context() {
+          return rf;
+        }
+      };
     }
 
     @Override
@@ -125,105 +194,115 @@ abstract class ReplicationStrategy {
     }
 
     @Override
-    Map<Token, Set<Host>> computeTokenToReplicaMap(
-        String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
-
-      logger.debug("Computing token to replica map for keyspace: {}.", keyspaceName);
-
-      // Track how long it takes to compute the token to replica map
-      long startTime = System.currentTimeMillis();
+    ReplicaCalculator newCalculator(
+        final String keyspaceName, final Map<Token, Host> tokenToPrimary, final List<Token> ring) {
 
       // This is essentially a copy of org.apache.cassandra.locator.NetworkTopologyStrategy
-      Map<String, Set<String>> racks = getRacksInDcs(tokenToPrimary.values());
-      Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
-      Map<String, Integer> dcHostCount = Maps.newHashMapWithExpectedSize(replicationFactors.size());
-      Set<String> warnedDcs = Sets.newHashSetWithExpectedSize(replicationFactors.size());
+      Set<Host> hosts = Sets.newHashSet(tokenToPrimary.values());
+      final Map<String, Set<String>> racks = getRacksInDcs(hosts);
+      final Map<String, Integer> dcHostCount =
+          Maps.newHashMapWithExpectedSize(replicationFactors.size());
+      final Set<String> warnedDcs = Sets.newHashSetWithExpectedSize(replicationFactors.size());
       // find maximum number of nodes in each DC
-      for (Host host : Sets.newHashSet(tokenToPrimary.values())) {
+      for (Host host : hosts) {
         String dc = host.getDatacenter();
         if (dcHostCount.get(dc) == null) {
           dcHostCount.put(dc, 0);
         }
         dcHostCount.put(dc, dcHostCount.get(dc) + 1);
       }
-      for (int i = 0; i < ring.size(); i++) {
-        Map<String, Set<Host>> allDcReplicas = new HashMap<String, Set<Host>>();
-        Map<String, Set<String>> seenRacks = new HashMap<String, Set<String>>();
-        Map<String, Set<Host>> skippedDcEndpoints = new HashMap<String, Set<Host>>();
-        for (String dc : replicationFactors.keySet()) {
-          allDcReplicas.put(dc, new HashSet<Host>());
-          seenRacks.put(dc, new HashSet<String>());
-          skippedDcEndpoints.put(dc, new LinkedHashSet<Host>()); // preserve order
-        }
 
-        // Preserve order - primary replica will be first
-        Set<Host> replicas = new LinkedHashSet<Host>();
-        for (int j = 0; j < ring.size() && !allDone(allDcReplicas, dcHostCount); j++) {
-          Host h = tokenToPrimary.get(getTokenWrapping(i + j, ring));
-          String dc = h.getDatacenter();
-          if (dc == null || !allDcReplicas.containsKey(dc)) continue;
-
-          Integer rf = replicationFactors.get(dc);
-          Set<Host> dcReplicas = allDcReplicas.get(dc);
-          if (rf == null || dcReplicas.size() >= rf) continue;
-
-          String rack = h.getRack();
-          // Check if we already visited all racks in dc
-          if (rack == null || seenRacks.get(dc).size() == racks.get(dc).size()) {
-            replicas.add(h);
-            dcReplicas.add(h);
-          } else {
-            // Is this a new rack?
-            if (seenRacks.get(dc).contains(rack)) {
-              skippedDcEndpoints.get(dc).add(h);
-            } else {
+      return new ReplicaCalculator() {
+        @Override
+        Set<Host> replicasAt(int position) {
+          Map<String, Set<Host>> allDcReplicas = new HashMap<String, Set<Host>>();
+          Map<String, Set<String>> seenRacks = new HashMap<String, Set<String>>();
+          Map<String, Set<Host>> skippedDcEndpoints = new HashMap<String, Set<Host>>();
+          for (String dc : replicationFactors.keySet()) {
+            allDcReplicas.put(dc, new HashSet<Host>());
+            seenRacks.put(dc, new HashSet<String>());
+            skippedDcEndpoints.put(dc, new LinkedHashSet<Host>()); // preserve order
+          }
+
+          // Preserve order - primary replica will be first
+          Set<Host> replicas = new LinkedHashSet<Host>();
+          int j = 0;
+          for (; j < ring.size() && !allDone(allDcReplicas, dcHostCount); j++) {
+            Host h = tokenToPrimary.get(getTokenWrapping(position + j, ring));
+            String dc = h.getDatacenter();
+            if (dc == null || !allDcReplicas.containsKey(dc)) continue;
+
+            Integer rf = replicationFactors.get(dc);
+            Set<Host> dcReplicas = allDcReplicas.get(dc);
+            if (rf == null || dcReplicas.size() >= rf) continue;
+
+            String rack = h.getRack();
+            // Check if we already visited all racks in dc
+            if (rack == null || seenRacks.get(dc).size() == racks.get(dc).size()) {
               replicas.add(h);
               dcReplicas.add(h);
-              seenRacks.get(dc).add(rack);
-              // If we've run out of distinct racks, add the nodes skipped so far
-              if (seenRacks.get(dc).size() == racks.get(dc).size()) {
-                Iterator<Host> skippedIt = skippedDcEndpoints.get(dc).iterator();
-                while (skippedIt.hasNext() && dcReplicas.size() < rf) {
-                  Host nextSkipped = skippedIt.next();
-                  replicas.add(nextSkipped);
-                  dcReplicas.add(nextSkipped);
+            } else {
+              // Is this a new rack?
+              if (seenRacks.get(dc).contains(rack)) {
+                skippedDcEndpoints.get(dc).add(h);
+              } else {
+                replicas.add(h);
+                dcReplicas.add(h);
+                seenRacks.get(dc).add(rack);
+                // If we've run out of distinct racks, add the nodes skipped so far
+                if (seenRacks.get(dc).size() == racks.get(dc).size()) {
+                  Iterator<Host> skippedIt = skippedDcEndpoints.get(dc).iterator();
+                  while (skippedIt.hasNext() && dcReplicas.size() < rf) {
+                    Host nextSkipped = skippedIt.next();
+                    replicas.add(nextSkipped);
+                    dcReplicas.add(nextSkipped);
+                  }
                 }
               }
             }
           }
+          lastWalkLength = j;
+
+          // If we haven't found enough replicas after a whole trip around the ring, this probably
+          // means that the replication factors are broken.
+          // Warn the user because that leads to quadratic performance of this method (JAVA-702).
+          for (Map.Entry<String, Set<Host>> entry : allDcReplicas.entrySet()) {
+            String dcName = entry.getKey();
+            int expectedFactor = replicationFactors.get(dcName);
+            int achievedFactor = entry.getValue().size();
+            if (achievedFactor < expectedFactor && !warnedDcs.contains(dcName)) {
+              logger.warn(
+                  "Error while computing token map for keyspace {} with datacenter {}: "
+                      + "could not achieve replication factor {} (found {} replicas only), "
+                      + "check your keyspace replication settings.",
+                  keyspaceName,
+                  dcName,
+                  expectedFactor,
+                  achievedFactor);
+              // only warn once per DC
+              warnedDcs.add(dcName);
+            }
+          }
+
+          return ImmutableSet.copyOf(replicas);
         }
 
-        // If we haven't found enough replicas after a whole trip around the ring, this probably
-        // means that the replication factors are broken.
-        // Warn the user because that leads to quadratic performance of this method (JAVA-702).
-        for (Map.Entry<String, Set<Host>> entry : allDcReplicas.entrySet()) {
-          String dcName = entry.getKey();
-          int expectedFactor = replicationFactors.get(dcName);
-          int achievedFactor = entry.getValue().size();
-          if (achievedFactor < expectedFactor && !warnedDcs.contains(dcName)) {
-            logger.warn(
-                "Error while computing token map for keyspace {} with datacenter {}: "
-                    + "could not achieve replication factor {} (found {} replicas only), "
-                    + "check your keyspace replication settings.",
-                keyspaceName,
-                dcName,
-                expectedFactor,
-                achievedFactor);
-            // only warn once per DC
-            warnedDcs.add(dcName);
+        @Override
+        Object context() {
+          // The walk stops based on the per-DC host count capped by the RF, and uses the racks of
+          // each DC
+          Map<String, List<Object>> context = new HashMap<String, List<Object>>();
+          for (Map.Entry<String, Integer> entry : replicationFactors.entrySet()) {
+            String dc = entry.getKey();
+            Integer count = dcHostCount.get(dc);
+            context.put(
+                dc,
+                Arrays.<Object>asList(
+                    Math.min(entry.getValue(), count == null ? 0 : count), racks.get(dc)));
           }
+          return context;
         }
-
-        replicaMap.put(ring.get(i), ImmutableSet.copyOf(replicas));
-      }
-
-      long duration = System.currentTimeMillis() - startTime;
-      logger.debug(
-          "Token to replica map computation for keyspace {} completed in {} milliseconds",
-          keyspaceName,
-          duration);
-
-      return replicaMap;
+      };
     }
 
     private boolean allDone(Map<String, Set<Host>> map, Map<String, Integer> dcHostCount) {
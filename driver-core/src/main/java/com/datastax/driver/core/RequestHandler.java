@@ -73,6 +73,7 @@ class RequestHandler {
   private final QueryPlan queryPlan;
   private final SpeculativeExecutionPlan speculativeExecutionPlan;
   private final boolean allowSpeculativeExecutions;
+  private final boolean phaseTimingsEnabled;
   private final Set<SpeculativeExecution> runningExecutions = Sets.newCopyOnWriteArraySet();
   private final Set<Timeout> scheduledExecutions = Sets.newCopyOnWriteArraySet();
   private final Statement statement;
@@ -111,6 +112,7 @@ class RequestHandler {
         statement != Statement.DEFAULT
             && statement.isIdempotentWithDefault(manager.configuration().getQueryOptions());
     this.statement = statement;
+    this.phaseTimingsEnabled = manager.configuration().getQueryOptions().isPhaseTimingsEnabled();
 
     this.timerContext = metricsEnabled() ? metrics().getRequestsTimer().time() : null;
     this.startTime = System.nanoTime();
@@ -205,7 +207,8 @@ class RequestHandler {
           && speculativeExecutions == 0
           && triedHosts == null
           && execution.retryConsistencyLevel == null
-          && response.getCustomPayload() == null) {
+          && response.getCustomPayload() == null
+          && execution.phaseTimings == null) {
         info = execution.current.defaultExecutionInfo;
       } else {
         List<Host> hosts;
@@ -221,7 +224,8 @@ class RequestHandler {
                 execution.position,
                 hosts,
                 execution.retryConsistencyLevel,
-                response.getCustomPayload());
+                response.getCustomPayload(),
+                execution.phaseTimings);
       }
       callback.onSet(connection, response, info, statement, System.nanoTime() - startTime);
     } catch (Exception e) {
@@ -324,6 +328,12 @@ class RequestHandler {
 
     private volatile Connection.ResponseHandler connectionHandler;
 
+    // The timings of the current attempt, if phase timings are enabled
+    private volatile RequestPhaseTimings phaseTimings;
+
+    // The re-preparation started by this execution after an UNPREPARED response, if any
+    private volatile PendingReprepares.Reprepare pendingReprepare;
+
     SpeculativeExecution(Message.Request request, int position) {
       this.id = RequestHandler.this.id + "-" + position;
       this.request = request;
@@ -373,6 +383,15 @@ class RequestHandler {
       if (allowSpeculativeExecutions && nextExecutionScheduled.compareAndSet(false, true))
         scheduleExecution(speculativeExecutionPlan.nextExecution(host));
 
+      final RequestPhaseTimings timings;
+      if (phaseTimingsEnabled) {
+        timings = new RequestPhaseTimings();
+        timings.borrowStart = System.nanoTime();
+      } else {
+        timings = null;
+      }
+      phaseTimings = timings;
+
       PoolingOptions poolingOptions = manager.configuration().getPoolingOptions();
       ListenableFuture<Connection> connectionFuture =
           pool.borrowConnection(
@@ -384,6 +403,7 @@ class RequestHandler {
           new FutureCallback<Connection>() {
             @Override
             public void onSuccess(Connection connection) {
+              if (timings != null) timings.borrowEnd = System.nanoTime();
               if (isDone.get()) {
                 connection.release();
                 return;
@@ -448,7 +468,7 @@ class RequestHandler {
       }
 
       connectionHandler =
-          connection.write(responseCallback, statement.getReadTimeoutMillis(), false);
+          connection.write(responseCallback, statement.getReadTimeoutMillis(), false, phaseTimings);
       // Only start the timeout when we're sure connectionHandler is set. This avoids an edge case
       // where onTimeout() was triggered
       // *before* the call to connection.write had returned.
@@ -568,6 +588,9 @@ class RequestHandler {
           // write().
           if (connectionHandler != null && connectionHandler.cancelHandler())
             connectionHandler.connection.release();
+          // If we were re-preparing, the other requests waiting for it won't be notified otherwise
+          PendingReprepares.Reprepare reprepare = pendingReprepare;
+          if (reprepare != null) reprepare.complete();
           Host queriedHost = current;
           if (queriedHost != null && statement != Statement.DEFAULT) {
             manager.cluster.manager.reportQuery(
@@ -754,13 +777,44 @@ class RequestHandler {
                           toPrepare.getQueryString()));
                 }
 
+                PendingReprepares.Reprepare reprepare =
+                    manager.cluster.manager.pendingReprepares.join(connection.address, id);
+                if (!reprepare.isOwner()) {
+                  // Another request is already preparing it on this host, wait for it
+                  logger.debug(
+                      "Query {} is not prepared on {}, waiting for the pending preparation",
+                      toPrepare.getQueryString(),
+                      connection.address);
+                  connection.release();
+                  reprepare
+                      .future()
+                      .addListener(
+                          new Runnable() {
+                            @Override
+                            public void run() {
+                              retry(true, null);
+                            }
+                          },
+                          GuavaCompatibility.INSTANCE.sameThreadExecutor());
+                  return;
+                }
+
                 logger.info(
                     "Query {} is not prepared on {}, preparing before retrying executing. "
                         + "Seeing this message a few times is fine, but seeing it a lot may be source of performance problems",
                     toPrepare.getQueryString(),
                     connection.address);
 
-                write(connection, prepareAndRetry(toPrepare.getQueryString()));
+                pendingReprepare = reprepare;
+                boolean written = false;
+                try {
+                  write(connection, prepareAndRetry(toPrepare.getQueryString(), reprepare));
+                  written = true;
+                } finally {
+                  // If the write failed or the execution was cancelled, the callback won't be
+                  // notified
+                  if (!written || queryStateRef.get().isCancelled()) reprepare.complete();
+                }
                 // we're done for now, the prepareAndRetry callback will handle the rest
                 return;
               case READ_FAILURE:
@@ -800,13 +854,12 @@ class RequestHandler {
         exceptionToReport = e;
         setFinalException(connection, e);
       } finally {
-        if (queriedHost != null && statement != Statement.DEFAULT) {
-          manager.cluster.manager.reportQuery(queriedHost, statement, exceptionToReport, latency);
-        }
+        if (queriedHost != null) reportQuery(queriedHost, exceptionToReport, latency);
       }
     }
 
-    private Connection.ResponseCallback prepareAndRetry(final String toPrepare) {
+    private Connection.ResponseCallback prepareAndRetry(
+        final String toPrepare, final PendingReprepares.Reprepare reprepare) {
       // do not bother inspecting retry policy at this step, no other decision
       // makes sense than retry on the same host if the query was prepared,
       // or on another host, if an error/timeout occurred.
@@ -830,6 +883,9 @@ class RequestHandler {
         @Override
         public void onSet(
             Connection connection, Message.Response response, long latency, int retryCount) {
+          // Let the other requests waiting for this statement retry (if the preparation failed,
+          // one of them will try again)
+          reprepare.complete();
           QueryState queryState = queryStateRef.get();
           if (!queryState.isInProgressAt(retryCount)
               || !queryStateRef.compareAndSet(queryState, queryState.complete())) {
@@ -872,11 +928,13 @@ class RequestHandler {
         @Override
         public void onException(
             Connection connection, Exception exception, long latency, int retryCount) {
+          reprepare.complete();
           SpeculativeExecution.this.onException(connection, exception, latency, retryCount);
         }
 
         @Override
         public boolean onTimeout(Connection connection, long latency, int retryCount) {
+          reprepare.complete();
           QueryState queryState = queryStateRef.get();
           if (!queryState.isInProgressAt(retryCount)
               || !queryStateRef.compareAndSet(queryState, queryState.complete())) {
@@ -931,8 +989,7 @@ class RequestHandler {
             new DriverInternalError(
                 "An unexpected error happened while handling exception " + exception, e));
       } finally {
-        if (queriedHost != null && statement != Statement.DEFAULT)
-          manager.cluster.manager.reportQuery(queriedHost, statement, exception, latency);
+        if (queriedHost != null) reportQuery(queriedHost, exception, latency);
       }
     }
 
@@ -967,8 +1024,7 @@ class RequestHandler {
             null,
             new DriverInternalError("An unexpected error happened while handling timeout", e));
       } finally {
-        if (queriedHost != null && statement != Statement.DEFAULT)
-          manager.cluster.manager.reportQuery(queriedHost, statement, timeoutException, latency);
+        if (queriedHost != null) reportQuery(queriedHost, timeoutException, latency);
       }
       return true;
     }
@@ -985,6 +1041,13 @@ class RequestHandler {
     private void setFinalResult(Connection connection, Message.Response response) {
       RequestHandler.this.setFinalResult(this, connection, response);
     }
+
+    private void reportQuery(Host queriedHost, Exception exception, long latency) {
+      HostConnectionPool pool = manager.pools.get(queriedHost);
+      if (pool != null) pool.onRequestCompleted(exception, latency);
+      if (statement != Statement.DEFAULT)
+        manager.cluster.manager.reportQuery(queriedHost, statement, exception, latency);
+    }
   }
 
   /**
@@ -0,0 +1,114 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * The breakdown of the time spent by a request in the different phases of its execution.
+ *
+ * <p>Timings are only recorded if {@link QueryOptions#setPhaseTimingsEnabled(boolean)} is enabled.
+ * They describe the attempt that produced the response: if the request was retried or speculatively
+ * executed, the previous or concurrent attempts are not included.
+ *
+ * <p>All durations are in nanoseconds. A phase that could not be measured (for example decoding, on
+ * a connection that was opened before the option was enabled) is reported as -1.
+ *
+ * @see ExecutionInfo#getPhaseTimings()
+ */
+public final class RequestPhaseTimings {
+
+  // Each timestamp is written by the thread that performs the corresponding phase; a new attempt
+  // overwrites them. They are only read once the future has been completed.
+  volatile long borrowStart;
+  volatile long borrowEnd;
+  volatile long queued;
+  volatile long written;
+  volatile long decodeStart;
+  volatile long decodeEnd;
+  volatile long dispatched;
+  volatile long completed;
+
+  RequestPhaseTimings() {}
+
+  /**
+   * The time spent waiting for a connection in the pool of the host that was queried. This is close
+   * to 0 unless all connections were busy and the request had to be enqueued (see {@link
+   * PoolingOptions#setMaxQueueSize(int)}).
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getPoolWaitNanos() {
+    return between(borrowStart, borrowEnd);
+  }
+
+  /**
+   * The time spent between the moment the request was handed to the connection, and the moment it
+   * was flushed to the socket by the event loop. With write coalescing enabled, this includes the
+   * time the flusher held the request back to send it along with others.
+   *
+   * @return the duration in nanoseconds.
+   * @see SocketOptions#setWriteCoalescingEnabled(boolean)
+   */
+  public long getFlushQueueNanos() {
+    return between(queued, written);
+  }
+
+  /**
+   * The time spent between the moment the request was flushed to the socket, and the moment its
+   * response started being decoded. This includes the network round trip and the processing time on
+   * the server.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getWireNanos() {
+    return between(written, decodeStart);
+  }
+
+  /**
+   * The time spent decoding the response message.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getDecodeNanos() {
+    return between(decodeStart, decodeEnd);
+  }
+
+  /**
+   * The time spent between the moment the response was dispatched to the request, and the moment
+   * the future returned to the client was completed. This includes retry decisions, the
+   * construction of the result set, and any hand-off to the driver's internal executor (for example
+   * to wait for schema agreement after a schema change).
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getCompletionNanos() {
+    return between(dispatched, completed);
+  }
+
+  private static long between(long start, long end) {
+    return (start == 0 || end == 0) ? -1 : end - start;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "RequestPhaseTimings(poolWait=%d, flushQueue=%d, wire=%d, decode=%d, completion=%d)",
+        getPoolWaitNanos(),
+        getFlushQueueNanos(),
+        getWireNanos(),
+        getDecodeNanos(),
+        getCompletionNanos());
+  }
+}
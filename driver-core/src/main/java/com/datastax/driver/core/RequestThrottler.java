@@ -0,0 +1,324 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number and the rate of the requests started by a session, see {@link
+ * ThrottlingOptions}.
+ *
+ * <p>The state is guarded by this object's monitor. Critical sections only update counters and
+ * queues: requests are always started, and futures failed, outside of them.
+ */
+class RequestThrottler {
+
+  private static final int QUEUED = 0;
+  private static final int STARTED = 1;
+  private static final int DONE = 2;
+
+  private final SessionManager session;
+  private final ThrottlingOptions options;
+  private final int[] weights;
+  private final ArrayDeque<Pending>[] queues;
+  // Smooth weighted round-robin between the priority classes (as in nginx's upstream balancing)
+  private final int[] currentWeights;
+
+  private int inFlight;
+  private double tokens;
+  private long lastRefillNanos;
+  private boolean refillScheduled;
+  private boolean closed;
+  private volatile int queued;
+
+  // Serializes drain loops, so that a request that completes synchronously does not recurse
+  private final AtomicInteger drainWip = new AtomicInteger();
+
+  private final Runnable release =
+      new Runnable() {
+        @Override
+        public void run() {
+          release();
+        }
+      };
+
+  private final Runnable refill =
+      new Runnable() {
+        @Override
+        public void run() {
+          synchronized (RequestThrottler.this) {
+            refillScheduled = false;
+          }
+          drain();
+        }
+      };
+
+  @SuppressWarnings("unchecked")
+  RequestThrottler(SessionManager session, ThrottlingOptions options) {
+    this.session = session;
+    this.options = options;
+    this.weights = options.getPriorityWeights();
+    this.queues = new ArrayDeque[weights.length];
+    for (int i = 0; i < queues.length; i++) queues[i] = new ArrayDeque<Pending>();
+    this.currentWeights = new int[weights.length];
+    this.tokens = options.getMaxRequestsPerSecond();
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  /**
+   * Starts the request now if the limits allow it, otherwise queues it or fails its future with a
+   * {@link RequestThrottlingException}.
+   */
+  void submit(DefaultResultSetFuture future, Statement statement) {
+    boolean acquired;
+    synchronized (this) {
+      // Fast path: nothing is waiting and there is capacity
+      acquired = !closed && queued == 0 && tryAcquire(System.nanoTime());
+    }
+    if (acquired) start(future, statement);
+    else enqueue(future, statement);
+  }
+
+  private void enqueue(DefaultResultSetFuture future, Statement statement) {
+    // Invoked outside of the lock since it is user code
+    int priority = Math.max(0, Math.min(weights.length - 1, options.getPriorityClass(statement)));
+    int maxQueueSize = options.getMaxQueueSize();
+    int maxWaitMillis = options.getMaxQueueWaitMillis();
+    boolean acquired = false, closed = false, rejected = false;
+    Pending pending = null;
+    synchronized (this) {
+      if (this.closed) {
+        closed = true;
+      } else if (queued == 0 && tryAcquire(System.nanoTime())) {
+        // Capacity was released since the fast path
+        acquired = true;
+      } else if (queued >= maxQueueSize || maxWaitMillis == 0) {
+        rejected = true;
+      } else {
+        pending = new Pending(future, statement, priority, maxWaitMillis);
+        queues[priority].add(pending);
+        queued += 1;
+        pending.timeout =
+            scheduler().schedule(pending.onTimeout, maxWaitMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (acquired) {
+      start(future, statement);
+    } else if (closed) {
+      // execute() fails the request
+      session.execute(future, statement);
+    } else if (rejected) {
+      Metrics metrics = metrics();
+      if (metrics != null) metrics.getThrottlingRejections().inc();
+      future.onException(
+          null,
+          maxWaitMillis == 0
+              ? new RequestThrottlingException(0, TimeUnit.MILLISECONDS)
+              : new RequestThrottlingException(maxQueueSize),
+          0,
+          0);
+    } else {
+      // Also notified if the request is cancelled while it waits
+      future.addListener(pending, GuavaCompatibility.INSTANCE.sameThreadExecutor());
+      // Capacity might have been released between our check and the enqueue
+      drain();
+    }
+  }
+
+  private void start(DefaultResultSetFuture future, Statement statement) {
+    future.addListener(release, GuavaCompatibility.INSTANCE.sameThreadExecutor());
+    session.execute(future, statement);
+  }
+
+  /** Must be called while holding the lock. */
+  private boolean tryAcquire(long now) {
+    int maxConcurrentRequests = options.getMaxConcurrentRequests();
+    if (maxConcurrentRequests > 0 && inFlight >= maxConcurrentRequests) return false;
+    int maxRequestsPerSecond = options.getMaxRequestsPerSecond();
+    if (maxRequestsPerSecond > 0) {
+      tokens =
+          Math.min(
+              maxRequestsPerSecond, tokens + (now - lastRefillNanos) * maxRequestsPerSecond / 1e9);
+      lastRefillNanos = now;
+      if (tokens < 1) return false;
+      tokens -= 1;
+    }
+    inFlight += 1;
+    return true;
+  }
+
+  private void release() {
+    synchronized (this) {
+      inFlight -= 1;
+    }
+    drain();
+  }
+
+  private void drain() {
+    if (drainWip.getAndIncrement() != 0) return;
+    int missed = 1;
+    do {
+      Pending pending;
+      while ((pending = poll()) != null) start(pending);
+      missed = drainWip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private synchronized Pending poll() {
+    if (queued == 0 || closed) return null;
+    if (!tryAcquire(System.nanoTime())) {
+      int maxRequestsPerSecond = options.getMaxRequestsPerSecond();
+      if (maxRequestsPerSecond > 0 && tokens < 1 && !refillScheduled) {
+        // No request completion is guaranteed to wake us up, schedule it
+        refillScheduled = true;
+        long delayNanos = (long) ((1 - tokens) * 1e9 / maxRequestsPerSecond) + 1;
+        scheduler().schedule(refill, delayNanos, TimeUnit.NANOSECONDS);
+      }
+      return null;
+    }
+    int next = -1;
+    int total = 0;
+    for (int i = 0; i < queues.length; i++) {
+      if (queues[i].isEmpty()) {
+        currentWeights[i] = 0;
+      } else {
+        currentWeights[i] += weights[i];
+        total += weights[i];
+        if (next < 0 || currentWeights[i] > currentWeights[next]) next = i;
+      }
+    }
+    currentWeights[next] -= total;
+    Pending pending = queues[next].poll();
+    queued -= 1;
+    pending.state = STARTED;
+    pending.timeout.cancel(false);
+    return pending;
+  }
+
+  private void start(Pending pending) {
+    Metrics metrics = metrics();
+    if (metrics != null)
+      metrics
+          .getThrottlingWaitTimer()
+          .update(System.nanoTime() - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+    // If it was cancelled, the listener will release the slot
+    if (!pending.future.isCancelled()) session.execute(pending.future, pending.statement);
+  }
+
+  /** Fails all the queued requests, the session is closing. */
+  void close() {
+    List<Pending> toFail = new ArrayList<Pending>();
+    synchronized (this) {
+      closed = true;
+      for (ArrayDeque<Pending> queue : queues) {
+        for (Pending pending : queue) {
+          pending.state = DONE;
+          pending.timeout.cancel(false);
+          toFail.add(pending);
+        }
+        queue.clear();
+      }
+      queued = 0;
+    }
+    for (Pending pending : toFail)
+      pending.future.onException(
+          null, new IllegalStateException("Could not send request, session is closed"), 0, 0);
+  }
+
+  /** The number of requests currently waiting for capacity. */
+  int getQueueSize() {
+    return queued;
+  }
+
+  private EventExecutor scheduler() {
+    return session.cluster.manager.connectionFactory.eventLoopGroup.next();
+  }
+
+  private Metrics metrics() {
+    return session.configuration().getMetricsOptions().isEnabled()
+        ? session.cluster.manager.metrics
+        : null;
+  }
+
+  /** A queued request, also the listener of its future. */
+  private class Pending implements Runnable {
+    final DefaultResultSetFuture future;
+    final Statement statement;
+    final int priority;
+    final long enqueuedNanos = System.nanoTime();
+    // Guarded by the throttler's lock
+    int state = QUEUED;
+    ScheduledFuture<?> timeout;
+
+    final Runnable onTimeout;
+
+    Pending(
+        DefaultResultSetFuture future, Statement statement, int priority, final int maxWaitMillis) {
+      this.future = future;
+      this.statement = statement;
+      this.priority = priority;
+      this.onTimeout =
+          new Runnable() {
+            @Override
+            public void run() {
+              if (remove()) {
+                Metrics metrics = metrics();
+                if (metrics != null) metrics.getThrottlingRejections().inc();
+                Pending.this.future.onException(
+                    null,
+                    new RequestThrottlingException(maxWaitMillis, TimeUnit.MILLISECONDS),
+                    0,
+                    0);
+              }
+            }
+          };
+    }
+
+    @Override
+    public void run() {
+      // The future completed: either the request was started and is done, or it was cancelled
+      // while waiting
+      boolean wasStarted;
+      synchronized (RequestThrottler.this) {
+        wasStarted = state == STARTED;
+        if (state == QUEUED) {
+          queues[priority].remove(this);
+          queued -= 1;
+          timeout.cancel(false);
+        }
+        state = DONE;
+      }
+      if (wasStarted) release();
+    }
+
+    private boolean remove() {
+      synchronized (RequestThrottler.this) {
+        if (state != QUEUED) return false;
+        queues[priority].remove(this);
+        queued -= 1;
+        state = DONE;
+        return true;
+      }
+    }
+  }
+}
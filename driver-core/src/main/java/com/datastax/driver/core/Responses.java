@@ -46,14 +46,11 @@ import io.netty.buffer.ByteBuf;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 
 class Responses {
@@ -523,22 +520,17 @@ class Responses {
               int rowCount = body.readInt();
               int columnCount = metadata.columnCount;
 
-              Queue<List<ByteBuffer>> data = new ArrayDeque<List<ByteBuffer>>(rowCount);
-              for (int i = 0; i < rowCount; i++) {
-                List<ByteBuffer> row = new ArrayList<ByteBuffer>(columnCount);
-                for (int j = 0; j < columnCount; j++) row.add(CBUtil.readValue(body));
-                data.add(row);
-              }
+              RowsPage data = RowsPage.decode(body, rowCount, columnCount);
 
               return new Rows(metadata, data, version);
             }
           };
 
       final Metadata metadata;
-      final Queue<List<ByteBuffer>> data;
+      final RowsPage data;
       private final ProtocolVersion version;
 
-      private Rows(Metadata metadata, Queue<List<ByteBuffer>> data, ProtocolVersion version) {
+      private Rows(Metadata metadata, RowsPage data, ProtocolVersion version) {
         super(Kind.ROWS);
         this.metadata = metadata;
         this.data = data;
@@ -549,9 +541,9 @@ class Responses {
       public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("ROWS ").append(metadata).append('\n');
-        for (List<ByteBuffer> row : data) {
-          for (int i = 0; i < row.size(); i++) {
-            ByteBuffer v = row.get(i);
+        for (int row = 0; row < data.size(); row++) {
+          for (int i = 0; i < metadata.columnCount; i++) {
+            ByteBuffer v = data.getValue(row, i);
             if (v == null) {
               sb.append(" | null");
             } else {
@@ -0,0 +1,96 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The rows of a ROWS response.
+ *
+ * <p>Instead of materializing every cell as a separate {@link ByteBuffer} when the response is
+ * decoded, a page copies the raw rows section of the frame body into a single array, and keeps the
+ * offset of each cell in an {@code int} array per column. Cells are only wrapped into a buffer when
+ * they are actually read, which avoids allocating a list and one buffer per cell for every row of a
+ * large page.
+ *
+ * <p>Instances of this class are immutable and can be shared between threads.
+ */
+class RowsPage {
+
+  static final RowsPage EMPTY = new RowsPage(new byte[0], new int[0][], 0);
+
+  private final ByteBuffer bytes;
+  // offsets[column][row] is the position, in bytes, of the [int] length that precedes the cell
+  private final int[][] offsets;
+  private final int rowCount;
+
+  private RowsPage(byte[] bytes, int[][] offsets, int rowCount) {
+    this.bytes = ByteBuffer.wrap(bytes);
+    this.offsets = offsets;
+    this.rowCount = rowCount;
+  }
+
+  /**
+   * Decodes {@code rowCount} rows of {@code columnCount} cells each from {@code body}, and consumes
+   * the corresponding bytes.
+   */
+  static RowsPage decode(ByteBuf body, int rowCount, int columnCount) {
+    int start = body.readerIndex();
+    int position = start;
+    int[][] offsets = new int[columnCount][rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      for (int column = 0; column < columnCount; column++) {
+        offsets[column][row] = position - start;
+        int length = body.getInt(position);
+        position += 4;
+        if (length > 0) position += length;
+      }
+    }
+    byte[] bytes = new byte[position - start];
+    body.readBytes(bytes);
+    return new RowsPage(bytes, offsets, rowCount);
+  }
+
+  /** Builds a single-row page from already serialized values. */
+  static RowsPage fromValues(List<ByteBuffer> values) {
+    ByteBuf body = Unpooled.buffer();
+    for (ByteBuffer value : values) CBUtil.writeValue(value, body);
+    return decode(body, 1, values.size());
+  }
+
+  int size() {
+    return rowCount;
+  }
+
+  /** The number of bytes retained by the cells of this page. */
+  int sizeInBytes() {
+    return bytes.capacity();
+  }
+
+  /**
+   * Returns the serialized value of a cell, or {@code null} if it is null. The returned buffer is a
+   * view of this page's bytes, starting at position 0.
+   */
+  ByteBuffer getValue(int row, int column) {
+    int offset = offsets[column][row];
+    int length = bytes.getInt(offset);
+    if (length < 0) return null;
+    return ByteBuffer.wrap(bytes.array(), offset + 4, length).slice();
+  }
+}
@@ -318,6 +318,38 @@ public interface Session extends Closeable {
    */
   ListenableFuture<PreparedStatement> prepareAsync(RegularStatement statement);
 
+  /**
+   * Scans all the rows of a table, by querying the token ranges of the ring in parallel.
+   *
+   * <p>Each range is queried on one of its replicas (preferably a local one, according to the load
+   * balancing policy), with a bounded number of concurrent queries per host. Failed ranges are
+   * retried, and rows are returned as soon as they arrive, in no particular order. See {@link
+   * TableScan} for more details.
+   *
+   * <p>This method prepares the scan query, and therefore blocks until the preparation completes;
+   * the queries themselves are executed asynchronously.
+   *
+   * @param table the table to scan.
+   * @param options the options of the scan.
+   * @return the scan, that can be iterated to get the rows of the table.
+   * @throws IllegalStateException if token metadata is not available (see {@link
+   *     QueryOptions#setMetadataEnabled(boolean)}).
+   */
+  TableScan scan(TableMetadata table, TableScanOptions options);
+
+  /**
+   * Creates a writer that groups statements into token-aware unlogged batches.
+   *
+   * <p>Statements are grouped by partition or by replica set, and each batch is executed on one of
+   * its replicas, with a bounded number of concurrent batches per host. See {@link BulkWriter} for
+   * more details.
+   *
+   * @param options the options of the writer.
+   * @return the writer. It must be {@link BulkWriter#close() closed} (or {@link BulkWriter#flush()
+   *     flushed}) to make sure that all statements get written.
+   */
+  BulkWriter newBulkWriter(BulkWriterOptions options);
+
   /**
    * Initiates a shutdown of this session instance.
    *
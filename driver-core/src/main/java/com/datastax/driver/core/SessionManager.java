@@ -58,6 +58,8 @@ class SessionManager extends AbstractSession {
   final Cluster cluster;
   final ConcurrentMap<Host, HostConnectionPool> pools;
   final HostConnectionPool.PoolState poolsState;
+  // null if throttling is disabled
+  final RequestThrottler throttler;
   private final AtomicReference<ListenableFuture<Session>> initFuture =
       new AtomicReference<ListenableFuture<Session>>();
   final AtomicReference<CloseFuture> closeFuture = new AtomicReference<CloseFuture>();
@@ -70,6 +72,9 @@ class SessionManager extends AbstractSession {
     this.cluster = cluster;
     this.pools = new ConcurrentHashMap<Host, HostConnectionPool>();
     this.poolsState = new HostConnectionPool.PoolState();
+    ThrottlingOptions throttlingOptions = cluster.getConfiguration().getThrottlingOptions();
+    this.throttler =
+        throttlingOptions.isEnabled() ? new RequestThrottler(this, throttlingOptions) : null;
   }
 
   @Override
@@ -141,7 +146,7 @@ class SessionManager extends AbstractSession {
       DefaultResultSetFuture future =
           new DefaultResultSetFuture(
               this, cluster.manager.protocolVersion(), makeRequestMessage(statement, null));
-      execute(future, statement);
+      executeThrottled(future, statement);
       return future;
     } else {
       // If the session is not initialized, we can't call makeRequestMessage() synchronously,
@@ -161,7 +166,7 @@ class SessionManager extends AbstractSession {
                           SessionManager.this,
                           cluster.manager.protocolVersion(),
                           makeRequestMessage(statement, null));
-                  execute(actualFuture, statement);
+                  executeThrottled(actualFuture, statement);
                   chainedFuture.setSource(actualFuture);
                 }
               },
@@ -187,6 +192,7 @@ class SessionManager extends AbstractSession {
 
     isClosing = true;
     cluster.manager.removeSession(this);
+    if (throttler != null) throttler.close();
 
     List<CloseFuture> futures = new ArrayList<CloseFuture>(pools.size());
     for (HostConnectionPool pool : pools.values()) futures.add(pool.closeAsync());
@@ -710,6 +716,11 @@ class SessionManager extends AbstractSession {
               executor());
   }
 
+  private void executeThrottled(DefaultResultSetFuture future, Statement statement) {
+    if (throttler == null) execute(future, statement);
+    else throttler.submit(future, statement);
+  }
+
   private ListenableFuture<PreparedStatement> prepare(
       final PreparedStatement statement, InetSocketAddress toExclude) {
     final String query = statement.getQueryString();
@@ -39,6 +39,25 @@ public class SocketOptions {
    */
   public static final int DEFAULT_READ_TIMEOUT_MILLIS = 12000;
 
+  /**
+   * The default maximum number of frames that are coalesced into a single flush, if none is set
+   * explicitly using {@link #setWriteCoalescingMaxFrames(int)}.
+   */
+  public static final int DEFAULT_WRITE_COALESCING_MAX_FRAMES = 64;
+
+  /**
+   * The default maximum number of pending bytes that are coalesced into a single flush, if none is
+   * set explicitly using {@link #setWriteCoalescingMaxBytes(int)}.
+   */
+  public static final int DEFAULT_WRITE_COALESCING_MAX_BYTES = 64 * 1024;
+
+  /**
+   * The default maximum time (in microseconds) that a write can be delayed in order to coalesce it
+   * with subsequent writes, if none is set explicitly using {@link
+   * #setWriteCoalescingMaxDelayMicros(int)}.
+   */
+  public static final int DEFAULT_WRITE_COALESCING_MAX_DELAY_MICROS = 100;
+
   private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
   private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
   private volatile Boolean keepAlive;
@@ -47,6 +66,10 @@ public class SocketOptions {
   private volatile Boolean tcpNoDelay = Boolean.TRUE;
   private volatile Integer receiveBufferSize;
   private volatile Integer sendBufferSize;
+  private volatile boolean writeCoalescingEnabled = false;
+  private volatile int writeCoalescingMaxFrames = DEFAULT_WRITE_COALESCING_MAX_FRAMES;
+  private volatile int writeCoalescingMaxBytes = DEFAULT_WRITE_COALESCING_MAX_BYTES;
+  private volatile int writeCoalescingMaxDelayMicros = DEFAULT_WRITE_COALESCING_MAX_DELAY_MICROS;
 
   /** Creates a new {@code SocketOptions} instance with default values. */
   public SocketOptions() {}
@@ -277,4 +300,136 @@ public class SocketOptions {
     this.sendBufferSize = sendBufferSize;
     return this;
   }
+
+  /**
+   * Returns whether adaptive write coalescing is enabled.
+   *
+   * @return whether adaptive write coalescing is enabled.
+   * @see #setWriteCoalescingEnabled(boolean)
+   */
+  public boolean isWriteCoalescingEnabled() {
+    return writeCoalescingEnabled;
+  }
+
+  /**
+   * Sets whether to enable adaptive write coalescing.
+   *
+   * <p>By default, the driver writes outgoing requests from a single task per I/O thread, and
+   * flushes every connection as soon as that task has drained its queue. Under very high request
+   * rates, this can result in one system call for only a few frames.
+   *
+   * <p>When this option is enabled, a connection is only flushed once one of the following budgets
+   * is exhausted: {@link #setWriteCoalescingMaxFrames(int) a number of frames}, {@link
+   * #setWriteCoalescingMaxBytes(int) a number of pending bytes}, or {@link
+   * #setWriteCoalescingMaxDelayMicros(int) a delay since the first unflushed write}. The delay is
+   * adjusted to the write rate observed on each connection: if the next write is not expected
+   * within the maximum delay (low load), the connection is flushed immediately, so that coalescing
+   * never adds latency for nothing.
+   *
+   * <p>The number of frames written per flush is reported by {@link Metrics#getFramesPerFlush()}.
+   *
+   * <p>This option is disabled by default. It has no effect if coalescing was globally disabled
+   * with the {@code com.datastax.driver.DISABLE_COALESCING} system property.
+   *
+   * @param writeCoalescingEnabled whether to enable or disable the option.
+   * @return this {@code SocketOptions}.
+   */
+  public SocketOptions setWriteCoalescingEnabled(boolean writeCoalescingEnabled) {
+    this.writeCoalescingEnabled = writeCoalescingEnabled;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of frames coalesced into a single flush.
+   *
+   * @return the maximum number of frames coalesced into a single flush.
+   * @see #setWriteCoalescingMaxFrames(int)
+   */
+  public int getWriteCoalescingMaxFrames() {
+    return writeCoalescingMaxFrames;
+  }
+
+  /**
+   * Sets the maximum number of frames coalesced into a single flush, when {@link
+   * #setWriteCoalescingEnabled(boolean) write coalescing} is enabled.
+   *
+   * <p>The default value is {@link #DEFAULT_WRITE_COALESCING_MAX_FRAMES}.
+   *
+   * @param writeCoalescingMaxFrames the new value. It must be strictly positive.
+   * @return this {@code SocketOptions}.
+   * @throws IllegalArgumentException if {@code writeCoalescingMaxFrames} is not strictly positive.
+   */
+  public SocketOptions setWriteCoalescingMaxFrames(int writeCoalescingMaxFrames) {
+    if (writeCoalescingMaxFrames <= 0)
+      throw new IllegalArgumentException(
+          "Max coalesced frames must be strictly positive, got " + writeCoalescingMaxFrames);
+    this.writeCoalescingMaxFrames = writeCoalescingMaxFrames;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of pending bytes coalesced into a single flush.
+   *
+   * @return the maximum number of pending bytes coalesced into a single flush.
+   * @see #setWriteCoalescingMaxBytes(int)
+   */
+  public int getWriteCoalescingMaxBytes() {
+    return writeCoalescingMaxBytes;
+  }
+
+  /**
+   * Sets the maximum number of pending bytes coalesced into a single flush, when {@link
+   * #setWriteCoalescingEnabled(boolean) write coalescing} is enabled.
+   *
+   * <p>Note that this limit is based on the bytes pending in the channel's outbound buffer; if SSL
+   * is enabled, encrypted data is only produced at flush time, so only the other limits apply.
+   *
+   * <p>The default value is {@link #DEFAULT_WRITE_COALESCING_MAX_BYTES}.
+   *
+   * @param writeCoalescingMaxBytes the new value. It must be strictly positive.
+   * @return this {@code SocketOptions}.
+   * @throws IllegalArgumentException if {@code writeCoalescingMaxBytes} is not strictly positive.
+   */
+  public SocketOptions setWriteCoalescingMaxBytes(int writeCoalescingMaxBytes) {
+    if (writeCoalescingMaxBytes <= 0)
+      throw new IllegalArgumentException(
+          "Max coalesced bytes must be strictly positive, got " + writeCoalescingMaxBytes);
+    this.writeCoalescingMaxBytes = writeCoalescingMaxBytes;
+    return this;
+  }
+
+  /**
+   * Returns the maximum time (in microseconds) that a write can be delayed in order to coalesce it
+   * with subsequent writes.
+   *
+   * @return the maximum coalescing delay in microseconds.
+   * @see #setWriteCoalescingMaxDelayMicros(int)
+   */
+  public int getWriteCoalescingMaxDelayMicros() {
+    return writeCoalescingMaxDelayMicros;
+  }
+
+  /**
+   * Sets the maximum time (in microseconds) that a write can be delayed in order to coalesce it
+   * with subsequent writes, when {@link #setWriteCoalescingEnabled(boolean) write coalescing} is
+   * enabled.
+   *
+   * <p>This is an upper bound: the actual delay adapts to the observed write rate. Also note that
+   * the delay is only checked each time the internal flush task runs, so its precision is limited
+   * by the period of that task (10 microseconds by default).
+   *
+   * <p>The default value is {@link #DEFAULT_WRITE_COALESCING_MAX_DELAY_MICROS}.
+   *
+   * @param writeCoalescingMaxDelayMicros the new value. It must be positive or zero (zero means
+   *     that only the frames and bytes limits apply within a single run of the flush task).
+   * @return this {@code SocketOptions}.
+   * @throws IllegalArgumentException if {@code writeCoalescingMaxDelayMicros} is negative.
+   */
+  public SocketOptions setWriteCoalescingMaxDelayMicros(int writeCoalescingMaxDelayMicros) {
+    if (writeCoalescingMaxDelayMicros < 0)
+      throw new IllegalArgumentException(
+          "Max coalescing delay must be positive or zero, got " + writeCoalescingMaxDelayMicros);
+    this.writeCoalescingMaxDelayMicros = writeCoalescingMaxDelayMicros;
+    return this;
+  }
 }
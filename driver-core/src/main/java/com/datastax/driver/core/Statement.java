@@ -69,6 +69,7 @@ public abstract class Statement {
   private volatile int fetchSize;
   private volatile long defaultTimestamp = Long.MIN_VALUE;
   private volatile int readTimeoutMillis = Integer.MIN_VALUE;
+  private volatile int prefetchPages = Integer.MIN_VALUE;
   private volatile RetryPolicy retryPolicy;
   private volatile ByteBuffer pagingState;
   protected volatile Boolean idempotent;
@@ -283,6 +284,42 @@ public abstract class Statement {
     return fetchSize;
   }
 
+  /**
+   * Sets the number of pages to fetch ahead in the background when iterating over the results of
+   * this statement.
+   *
+   * <p>By default, the next page of a paged result set is only requested when the current one is
+   * exhausted (or when {@link ResultSet#fetchMoreResults()} is called), so iterating over a large
+   * result set pays for one round trip per page. With a positive value, the driver requests the
+   * following pages as soon as the previous ones arrive, until that many pages are buffered or
+   * {@link QueryOptions#getMaxPrefetchBytes() the memory budget} is reached. Since each page
+   * request depends on the paging state returned by the previous one, pages are still fetched one
+   * at a time.
+   *
+   * <p>Note that unlike other configuration, when this statement is prepared {@link
+   * BoundStatement}s created off of {@link PreparedStatement} do not inherit this configuration.
+   *
+   * @param prefetchPages the number of pages to fetch ahead. Negative values are not allowed. If it
+   *     is 0, no pages will be fetched in the background for this statement.
+   * @return this {@code Statement} object.
+   * @see QueryOptions#setPrefetchPages(int)
+   */
+  public Statement setPrefetchPages(int prefetchPages) {
+    Preconditions.checkArgument(prefetchPages >= 0, "prefetch pages must be >= 0");
+    this.prefetchPages = prefetchPages;
+    return this;
+  }
+
+  /**
+   * The number of pages to fetch ahead in the background for this statement.
+   *
+   * @return the number of pages. Note that a negative value means that the default {@link
+   *     QueryOptions#getPrefetchPages()} will be used.
+   */
+  public int getPrefetchPages() {
+    return prefetchPages;
+  }
+
   /**
    * Sets the default timestamp for this query (in microseconds since the epoch).
    *
@@ -146,6 +146,17 @@ public abstract class StatementWrapper extends Statement {
     return wrapped.getFetchSize();
   }
 
+  @Override
+  public Statement setPrefetchPages(int prefetchPages) {
+    wrapped.setPrefetchPages(prefetchPages);
+    return this;
+  }
+
+  @Override
+  public int getPrefetchPages() {
+    return wrapped.getPrefetchPages();
+  }
+
   @Override
   public Statement setDefaultTimestamp(long defaultTimestamp) {
     wrapped.setDefaultTimestamp(defaultTimestamp);
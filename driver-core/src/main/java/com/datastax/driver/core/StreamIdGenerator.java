@@ -109,6 +109,13 @@ class StreamIdGenerator {
     marked.decrementAndGet();
   }
 
+  /**
+   * The total number of ids managed by this generator: ids are in the range {@code [0, maxIds)}.
+   */
+  public int maxIds() {
+    return maxIds;
+  }
+
   public int maxAvailableStreams() {
     return maxIds - marked.get();
   }
@@ -0,0 +1,316 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A scan of all the rows of a table, that queries the token ranges of the ring in parallel.
+ *
+ * <p>The ranges of the ring are (optionally) split into subranges, and each subrange is queried on
+ * one of its replicas, preferably one that is at distance {@link HostDistance#LOCAL} according to
+ * the load balancing policy. The number of concurrent queries on each host is bounded by {@link
+ * TableScanOptions#getMaxConcurrentRangesPerHost()}. If the query of a subrange fails, it is
+ * retried on another replica, starting from the last page that was successfully fetched.
+ *
+ * <p>Rows are returned as soon as the pages that contain them arrive, so they are not in token
+ * order. This object can only be iterated once; the iterator blocks until rows are available, and
+ * throws if a subrange fails more than {@link TableScanOptions#getMaxRetriesPerRange()} times. If
+ * you stop iterating before the end, call {@link #cancel()} to stop querying the remaining
+ * subranges.
+ *
+ * @see Session#scan(TableMetadata, TableScanOptions)
+ */
+public class TableScan implements Iterable<Row> {
+
+  private static final Logger logger = LoggerFactory.getLogger(TableScan.class);
+
+  private static final Object END = new Object();
+
+  private final Session session;
+  private final PreparedStatement statement;
+  private final int maxRetriesPerRange;
+  private final int maxBufferedPages;
+  private final int fetchSize;
+  private final ConsistencyLevel consistencyLevel;
+
+  private final ReplicaScheduler<Subrange> scheduler;
+
+  // Pages waiting to be consumed (lists of rows), followed by END or the error that stopped the
+  // scan
+  private final BlockingQueue<Object> pages = new LinkedBlockingQueue<Object>();
+  private final AtomicInteger bufferedPages = new AtomicInteger();
+  // Subranges that have more pages, but were not queried because too many pages are buffered
+  private final Queue<Subrange> paused = new ConcurrentLinkedQueue<Subrange>();
+
+  private final int totalSubranges;
+  private final AtomicInteger completedSubranges = new AtomicInteger();
+  private final AtomicBoolean iterated = new AtomicBoolean();
+  private volatile boolean done;
+
+  private TableScan(
+      Session session, PreparedStatement statement, TableScanOptions options, int totalSubranges) {
+    this.session = session;
+    this.statement = statement;
+    this.scheduler =
+        new ReplicaScheduler<Subrange>(
+            session.getCluster().getConfiguration().getPolicies().getLoadBalancingPolicy(),
+            options.getMaxConcurrentRangesPerHost()) {
+          @Override
+          void execute(Subrange subrange) {
+            query(subrange);
+          }
+        };
+    this.maxRetriesPerRange = options.getMaxRetriesPerRange();
+    this.maxBufferedPages = options.getMaxBufferedPages();
+    this.fetchSize = options.getFetchSize();
+    this.consistencyLevel = options.getConsistencyLevel();
+    this.totalSubranges = totalSubranges;
+  }
+
+  static TableScan start(Session session, TableMetadata table, TableScanOptions options) {
+    Metadata metadata = session.getCluster().getMetadata();
+    Set<TokenRange> ranges = metadata.getTokenRanges();
+    if (ranges.isEmpty())
+      throw new IllegalStateException(
+          "Token metadata is not available, a table scan requires metadata to be enabled");
+
+    String keyspace = Metadata.quote(table.getKeyspace().getName());
+
+    List<Subrange> subranges = new ArrayList<Subrange>();
+    for (TokenRange range : ranges) {
+      // Look up replicas with the original range: the end of an unwrapped subrange can be the
+      // minimum token, which belongs to another range.
+      Set<Host> replicas = metadata.getReplicas(keyspace, range);
+      List<TokenRange> splits =
+          options.getSplitsPerRange() > 1 && !range.isEmpty()
+              ? range.splitEvenly(options.getSplitsPerRange())
+              : Collections.singletonList(range);
+      for (TokenRange split : splits) {
+        for (TokenRange unwrapped : split.unwrap()) {
+          if (!unwrapped.isEmpty())
+            subranges.add(new Subrange(unwrapped, replicas));
+        }
+      }
+    }
+
+    PreparedStatement statement = session.prepare(buildQuery(table));
+    TableScan scan = new TableScan(session, statement, options, subranges.size());
+
+    if (subranges.isEmpty()) scan.pages.add(END);
+    scan.scheduler.submit(subranges);
+    return scan;
+  }
+
+  private static String buildQuery(TableMetadata table) {
+    StringBuilder partitionKey = new StringBuilder();
+    for (ColumnMetadata column : table.getPartitionKey()) {
+      if (partitionKey.length() > 0) partitionKey.append(',');
+      partitionKey.append(Metadata.quoteIfNecessary(column.getName()));
+    }
+    return String.format(
+        "SELECT * FROM %s.%s WHERE token(%s) > ? AND token(%s) <= ?",
+        Metadata.quoteIfNecessary(table.getKeyspace().getName()),
+        Metadata.quoteIfNecessary(table.getName()),
+        partitionKey,
+        partitionKey);
+  }
+
+  /**
+   * Returns an iterator over the rows of the table.
+   *
+   * <p>The iterator's methods block until rows are available. If the scan fails, they throw the
+   * error that caused the failure.
+   *
+   * @return the iterator.
+   * @throws IllegalStateException if this method was already called.
+   */
+  @Override
+  public Iterator<Row> iterator() {
+    if (!iterated.compareAndSet(false, true))
+      throw new IllegalStateException("A TableScan can only be iterated once");
+    return new RowIterator();
+  }
+
+  /**
+   * Stops the scan: no new query will be started, and the iterator will report that there are no
+   * more rows once it has consumed the rows that were already buffered.
+   */
+  public void cancel() {
+    if (done) return;
+    done = true;
+    scheduler.stop();
+    paused.clear();
+    pages.add(END);
+  }
+
+  /**
+   * Returns the number of subranges that this scan queries.
+   *
+   * @return the number of subranges.
+   */
+  public int getTotalRanges() {
+    return totalSubranges;
+  }
+
+  /**
+   * Returns the number of subranges that were fully fetched so far.
+   *
+   * <p>The rows of these subranges are not necessarily consumed yet.
+   *
+   * @return the number of subranges.
+   */
+  public int getCompletedRanges() {
+    return completedSubranges.get();
+  }
+
+  private void query(final Subrange subrange) {
+    if (done) return;
+    BoundStatement bs =
+        statement
+            .bind()
+            .setToken(0, subrange.range.getStart())
+            .setToken(1, subrange.range.getEnd());
+    bs.setFetchSize(fetchSize);
+    bs.setPrefetchPages(0);
+    bs.setIdempotent(true);
+    if (consistencyLevel != null) bs.setConsistencyLevel(consistencyLevel);
+    if (subrange.host != null) bs.setHost(subrange.host);
+    if (subrange.pagingState != null) bs.setPagingStateUnsafe(subrange.pagingState);
+
+    GuavaCompatibility.INSTANCE.addCallback(
+        session.executeAsync(bs),
+        new FutureCallback<ResultSet>() {
+          @Override
+          public void onSuccess(ResultSet rs) {
+            onPage(subrange, rs);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            onError(subrange, t);
+          }
+        });
+  }
+
+  private void onPage(Subrange subrange, ResultSet rs) {
+    if (done) {
+      scheduler.release(subrange);
+      return;
+    }
+
+    int available = rs.getAvailableWithoutFetching();
+    if (available > 0) {
+      List<Row> rows = new ArrayList<Row>(available);
+      for (int i = 0; i < available; i++) rows.add(rs.one());
+      bufferedPages.incrementAndGet();
+      pages.add(rows);
+    }
+
+    subrange.pagingState = rs.getExecutionInfo().getPagingStateUnsafe();
+    if (subrange.pagingState == null) {
+      scheduler.release(subrange);
+      if (completedSubranges.incrementAndGet() == totalSubranges) {
+        done = true;
+        pages.add(END);
+      }
+    } else if (bufferedPages.get() >= maxBufferedPages) {
+      paused.add(subrange);
+      // The consumer might have caught up in the meantime
+      if (bufferedPages.get() < maxBufferedPages) resumeOne();
+    } else {
+      query(subrange);
+    }
+  }
+
+  private void onError(Subrange subrange, Throwable t) {
+    if (done) {
+      scheduler.release(subrange);
+      return;
+    }
+
+    if (subrange.retries >= maxRetriesPerRange) {
+      logger.debug("Error while querying {}, giving up", subrange.range, t);
+      done = true;
+      scheduler.stop();
+      pages.add(t);
+      scheduler.release(subrange);
+      return;
+    }
+
+    logger.debug("Error while querying {} on {}, retrying", subrange.range, subrange.host, t);
+    subrange.retries += 1;
+    scheduler.retry(subrange);
+  }
+
+  private void resumeOne() {
+    Subrange subrange = paused.poll();
+    if (subrange != null) query(subrange);
+  }
+
+  private class RowIterator extends AbstractIterator<Row> {
+
+    private Iterator<Row> current = Collections.<Row>emptyList().iterator();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Row computeNext() {
+      while (!current.hasNext()) {
+        Object page = Uninterruptibles.takeUninterruptibly(pages);
+        if (page == END) {
+          pages.add(END);
+          return endOfData();
+        }
+        if (page instanceof Throwable) {
+          pages.add(page);
+          throw DriverThrowables.propagateCause(new ExecutionException((Throwable) page));
+        }
+        current = ((List<Row>) page).iterator();
+        bufferedPages.decrementAndGet();
+        resumeOne();
+      }
+      return current.next();
+    }
+  }
+
+  private static class Subrange extends ReplicaScheduler.Task {
+    final TokenRange range;
+
+    // Only modified by the query that is in flight for this subrange
+    volatile byte[] pagingState;
+
+    Subrange(TokenRange range, Set<Host> replicas) {
+      super(replicas);
+      this.range = range;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options to configure a parallel table scan.
+ *
+ * @see Session#scan(TableMetadata, TableScanOptions)
+ */
+public class TableScanOptions {
+
+  /** The default number of subranges that each ring range is split into: 1. */
+  public static final int DEFAULT_SPLITS_PER_RANGE = 1;
+
+  /** The default maximum number of subranges that are queried concurrently on each host: 2. */
+  public static final int DEFAULT_MAX_CONCURRENT_RANGES_PER_HOST = 2;
+
+  /** The default number of times that the query of a given subrange is retried: 3. */
+  public static final int DEFAULT_MAX_RETRIES_PER_RANGE = 3;
+
+  /** The default maximum number of pages buffered for the consumer of the scan: 16. */
+  public static final int DEFAULT_MAX_BUFFERED_PAGES = 16;
+
+  private volatile int splitsPerRange = DEFAULT_SPLITS_PER_RANGE;
+  private volatile int maxConcurrentRangesPerHost = DEFAULT_MAX_CONCURRENT_RANGES_PER_HOST;
+  private volatile int maxRetriesPerRange = DEFAULT_MAX_RETRIES_PER_RANGE;
+  private volatile int maxBufferedPages = DEFAULT_MAX_BUFFERED_PAGES;
+  private volatile int fetchSize;
+  private volatile ConsistencyLevel consistencyLevel;
+
+  /**
+   * Creates a new {@link TableScanOptions} instance with the default values.
+   *
+   * <p>The default fetch size and consistency level are those of {@link QueryOptions}.
+   */
+  public TableScanOptions() {}
+
+  /**
+   * Sets the number of subranges that each range of the ring is split into.
+   *
+   * <p>The scan always follows the ring's ranges, so that each query targets a single replica set.
+   * With many nodes or virtual nodes, this is usually enough parallelism. With fewer ranges (for
+   * example a small cluster without virtual nodes), splitting them allows more concurrent queries
+   * per host.
+   *
+   * @param splitsPerRange the number of splits. It must be strictly positive.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setSplitsPerRange(int splitsPerRange) {
+    Preconditions.checkArgument(splitsPerRange > 0, "splitsPerRange must be > 0");
+    this.splitsPerRange = splitsPerRange;
+    return this;
+  }
+
+  /**
+   * Returns the number of subranges that each range of the ring is split into.
+   *
+   * @return the number of splits.
+   */
+  public int getSplitsPerRange() {
+    return splitsPerRange;
+  }
+
+  /**
+   * Sets the maximum number of subranges that can be queried concurrently on a given host.
+   *
+   * @param maxConcurrentRangesPerHost the maximum. It must be strictly positive.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setMaxConcurrentRangesPerHost(int maxConcurrentRangesPerHost) {
+    Preconditions.checkArgument(
+        maxConcurrentRangesPerHost > 0, "maxConcurrentRangesPerHost must be > 0");
+    this.maxConcurrentRangesPerHost = maxConcurrentRangesPerHost;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of subranges that can be queried concurrently on a given host.
+   *
+   * @return the maximum.
+   */
+  public int getMaxConcurrentRangesPerHost() {
+    return maxConcurrentRangesPerHost;
+  }
+
+  /**
+   * Sets how many times a failed page query is retried for a given subrange, before the whole scan
+   * fails.
+   *
+   * <p>Retries are attempted on another replica of the subrange if there is one, and resume from
+   * the last page that was successfully fetched, so that no row is returned twice.
+   *
+   * @param maxRetriesPerRange the number of retries. It must be positive or 0.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setMaxRetriesPerRange(int maxRetriesPerRange) {
+    Preconditions.checkArgument(maxRetriesPerRange >= 0, "maxRetriesPerRange must be >= 0");
+    this.maxRetriesPerRange = maxRetriesPerRange;
+    return this;
+  }
+
+  /**
+   * Returns how many times a failed page query is retried for a given subrange.
+   *
+   * @return the number of retries.
+   */
+  public int getMaxRetriesPerRange() {
+    return maxRetriesPerRange;
+  }
+
+  /**
+   * Sets the maximum number of pages that can be fetched before the consumer of the scan reads
+   * them.
+   *
+   * <p>When this limit is reached, subranges stop requesting new pages until the consumer catches
+   * up. Note that subranges that are already in flight may still complete, so the number of
+   * buffered pages can temporarily exceed this value by the number of concurrent queries.
+   *
+   * @param maxBufferedPages the maximum. It must be strictly positive.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setMaxBufferedPages(int maxBufferedPages) {
+    Preconditions.checkArgument(maxBufferedPages > 0, "maxBufferedPages must be > 0");
+    this.maxBufferedPages = maxBufferedPages;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of pages that can be fetched before the consumer of the scan reads
+   * them.
+   *
+   * @return the maximum.
+   */
+  public int getMaxBufferedPages() {
+    return maxBufferedPages;
+  }
+
+  /**
+   * Sets the fetch size of the queries issued by the scan.
+   *
+   * @param fetchSize the fetch size. If it is less or equal to 0, {@link
+   *     QueryOptions#getFetchSize() the default fetch size} will be used.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Returns the fetch size of the queries issued by the scan.
+   *
+   * @return the fetch size. If it is less or equal to 0, the default fetch size will be used.
+   */
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Sets the consistency level of the queries issued by the scan.
+   *
+   * @param consistencyLevel the consistency level. If it is {@code null}, {@link
+   *     QueryOptions#getConsistencyLevel() the default consistency level} will be used.
+   * @return this {@code TableScanOptions} instance.
+   */
+  public TableScanOptions setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+    this.consistencyLevel = consistencyLevel;
+    return this;
+  }
+
+  /**
+   * Returns the consistency level of the queries issued by the scan.
+   *
+   * @return the consistency level, or {@code null} if the default will be used.
+   */
+  public ConsistencyLevel getConsistencyLevel() {
+    return consistencyLevel;
+  }
+}
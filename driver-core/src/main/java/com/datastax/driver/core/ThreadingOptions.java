@@ -152,6 +152,26 @@ public class ThreadingOptions {
         1, createThreadFactory(clusterName, "scheduled-task-worker"));
   }
 
+  /**
+   * Builds the executor that completes the {@code CompletionStage}s returned by the Java 8 API of
+   * the driver-extras module (see {@code com.datastax.driver.extras.async.CompletionStages}), and
+   * therefore runs their non-async continuations.
+   *
+   * <p>The default implementation returns {@code null}, which means that stages are completed
+   * directly on the thread that completes the request, usually a Netty I/O thread. This avoids a
+   * thread hop, but continuations must then be short and never block; return an executor if that is
+   * not the case. Unlike the other executors of this class, this one is never used internally by
+   * the driver.
+   *
+   * @param clusterName the name of the cluster, as specified by {@link
+   *     com.datastax.driver.core.Cluster.Builder#withClusterName(String)}.
+   * @return the executor, or {@code null} to complete stages on the thread that completes the
+   *     request.
+   */
+  public ExecutorService createContinuationExecutor(String clusterName) {
+    return null;
+  }
+
   /**
    * Builds the executor for an internal maintenance task used to clean up closed connections.
    *
@@ -0,0 +1,226 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+
+/**
+ * Options to limit the number and the rate of requests that a {@link Session} executes.
+ *
+ * <p>Throttling applies to the requests started with {@link Session#execute(Statement)} and its
+ * variants, before they reach the connection pools: a request that exceeds the limits waits in a
+ * bounded queue, and fails with a {@link RequestThrottlingException} if the queue is full or if it
+ * waited too long. This protects the application from accumulating an unbounded number of pending
+ * requests during a burst. Internal requests (such as the fetching of the next pages of a result
+ * set, or the preparation of statements) are not throttled.
+ *
+ * <p>Throttling is disabled by default; it is enabled if {@link #setMaxConcurrentRequests(int)} or
+ * {@link #setMaxRequestsPerSecond(int)} is set when the session is created. The limits can then be
+ * changed at runtime, and are enforced independently by each session.
+ *
+ * <p>Requests can be assigned to priority classes by overriding {@link
+ * #getPriorityClass(Statement)}; when capacity frees up, queued requests are started from each
+ * class in proportion to its {@link #setPriorityWeights(int...) weight}, so that a busy class
+ * cannot starve the others.
+ */
+public class ThrottlingOptions {
+
+  /** The default maximum number of concurrent requests: 0 (unlimited). */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 0;
+
+  /** The default maximum rate of requests: 0 (unlimited). */
+  public static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 0;
+
+  /** The default maximum number of requests waiting for capacity: 10000. */
+  public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+  /** The default maximum time a request waits for capacity: 5 seconds. */
+  public static final int DEFAULT_MAX_QUEUE_WAIT_MILLIS = 5000;
+
+  private volatile int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+  private volatile int maxRequestsPerSecond = DEFAULT_MAX_REQUESTS_PER_SECOND;
+  private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+  private volatile int maxQueueWaitMillis = DEFAULT_MAX_QUEUE_WAIT_MILLIS;
+  private volatile int[] priorityWeights = new int[] {1};
+
+  /**
+   * Sets the maximum number of requests that a session executes concurrently.
+   *
+   * <p>A request holds its slot until its future completes, retries and speculative executions
+   * included.
+   *
+   * @param maxConcurrentRequests the new maximum. It must be positive or 0 (which means no limit).
+   * @return this {@code ThrottlingOptions} instance.
+   * @throws IllegalArgumentException if {@code maxConcurrentRequests < 0}.
+   */
+  public ThrottlingOptions setMaxConcurrentRequests(int maxConcurrentRequests) {
+    if (maxConcurrentRequests < 0)
+      throw new IllegalArgumentException(
+          "Invalid maxConcurrentRequests, should be >= 0, got " + maxConcurrentRequests);
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    return this;
+  }
+
+  /**
+   * The maximum number of requests that a session executes concurrently.
+   *
+   * @return the maximum, or 0 if there is no limit.
+   * @see #setMaxConcurrentRequests(int)
+   */
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  /**
+   * Sets the maximum number of requests that a session starts per second.
+   *
+   * <p>The rate is enforced with a token bucket that holds up to one second worth of requests:
+   * after an idle period, a session may start that many requests at once.
+   *
+   * @param maxRequestsPerSecond the new maximum. It must be positive or 0 (which means no limit).
+   * @return this {@code ThrottlingOptions} instance.
+   * @throws IllegalArgumentException if {@code maxRequestsPerSecond < 0}.
+   */
+  public ThrottlingOptions setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+    if (maxRequestsPerSecond < 0)
+      throw new IllegalArgumentException(
+          "Invalid maxRequestsPerSecond, should be >= 0, got " + maxRequestsPerSecond);
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    return this;
+  }
+
+  /**
+   * The maximum number of requests that a session starts per second.
+   *
+   * @return the maximum, or 0 if there is no limit.
+   * @see #setMaxRequestsPerSecond(int)
+   */
+  public int getMaxRequestsPerSecond() {
+    return maxRequestsPerSecond;
+  }
+
+  /**
+   * Sets the maximum number of requests that can wait for capacity in a session.
+   *
+   * <p>If this option is set to zero, requests that exceed the limits fail immediately.
+   *
+   * @param maxQueueSize the new maximum. It must be positive or 0.
+   * @return this {@code ThrottlingOptions} instance.
+   * @throws IllegalArgumentException if {@code maxQueueSize < 0}.
+   */
+  public ThrottlingOptions setMaxQueueSize(int maxQueueSize) {
+    if (maxQueueSize < 0)
+      throw new IllegalArgumentException(
+          "Invalid maxQueueSize, should be >= 0, got " + maxQueueSize);
+    this.maxQueueSize = maxQueueSize;
+    return this;
+  }
+
+  /**
+   * The maximum number of requests that can wait for capacity in a session.
+   *
+   * @return the maximum.
+   * @see #setMaxQueueSize(int)
+   */
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  /**
+   * Sets the maximum time that a request waits for capacity, before failing with a {@link
+   * RequestThrottlingException}.
+   *
+   * <p>If this option is set to zero, requests that exceed the limits fail immediately.
+   *
+   * @param maxQueueWaitMillis the new maximum, in milliseconds. It must be positive or 0.
+   * @return this {@code ThrottlingOptions} instance.
+   * @throws IllegalArgumentException if {@code maxQueueWaitMillis < 0}.
+   */
+  public ThrottlingOptions setMaxQueueWaitMillis(int maxQueueWaitMillis) {
+    if (maxQueueWaitMillis < 0)
+      throw new IllegalArgumentException(
+          "Invalid maxQueueWaitMillis, should be >= 0, got " + maxQueueWaitMillis);
+    this.maxQueueWaitMillis = maxQueueWaitMillis;
+    return this;
+  }
+
+  /**
+   * The maximum time that a request waits for capacity.
+   *
+   * @return the maximum, in milliseconds.
+   * @see #setMaxQueueWaitMillis(int)
+   */
+  public int getMaxQueueWaitMillis() {
+    return maxQueueWaitMillis;
+  }
+
+  /**
+   * Sets the weights of the priority classes returned by {@link #getPriorityClass(Statement)}.
+   *
+   * <p>The weight at index {@code i} is the relative share of capacity that queued requests of
+   * class {@code i} get when several classes are waiting. For example, with weights {@code (8, 1)},
+   * eight requests of class 0 are started for every request of class 1, but class 1 still
+   * progresses while class 0 is saturated.
+   *
+   * <p>This option is read when the session is created.
+   *
+   * @param priorityWeights the weights, one per priority class. Each of them must be strictly
+   *     positive.
+   * @return this {@code ThrottlingOptions} instance.
+   * @throws IllegalArgumentException if no weight is provided, or if a weight is not strictly
+   *     positive.
+   */
+  public ThrottlingOptions setPriorityWeights(int... priorityWeights) {
+    if (priorityWeights == null || priorityWeights.length == 0)
+      throw new IllegalArgumentException("Invalid priorityWeights, should not be empty");
+    for (int weight : priorityWeights)
+      if (weight <= 0)
+        throw new IllegalArgumentException("Invalid priority weight, should be > 0, got " + weight);
+    this.priorityWeights = priorityWeights.clone();
+    return this;
+  }
+
+  /**
+   * The weights of the priority classes.
+   *
+   * @return a copy of the weights, indexed by priority class.
+   * @see #setPriorityWeights(int...)
+   */
+  public int[] getPriorityWeights() {
+    return priorityWeights.clone();
+  }
+
+  /**
+   * Returns the priority class of a statement, as an index in {@link #getPriorityWeights()}.
+   *
+   * <p>The default implementation puts all statements in class 0. Override it to separate, for
+   * example, interactive queries from background jobs; values outside of the range of the weights
+   * are brought back to the closest valid class.
+   *
+   * <p>This method is invoked on the thread that executes the statement, for every statement that
+   * is throttled. It should be fast and must not block.
+   *
+   * @param statement the statement.
+   * @return the priority class.
+   */
+  public int getPriorityClass(Statement statement) {
+    return 0;
+  }
+
+  boolean isEnabled() {
+    return maxConcurrentRequests > 0 || maxRequestsPerSecond > 0;
+  }
+}
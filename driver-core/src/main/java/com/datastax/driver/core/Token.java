@@ -273,8 +273,12 @@ public abstract class Token implements Comparable<Token> {
 
       @Override
       M3PToken hash(ByteBuffer partitionKey) {
+        return new M3PToken(hashToLong(partitionKey));
+      }
+
+      long hashToLong(ByteBuffer partitionKey) {
         long v = murmur(partitionKey);
-        return new M3PToken(v == Long.MIN_VALUE ? Long.MAX_VALUE : v);
+        return v == Long.MIN_VALUE ? Long.MAX_VALUE : v;
       }
 
       @Override
@@ -299,6 +303,15 @@ public abstract class Token implements Comparable<Token> {
       this.value = value;
     }
 
+    /** Hashes a partition key to the value of its token, without allocating a token. */
+    static long hashToLong(ByteBuffer partitionKey) {
+      return ((M3PTokenFactory) FACTORY).hashToLong(partitionKey);
+    }
+
+    long longValue() {
+      return value;
+    }
+
     @Override
     public DataType getType() {
       return FACTORY.getTokenType();
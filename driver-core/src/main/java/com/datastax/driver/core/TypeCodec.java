@@ -659,6 +659,59 @@ public abstract class TypeCodec<T> {
     return String.format("%s [%s <-> %s]", this.getClass().getSimpleName(), cqlType, javaType);
   }
 
+  /**
+   * Returns the size of the serialized form of any non-null value handled by this codec, or -1 if
+   * it is not fixed.
+   *
+   * <p>Collection codecs use this to size their output in a single pass, and then write their
+   * elements in place with {@link #serializeInto(Object, ByteBuffer, ProtocolVersion)} and read
+   * them back with {@link #deserializeFrom(ByteBuffer, ProtocolVersion)}, instead of going through
+   * a separate buffer for each element. Only built-in codecs override it.
+   */
+  int fixedSize() {
+    return -1;
+  }
+
+  /**
+   * Writes the given non-null value at the current position of {@code output}, which must have at
+   * least {@link #fixedSize()} bytes remaining.
+   *
+   * <p>The default implementation goes through {@link #serialize(Object, ProtocolVersion)}; codecs
+   * that override {@link #fixedSize()} should also override this method to avoid the intermediate
+   * buffer.
+   */
+  void serializeInto(T value, ByteBuffer output, ProtocolVersion protocolVersion) {
+    output.put(serialize(value, protocolVersion).duplicate());
+  }
+
+  /**
+   * Reads a value of {@link #fixedSize()} bytes at the current position of {@code input}, and
+   * advances it.
+   *
+   * <p>The default implementation goes through {@link #deserialize(ByteBuffer, ProtocolVersion)}
+   * on a slice of {@code input}; codecs that override {@link #fixedSize()} should also override
+   * this method.
+   */
+  T deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+    int size = fixedSize();
+    ByteBuffer bytes = input.slice();
+    bytes.limit(size);
+    T value = deserialize(bytes, protocolVersion);
+    input.position(input.position() + size);
+    return value;
+  }
+
+  /**
+   * Reads a collection element (its size followed by its contents) at the current position of
+   * {@code input}, without an intermediate buffer if the codec allows it.
+   */
+  private static <T> T readElement(
+      TypeCodec<T> codec, int fixedSize, ByteBuffer input, ProtocolVersion protocolVersion) {
+    int size = CodecUtils.readSize(input, protocolVersion);
+    if (fixedSize >= 0 && size == fixedSize) return codec.deserializeFrom(input, protocolVersion);
+    return codec.deserialize(size < 0 ? null : CodecUtils.readBytes(input, size), protocolVersion);
+  }
+
   /**
    * A codec that is capable of handling primitive booleans, thus avoiding the overhead of boxing
    * and unboxing such primitives.
@@ -891,6 +944,11 @@ public abstract class TypeCodec<T> {
     public String deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
       if (bytes == null) return null;
       if (bytes.remaining() == 0) return "";
+      // Decode straight from the backing array when there is one: cells are usually slices of a
+      // larger page array, that Bytes.getArray would copy.
+      if (bytes.hasArray())
+        return new String(
+            bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), charset);
       return new String(Bytes.getArray(bytes), charset);
     }
   }
@@ -980,6 +1038,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.getLong(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 8;
+    }
+
+    @Override
+    void serializeInto(Long value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putLong(value);
+    }
+
+    @Override
+    Long deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.getLong();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#bigint()} to a Java {@link Long}. */
@@ -1113,6 +1186,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.get(bytes.position()) != 0;
     }
+
+    @Override
+    int fixedSize() {
+      return 1;
+    }
+
+    @Override
+    void serializeInto(Boolean value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.put(value ? (byte) 1 : (byte) 0);
+    }
+
+    @Override
+    Boolean deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.get() != 0;
+    }
   }
 
   /** This codec maps a CQL {@link DataType#decimal()} to a Java {@link BigDecimal}. */
@@ -1216,6 +1304,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.getDouble(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 8;
+    }
+
+    @Override
+    void serializeInto(Double value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putDouble(value);
+    }
+
+    @Override
+    Double deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.getDouble();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#cfloat()} to a Java {@link Float}. */
@@ -1261,6 +1364,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.getFloat(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 4;
+    }
+
+    @Override
+    void serializeInto(Float value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putFloat(value);
+    }
+
+    @Override
+    Float deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.getFloat();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#inet()} to a Java {@link InetAddress}. */
@@ -1353,6 +1471,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.get(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 1;
+    }
+
+    @Override
+    void serializeInto(Byte value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.put(value);
+    }
+
+    @Override
+    Byte deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.get();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#smallint()} to a Java {@link Short}. */
@@ -1398,6 +1531,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.getShort(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 2;
+    }
+
+    @Override
+    void serializeInto(Short value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putShort(value);
+    }
+
+    @Override
+    Short deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.getShort();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#cint()} to a Java {@link Integer}. */
@@ -1443,6 +1591,21 @@ public abstract class TypeCodec<T> {
 
       return bytes.getInt(bytes.position());
     }
+
+    @Override
+    int fixedSize() {
+      return 4;
+    }
+
+    @Override
+    void serializeInto(Integer value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putInt(value);
+    }
+
+    @Override
+    Integer deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return input.getInt();
+    }
   }
 
   /** This codec maps a CQL {@link DataType#timestamp()} to a Java {@link Date}. */
@@ -1496,6 +1659,21 @@ public abstract class TypeCodec<T> {
           ? null
           : new Date(BigintCodec.instance.deserializeNoBoxing(bytes, protocolVersion));
     }
+
+    @Override
+    int fixedSize() {
+      return 8;
+    }
+
+    @Override
+    void serializeInto(Date value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putLong(value.getTime());
+    }
+
+    @Override
+    Date deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return new Date(input.getLong());
+    }
   }
 
   /** This codec maps a CQL {@link DataType#date()} to the custom {@link LocalDate} class. */
@@ -1650,6 +1828,22 @@ public abstract class TypeCodec<T> {
           ? null
           : new UUID(bytes.getLong(bytes.position()), bytes.getLong(bytes.position() + 8));
     }
+
+    @Override
+    int fixedSize() {
+      return 16;
+    }
+
+    @Override
+    void serializeInto(UUID value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      output.putLong(value.getMostSignificantBits());
+      output.putLong(value.getLeastSignificantBits());
+    }
+
+    @Override
+    UUID deserializeFrom(ByteBuffer input, ProtocolVersion protocolVersion) {
+      return new UUID(input.getLong(), input.getLong());
+    }
   }
 
   /** This codec maps a CQL {@link DataType#uuid()} to a Java {@link UUID}. */
@@ -1688,6 +1882,14 @@ public abstract class TypeCodec<T> {
             String.format("%s is not a Type 1 (time-based) UUID", value));
       return super.serialize(value, protocolVersion);
     }
+
+    @Override
+    void serializeInto(UUID value, ByteBuffer output, ProtocolVersion protocolVersion) {
+      if (value.version() != 1)
+        throw new InvalidTypeException(
+            String.format("%s is not a Type 1 (time-based) UUID", value));
+      super.serializeInto(value, output, protocolVersion);
+    }
   }
 
   /** This codec maps a CQL {@link DataType#varint()} to a Java {@link BigInteger}. */
@@ -1750,6 +1952,8 @@ public abstract class TypeCodec<T> {
     @Override
     public ByteBuffer serialize(C value, ProtocolVersion protocolVersion) {
       if (value == null) return null;
+      int fixedSize = eltCodec.fixedSize();
+      if (fixedSize >= 0) return serializeFixedSize(value, fixedSize, protocolVersion);
       int i = 0;
       ByteBuffer[] bbs = new ByteBuffer[value.size()];
       for (E elt : value) {
@@ -1760,17 +1964,43 @@ public abstract class TypeCodec<T> {
         try {
           bb = eltCodec.serialize(elt, protocolVersion);
         } catch (ClassCastException e) {
-          throw new InvalidTypeException(
-              String.format(
-                  "Invalid type for %s element, expecting %s but got %s",
-                  cqlType, eltCodec.getJavaType(), elt.getClass()),
-              e);
+          throw invalidElementType(elt, e);
         }
         bbs[i++] = bb;
       }
       return CodecUtils.pack(bbs, value.size(), protocolVersion);
     }
 
+    /**
+     * Serializes a collection whose elements all have the same size: the output is sized upfront,
+     * and each element is written directly into it.
+     */
+    private ByteBuffer serializeFixedSize(C value, int fixedSize, ProtocolVersion protocolVersion) {
+      int sizeOfSize = CodecUtils.sizeOfCollectionSize(protocolVersion);
+      ByteBuffer output = ByteBuffer.allocate(sizeOfSize + value.size() * (sizeOfSize + fixedSize));
+      CodecUtils.writeSize(output, value.size(), protocolVersion);
+      for (E elt : value) {
+        if (elt == null) {
+          throw new NullPointerException("Collection elements cannot be null");
+        }
+        CodecUtils.writeSize(output, fixedSize, protocolVersion);
+        try {
+          eltCodec.serializeInto(elt, output, protocolVersion);
+        } catch (ClassCastException e) {
+          throw invalidElementType(elt, e);
+        }
+      }
+      return (ByteBuffer) output.flip();
+    }
+
+    private InvalidTypeException invalidElementType(E elt, ClassCastException e) {
+      return new InvalidTypeException(
+          String.format(
+              "Invalid type for %s element, expecting %s but got %s",
+              cqlType, eltCodec.getJavaType(), elt.getClass()),
+          e);
+    }
+
     @Override
     public C deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
       if (bytes == null || bytes.remaining() == 0) return newInstance(0);
@@ -1778,9 +2008,9 @@ public abstract class TypeCodec<T> {
         ByteBuffer input = bytes.duplicate();
         int size = CodecUtils.readSize(input, protocolVersion);
         C coll = newInstance(size);
+        int fixedSize = eltCodec.fixedSize();
         for (int i = 0; i < size; i++) {
-          ByteBuffer databb = CodecUtils.readValue(input, protocolVersion);
-          coll.add(eltCodec.deserialize(databb, protocolVersion));
+          coll.add(readElement(eltCodec, fixedSize, input, protocolVersion));
         }
         return coll;
       } catch (BufferUnderflowException e) {
@@ -2040,41 +2270,93 @@ public abstract class TypeCodec<T> {
     @Override
     public ByteBuffer serialize(Map<K, V> value, ProtocolVersion protocolVersion) {
       if (value == null) return null;
+      int fixedKeySize = keyCodec.fixedSize();
+      int fixedValueSize = valueCodec.fixedSize();
+      int sizeOfSize = CodecUtils.sizeOfCollectionSize(protocolVersion);
+      // Only variable-size keys and values go through an intermediate buffer; the first pass
+      // serializes them and computes the total size, the second one writes everything.
+      ByteBuffer[] bbs =
+          fixedKeySize < 0 || fixedValueSize < 0 ? new ByteBuffer[2 * value.size()] : null;
+      int size = sizeOfSize;
       int i = 0;
-      ByteBuffer[] bbs = new ByteBuffer[2 * value.size()];
       for (Map.Entry<K, V> entry : value.entrySet()) {
-        ByteBuffer bbk;
         K key = entry.getKey();
         if (key == null) {
           throw new NullPointerException("Map keys cannot be null");
         }
-        try {
-          bbk = keyCodec.serialize(key, protocolVersion);
-        } catch (ClassCastException e) {
-          throw new InvalidTypeException(
-              String.format(
-                  "Invalid type for map key, expecting %s but got %s",
-                  keyCodec.getJavaType(), key.getClass()),
-              e);
+        if (fixedKeySize < 0) {
+          try {
+            bbs[i] = keyCodec.serialize(key, protocolVersion);
+          } catch (ClassCastException e) {
+            throw invalidKeyType(key, e);
+          }
+          size += CodecUtils.sizeOfValue(bbs[i], protocolVersion);
+        } else {
+          size += sizeOfSize + fixedKeySize;
         }
-        ByteBuffer bbv;
+        i++;
         V v = entry.getValue();
         if (v == null) {
           throw new NullPointerException("Map values cannot be null");
         }
-        try {
-          bbv = valueCodec.serialize(v, protocolVersion);
-        } catch (ClassCastException e) {
-          throw new InvalidTypeException(
-              String.format(
-                  "Invalid type for map value, expecting %s but got %s",
-                  valueCodec.getJavaType(), v.getClass()),
-              e);
+        if (fixedValueSize < 0) {
+          try {
+            bbs[i] = valueCodec.serialize(v, protocolVersion);
+          } catch (ClassCastException e) {
+            throw invalidValueType(v, e);
+          }
+          size += CodecUtils.sizeOfValue(bbs[i], protocolVersion);
+        } else {
+          size += sizeOfSize + fixedValueSize;
         }
-        bbs[i++] = bbk;
-        bbs[i++] = bbv;
+        i++;
       }
-      return CodecUtils.pack(bbs, value.size(), protocolVersion);
+      ByteBuffer output = ByteBuffer.allocate(size);
+      CodecUtils.writeSize(output, value.size(), protocolVersion);
+      i = 0;
+      for (Map.Entry<K, V> entry : value.entrySet()) {
+        if (fixedKeySize < 0) {
+          CodecUtils.writeValue(output, bbs[i], protocolVersion);
+        } else {
+          CodecUtils.writeSize(output, fixedKeySize, protocolVersion);
+          K key = entry.getKey();
+          try {
+            keyCodec.serializeInto(key, output, protocolVersion);
+          } catch (ClassCastException e) {
+            throw invalidKeyType(key, e);
+          }
+        }
+        i++;
+        if (fixedValueSize < 0) {
+          CodecUtils.writeValue(output, bbs[i], protocolVersion);
+        } else {
+          CodecUtils.writeSize(output, fixedValueSize, protocolVersion);
+          V v = entry.getValue();
+          try {
+            valueCodec.serializeInto(v, output, protocolVersion);
+          } catch (ClassCastException e) {
+            throw invalidValueType(v, e);
+          }
+        }
+        i++;
+      }
+      return (ByteBuffer) output.flip();
+    }
+
+    private InvalidTypeException invalidKeyType(K key, ClassCastException e) {
+      return new InvalidTypeException(
+          String.format(
+              "Invalid type for map key, expecting %s but got %s",
+              keyCodec.getJavaType(), key.getClass()),
+          e);
+    }
+
+    private InvalidTypeException invalidValueType(V v, ClassCastException e) {
+      return new InvalidTypeException(
+          String.format(
+              "Invalid type for map value, expecting %s but got %s",
+              valueCodec.getJavaType(), v.getClass()),
+          e);
     }
 
     @Override
@@ -2084,12 +2366,12 @@ public abstract class TypeCodec<T> {
         ByteBuffer input = bytes.duplicate();
         int n = CodecUtils.readSize(input, protocolVersion);
         Map<K, V> m = newInstance(n);
+        int fixedKeySize = keyCodec.fixedSize();
+        int fixedValueSize = valueCodec.fixedSize();
         for (int i = 0; i < n; i++) {
-          ByteBuffer kbb = CodecUtils.readValue(input, protocolVersion);
-          ByteBuffer vbb = CodecUtils.readValue(input, protocolVersion);
-          m.put(
-              keyCodec.deserialize(kbb, protocolVersion),
-              valueCodec.deserialize(vbb, protocolVersion));
+          K key = readElement(keyCodec, fixedKeySize, input, protocolVersion);
+          V v = readElement(valueCodec, fixedValueSize, input, protocolVersion);
+          m.put(key, v);
         }
         return m;
       } catch (BufferUnderflowException e) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A request body that references large off-heap values instead of copying them.
+ *
+ * <p>Everything except the wrapped values is written to a single pooled direct buffer, sized
+ * exactly upfront. When {@link CBUtil#writeValue(ByteBuffer, ByteBuf)} encounters a value that
+ * {@link #isWrappable(ByteBuffer) qualifies}, the current component is split at the writer index
+ * and the value is inserted as a component of its own, so that it goes straight from the user's
+ * buffer to the socket with a gathering write.
+ *
+ * <p>This only applies to direct buffers: Netty copies non-direct buffers to direct memory before
+ * writing them to a NIO channel, so wrapping a heap value would turn a single copy of the value
+ * into a copy of the whole frame. For the same reason, the pooled part is always allocated as a
+ * direct buffer.
+ */
+final class ZeroCopyBody extends CompositeByteBuf {
+
+  /**
+   * The minimum size of a value for it to be wrapped; below that, the bookkeeping costs more than
+   * the copy it saves.
+   */
+  static final int THRESHOLD =
+      SystemProperties.getInt("com.datastax.driver.ZERO_COPY_VALUE_THRESHOLD", 8192);
+
+  static boolean isWrappable(ByteBuffer value) {
+    return value != null
+        && value != BoundStatement.UNSET
+        && value.isDirect()
+        && value.remaining() >= THRESHOLD;
+  }
+
+  /**
+   * Returns the total size of the values of the given request that would be wrapped, or 0 if the
+   * request does not carry any such value.
+   *
+   * <p>This is only used to size the pooled buffer: if it does not match what actually gets
+   * wrapped, the body is still encoded correctly, it just ends up with unused capacity or an extra
+   * component.
+   */
+  static int sizeOfWrappableValues(Message.Request request) {
+    switch (request.type) {
+      case QUERY:
+        return sizeOfWrappableValues(((Requests.Query) request).options);
+      case EXECUTE:
+        return sizeOfWrappableValues(((Requests.Execute) request).options);
+      case BATCH:
+        int size = 0;
+        for (List<ByteBuffer> values : ((Requests.Batch) request).values)
+          size += sizeOfWrappableValues(values);
+        return size;
+      default:
+        return 0;
+    }
+  }
+
+  private static int sizeOfWrappableValues(Requests.QueryProtocolOptions options) {
+    int size =
+        sizeOfWrappableValues(options.positionalValues)
+            + sizeOfWrappableValues(options.namedValues.values());
+    if (isWrappable(options.pagingState)) size += options.pagingState.remaining();
+    return size;
+  }
+
+  static int sizeOfWrappableValues(Iterable<ByteBuffer> values) {
+    int size = 0;
+    for (ByteBuffer value : values) if (isWrappable(value)) size += value.remaining();
+    return size;
+  }
+
+  private final ByteBuf base;
+  // The index in base where the current (last) component starts
+  private int baseOffset;
+  // The index in this buffer where the current (last) component starts
+  private int componentOffset;
+
+  /**
+   * @param alloc the allocator to get the pooled buffer from.
+   * @param size the size of the pooled buffer, which must be the size of the request minus the size
+   *     of the wrapped values.
+   */
+  ZeroCopyBody(ByteBufAllocator alloc, int size) {
+    super(alloc, true, Integer.MAX_VALUE);
+    base = alloc.directBuffer(size, size);
+    // Components cover the readable bytes of the buffers they are given
+    addComponent(base.writerIndex(size));
+  }
+
+  /**
+   * Appends the given value at the writer index, without copying it.
+   *
+   * <p>The caller is responsible for writing the length prefix, and for only passing values that
+   * were accounted for when sizing this buffer.
+   */
+  void appendValue(ByteBuffer value) {
+    int last = numComponents() - 1;
+    int written = writerIndex() - componentOffset;
+    int remaining = base.capacity() - baseOffset - written;
+
+    // The new slices share base's reference count, which gets decremented once per component when
+    // this buffer is released.
+    ByteBuf head = base.slice(baseOffset, written).retain();
+    ByteBuf tail = base.slice(baseOffset + written, remaining).retain();
+    ByteBuf wrapped = Unpooled.wrappedBuffer(value.duplicate());
+    int length = wrapped.readableBytes();
+
+    // Keep the writer index: component manipulations recompute the capacity but don't move it
+    int writerIndex = writerIndex();
+    addComponent(last + 1, head);
+    addComponent(last + 2, wrapped);
+    addComponent(last + 3, tail);
+    removeComponent(last);
+    writerIndex(writerIndex + length);
+
+    baseOffset += written;
+    componentOffset = writerIndex + length;
+  }
+}
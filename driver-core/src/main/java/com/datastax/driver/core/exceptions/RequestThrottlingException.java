@@ -0,0 +1,62 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core.exceptions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indicates that a request was rejected by the session's throttler, before being sent to any host.
+ *
+ * <p>This happens if the session has reached its limits (see {@link
+ * com.datastax.driver.core.ThrottlingOptions}), and the request could not wait for capacity because
+ * the throttling queue was full, or because it waited longer than {@link
+ * com.datastax.driver.core.ThrottlingOptions#setMaxQueueWaitMillis(int) the maximum allowed}.
+ *
+ * <p>This exception is a symptom that the application submits requests faster than the configured
+ * limits allow; it is safe to retry the request later.
+ */
+public class RequestThrottlingException extends DriverException {
+
+  private static final long serialVersionUID = 0;
+
+  public RequestThrottlingException(int queueSize) {
+    this(buildMessage(queueSize), null);
+  }
+
+  public RequestThrottlingException(long timeout, TimeUnit unit) {
+    this(buildMessage(timeout, unit), null);
+  }
+
+  private RequestThrottlingException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  private static String buildMessage(int queueSize) {
+    return String.format(
+        "Request throttled (no capacity available and the queue has reached its max size %d)",
+        queueSize);
+  }
+
+  private static String buildMessage(long timeout, TimeUnit unit) {
+    return String.format(
+        "Request throttled (no capacity available and timed out after %d %s)", timeout, unit);
+  }
+
+  @Override
+  public RequestThrottlingException copy() {
+    return new RequestThrottlingException(getMessage(), this);
+  }
+}
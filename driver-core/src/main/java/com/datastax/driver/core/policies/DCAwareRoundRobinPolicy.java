@@ -27,13 +27,13 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.AbstractIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -71,6 +71,9 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
 
   private final ConcurrentMap<String, CopyOnWriteArrayList<Host>> perDcLiveHosts =
       new ConcurrentHashMap<String, CopyOnWriteArrayList<Host>>();
+  // An immutable snapshot of perDcLiveHosts, rebuilt on each change, that query plans iterate
+  // without copying
+  private volatile LiveHosts liveHosts = LiveHosts.EMPTY;
   private final AtomicInteger index = new AtomicInteger();
 
   @VisibleForTesting volatile String localDc;
@@ -128,6 +131,7 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
           nonLocalHosts);
     }
 
+    updateLiveHosts();
     this.index.set(new Random().nextInt(Math.max(hosts.size(), 1)));
   }
 
@@ -136,9 +140,29 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
     return dc == null ? localDc : dc;
   }
 
-  @SuppressWarnings("unchecked")
-  private static CopyOnWriteArrayList<Host> cloneList(CopyOnWriteArrayList<Host> list) {
-    return (CopyOnWriteArrayList<Host>) list.clone();
+  // Synchronized so that concurrent changes publish their snapshots in order: the last snapshot
+  // always reflects the last change
+  private synchronized void updateLiveHosts() {
+    Host[] local = LiveHosts.NO_HOSTS;
+    List<String> remoteDcs = new ArrayList<String>();
+    List<Host[]> remoteHosts = new ArrayList<Host[]>();
+    for (Map.Entry<String, CopyOnWriteArrayList<Host>> entry : perDcLiveHosts.entrySet()) {
+      Host[] hosts = entry.getValue().toArray(LiveHosts.NO_HOSTS);
+      if (entry.getKey().equals(localDc)) {
+        local = hosts;
+      } else if (hosts.length > 0 && usedHostsPerRemoteDc > 0) {
+        remoteDcs.add(entry.getKey());
+        remoteHosts.add(
+            hosts.length > usedHostsPerRemoteDc
+                ? Arrays.copyOf(hosts, usedHostsPerRemoteDc)
+                : hosts);
+      }
+    }
+    liveHosts =
+        new LiveHosts(
+            local,
+            remoteDcs.toArray(new String[remoteDcs.size()]),
+            remoteHosts.toArray(new Host[remoteHosts.size()][]));
   }
 
   /**
@@ -159,14 +183,15 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
     String dc = dc(host);
     if (dc == UNSET || dc.equals(localDc)) return HostDistance.LOCAL;
 
-    CopyOnWriteArrayList<Host> dcHosts = perDcLiveHosts.get(dc);
-    if (dcHosts == null || usedHostsPerRemoteDc == 0) return HostDistance.IGNORED;
-
-    // We need to clone, otherwise our subList call is not thread safe
-    dcHosts = cloneList(dcHosts);
-    return dcHosts.subList(0, Math.min(dcHosts.size(), usedHostsPerRemoteDc)).contains(host)
-        ? HostDistance.REMOTE
-        : HostDistance.IGNORED;
+    LiveHosts liveHosts = this.liveHosts;
+    for (int i = 0; i < liveHosts.remoteDcs.length; i++) {
+      if (liveHosts.remoteDcs[i].equals(dc)) {
+        for (Host used : liveHosts.remoteHosts[i])
+          if (used.equals(host)) return HostDistance.REMOTE;
+        break;
+      }
+    }
+    return HostDistance.IGNORED;
   }
 
   /**
@@ -184,70 +209,78 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
    */
   @Override
   public Iterator<Host> newQueryPlan(String loggedKeyspace, final Statement statement) {
+    return new QueryPlan(liveHosts, statement, index.getAndIncrement());
+  }
+
+  /**
+   * Iterates over a snapshot of the live hosts, starting at a rotating index: a plan only costs
+   * this object, the host arrays are shared by all plans until the next topology change.
+   */
+  private class QueryPlan extends AbstractIterator<Host> {
+
+    private final LiveHosts hosts;
+    private final Statement statement;
+    private int idx;
+    private int remainingLocal;
+
+    // The remote DC being iterated, -1 before the local hosts are exhausted
+    private int dc = -1;
+    private int remainingInDc;
+
+    private QueryPlan(LiveHosts hosts, Statement statement, int startIdx) {
+      this.hosts = hosts;
+      this.statement = statement;
+      this.idx = startIdx;
+      this.remainingLocal = hosts.local.length;
+    }
+
+    @Override
+    protected Host computeNext() {
+      if (remainingLocal > 0) {
+        remainingLocal--;
+        return pick(hosts.local);
+      }
 
-    CopyOnWriteArrayList<Host> localLiveHosts = perDcLiveHosts.get(localDc);
-    final List<Host> hosts =
-        localLiveHosts == null ? Collections.<Host>emptyList() : cloneList(localLiveHosts);
-    final int startIdx = index.getAndIncrement();
-
-    return new AbstractIterator<Host>() {
-
-      private int idx = startIdx;
-      private int remainingLocal = hosts.size();
-
-      // For remote Dcs
-      private Iterator<String> remoteDcs;
-      private List<Host> currentDcHosts;
-      private int currentDcRemaining;
-
-      @Override
-      protected Host computeNext() {
-        while (true) {
-          if (remainingLocal > 0) {
-            remainingLocal--;
-            int c = idx++ % hosts.size();
-            if (c < 0) {
-              c += hosts.size();
-            }
-            return hosts.get(c);
-          }
-
-          if (currentDcHosts != null && currentDcRemaining > 0) {
-            currentDcRemaining--;
-            int c = idx++ % currentDcHosts.size();
-            if (c < 0) {
-              c += currentDcHosts.size();
-            }
-            return currentDcHosts.get(c);
-          }
-
-          ConsistencyLevel cl =
-              statement.getConsistencyLevel() == null
-                  ? configuration.getQueryOptions().getConsistencyLevel()
-                  : statement.getConsistencyLevel();
-
-          if (dontHopForLocalCL && cl.isDCLocal()) return endOfData();
-
-          if (remoteDcs == null) {
-            Set<String> copy = new HashSet<String>(perDcLiveHosts.keySet());
-            copy.remove(localDc);
-            remoteDcs = copy.iterator();
-          }
-
-          if (!remoteDcs.hasNext()) break;
-
-          String nextRemoteDc = remoteDcs.next();
-          CopyOnWriteArrayList<Host> nextDcHosts = perDcLiveHosts.get(nextRemoteDc);
-          if (nextDcHosts != null) {
-            // Clone for thread safety
-            List<Host> dcHosts = cloneList(nextDcHosts);
-            currentDcHosts = dcHosts.subList(0, Math.min(dcHosts.size(), usedHostsPerRemoteDc));
-            currentDcRemaining = currentDcHosts.size();
-          }
-        }
-        return endOfData();
+      if (dc == -1) {
+        if (hosts.remoteDcs.length == 0) return endOfData();
+        ConsistencyLevel cl =
+            statement.getConsistencyLevel() == null
+                ? configuration.getQueryOptions().getConsistencyLevel()
+                : statement.getConsistencyLevel();
+        if (dontHopForLocalCL && cl.isDCLocal()) return endOfData();
       }
-    };
+
+      while (remainingInDc == 0) {
+        if (dc + 1 >= hosts.remoteDcs.length) return endOfData();
+        dc++;
+        remainingInDc = hosts.remoteHosts[dc].length;
+      }
+      remainingInDc--;
+      return pick(hosts.remoteHosts[dc]);
+    }
+
+    private Host pick(Host[] dcHosts) {
+      int c = idx++ % dcHosts.length;
+      if (c < 0) c += dcHosts.length;
+      return dcHosts[c];
+    }
+  }
+
+  private static class LiveHosts {
+
+    static final Host[] NO_HOSTS = new Host[0];
+    static final LiveHosts EMPTY = new LiveHosts(NO_HOSTS, new String[0], new Host[0][]);
+
+    final Host[] local;
+    // The hosts of each remote DC that are used in query plans, i.e. at most usedHostsPerRemoteDc
+    final String[] remoteDcs;
+    final Host[][] remoteHosts;
+
+    LiveHosts(Host[] local, String[] remoteDcs, Host[][] remoteHosts) {
+      this.local = local;
+      this.remoteDcs = remoteDcs;
+      this.remoteHosts = remoteHosts;
+    }
   }
 
   @Override
@@ -269,15 +302,19 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
           new CopyOnWriteArrayList<Host>(Collections.singletonList(host));
       dcHosts = perDcLiveHosts.putIfAbsent(dc, newMap);
       // If we've successfully put our new host, we're good, otherwise we've been beaten so continue
-      if (dcHosts == null) return;
+      if (dcHosts == null) {
+        updateLiveHosts();
+        return;
+      }
     }
     dcHosts.addIfAbsent(host);
+    updateLiveHosts();
   }
 
   @Override
   public void onDown(Host host) {
     CopyOnWriteArrayList<Host> dcHosts = perDcLiveHosts.get(dc(host));
-    if (dcHosts != null) dcHosts.remove(host);
+    if (dcHosts != null && dcHosts.remove(host)) updateLiveHosts();
   }
 
   @Override
@@ -49,7 +49,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,7 +70,10 @@ import org.slf4j.LoggerFactory;
  * measured latencies, but where older measurements gets an exponentially decreasing weight. The
  * exact weight applied to a newly received latency is based on the time elapsed since the previous
  * measure (to account for the fact that latencies are not necessarily reported with equal
- * regularity, neither over time nor between different nodes).
+ * regularity, neither over time nor between different nodes). Scores are updated periodically (see
+ * {@link Builder#withUpdateRate}) with the latencies collected in the meantime; alternatively, a
+ * percentile of these latencies can be used instead of their mean (see {@link
+ * Builder#withPercentileScoring}).
  *
  * <p>Once a node is excluded from query plans (because its averaged latency grew over the exclusion
  * threshold), its latency score will not be updated anymore (since it is not queried). To give a
@@ -96,6 +101,7 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
   private final long scale;
   private final long retryPeriod;
   private final long minMeasure;
+  private final double percentile;
   private volatile Metrics metrics;
 
   private LatencyAwarePolicy(
@@ -104,13 +110,15 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
       long scale,
       long retryPeriod,
       long updateRate,
-      int minMeasure) {
+      int minMeasure,
+      double percentile) {
     this.childPolicy = childPolicy;
     this.retryPeriod = retryPeriod;
     this.scale = scale;
     this.latencyTracker = new Tracker();
     this.exclusionThreshold = exclusionThreshold;
     this.minMeasure = minMeasure;
+    this.percentile = percentile;
 
     updaterService.scheduleAtFixedRate(new Updater(), updateRate, updateRate, TimeUnit.NANOSECONDS);
   }
@@ -493,6 +501,7 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
       long newMin = Long.MAX_VALUE;
       long now = System.nanoTime();
       for (HostLatencyTracker tracker : latencies.values()) {
+        tracker.fold(now);
         TimestampedAverage latency = tracker.getCurrentAverage();
         if (latency != null
             && latency.average >= 0
@@ -526,7 +535,8 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
     public void addHost(final Host host) {
       logger.debug("Adding tracker for {}", host);
       HostLatencyTracker old =
-          latencies.putIfAbsent(host, new HostLatencyTracker(scale, (30L * minMeasure) / 100L));
+          latencies.putIfAbsent(
+              host, new HostLatencyTracker(scale, (30L * minMeasure) / 100L, percentile));
       if (old == null && hostMetricsEnabled()) {
         String metricName = MetricsUtil.hostMetricName("LatencyAwarePolicy.latencies.", host);
         if (!metrics.getRegistry().getNames().contains(metricName)) {
@@ -562,11 +572,12 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
     }
   }
 
-  private static class TimestampedAverage {
+  @VisibleForTesting
+  static class TimestampedAverage {
 
-    private final long timestamp;
-    private final long average;
-    private final long nbMeasure;
+    final long timestamp;
+    final long average;
+    final long nbMeasure;
 
     TimestampedAverage(long timestamp, long average, long nbMeasure) {
       this.timestamp = timestamp;
@@ -575,66 +586,181 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
     }
   }
 
-  private static class HostLatencyTracker {
+  @VisibleForTesting
+  static class HostLatencyTracker {
 
     private final long thresholdToAccount;
     private final double scale;
-    private final AtomicReference<TimestampedAverage> current =
-        new AtomicReference<TimestampedAverage>();
+    private final IntervalSampler sampler;
+    // Only written by fold(), which is called by the updater
+    private volatile TimestampedAverage current;
 
-    HostLatencyTracker(long scale, long thresholdToAccount) {
+    HostLatencyTracker(long scale, long thresholdToAccount, double percentile) {
       this.scale = (double) scale; // We keep in double since that's how we'll use it.
       this.thresholdToAccount = thresholdToAccount;
+      this.sampler = percentile > 0 ? new PercentileSampler(percentile) : new StripedMeanSampler();
     }
 
     public void add(long newLatencyNanos) {
-      TimestampedAverage previous, next;
-      do {
-        previous = current.get();
-        next = computeNextAverage(previous, newLatencyNanos);
-      } while (next != null && !current.compareAndSet(previous, next));
+      sampler.record(newLatencyNanos);
     }
 
-    private TimestampedAverage computeNextAverage(
-        TimestampedAverage previous, long newLatencyNanos) {
-
-      long currentTimestamp = System.nanoTime();
-
-      long nbMeasure = previous == null ? 1 : previous.nbMeasure + 1;
-      if (nbMeasure < thresholdToAccount)
-        return new TimestampedAverage(currentTimestamp, -1L, nbMeasure);
-
-      if (previous == null || previous.average < 0)
-        return new TimestampedAverage(currentTimestamp, newLatencyNanos, nbMeasure);
+    // Folds the latencies recorded since the previous call into the moving average, as if they had
+    // all been measured now. Synchronized because the updater is not the only caller in tests.
+    synchronized void fold(long now) {
+      TimestampedAverage previous = current;
 
-      // Note: it's possible for the delay to be 0, in which case newLatencyNanos will basically be
-      // discarded. It's fine: nanoTime is precise enough in practice that even if it happens, it
-      // will be very rare, and discarding a latency every once in a while is not the end of the
-      // world.
       // We do test for negative value, even though in theory that should not happen, because it
-      // seems
-      // that historically there has been bugs here
+      // seems that historically there has been bugs here
       // (https://blogs.oracle.com/dholmes/entry/inside_the_hotspot_vm_clocks)
       // so while this is almost surely not a problem anymore, there's no reason to break the
-      // computation
-      // if this even happen.
-      long delay = currentTimestamp - previous.timestamp;
-      if (delay <= 0) return null;
+      // computation if this even happen. This is checked before starting a new interval, so that
+      // the current one is folded at the next tick instead of being lost.
+      long delay = previous == null ? 0 : now - previous.timestamp;
+      if (previous != null && delay <= 0) return;
+
+      long count = sampler.nextInterval();
+      if (count == 0) return;
+
+      long nbMeasure = previous == null ? count : previous.nbMeasure + count;
+      if (nbMeasure < thresholdToAccount) {
+        current = new TimestampedAverage(now, -1L, nbMeasure);
+        return;
+      }
+
+      long intervalScore = sampler.intervalScore();
+      if (previous == null || previous.average < 0) {
+        current = new TimestampedAverage(now, intervalScore, nbMeasure);
+        return;
+      }
 
+      // The weight of the previous average only depends on the time elapsed since it was
+      // computed: folding n latencies at once gives (to the first order) the same result as
+      // applying them one by one with the per-latency delays, which is what we used to do.
       double scaledDelay = ((double) delay) / scale;
       // Note: We don't use log1p because we it's quite a bit slower and we don't care about the
-      // precision (and since we
-      // refuse ridiculously big scales, scaledDelay can't be so low that scaledDelay+1 == 1.0 (due
-      // to rounding)).
+      // precision (and since we refuse ridiculously big scales, scaledDelay can't be so low that
+      // scaledDelay+1 == 1.0 (due to rounding)).
       double prevWeight = Math.log(scaledDelay + 1) / scaledDelay;
-      long newAverage =
-          (long) ((1.0 - prevWeight) * newLatencyNanos + prevWeight * previous.average);
+      long newAverage = (long) ((1.0 - prevWeight) * intervalScore + prevWeight * previous.average);
 
-      return new TimestampedAverage(currentTimestamp, newAverage, nbMeasure);
+      current = new TimestampedAverage(now, newAverage, nbMeasure);
     }
 
     public TimestampedAverage getCurrentAverage() {
-      return current.get();
+      return current;
+    }
+  }
+
+  /**
+   * Accumulates the latencies of a host between two ticks of the updater. {@link #record(long)} is
+   * called concurrently by the threads that complete requests; {@link #nextInterval()} and {@link
+   * #intervalScore()} by the updater only.
+   */
+  @VisibleForTesting
+  abstract static class IntervalSampler {
+
+    abstract void record(long latencyNanos);
+
+    /**
+     * Starts a new interval.
+     *
+     * @return the number of latencies recorded in the interval that just ended.
+     */
+    abstract long nextInterval();
+
+    /** The score of the interval that just ended, in nanoseconds. */
+    abstract long intervalScore();
+  }
+
+  /**
+   * Records the count and sum of the latencies in cells that are striped by thread, and padded to
+   * avoid false sharing, so that threads completing requests on the same host do not contend on a
+   * single compare-and-set, and recording does not allocate. The score is the mean of the interval.
+   *
+   * <p>The count and the sum are two separate atomic additions: a latency recorded while the
+   * updater resets the cells may be split across two intervals. This skews the interval mean by at
+   * most one latency, which is negligible compared to the smoothing of the moving average.
+   */
+  @VisibleForTesting
+  static class StripedMeanSampler extends IntervalSampler {
+
+    // 8 longs per cell: the count and the sum of a cell are on their own cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    // Cell i is at index (i + 1) * PADDING: the first line is left empty so that the first cell
+    // does not share a line with the array header
+    private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * PADDING);
+    private long intervalScore;
+
+    static int stripes(int processors) {
+      int stripes = 1;
+      while (stripes < processors && stripes < 16) stripes <<= 1;
+      return stripes;
+    }
+
+    @Override
+    void record(long latencyNanos) {
+      long id = Thread.currentThread().getId();
+      int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+      int index = (((hash >>> 16) & (STRIPES - 1)) + 1) * PADDING;
+      cells.addAndGet(index, 1);
+      cells.addAndGet(index + 1, latencyNanos);
+    }
+
+    @Override
+    long nextInterval() {
+      long count = 0, sum = 0;
+      for (int i = 1; i <= STRIPES; i++) {
+        count += cells.getAndSet(i * PADDING, 0);
+        sum += cells.getAndSet(i * PADDING + 1, 0);
+      }
+      intervalScore = count == 0 ? 0 : sum / count;
+      return count;
+    }
+
+    @Override
+    long intervalScore() {
+      return intervalScore;
+    }
+  }
+
+  /**
+   * Records latencies in an HdrHistogram {@link Recorder} (wait-free and allocation-free), with
+   * microsecond precision up to one minute. The score is a percentile of the interval.
+   *
+   * <p>This class is only loaded if percentile scoring is enabled, so that the policy works without
+   * HdrHistogram in the classpath.
+   */
+  @VisibleForTesting
+  static class PercentileSampler extends IntervalSampler {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final double percentile;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 2);
+    private Histogram interval;
+
+    PercentileSampler(double percentile) {
+      this.percentile = percentile;
+    }
+
+    @Override
+    void record(long latencyNanos) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+      recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+    }
+
+    @Override
+    long nextInterval() {
+      interval = recorder.getIntervalHistogram(interval);
+      return interval.getTotalCount();
+    }
+
+    @Override
+    long intervalScore() {
+      return TimeUnit.MICROSECONDS.toNanos(interval.getValueAtPercentile(percentile));
     }
   }
 
@@ -667,6 +793,7 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
     private long retryPeriod = DEFAULT_RETRY_PERIOD_NANOS;
     private long updateRate = DEFAULT_UPDATE_RATE_NANOS;
     private int minMeasure = DEFAULT_MIN_MEASURE;
+    private double percentile = -1;
 
     /**
      * Creates a new latency aware policy builder given the child policy that the resulting policy
@@ -759,11 +886,11 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
     /**
      * Sets the update rate for the resulting latency aware policy.
      *
-     * <p>The update rate defines how often the minimum average latency is recomputed. While the
-     * average latency score of each node is computed iteratively (updated each time a new latency
-     * is collected), the minimum score needs to be recomputed from scratch every time, which is
-     * slightly more costly. For this reason, the minimum is only re-calculated at the given fixed
-     * rate and cached between re-calculation.
+     * <p>The update rate defines how often the latency scores and their minimum are recomputed.
+     * Latencies are accumulated per node (in striped counters that can be updated concurrently
+     * without contention), and the latencies collected since the previous update are folded into
+     * the score of each node at the given fixed rate; the minimum score is then recomputed and
+     * cached until the next update.
      *
      * <p>The default update rate if <b>100 milliseconds</b>, which should be appropriate for most
      * applications. In particular, note that while we want to avoid to recompute the minimum for
@@ -814,6 +941,38 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
       return this;
     }
 
+    /**
+     * Scores nodes by a percentile of their latencies, instead of their average latency.
+     *
+     * <p>At each update (see {@link #withUpdateRate}), the given percentile of the latencies
+     * measured since the previous update is folded into the moving average described in {@link
+     * #withScale}, instead of their mean. Scoring by a high percentile (for example 99) penalizes
+     * nodes that have frequent latency spikes, even if their average latency is good; the exclusion
+     * threshold then applies to that percentile.
+     *
+     * <p>By default (if this method is not called), nodes are scored by their average latency. This
+     * option requires <a href="http://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a> in the
+     * classpath, and uses a few tens of kilobytes of memory per node.
+     *
+     * @param percentile the percentile to use, between 0 (exclusive) and 100 (inclusive).
+     * @return this builder.
+     * @throws IllegalArgumentException if {@code percentile} is out of range.
+     * @throws IllegalStateException if HdrHistogram is not in the classpath.
+     */
+    public Builder withPercentileScoring(double percentile) {
+      if (percentile <= 0 || percentile > 100)
+        throw new IllegalArgumentException(
+            "Invalid percentile, must be between 0 (exclusive) and 100 (inclusive)");
+      try {
+        Class.forName("org.HdrHistogram.Recorder");
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException(
+            "Percentile scoring requires HdrHistogram, which was not found in the classpath", e);
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
     /**
      * Builds a new latency aware policy using the options set on this builder.
      *
@@ -821,7 +980,7 @@ public class LatencyAwarePolicy implements ChainableLoadBalancingPolicy {
      */
     public LatencyAwarePolicy build() {
       return new LatencyAwarePolicy(
-          childPolicy, exclusionThreshold, scale, retryPeriod, updateRate, minMeasure);
+          childPolicy, exclusionThreshold, scale, retryPeriod, updateRate, minMeasure, percentile);
     }
   }
 
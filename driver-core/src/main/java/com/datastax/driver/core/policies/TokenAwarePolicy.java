@@ -23,13 +23,14 @@ import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.Statement;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -89,11 +90,32 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
      * when it is important to keep that order intact (e.g. when using the {@link
      * LatencyAwarePolicy}).
      */
-    NEUTRAL
+    NEUTRAL,
+
+    /**
+     * Return first the replicas in the client's rack, if it was provided with {@link
+     * #TokenAwarePolicy(LoadBalancingPolicy, ReplicaOrdering, String)}, then the replicas with the
+     * fewest requests in flight (see {@link Host#getInFlightQueries()}). Replicas that are tied are
+     * returned in random order.
+     *
+     * <p>This strategy avoids sending requests for a hot partition to a replica that is already
+     * saturated, and keeps traffic within the rack when possible, at the cost of reading the load
+     * of each replica for every query plan.
+     */
+    LEAST_LOADED
   }
 
+  private static final ThreadLocal<Random> RANDOM =
+      new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+          return new Random();
+        }
+      };
+
   private final LoadBalancingPolicy childPolicy;
   private final ReplicaOrdering replicaOrdering;
+  private final String localRack;
   private volatile Metadata clusterMetadata;
   private volatile ProtocolVersion protocolVersion;
   private volatile CodecRegistry codecRegistry;
@@ -105,8 +127,28 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
    * @param replicaOrdering the strategy to use to order replicas.
    */
   public TokenAwarePolicy(LoadBalancingPolicy childPolicy, ReplicaOrdering replicaOrdering) {
+    this(childPolicy, replicaOrdering, null);
+  }
+
+  /**
+   * Creates a new {@code TokenAware} policy that prefers the replicas in the client's rack.
+   *
+   * @param childPolicy the load balancing policy to wrap with token awareness.
+   * @param replicaOrdering the strategy to use to order replicas. Must be {@link
+   *     ReplicaOrdering#LEAST_LOADED LEAST_LOADED} if {@code localRack} is not {@code null}.
+   * @param localRack the name of the rack of the client, as known by Cassandra (see {@link
+   *     Host#getRack()}), or {@code null} to not prefer any rack.
+   * @throws IllegalArgumentException if {@code localRack} is provided with another ordering than
+   *     {@code LEAST_LOADED}.
+   */
+  public TokenAwarePolicy(
+      LoadBalancingPolicy childPolicy, ReplicaOrdering replicaOrdering, String localRack) {
+    if (localRack != null && replicaOrdering != ReplicaOrdering.LEAST_LOADED)
+      throw new IllegalArgumentException(
+          "A local rack can only be used with " + ReplicaOrdering.LEAST_LOADED + " ordering");
     this.childPolicy = childPolicy;
     this.replicaOrdering = replicaOrdering;
+    this.localRack = localRack;
   }
 
   /**
@@ -179,7 +221,10 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
     if (partitionKey == null || keyspace == null)
       return childPolicy.newQueryPlan(keyspace, statement);
 
-    final Set<Host> replicas = clusterMetadata.getReplicas(Metadata.quote(keyspace), partitionKey);
+    // Only quote if needed: the quoted name would be unquoted again, which costs two copies
+    String keyspaceId =
+        keyspace.isEmpty() ? Metadata.quote(keyspace) : Metadata.quoteIfNecessary(keyspace);
+    final Set<Host> replicas = clusterMetadata.getReplicas(keyspaceId, partitionKey);
     if (replicas.isEmpty()) return childPolicy.newQueryPlan(loggedKeyspace, statement);
 
     if (replicaOrdering == ReplicaOrdering.NEUTRAL) {
@@ -223,40 +268,112 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
       };
 
     } else {
+      return new ReplicasFirstPlan(replicas, replicaOrdering, loggedKeyspace, statement);
+    }
+  }
 
-      final Iterator<Host> replicasIterator;
-
-      if (replicaOrdering == ReplicaOrdering.RANDOM) {
-        List<Host> replicasList = Lists.newArrayList(replicas);
-        Collections.shuffle(replicasList);
-        replicasIterator = replicasList.iterator();
+  /**
+   * Returns the local replicas, in topological, random or least loaded order, then the rest of the
+   * child policy's plan.
+   *
+   * <p>The replicas are accessed by index in the list view of the (immutable) replica set, so that
+   * they are neither copied nor shuffled: a random or least loaded order is drawn as the plan is
+   * iterated, by picking one of the remaining replicas at each step.
+   */
+  private class ReplicasFirstPlan extends AbstractIterator<Host> {
+
+    private final Set<Host> replicas;
+    private final List<Host> replicasList;
+    private final ReplicaOrdering ordering;
+    private final String loggedKeyspace;
+    private final Statement statement;
+
+    private int remaining;
+    // With RANDOM and LEAST_LOADED, the replicas already returned (bit i for replica i)
+    private long visited;
+    // With TOPOLOGICAL, the next replica
+    private int position;
+
+    private Iterator<Host> childIterator;
+
+    private ReplicasFirstPlan(
+        Set<Host> replicas, ReplicaOrdering ordering, String loggedKeyspace, Statement statement) {
+      this.replicas = replicas;
+      if (ordering != ReplicaOrdering.TOPOLOGICAL && replicas.size() > 64) {
+        // Replication factors above 64 are not realistic, fall back to a shuffled copy
+        List<Host> copy = new ArrayList<Host>(replicas);
+        Collections.shuffle(copy, RANDOM.get());
+        this.replicasList = copy;
+        this.ordering = ReplicaOrdering.TOPOLOGICAL;
       } else {
-        replicasIterator = replicas.iterator();
+        // Doesn't copy if the set is immutable, which is always the case with the driver's
+        // metadata
+        this.replicasList = ImmutableList.copyOf(replicas);
+        this.ordering = ordering;
       }
+      this.loggedKeyspace = loggedKeyspace;
+      this.statement = statement;
+      this.remaining = replicasList.size();
+    }
 
-      return new AbstractIterator<Host>() {
+    @Override
+    protected Host computeNext() {
+      while (remaining > 0) {
+        Host host;
+        if (ordering == ReplicaOrdering.RANDOM) host = nextRandomReplica();
+        else if (ordering == ReplicaOrdering.LEAST_LOADED) host = nextLeastLoadedReplica();
+        else host = replicasList.get(position++);
+        remaining--;
+        if (host.isUp() && childPolicy.distance(host) == HostDistance.LOCAL) return host;
+      }
 
-        private Iterator<Host> childIterator;
+      if (childIterator == null)
+        childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
 
-        @Override
-        protected Host computeNext() {
-          while (replicasIterator.hasNext()) {
-            Host host = replicasIterator.next();
-            if (host.isUp() && childPolicy.distance(host) == HostDistance.LOCAL) return host;
-          }
+      while (childIterator.hasNext()) {
+        Host host = childIterator.next();
+        // Skip it if it was already a local replica
+        if (!replicas.contains(host) || childPolicy.distance(host) != HostDistance.LOCAL)
+          return host;
+      }
+      return endOfData();
+    }
 
-          if (childIterator == null)
-            childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
+    // Picks uniformly among the replicas not returned yet
+    private Host nextRandomReplica() {
+      int skip = RANDOM.get().nextInt(remaining);
+      for (int i = 0; ; i++) {
+        if ((visited & (1L << i)) == 0 && skip-- == 0) {
+          visited |= 1L << i;
+          return replicasList.get(i);
+        }
+      }
+    }
 
-          while (childIterator.hasNext()) {
-            Host host = childIterator.next();
-            // Skip it if it was already a local replica
-            if (!replicas.contains(host) || childPolicy.distance(host) != HostDistance.LOCAL)
-              return host;
-          }
-          return endOfData();
+    // Picks the least loaded of the replicas not returned yet, in the local rack if possible. Ties
+    // are broken uniformly at random (reservoir sampling).
+    private Host nextLeastLoadedReplica() {
+      int best = -1;
+      boolean bestInRack = false;
+      int bestLoad = 0;
+      int ties = 0;
+      for (int i = 0; i < replicasList.size(); i++) {
+        if ((visited & (1L << i)) != 0) continue;
+        Host host = replicasList.get(i);
+        boolean inRack = localRack != null && localRack.equals(host.getRack());
+        if (bestInRack && !inRack) continue;
+        int load = host.getInFlightQueries();
+        if (best < 0 || (inRack && !bestInRack) || load < bestLoad) {
+          best = i;
+          bestInRack = inRack;
+          bestLoad = load;
+          ties = 1;
+        } else if (load == bestLoad && RANDOM.get().nextInt(++ties) == 0) {
+          best = i;
         }
-      };
+      }
+      visited |= 1L << best;
+      return replicasList.get(best);
     }
   }
 
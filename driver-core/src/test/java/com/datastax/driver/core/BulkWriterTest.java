@@ -0,0 +1,186 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BulkWriterTest extends CCMTestsSupport {
+
+  private PreparedStatement insert;
+
+  @Override
+  public void onTestContextInitialized() {
+    execute("CREATE TABLE bulk (k int, c int, v int, PRIMARY KEY (k, c))");
+  }
+
+  @BeforeMethod(groups = "short")
+  public void setUp() {
+    session().execute("TRUNCATE bulk");
+    insert = session().prepare("INSERT INTO bulk (k, c, v) VALUES (?, ?, ?)");
+  }
+
+  @Test(groups = "short")
+  public void should_group_statements_by_partition() {
+    BulkWriter writer =
+        session()
+            .newBulkWriter(
+                new BulkWriterOptions()
+                    .setGrouping(BulkWriterOptions.Grouping.PARTITION)
+                    .setMaxBatchStatements(100));
+    // Interleave the partitions, each of them should still end up in its own batch
+    for (int c = 0; c < 10; c++) {
+      for (int k = 0; k < 3; k++) writer.add(insert.bind(k, c, c));
+    }
+    writer.close();
+
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(3);
+    assertThat(writer.getBatchSizes().getSnapshot().getMin()).isEqualTo(10);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(10);
+    assertThat(writer.getWrittenStatements().getCount()).isEqualTo(30);
+    assertThat(countRows()).isEqualTo(30);
+  }
+
+  @Test(groups = "short")
+  public void should_group_statements_of_partitions_with_same_replicas() {
+    // With a single node, all partitions have the same replica set
+    BulkWriter writer =
+        session()
+            .newBulkWriter(
+                new BulkWriterOptions()
+                    .setGrouping(BulkWriterOptions.Grouping.REPLICA_SET)
+                    .setMaxBatchStatements(100));
+    for (int k = 0; k < 30; k++) writer.add(insert.bind(k, 0, k));
+    writer.close();
+
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(1);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(30);
+    assertThat(countRows()).isEqualTo(30);
+  }
+
+  @Test(groups = "short")
+  public void should_send_batch_when_it_reaches_max_statements() {
+    BulkWriter writer = session().newBulkWriter(new BulkWriterOptions().setMaxBatchStatements(8));
+    for (int c = 0; c < 20; c++) writer.add(insert.bind(0, c, c));
+
+    // Two full batches were sent, the remaining statements wait for the flush
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(2);
+    writer.close();
+
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(3);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(8);
+    assertThat(writer.getBatchSizes().getSnapshot().getMin()).isEqualTo(4);
+    assertThat(countRows()).isEqualTo(20);
+  }
+
+  @Test(groups = "short")
+  public void should_not_exceed_max_batch_bytes() {
+    ProtocolVersion protocolVersion =
+        cluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+    CodecRegistry codecRegistry = cluster().getConfiguration().getCodecRegistry();
+    int statementBytes = insert.bind(0, 0, 0).requestSizeInBytes(protocolVersion, codecRegistry);
+    int maxBatchBytes = 3 * statementBytes + statementBytes / 2;
+
+    BulkWriter writer =
+        session()
+            .newBulkWriter(
+                new BulkWriterOptions().setMaxBatchStatements(100).setMaxBatchBytes(maxBatchBytes));
+    for (int c = 0; c < 10; c++) writer.add(insert.bind(0, c, c));
+    writer.close();
+
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(4);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(3);
+    assertThat(writer.getBatchSizesInBytes().getSnapshot().getMax())
+        .isLessThanOrEqualTo(maxBatchBytes);
+    assertThat(countRows()).isEqualTo(10);
+  }
+
+  @Test(groups = "short")
+  public void should_send_oldest_batch_when_too_many_statements_are_buffered() {
+    BulkWriter writer =
+        session()
+            .newBulkWriter(
+                new BulkWriterOptions()
+                    .setGrouping(BulkWriterOptions.Grouping.PARTITION)
+                    .setMaxBatchStatements(100)
+                    .setMaxBufferedStatements(5));
+    for (int c = 0; c < 4; c++) writer.add(insert.bind(0, c, c));
+    assertThat(writer.getBatchSizes().getCount()).isZero();
+
+    // The second statement of partition 1 exceeds the limit, which evicts the batch of partition 0
+    for (int c = 0; c < 4; c++) writer.add(insert.bind(1, c, c));
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(1);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(4);
+
+    writer.close();
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(2);
+    assertThat(countRows()).isEqualTo(8);
+  }
+
+  @Test(groups = "short")
+  public void should_execute_unbatchable_statements_on_their_own() {
+    BulkWriter writer = session().newBulkWriter(new BulkWriterOptions().setMaxBatchStatements(100));
+    // No routing key
+    writer.add(new SimpleStatement("INSERT INTO bulk (k, c, v) VALUES (0, 0, 0)"));
+    // Named values
+    writer.add(
+        new SimpleStatement(
+            "INSERT INTO bulk (k, c, v) VALUES (:k, :c, :v)",
+            ImmutableMap.<String, Object>of("k", 0, "c", 1, "v", 1)));
+    // Batches
+    writer.add(new BatchStatement().add(insert.bind(0, 2, 2)).add(insert.bind(0, 3, 3)));
+    writer.close();
+
+    assertThat(writer.getBatchSizes().getCount()).isEqualTo(3);
+    assertThat(writer.getBatchSizes().getSnapshot().getMax()).isEqualTo(1);
+    assertThat(writer.getWrittenStatements().getCount()).isEqualTo(3);
+    assertThat(countRows()).isEqualTo(4);
+  }
+
+  @Test(groups = "short")
+  public void should_report_failed_statements_on_flush() {
+    BulkWriter writer = session().newBulkWriter(new BulkWriterOptions().setMaxRetriesPerBatch(0));
+    writer.add(new SimpleStatement("INSERT INTO bulk (k, c, v) VALUES (1, 1, 1)"));
+    writer.add(new SimpleStatement("INSERT INTO does_not_exist (k) VALUES (1)"));
+    try {
+      writer.flush();
+      fail("Expected an InvalidQueryException");
+    } catch (InvalidQueryException e) {
+      // expected
+    }
+    assertThat(writer.getWrittenStatements().getCount()).isEqualTo(1);
+    assertThat(writer.getFailedStatements().getCount()).isEqualTo(1);
+
+    // The error is only reported once
+    writer.close();
+  }
+
+  @Test(groups = "short", expectedExceptions = IllegalStateException.class)
+  public void should_not_accept_statements_after_close() {
+    BulkWriter writer = session().newBulkWriter(new BulkWriterOptions());
+    writer.close();
+    writer.add(new SimpleStatement("INSERT INTO bulk (k, c, v) VALUES (1, 1, 1)"));
+  }
+
+  private long countRows() {
+    return session().execute("SELECT count(*) FROM bulk").one().getLong(0);
+  }
+}
@@ -200,6 +200,45 @@ public class CodecRegistryTest {
     assertThat(actual).isNotNull().accepts(cqlType).accepts(value).isSameAs(expected);
   }
 
+  @Test(groups = "unit", dataProvider = "cqlAndJava")
+  public void should_find_same_codec_on_repeated_lookups(
+      DataType cqlType, Class<?> javaType, TypeCodec<?> expected) {
+    // given
+    CodecRegistry registry = new CodecRegistry();
+    // when
+    registry.codecFor(cqlType, javaType);
+    registry.codecFor(cqlType, of(javaType));
+    // then
+    assertThat(registry.codecFor(cqlType, javaType)).isSameAs(expected);
+    assertThat(registry.codecFor(cqlType, of(javaType))).isSameAs(expected);
+    assertThat(registry.codecFor(cqlType)).accepts(cqlType);
+  }
+
+  @Test(groups = "unit")
+  public void should_not_reuse_value_lookups_for_collections_with_different_elements() {
+    // given
+    CodecRegistry registry = new CodecRegistry();
+    // when
+    TypeCodec<?> ints = registry.codecFor(singletonList(1));
+    TypeCodec<?> strings = registry.codecFor(singletonList("foo"));
+    // then
+    assertThat(ints).accepts(listOf(Integer.class));
+    assertThat(strings).accepts(listOf(String.class));
+    assertThat(registry.codecFor(singletonList(1))).accepts(listOf(Integer.class));
+  }
+
+  @Test(groups = "unit")
+  public void should_distinguish_collection_types_with_the_same_java_type() {
+    // given
+    CodecRegistry registry = new CodecRegistry();
+    // when
+    TypeCodec<?> ints = registry.codecFor(list(cint()), listOf(Integer.class));
+    TypeCodec<?> texts = registry.codecFor(list(text()), listOf(String.class));
+    // then
+    assertThat(registry.codecFor(list(cint()), listOf(Integer.class))).isSameAs(ints);
+    assertThat(registry.codecFor(list(text()), listOf(String.class))).isSameAs(texts);
+  }
+
   @Test(groups = "unit")
   public void should_find_newly_registered_codec_by_cql_type() {
     // given
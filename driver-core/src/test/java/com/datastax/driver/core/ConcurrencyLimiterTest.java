@@ -0,0 +1,147 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.SyntaxError;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+public class ConcurrencyLimiterTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test(groups = "unit")
+  public void aimd_should_grow_while_host_is_busy() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Aimd(1000);
+    assertThat(limiter.getLimit()).isEqualTo(250);
+    long now = System.nanoTime();
+    for (int i = 0; i < 2000; i++) {
+      now += MS;
+      limiter.onSample(now, MS, limiter.getLimit(), false);
+    }
+    assertThat(limiter.getLimit()).isBetween(255, 260);
+  }
+
+  @Test(groups = "unit")
+  public void aimd_should_not_grow_while_application_is_the_limit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Aimd(1000);
+    long now = System.nanoTime();
+    for (int i = 0; i < 2000; i++) {
+      now += MS;
+      limiter.onSample(now, MS, 10, false);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(250);
+  }
+
+  @Test(groups = "unit")
+  public void should_back_off_once_per_round_trip() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Aimd(1000);
+    long now = System.nanoTime();
+    limiter.onSample(now, 20 * MS, 250, true);
+    assertThat(limiter.getLimit()).isEqualTo(225);
+
+    // Sent before the first backoff: part of the same burst
+    limiter.onSample(now + MS, 20 * MS, 250, true);
+    assertThat(limiter.getLimit()).isEqualTo(225);
+
+    // Sent after the first backoff
+    limiter.onSample(now + 30 * MS, 20 * MS, 225, true);
+    assertThat(limiter.getLimit()).isEqualTo(202);
+  }
+
+  @Test(groups = "unit")
+  public void should_stay_between_one_and_max_limit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Aimd(8);
+    long now = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      now += MS;
+      limiter.onSample(now, MS, 8, false);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(8);
+
+    for (int i = 0; i < 100; i++) {
+      now += 100 * MS;
+      limiter.onSample(now, 20 * MS, 8, true);
+    }
+    assertThat(limiter.getLimit()).isEqualTo(1);
+  }
+
+  @Test(groups = "unit")
+  public void gradient_should_shrink_when_latency_rises_and_grow_when_it_recovers() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Gradient(1000);
+    long now = System.nanoTime();
+    now = windows(limiter, now, 10, MS);
+    assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(250);
+
+    // The host becomes 5 times slower
+    now = windows(limiter, now, 20, 5 * MS);
+    int shrunk = limiter.getLimit();
+    assertThat(shrunk).isLessThan(125);
+
+    // Back to normal
+    windows(limiter, now, 20, MS);
+    assertThat(limiter.getLimit()).isGreaterThan(shrunk);
+  }
+
+  @Test(groups = "unit")
+  public void gradient_should_tolerate_small_latency_variations() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Gradient(1000);
+    long now = System.nanoTime();
+    now = windows(limiter, now, 10, 2 * MS);
+    int limit = limiter.getLimit();
+    windows(limiter, now, 10, 3 * MS);
+    assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(limit);
+  }
+
+  @Test(groups = "unit")
+  public void gradient_should_not_grow_while_application_is_the_limit() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Gradient(1000);
+    long now = System.nanoTime();
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        now += 10 * MS;
+        limiter.onSample(now, MS, 10, false);
+      }
+    }
+    assertThat(limiter.getLimit()).isEqualTo(250);
+  }
+
+  @Test(groups = "unit")
+  public void should_only_count_timeouts_and_overloaded_errors_as_drops() {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Aimd(1000);
+    limiter.onRequestCompleted(new SyntaxError(null, "bad query"), MS, 250);
+    assertThat(limiter.getLimit()).isEqualTo(250);
+    limiter.onRequestCompleted(new OperationTimedOutException(null), 20 * MS, 250);
+    assertThat(limiter.getLimit()).isEqualTo(225);
+  }
+
+  /**
+   * Feeds windows of 10 samples over 100 milliseconds, with as many requests in flight as the limit
+   * allows.
+   */
+  private static long windows(ConcurrencyLimiter limiter, long now, int count, long latency) {
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < 10; j++) {
+        now += 10 * MS;
+        limiter.onSample(now, latency, limiter.getLimit(), false);
+      }
+    }
+    return now;
+  }
+}
@@ -20,6 +20,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import com.datastax.driver.core.exceptions.UnsupportedFeatureException;
+import java.util.concurrent.TimeUnit;
 import org.testng.annotations.Test;
 
 /** Test ResultSet paging correct behavior. */
@@ -62,4 +63,29 @@ public class FetchingTest extends CCMTestsSupport {
           ProtocolVersion.V1);
     }
   }
+
+  @Test(groups = "short")
+  public void should_fetch_pages_ahead_in_background() throws InterruptedException {
+    String key = "prefetch_test";
+    for (int i = 0; i < 100; i++)
+      session().execute(String.format("INSERT INTO test (k, v) VALUES ('%s', %d)", key, i));
+
+    SimpleStatement st = new SimpleStatement(String.format("SELECT v FROM test WHERE k='%s'", key));
+    st.setFetchSize(5);
+    st.setPrefetchPages(3);
+    ResultSet rs = session().execute(st);
+
+    // Pages are fetched one after the other, wait until the read-ahead window is full
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (rs.getAvailableWithoutFetching() < 20 && System.nanoTime() < deadline)
+      TimeUnit.MILLISECONDS.sleep(10);
+    assertEquals(rs.getAvailableWithoutFetching(), 20);
+
+    long hitsBefore = cluster().getMetrics().getPrefetchHits().getCount();
+    for (int i = 0; i < 100; i++) assertEquals(rs.one().getInt(0), i);
+
+    assertTrue(rs.isExhausted());
+    assertTrue(rs.isFullyFetched());
+    assertTrue(cluster().getMetrics().getPrefetchHits().getCount() > hitsBefore);
+  }
 }
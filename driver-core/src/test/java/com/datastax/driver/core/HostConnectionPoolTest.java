@@ -71,6 +71,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.scassandra.cql.PrimitiveType;
 import org.scassandra.http.client.PrimingRequest;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class HostConnectionPoolTest extends ScassandraTestBase.PerClassCluster {
@@ -156,6 +157,107 @@ public class HostConnectionPoolTest extends ScassandraTestBase.PerClassCluster {
     }
   }
 
+  @DataProvider
+  public static Object[][] connectionSelections() {
+    return new Object[][] {
+      {PoolingOptions.ConnectionSelection.POWER_OF_TWO_CHOICES},
+      {PoolingOptions.ConnectionSelection.THREAD_AFFINITY}
+    };
+  }
+
+  /**
+   * Ensures that connection selection strategies that do not scan the whole pool still fill all
+   * core connections before enqueuing requests (by falling back to the least busy connection when
+   * their candidate is full).
+   *
+   * @test_category connection:connection_pool
+   */
+  @Test(groups = "short", dataProvider = "connectionSelections")
+  public void should_fill_all_connections_with_selection_strategy(
+      PoolingOptions.ConnectionSelection selection) {
+    Cluster cluster = createClusterBuilder().build();
+    List<MockRequest> allRequests = newArrayList();
+    try {
+      cluster.getConfiguration().getPoolingOptions().setConnectionSelection(selection);
+      HostConnectionPool pool = createPool(cluster, 3, 3);
+
+      assertThat(pool.connections.size()).isEqualTo(3);
+      List<Connection> coreConnections = newArrayList(pool.connections);
+      // fill connections
+      List<MockRequest> requests = MockRequest.sendMany(3 * 128, pool);
+      assertBorrowedConnections(requests, coreConnections);
+      allRequests.addAll(requests);
+      for (Connection connection : coreConnections) {
+        assertThat(connection.inFlight.get()).isEqualTo(128);
+      }
+      assertThat(pool.pendingBorrowCount.get()).isEqualTo(0);
+
+      // add one more request, it should be enqueued
+      allRequests.add(MockRequest.send(pool, 1));
+      assertThat(pool.pendingBorrowCount.get()).isEqualTo(1);
+    } finally {
+      MockRequest.completeAll(allRequests);
+      cluster.close();
+    }
+  }
+
+  /**
+   * Ensures that an adaptive concurrency limit applies to the host as a whole, and not to each
+   * connection: once it has backed off to its minimum, a pool of several connections only lets one
+   * request in flight.
+   *
+   * @test_category connection:connection_pool
+   */
+  @Test(groups = "short")
+  public void should_apply_adaptive_concurrency_limit_to_all_connections_together() {
+    Cluster cluster = createClusterBuilder().build();
+    List<MockRequest> allRequests = newArrayList();
+    try {
+      cluster
+          .getConfiguration()
+          .getPoolingOptions()
+          .setConcurrencyLimit(PoolingOptions.ConcurrencyLimit.AIMD);
+      HostConnectionPool pool = createPool(cluster, 3, 3);
+      assertThat(pool.connections.size()).isEqualTo(3);
+
+      // Simulate timeouts, one round trip apart, until the limit reaches its minimum
+      long now = System.nanoTime();
+      for (int i = 0; i < 100; i++) {
+        now += TimeUnit.SECONDS.toNanos(1);
+        pool.limiter.onSample(now, TimeUnit.MILLISECONDS.toNanos(20), 0, true);
+      }
+      assertThat(pool.limiter.getLimit()).isEqualTo(ConcurrencyLimiter.MIN_LIMIT);
+
+      MockRequest first = MockRequest.send(pool);
+      allRequests.add(first);
+      assertThat(first.getConnection()).isNotNull();
+
+      // The other connections are idle, but the host is at its limit
+      MockRequest failedBorrow = MockRequest.send(pool);
+      try {
+        failedBorrow.getConnection();
+        fail("Expected a BusyPoolException");
+      } catch (BusyPoolException e) {
+        /*expected*/
+      }
+      assertThat(pool.totalInFlight.get()).isEqualTo(1);
+
+      // A queued request is only served once the first one completes
+      MockRequest queued = MockRequest.send(pool, 1);
+      allRequests.add(queued);
+      assertThat(pool.pendingBorrowCount.get()).isEqualTo(1);
+      assertThat(queued.connectionFuture.isDone()).isFalse();
+
+      MockRequest.completeMany(1, allRequests);
+      assertThat(queued.getConnection()).isNotNull();
+      assertThat(pool.pendingBorrowCount.get()).isEqualTo(0);
+      assertThat(pool.totalInFlight.get()).isEqualTo(1);
+    } finally {
+      MockRequest.completeAll(allRequests);
+      cluster.close();
+    }
+  }
+
   /**
    * Ensures that if a fixed-sized pool has filled its core connections and reached a number of
    * requests to cause it to be enqueued, that if the request is not serviced within 100ms, a
@@ -1590,7 +1692,7 @@ public class HostConnectionPoolTest extends ScassandraTestBase.PerClassCluster {
                 public Connection.ResponseHandler apply(Connection connection) {
                   MockRequest thisRequest = MockRequest.this;
                   thisRequest.responseHandler =
-                      new Connection.ResponseHandler(connection, -1, thisRequest);
+                      new Connection.ResponseHandler(connection, -1, thisRequest, null);
                   connection.dispatcher.add(thisRequest.responseHandler);
                   return responseHandler;
                 }
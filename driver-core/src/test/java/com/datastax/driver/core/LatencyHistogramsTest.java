@@ -0,0 +1,196 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.net.InetSocketAddress;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LatencyHistogramsTest {
+
+  private Host host1;
+  private Host host2;
+  private Statement statement;
+  private MetricRegistry registry;
+  private Cluster cluster;
+
+  @BeforeMethod(groups = "unit")
+  public void setup() {
+    host1 = mockHost("127.0.0.1");
+    host2 = mockHost("127.0.0.2");
+    statement = mock(Statement.class);
+    registry = new MetricRegistry();
+    Metrics metrics = mock(Metrics.class);
+    when(metrics.getRegistry()).thenReturn(registry);
+    cluster = mock(Cluster.class);
+    when(cluster.getMetrics()).thenReturn(metrics);
+  }
+
+  @Test(groups = "unit")
+  public void should_record_latencies_per_host_and_error() {
+    LatencyHistograms histograms =
+        LatencyHistograms.builder().withInterval(50, MILLISECONDS).build();
+    histograms.onRegister(cluster);
+
+    for (int i = 1; i <= 100; i++) {
+      histograms.update(host1, statement, null, MILLISECONDS.toNanos(i));
+      histograms.update(host2, statement, null, MILLISECONDS.toNanos(2 * i));
+    }
+    histograms.update(
+        host1, statement, new OperationTimedOutException(null), MILLISECONDS.toNanos(12000));
+    Uninterruptibles.sleepUninterruptibly(100, MILLISECONDS);
+
+    assertThat(histograms.getHostHistograms()).containsOnlyKeys("127_0_0_1", "127_0_0_2");
+    Histogram histogram1 = registry.getHistograms().get("latencies.host.127_0_0_1");
+    Histogram histogram2 = registry.getHistograms().get("latencies.host.127_0_0_2");
+    assertThat(histogram1.getCount()).isEqualTo(101);
+    Snapshot snapshot1 = histogram1.getSnapshot();
+    Snapshot snapshot2 = histogram2.getSnapshot();
+    assertThat(snapshot1.size()).isEqualTo(101);
+    assertThat(snapshot1.getMedian()).isEqualTo((double) MILLISECONDS.toMicros(51), within(1000.0));
+    assertThat(snapshot2.getMedian()).isEqualTo((double) MILLISECONDS.toMicros(100), within(1000.0));
+
+    assertThat(histograms.getErrorHistograms()).containsOnlyKeys("OperationTimedOutException");
+    Snapshot errors =
+        registry.getHistograms().get("latencies.error.OperationTimedOutException").getSnapshot();
+    assertThat(errors.getMax()).isEqualTo(MILLISECONDS.toMicros(12000), within(120000L));
+
+    // Only bound statements are tracked by default
+    assertThat(histograms.getStatementHistograms()).isEmpty();
+  }
+
+  @Test(groups = "unit")
+  public void should_not_expose_values_before_first_interval() {
+    LatencyHistograms histograms = LatencyHistograms.builder().build();
+    histograms.onRegister(cluster);
+
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(1));
+
+    Histogram histogram = histograms.getHostHistograms().get("127_0_0_1");
+    assertThat(histogram.getCount()).isEqualTo(1);
+    assertThat(histogram.getSnapshot().size()).isEqualTo(0);
+  }
+
+  @Test(groups = "unit")
+  public void should_use_statement_labeler() {
+    LatencyHistograms histograms =
+        LatencyHistograms.builder()
+            .withStatementLabeler(
+                new LatencyHistograms.StatementLabeler() {
+                  @Override
+                  public String label(Statement statement) {
+                    return statement == LatencyHistogramsTest.this.statement ? "my-query" : null;
+                  }
+                })
+            .build();
+    histograms.onRegister(cluster);
+
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(1));
+    histograms.update(host1, mock(Statement.class), null, MILLISECONDS.toNanos(1));
+
+    assertThat(histograms.getStatementHistograms()).containsOnlyKeys("my-query");
+    assertThat(registry.getHistograms().get("latencies.statement.my-query").getCount())
+        .isEqualTo(1);
+  }
+
+  @Test(groups = "unit")
+  public void should_bound_number_of_histograms() {
+    LatencyHistograms histograms = LatencyHistograms.builder().withMaxHistograms(1, 0, 1).build();
+    histograms.onRegister(cluster);
+
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(1));
+    histograms.update(
+        host2,
+        statement,
+        new ReadTimeoutException(ConsistencyLevel.ONE, 0, 1, false),
+        MILLISECONDS.toNanos(1));
+    histograms.update(
+        host2, statement, new OperationTimedOutException(null), MILLISECONDS.toNanos(1));
+
+    assertThat(histograms.getHostHistograms()).containsOnlyKeys("127_0_0_1", "other");
+    assertThat(histograms.getHostHistograms().get("other").getCount()).isEqualTo(2);
+    assertThat(histograms.getErrorHistograms()).containsOnlyKeys("ReadTimeoutException", "other");
+    // Statements are all over the limit, but no bound statement was seen
+    assertThat(histograms.getStatementHistograms()).isEmpty();
+  }
+
+  @Test(groups = "unit")
+  public void should_drop_histogram_of_removed_host() {
+    LatencyHistograms histograms = LatencyHistograms.builder().withMaxHistograms(1, 0, 0).build();
+    histograms.onRegister(cluster);
+    ArgumentCaptor<Host.StateListener> listener = ArgumentCaptor.forClass(Host.StateListener.class);
+    verify(cluster).register(listener.capture());
+
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(1));
+    listener.getValue().onRemove(host1);
+
+    assertThat(histograms.getHostHistograms()).isEmpty();
+    assertThat(registry.getHistograms()).isEmpty();
+
+    // The slot of the removed host is available again
+    histograms.update(host2, statement, null, MILLISECONDS.toNanos(1));
+    assertThat(histograms.getHostHistograms()).containsOnlyKeys("127_0_0_2");
+  }
+
+  @Test(groups = "unit")
+  public void should_clamp_latencies_above_highest_trackable_value() {
+    LatencyHistograms histograms =
+        LatencyHistograms.builder()
+            .withHighestTrackableLatency(1, MILLISECONDS)
+            .withInterval(1, MICROSECONDS)
+            .build();
+    histograms.onRegister(cluster);
+
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(5));
+    Uninterruptibles.sleepUninterruptibly(1, MILLISECONDS);
+
+    Snapshot snapshot = histograms.getHostHistograms().get("127_0_0_1").getSnapshot();
+    assertThat(snapshot.getMax()).isEqualTo(1000L, within(10L));
+  }
+
+  @Test(groups = "unit")
+  public void should_unregister_histograms() {
+    LatencyHistograms histograms = LatencyHistograms.builder().build();
+    histograms.onRegister(cluster);
+    histograms.update(host1, statement, null, MILLISECONDS.toNanos(1));
+    assertThat(registry.getHistograms()).containsKey("latencies.host.127_0_0_1");
+
+    histograms.onUnregister(cluster);
+
+    assertThat(registry.getHistograms()).isEmpty();
+  }
+
+  private static Host mockHost(String address) {
+    Host host = mock(Host.class);
+    when(host.getSocketAddress()).thenReturn(new InetSocketAddress(address, 9042));
+    return host;
+  }
+}
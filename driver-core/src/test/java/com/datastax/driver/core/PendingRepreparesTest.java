@@ -0,0 +1,65 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetSocketAddress;
+import org.testng.annotations.Test;
+
+public class PendingRepreparesTest {
+
+  private static final InetSocketAddress HOST1 = new InetSocketAddress("127.0.0.1", 9042);
+  private static final InetSocketAddress HOST2 = new InetSocketAddress("127.0.0.2", 9042);
+  private static final MD5Digest ID1 = MD5Digest.wrap(new byte[] {1});
+  private static final MD5Digest ID2 = MD5Digest.wrap(new byte[] {2});
+
+  @Test(groups = "unit")
+  public void should_only_let_first_request_prepare() {
+    PendingReprepares pending = new PendingReprepares(mock(Cluster.Manager.class));
+
+    PendingReprepares.Reprepare first = pending.join(HOST1, ID1);
+    PendingReprepares.Reprepare second = pending.join(HOST1, MD5Digest.wrap(new byte[] {1}));
+    assertThat(first.isOwner()).isTrue();
+    assertThat(second.isOwner()).isFalse();
+    assertThat(second.future().isDone()).isFalse();
+
+    // Other statements and other hosts are independent
+    assertThat(pending.join(HOST1, ID2).isOwner()).isTrue();
+    assertThat(pending.join(HOST2, ID1).isOwner()).isTrue();
+
+    first.complete();
+    assertThat(first.future().isDone()).isTrue();
+    assertThat(second.future().isDone()).isTrue();
+  }
+
+  @Test(groups = "unit")
+  public void should_start_new_preparation_once_previous_completed() {
+    PendingReprepares pending = new PendingReprepares(mock(Cluster.Manager.class));
+
+    PendingReprepares.Reprepare first = pending.join(HOST1, ID1);
+    first.complete();
+
+    PendingReprepares.Reprepare second = pending.join(HOST1, ID1);
+    assertThat(second.isOwner()).isTrue();
+
+    // A late completion of the first one must not affect the new one
+    first.complete();
+    assertThat(second.future().isDone()).isFalse();
+    assertThat(pending.join(HOST1, ID1).isOwner()).isFalse();
+  }
+}
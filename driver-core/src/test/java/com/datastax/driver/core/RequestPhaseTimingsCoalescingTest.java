@@ -0,0 +1,60 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+public class RequestPhaseTimingsCoalescingTest extends ScassandraTestBase.PerClassCluster {
+
+  private static final int MAX_DELAY_MICROS = 20000;
+
+  @Override
+  protected Cluster.Builder createClusterBuilder() {
+    // Only the delay budget can trigger a flush once the write rate is known
+    return super.createClusterBuilder()
+        .withQueryOptions(new QueryOptions().setPhaseTimingsEnabled(true))
+        .withSocketOptions(
+            new SocketOptions()
+                .setWriteCoalescingEnabled(true)
+                .setWriteCoalescingMaxFrames(Integer.MAX_VALUE)
+                .setWriteCoalescingMaxBytes(Integer.MAX_VALUE)
+                .setWriteCoalescingMaxDelayMicros(MAX_DELAY_MICROS));
+  }
+
+  @Test(groups = "short")
+  public void should_count_coalescing_delay_as_flush_queue_time() throws Exception {
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+    for (int i = 0; i < 1000; i++) futures.add(session.executeAsync("SELECT * FROM foo"));
+    List<ResultSet> results = Futures.allAsList(futures).get();
+
+    long maxFlushQueueNanos = 0;
+    for (ResultSet rs : results) {
+      RequestPhaseTimings timings = rs.getExecutionInfo().getPhaseTimings();
+      assertThat(timings.getFlushQueueNanos()).isGreaterThanOrEqualTo(0);
+      assertThat(timings.getWireNanos()).isGreaterThan(0);
+      maxFlushQueueNanos = Math.max(maxFlushQueueNanos, timings.getFlushQueueNanos());
+    }
+    // Requests held back by the flusher must be accounted for in the flush queue, not on the wire
+    assertThat(maxFlushQueueNanos)
+        .isGreaterThanOrEqualTo(TimeUnit.MICROSECONDS.toNanos(MAX_DELAY_MICROS / 2));
+  }
+}
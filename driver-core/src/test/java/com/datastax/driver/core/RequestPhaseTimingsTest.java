@@ -0,0 +1,60 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class RequestPhaseTimingsTest extends ScassandraTestBase.PerClassCluster {
+
+  @Override
+  protected Cluster.Builder createClusterBuilder() {
+    return super.createClusterBuilder()
+        .withQueryOptions(new QueryOptions().setPhaseTimingsEnabled(true));
+  }
+
+  @Test(groups = "short")
+  public void should_expose_phase_timings_in_execution_info_and_metrics() {
+    ResultSet rs = session.execute("SELECT * FROM foo");
+
+    RequestPhaseTimings timings = rs.getExecutionInfo().getPhaseTimings();
+    assertThat(timings).isNotNull();
+    assertThat(timings.getPoolWaitNanos()).isGreaterThanOrEqualTo(0);
+    assertThat(timings.getFlushQueueNanos()).isGreaterThanOrEqualTo(0);
+    assertThat(timings.getWireNanos()).isGreaterThan(0);
+    assertThat(timings.getDecodeNanos()).isGreaterThanOrEqualTo(0);
+    assertThat(timings.getCompletionNanos()).isGreaterThanOrEqualTo(0);
+
+    Metrics.RequestPhases phases = cluster.getMetrics().getRequestPhases();
+    assertThat(phases.getPoolWait().getCount()).isGreaterThan(0);
+    assertThat(phases.getWire().getCount()).isGreaterThan(0);
+    assertThat(phases.getDecode().getCount()).isGreaterThan(0);
+    assertThat(phases.getCompletion().getCount()).isGreaterThan(0);
+  }
+
+  @Test(groups = "short")
+  public void should_not_record_phase_timings_when_disabled() {
+    QueryOptions queryOptions = cluster.getConfiguration().getQueryOptions();
+    queryOptions.setPhaseTimingsEnabled(false);
+    try {
+      ResultSet rs = session.execute("SELECT * FROM foo");
+      assertThat(rs.getExecutionInfo().getPhaseTimings()).isNull();
+    } finally {
+      queryOptions.setPhaseTimingsEnabled(true);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class RequestThrottlerTest {
+
+  private StubCluster stub;
+  private Cluster cluster;
+
+  @BeforeClass(groups = "short")
+  public void setUp() {
+    stub =
+        StubCluster.builder()
+            .withIpPrefix(TestUtils.IP_PREFIX)
+            .withPort(TestUtils.findAvailablePort())
+            .build()
+            .init();
+  }
+
+  @AfterMethod(groups = "short", alwaysRun = true)
+  public void closeCluster() {
+    if (cluster != null) cluster.close();
+    stub.setLatency(StubLatency.none());
+  }
+
+  @AfterClass(groups = "short", alwaysRun = true)
+  public void tearDown() {
+    if (stub != null) stub.stop();
+  }
+
+  @Test(groups = "short")
+  public void should_queue_requests_over_limit_and_reject_when_queue_is_full() throws Exception {
+    stub.setLatency(StubLatency.fixed(200, TimeUnit.MILLISECONDS));
+    Session session =
+        connect(new ThrottlingOptions().setMaxConcurrentRequests(2).setMaxQueueSize(3));
+
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+    for (int i = 0; i < 10; i++) futures.add(session.executeAsync("mock query"));
+    assertThat(cluster.getMetrics().getThrottlingQueueDepth().getValue()).isEqualTo(3);
+
+    int succeeded = 0, rejected = 0;
+    for (ResultSetFuture future : futures) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        succeeded += 1;
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(RequestThrottlingException.class);
+        rejected += 1;
+      }
+    }
+    assertThat(succeeded).isEqualTo(5);
+    assertThat(rejected).isEqualTo(5);
+    assertThat(cluster.getMetrics().getThrottlingRejections().getCount()).isEqualTo(5);
+    assertThat(cluster.getMetrics().getThrottlingWaitTimer().getCount()).isEqualTo(3);
+    assertThat(cluster.getMetrics().getThrottlingQueueDepth().getValue()).isEqualTo(0);
+  }
+
+  @Test(groups = "short")
+  public void should_fail_request_that_waits_too_long() throws Exception {
+    stub.setLatency(StubLatency.fixed(1, TimeUnit.SECONDS));
+    Session session =
+        connect(new ThrottlingOptions().setMaxConcurrentRequests(1).setMaxQueueWaitMillis(100));
+
+    ResultSetFuture first = session.executeAsync("mock query");
+    ResultSetFuture second = session.executeAsync("mock query");
+    try {
+      second.get(10, TimeUnit.SECONDS);
+      fail("Expected a RequestThrottlingException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause())
+          .isInstanceOf(RequestThrottlingException.class)
+          .hasMessageContaining("timed out after 100 MILLISECONDS");
+    }
+    assertThat(first.isDone()).isFalse();
+    first.get(10, TimeUnit.SECONDS);
+
+    // The slot of the first request was released
+    stub.setLatency(StubLatency.none());
+    session.execute("mock query");
+  }
+
+  @Test(groups = "short")
+  public void should_release_slot_of_request_cancelled_while_queued() throws Exception {
+    stub.setLatency(StubLatency.fixed(200, TimeUnit.MILLISECONDS));
+    Session session = connect(new ThrottlingOptions().setMaxConcurrentRequests(1));
+
+    ResultSetFuture first = session.executeAsync("mock query");
+    ResultSetFuture second = session.executeAsync("mock query");
+    ResultSetFuture third = session.executeAsync("mock query");
+    assertThat(cluster.getMetrics().getThrottlingQueueDepth().getValue()).isEqualTo(2);
+
+    second.cancel(true);
+    assertThat(cluster.getMetrics().getThrottlingQueueDepth().getValue()).isEqualTo(1);
+
+    long requestCount = stub.getRequestCount();
+    first.get(10, TimeUnit.SECONDS);
+    third.get(10, TimeUnit.SECONDS);
+    assertThat(stub.getRequestCount() - requestCount).isEqualTo(1);
+  }
+
+  @Test(groups = "short")
+  public void should_share_capacity_between_priority_classes_according_to_weights()
+      throws Exception {
+    stub.setLatency(StubLatency.fixed(2, TimeUnit.MILLISECONDS));
+    Session session =
+        connect(
+            new ThrottlingOptions() {
+              @Override
+              public int getPriorityClass(Statement statement) {
+                return ((SimpleStatement) statement).getQueryString().startsWith("high") ? 0 : 1;
+              }
+            }.setMaxConcurrentRequests(1).setPriorityWeights(3, 1));
+
+    final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+    // Low priority requests are submitted first
+    for (int i = 0; i < 200; i++) {
+      final String query = i < 100 ? "low" : "high";
+      ResultSetFuture future = session.executeAsync(query);
+      future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              completed.add(query);
+            }
+          },
+          MoreExecutors.sameThreadExecutor());
+      futures.add(future);
+    }
+    for (ResultSetFuture future : futures) future.get(10, TimeUnit.SECONDS);
+
+    // Skip the first request, that was started immediately
+    assertThat(Collections.frequency(completed.subList(1, 81), "high")).isBetween(58, 62);
+  }
+
+  @Test(groups = "short")
+  public void should_limit_request_rate() throws Exception {
+    Session session = connect(new ThrottlingOptions().setMaxRequestsPerSecond(50));
+    // Consume the initial burst
+    for (int i = 0; i < 50; i++) session.execute("mock query");
+
+    long start = System.nanoTime();
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+    for (int i = 0; i < 30; i++) futures.add(session.executeAsync("mock query"));
+    for (ResultSetFuture future : futures) future.get(10, TimeUnit.SECONDS);
+
+    assertThat(System.nanoTime() - start).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(400));
+  }
+
+  @Test(groups = "short")
+  public void should_fail_queued_requests_when_session_closes() throws Exception {
+    stub.setLatency(StubLatency.fixed(200, TimeUnit.MILLISECONDS));
+    Session session = connect(new ThrottlingOptions().setMaxConcurrentRequests(1));
+
+    session.executeAsync("mock query");
+    ResultSetFuture queued = session.executeAsync("mock query");
+    session.closeAsync();
+    try {
+      queued.get(10, TimeUnit.SECONDS);
+      fail("Expected an IllegalStateException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+  public void should_reject_non_positive_priority_weight() {
+    new ThrottlingOptions().setPriorityWeights(2, 0);
+  }
+
+  private Session connect(ThrottlingOptions options) {
+    cluster = stub.clusterBuilder().withThrottlingOptions(options).build();
+    return cluster.connect();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import org.testng.annotations.Test;
+
+public class RowsPageTest {
+
+  @Test(groups = "unit")
+  public void should_index_cells_and_consume_rows_section() {
+    ByteBuf body = Unpooled.buffer();
+    // row 0
+    CBUtil.writeValue(TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED), body);
+    CBUtil.writeValue((ByteBuffer) null, body);
+    // row 1
+    CBUtil.writeValue(TypeCodec.cint().serialize(2, ProtocolVersion.NEWEST_SUPPORTED), body);
+    CBUtil.writeValue(ByteBuffer.allocate(0), body);
+    // trailing bytes that do not belong to the page
+    body.writeInt(42);
+
+    RowsPage page = RowsPage.decode(body, 2, 2);
+
+    assertThat(page.size()).isEqualTo(2);
+    assertThat(body.readableBytes()).isEqualTo(4);
+    assertThat(page.getValue(0, 0).getInt(0)).isEqualTo(1);
+    assertThat(page.getValue(0, 1)).isNull();
+    assertThat(page.getValue(1, 0).getInt(0)).isEqualTo(2);
+    assertThat(page.getValue(1, 1).remaining()).isEqualTo(0);
+  }
+
+  @Test(groups = "unit")
+  public void should_return_independent_views_of_cells() {
+    ByteBuf body = Unpooled.buffer();
+    CBUtil.writeValue(TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED), body);
+    RowsPage page = RowsPage.decode(body, 1, 1);
+
+    ByteBuffer first = page.getValue(0, 0);
+    assertThat(first.position()).isEqualTo(0);
+    assertThat(first.remaining()).isEqualTo(4);
+    first.getInt();
+
+    assertThat(page.getValue(0, 0).remaining()).isEqualTo(4);
+  }
+}
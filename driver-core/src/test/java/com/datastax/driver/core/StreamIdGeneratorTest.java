@@ -16,6 +16,7 @@
 package com.datastax.driver.core;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import org.testng.annotations.Test;
 
@@ -43,4 +44,19 @@ public class StreamIdGeneratorTest {
 
     assertEquals(generator.next(), -1);
   }
+
+  @Test(groups = "unit")
+  public void should_never_generate_ids_beyond_max_ids() throws Exception {
+    for (ProtocolVersion version : new ProtocolVersion[] {ProtocolVersion.V2, ProtocolVersion.V3}) {
+      StreamIdGenerator generator = StreamIdGenerator.newInstance(version);
+      int maxIds = generator.maxIds();
+      assertEquals(maxIds, version == ProtocolVersion.V2 ? 128 : 32768);
+
+      for (int i = 0; i < maxIds; i++) {
+        int id = generator.next();
+        assertTrue(id >= 0 && id < maxIds, "Unexpected id " + id);
+      }
+      assertEquals(generator.next(), -1);
+    }
+  }
 }
@@ -0,0 +1,375 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An in-process, multi-node cluster of {@link StubNode}s, used to measure the driver on a single
+ * machine without the server being the bottleneck.
+ *
+ * <p>Nodes listen on consecutive addresses ({@code 127.0.0.1}, {@code 127.0.0.2}...) and the same
+ * port; addresses other than {@code 127.0.0.1} require the whole {@code 127.0.0.0/8} range to be
+ * routed to the loopback interface, which is the default on Linux but not on macOS. Each node
+ * serves the system tables describing the whole cluster, so that the driver discovers all nodes,
+ * datacenters and tokens like with a real cluster.
+ *
+ * <pre>
+ * StubCluster stub = StubCluster.builder().withNodes(3, 3).build().init();
+ * stub.prime("SELECT v FROM ks.t WHERE k = ?",
+ *     StubResult.rows("ks", "t").withColumn("v", DataType.text()).withRow("foo").build()
+ *         .withVariables(ImmutableMap.of("k", DataType.bigint())));
+ * stub.setLatency(StubLatency.logNormal(500, 5000, TimeUnit.MICROSECONDS));
+ * Cluster cluster = stub.clusterBuilder().build();
+ * ...
+ * cluster.close();
+ * stub.stop();
+ * </pre>
+ */
+public class StubCluster {
+
+  private final int port;
+  private final List<StubNode> nodes;
+  private final List<List<StubNode>> dcNodes;
+  private final String clusterName;
+  private final String cassandraVersion;
+  private final UUID schemaVersion = UUIDs.random();
+  private final int ioThreads;
+
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+
+  private StubCluster(
+      Integer[] nodesPerDc,
+      String ipPrefix,
+      int port,
+      String clusterName,
+      String cassandraVersion,
+      int ioThreads) {
+    this.port = port;
+    this.clusterName = clusterName;
+    this.cassandraVersion = cassandraVersion;
+    this.ioThreads = ioThreads;
+
+    int total = 0;
+    for (int n : nodesPerDc) total += n;
+    // Evenly spaced Murmur3 tokens
+    long spacing = (Long.MAX_VALUE / total) * 2;
+
+    ImmutableList.Builder<StubNode> nodesBuilder = ImmutableList.builder();
+    ImmutableList.Builder<List<StubNode>> dcNodesBuilder = ImmutableList.builder();
+    int node = 0;
+    for (int dc = 1; dc <= nodesPerDc.length; dc++) {
+      ImmutableList.Builder<StubNode> dcBuilder = ImmutableList.builder();
+      for (int n = 0; n < nodesPerDc[dc - 1]; n++) {
+        StubNode stubNode =
+            new StubNode(
+                this,
+                new InetSocketAddress(ipPrefix + (node + 1), port),
+                datacenter(dc),
+                "r1",
+                UUIDs.random(),
+                Long.MIN_VALUE + node * spacing);
+        nodesBuilder.add(stubNode);
+        dcBuilder.add(stubNode);
+        node += 1;
+      }
+      dcNodesBuilder.add(dcBuilder.build());
+    }
+    this.nodes = nodesBuilder.build();
+    this.dcNodes = dcNodesBuilder.build();
+    for (StubNode stubNode : nodes) primeSystemTables(stubNode);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static String datacenter(int dc) {
+    return "DC" + dc;
+  }
+
+  /** Starts all nodes. */
+  public synchronized StubCluster init() {
+    if (bossGroup == null) {
+      bossGroup = new NioEventLoopGroup(1);
+      workerGroup = new NioEventLoopGroup(ioThreads);
+    }
+    for (StubNode node : nodes) node.start();
+    return this;
+  }
+
+  /** Stops all nodes and releases their resources. */
+  public synchronized void stop() {
+    for (StubNode node : nodes) node.stop();
+    if (bossGroup != null) {
+      bossGroup.shutdownGracefully().syncUninterruptibly();
+      workerGroup.shutdownGracefully().syncUninterruptibly();
+      bossGroup = null;
+      workerGroup = null;
+    }
+  }
+
+  /** @param node the index of the node in the cluster, starting at 1. */
+  public StubNode node(int node) {
+    return nodes.get(node - 1);
+  }
+
+  public List<StubNode> nodes() {
+    return nodes;
+  }
+
+  /**
+   * @param dc the index of the datacenter, starting at 1.
+   * @param node the index of the node in the datacenter, starting at 1.
+   */
+  public StubNode node(int dc, int node) {
+    return dcNodes.get(dc - 1).get(node - 1);
+  }
+
+  public List<StubNode> nodes(int dc) {
+    return dcNodes.get(dc - 1);
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /** @return a builder for a driver {@link Cluster} connecting to this stub cluster. */
+  public Cluster.Builder clusterBuilder() {
+    return Cluster.builder().addContactPoints(node(1).getAddress().getAddress()).withPort(port);
+  }
+
+  /** Primes a query on all nodes, see {@link StubNode#prime(String, StubResult)}. */
+  public StubCluster prime(String query, StubResult result) {
+    for (StubNode node : nodes) node.prime(query, result);
+    return this;
+  }
+
+  /** Sets the default result of all nodes, see {@link StubNode#setDefaultResult(StubResult)}. */
+  public StubCluster setDefaultResult(StubResult defaultResult) {
+    for (StubNode node : nodes) node.setDefaultResult(defaultResult);
+    return this;
+  }
+
+  /** Sets the latency of all nodes, see {@link StubNode#setLatency(StubLatency)}. */
+  public StubCluster setLatency(StubLatency latency) {
+    for (StubNode node : nodes) node.setLatency(latency);
+    return this;
+  }
+
+  /** @return the total number of requests received by all nodes. */
+  public long getRequestCount() {
+    long count = 0;
+    for (StubNode node : nodes) count += node.getRequestCount();
+    return count;
+  }
+
+  EventLoopGroup bossGroup() {
+    return bossGroup;
+  }
+
+  EventLoopGroup workerGroup() {
+    return workerGroup;
+  }
+
+  private void primeSystemTables(StubNode local) {
+    InetAddress localAddress = local.getAddress().getAddress();
+    StubResult systemLocal =
+        StubResult.rows("system", "local")
+            .withColumn("key", DataType.varchar())
+            .withColumn("bootstrapped", DataType.varchar())
+            .withColumn("broadcast_address", DataType.inet())
+            .withColumn("cluster_name", DataType.varchar())
+            .withColumn("cql_version", DataType.varchar())
+            .withColumn("data_center", DataType.varchar())
+            .withColumn("host_id", DataType.uuid())
+            .withColumn("listen_address", DataType.inet())
+            .withColumn("partitioner", DataType.varchar())
+            .withColumn("rack", DataType.varchar())
+            .withColumn("release_version", DataType.varchar())
+            .withColumn("rpc_address", DataType.inet())
+            .withColumn("schema_version", DataType.uuid())
+            .withColumn("tokens", DataType.set(DataType.varchar()))
+            .withRow(
+                "local",
+                "COMPLETED",
+                localAddress,
+                clusterName,
+                "3.4.4",
+                local.getDatacenter(),
+                local.getHostId(),
+                localAddress,
+                "org.apache.cassandra.dht.Murmur3Partitioner",
+                local.getRack(),
+                cassandraVersion,
+                localAddress,
+                schemaVersion,
+                ImmutableSet.of(Long.toString(local.getToken())))
+            .build()
+            .withLatency(StubLatency.none());
+
+    StubResult.RowsBuilder peers =
+        StubResult.rows("system", "peers")
+            .withColumn("peer", DataType.inet())
+            .withColumn("data_center", DataType.varchar())
+            .withColumn("host_id", DataType.uuid())
+            .withColumn("preferred_ip", DataType.inet())
+            .withColumn("rack", DataType.varchar())
+            .withColumn("release_version", DataType.varchar())
+            .withColumn("rpc_address", DataType.inet())
+            .withColumn("schema_version", DataType.uuid())
+            .withColumn("tokens", DataType.set(DataType.varchar()));
+    StubResult.RowsBuilder schemaPeers =
+        StubResult.rows("system", "peers")
+            .withColumn("peer", DataType.inet())
+            .withColumn("rpc_address", DataType.inet())
+            .withColumn("schema_version", DataType.uuid());
+    List<StubNode> others = new ArrayList<StubNode>(nodes);
+    others.remove(local);
+    for (StubNode peer : others) {
+      InetAddress peerAddress = peer.getAddress().getAddress();
+      peers.withRow(
+          peerAddress,
+          peer.getDatacenter(),
+          peer.getHostId(),
+          peerAddress,
+          peer.getRack(),
+          cassandraVersion,
+          peerAddress,
+          schemaVersion,
+          ImmutableSet.of(Long.toString(peer.getToken())));
+      schemaPeers.withRow(peerAddress, peerAddress, schemaVersion);
+    }
+
+    StubResult schemaLocal =
+        StubResult.rows("system", "local")
+            .withColumn("schema_version", DataType.uuid())
+            .withRow(schemaVersion)
+            .build()
+            .withLatency(StubLatency.none());
+
+    StubResult clusterNameResult =
+        StubResult.rows("system", "local")
+            .withColumn("cluster_name", DataType.varchar())
+            .withRow(clusterName)
+            .build()
+            .withLatency(StubLatency.none());
+
+    // Must match the queries of ControlConnection and Connection exactly
+    local.setSystemTables(
+        ImmutableMap.<String, StubResult>builder()
+            .put("SELECT * FROM system.local WHERE key='local'", systemLocal)
+            .put("SELECT * FROM system.peers", peers.build().withLatency(StubLatency.none()))
+            .put(
+                "SELECT * FROM system.peers_v2",
+                StubResult.invalid("unconfigured table peers_v2").withLatency(StubLatency.none()))
+            .put("SELECT schema_version FROM system.local WHERE key='local'", schemaLocal)
+            .put(
+                "SELECT peer, rpc_address, schema_version FROM system.peers",
+                schemaPeers.build().withLatency(StubLatency.none()))
+            .put("select cluster_name from system.local", clusterNameResult)
+            .build());
+  }
+
+  public static class Builder {
+
+    private Integer[] nodes = {1};
+    private String ipPrefix = "127.0.0.";
+    private int port = ProtocolOptions.DEFAULT_PORT;
+    private String clusterName = "stub";
+    private String cassandraVersion = "3.11.2";
+    private int ioThreads = 0;
+
+    /** @param nodes the number of nodes in each datacenter. */
+    public Builder withNodes(Integer... nodes) {
+      this.nodes = nodes;
+      return this;
+    }
+
+    public Builder withIpPrefix(String ipPrefix) {
+      this.ipPrefix = ipPrefix;
+      return this;
+    }
+
+    /** @param port the port of all nodes, 0 to pick an available one. */
+    public Builder withPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    public Builder withClusterName(String clusterName) {
+      this.clusterName = clusterName;
+      return this;
+    }
+
+    /** @param cassandraVersion the {@code release_version} reported in the system tables. */
+    public Builder withCassandraVersion(String cassandraVersion) {
+      this.cassandraVersion = cassandraVersion;
+      return this;
+    }
+
+    /**
+     * @param ioThreads the number of threads shared by all nodes to serve requests, 0 to use
+     *     Netty's default (twice the number of cores). Keep it low when the driver runs on the same
+     *     machine, so that both don't compete for the same cores.
+     */
+    public Builder withIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+      return this;
+    }
+
+    public StubCluster build() {
+      return new StubCluster(
+          nodes,
+          ipPrefix,
+          port == 0 ? findAvailablePort() : port,
+          clusterName,
+          cassandraVersion,
+          ioThreads);
+    }
+
+    private static int findAvailablePort() {
+      ServerSocket socket = null;
+      try {
+        socket = new ServerSocket(0);
+        return socket.getLocalPort();
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not find an available port", e);
+      } finally {
+        if (socket != null) {
+          try {
+            socket.close();
+          } catch (IOException e) {
+            // ignore
+          }
+        }
+      }
+    }
+  }
+}
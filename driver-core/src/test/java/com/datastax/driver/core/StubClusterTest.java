@@ -0,0 +1,139 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class StubClusterTest {
+
+  private StubCluster stub;
+  private Cluster cluster;
+  private Session session;
+
+  @BeforeClass(groups = "short")
+  public void setUp() {
+    stub =
+        StubCluster.builder()
+            .withNodes(2, 1)
+            .withIpPrefix(TestUtils.IP_PREFIX)
+            .withPort(TestUtils.findAvailablePort())
+            .build()
+            .init();
+    stub.prime(
+        "SELECT v FROM ks.t WHERE k = ?",
+        StubResult.rows("ks", "t")
+            .withColumn("v", DataType.text())
+            .withColumn("l", DataType.list(DataType.cint()))
+            .withRow("foo", ImmutableList.of(1, 2))
+            .withRow("bar", null)
+            .build()
+            .withVariables(ImmutableMap.<String, DataType>of("k", DataType.bigint())));
+    cluster = stub.clusterBuilder().build();
+    session = cluster.connect();
+  }
+
+  @AfterClass(groups = "short", alwaysRun = true)
+  public void tearDown() {
+    if (cluster != null) cluster.close();
+    if (stub != null) stub.stop();
+  }
+
+  @Test(groups = "short")
+  public void should_expose_topology_through_system_tables() {
+    Metadata metadata = cluster.getMetadata();
+    assertThat(metadata.getClusterName()).isEqualTo("stub");
+    assertThat(metadata.getAllHosts()).hasSize(3);
+    for (StubNode node : stub.nodes()) {
+      Host host = metadata.getHost(node.getAddress());
+      assertThat(host).isNotNull();
+      assertThat(host.getDatacenter()).isEqualTo(node.getDatacenter());
+      assertThat(host.getTokens()).hasSize(1);
+    }
+  }
+
+  @Test(groups = "short")
+  public void should_serve_primed_rows_to_prepared_statements() {
+    PreparedStatement ps = session.prepare("SELECT v FROM ks.t WHERE k = ?");
+    assertThat(ps.getVariables().getType("k")).isEqualTo(DataType.bigint());
+
+    List<Row> rows = session.execute(ps.bind(1L)).all();
+
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0).getString("v")).isEqualTo("foo");
+    assertThat(rows.get(0).getList("l", Integer.class)).containsExactly(1, 2);
+    assertThat(rows.get(1).isNull("l")).isTrue();
+  }
+
+  @Test(groups = "short")
+  public void should_serve_void_result_to_unprimed_queries() {
+    ResultSet rs = session.execute("INSERT INTO ks.t (k, v) VALUES (1, 'foo')");
+    assertThat(rs.getColumnDefinitions().size()).isEqualTo(0);
+    assertThat(rs.isExhausted()).isTrue();
+  }
+
+  @Test(groups = "short")
+  public void should_serve_primed_errors() {
+    stub.prime("SELECT error", StubResult.unavailable(ConsistencyLevel.QUORUM, 2, 1));
+    try {
+      session.execute("SELECT error");
+      fail("Expected an UnavailableException");
+    } catch (UnavailableException e) {
+      assertThat(e.getRequiredReplicas()).isEqualTo(2);
+      assertThat(e.getAliveReplicas()).isEqualTo(1);
+    }
+  }
+
+  @Test(groups = "short")
+  public void should_delay_responses() {
+    stub.prime(
+        "SELECT slow",
+        StubResult.voidResult().withLatency(StubLatency.fixed(200, TimeUnit.MILLISECONDS)));
+    long start = System.nanoTime();
+    session.execute("SELECT slow");
+    assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test(groups = "short")
+  public void should_queue_delayed_responses_over_node_capacity() throws Exception {
+    stub.prime(
+        "SELECT busy",
+        StubResult.voidResult().withLatency(StubLatency.fixed(100, TimeUnit.MILLISECONDS)));
+    for (StubNode node : stub.nodes()) node.setMaxConcurrentRequests(1);
+    try {
+      // At least two of them go to the same node, and are processed one after the other
+      List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+      long start = System.nanoTime();
+      for (int i = 0; i < 4; i++) futures.add(session.executeAsync("SELECT busy"));
+      for (ResultSetFuture future : futures) future.get(10, TimeUnit.SECONDS);
+      assertThat(System.nanoTime() - start)
+          .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    } finally {
+      for (StubNode node : stub.nodes()) node.setMaxConcurrentRequests(0);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution of the delay a {@link StubNode} waits for before sending a response.
+ *
+ * <p>Delays are drawn independently for each response, so responses of the same connection can be
+ * reordered, like with a real Cassandra node.
+ */
+public abstract class StubLatency {
+
+  private static final ThreadLocal<Random> RANDOM =
+      new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+          return new Random();
+        }
+      };
+
+  /** @return the delay of the next response in nanoseconds, 0 to respond immediately. */
+  public abstract long nextDelayNanos();
+
+  /** Responds immediately. */
+  public static StubLatency none() {
+    return NONE;
+  }
+
+  /** Always waits for {@code delay}. */
+  public static StubLatency fixed(long delay, TimeUnit unit) {
+    final long nanos = unit.toNanos(delay);
+    return new StubLatency() {
+      @Override
+      public long nextDelayNanos() {
+        return nanos;
+      }
+
+      @Override
+      public String toString() {
+        return "fixed(" + nanos + "ns)";
+      }
+    };
+  }
+
+  /** Waits for a delay uniformly distributed between {@code min} and {@code max}. */
+  public static StubLatency uniform(long min, long max, TimeUnit unit) {
+    if (max < min) throw new IllegalArgumentException("max must be greater than or equal to min");
+    final long minNanos = unit.toNanos(min);
+    final long rangeNanos = unit.toNanos(max) - minNanos;
+    return new StubLatency() {
+      @Override
+      public long nextDelayNanos() {
+        return minNanos + (long) (RANDOM.get().nextDouble() * rangeNanos);
+      }
+
+      @Override
+      public String toString() {
+        return "uniform(" + minNanos + "ns, " + (minNanos + rangeNanos) + "ns)";
+      }
+    };
+  }
+
+  /**
+   * Waits for an exponentially distributed delay: most responses are fast, with a long tail of slow
+   * ones.
+   */
+  public static StubLatency exponential(long mean, TimeUnit unit) {
+    final long meanNanos = unit.toNanos(mean);
+    return new StubLatency() {
+      @Override
+      public long nextDelayNanos() {
+        return (long) (-meanNanos * Math.log(1 - RANDOM.get().nextDouble()));
+      }
+
+      @Override
+      public String toString() {
+        return "exponential(" + meanNanos + "ns)";
+      }
+    };
+  }
+
+  /**
+   * Waits for a log-normally distributed delay, defined by its median and 99th percentile. This is
+   * usually a good approximation of the latencies observed on a real cluster.
+   */
+  public static StubLatency logNormal(long median, long p99, TimeUnit unit) {
+    if (median <= 0) throw new IllegalArgumentException("median must be strictly positive");
+    if (p99 < median)
+      throw new IllegalArgumentException("p99 must be greater than or equal to median");
+    final long medianNanos = unit.toNanos(median);
+    final long p99Nanos = unit.toNanos(p99);
+    final double mu = Math.log(medianNanos);
+    // 2.326 is the 99th percentile of the standard normal distribution
+    final double sigma = (Math.log(p99Nanos) - mu) / 2.326;
+    return new StubLatency() {
+      @Override
+      public long nextDelayNanos() {
+        return (long) Math.exp(mu + sigma * RANDOM.get().nextGaussian());
+      }
+
+      @Override
+      public String toString() {
+        return "logNormal(median=" + medianNanos + "ns, p99=" + p99Nanos + "ns)";
+      }
+    };
+  }
+
+  private static final StubLatency NONE =
+      new StubLatency() {
+        @Override
+        public long nextDelayNanos() {
+          return 0;
+        }
+
+        @Override
+        public String toString() {
+          return "none";
+        }
+      };
+}
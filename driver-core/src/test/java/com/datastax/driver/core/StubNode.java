@@ -0,0 +1,457 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A node of a {@link StubCluster}: a server that speaks the native protocol (v3 to v5) and serves
+ * canned responses.
+ *
+ * <p>For each {@code QUERY} or {@code EXECUTE} request, the node looks up the response to send in
+ * this order:
+ *
+ * <ol>
+ *   <li>the result {@link #prime(String, StubResult) primed} for the exact query string;
+ *   <li>the system tables read by the driver's control connection;
+ *   <li>the {@link #setDefaultResult(StubResult) default result}, {@code VOID} unless changed.
+ * </ol>
+ *
+ * Requests are decoded just enough to find the query, and responses are encoded once when their
+ * {@link StubResult} is created: the node does as little work as possible per request, so that it
+ * doesn't become the bottleneck when measuring the driver.
+ */
+public class StubNode {
+
+  private static final Logger logger = LoggerFactory.getLogger(StubNode.class);
+
+  private static final Message.Request.Type[] REQUEST_TYPES = new Message.Request.Type[16];
+
+  static {
+    for (Message.Request.Type type : Message.Request.Type.values())
+      REQUEST_TYPES[type.opcode] = type;
+  }
+
+  private static final StubResult READY = StubResult.ready();
+  private static final StubResult SUPPORTED =
+      StubResult.supported(
+          ImmutableMap.<String, List<String>>of(
+              "CQL_VERSION", ImmutableList.of("3.4.4"),
+              "COMPRESSION", ImmutableList.<String>of()));
+  private static final StubResult EMPTY_ROWS =
+      StubResult.rows("system", "stub").build().withLatency(StubLatency.none());
+
+  private final StubCluster cluster;
+  private final InetSocketAddress address;
+  private final String datacenter;
+  private final String rack;
+  private final UUID hostId;
+  private final long token;
+
+  private final ConcurrentMap<String, StubResult> primes =
+      new ConcurrentHashMap<String, StubResult>();
+  private final ConcurrentMap<MD5Digest, String> preparedQueries =
+      new ConcurrentHashMap<MD5Digest, String>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+  private volatile StubResult defaultResult = StubResult.voidResult();
+  private volatile StubLatency latency = StubLatency.none();
+  private volatile int maxConcurrentRequests;
+
+  // Requests waiting for a processing slot, guarded by this node's monitor
+  private final ArrayDeque<Response> waiting = new ArrayDeque<Response>();
+  private int processing;
+
+  private volatile Map<String, StubResult> systemTables = Collections.emptyMap();
+
+  private volatile Channel serverChannel;
+
+  StubNode(
+      StubCluster cluster,
+      InetSocketAddress address,
+      String datacenter,
+      String rack,
+      UUID hostId,
+      long token) {
+    this.cluster = cluster;
+    this.address = address;
+    this.datacenter = datacenter;
+    this.rack = rack;
+    this.hostId = hostId;
+    this.token = token;
+  }
+
+  public InetSocketAddress getAddress() {
+    return address;
+  }
+
+  public String getDatacenter() {
+    return datacenter;
+  }
+
+  public String getRack() {
+    return rack;
+  }
+
+  public UUID getHostId() {
+    return hostId;
+  }
+
+  public long getToken() {
+    return token;
+  }
+
+  /** @return the number of requests received by this node since it was created. */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Primes the result of a query. The query string must match exactly, whether the query is sent as
+   * a simple statement or prepared.
+   */
+  public StubNode prime(String query, StubResult result) {
+    primes.put(query, result);
+    return this;
+  }
+
+  public StubNode clearPrimes() {
+    primes.clear();
+    return this;
+  }
+
+  /** Sets the result of the queries that have not been primed. */
+  public StubNode setDefaultResult(StubResult defaultResult) {
+    this.defaultResult = defaultResult;
+    return this;
+  }
+
+  /**
+   * Sets the latency of the results that don't define their own with {@link
+   * StubResult#withLatency(StubLatency)}.
+   */
+  public StubNode setLatency(StubLatency latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /**
+   * Simulates a node that processes at most {@code maxConcurrentRequests} delayed requests at a
+   * time: the others wait in a FIFO queue before their own delay starts, so that the latency grows
+   * with the load, as it does on a saturated node. 0 (the default) means no limit. Requests without
+   * a delay are always answered immediately.
+   */
+  public StubNode setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    return this;
+  }
+
+  /** Starts accepting connections. */
+  public synchronized void start() {
+    if (serverChannel != null) return;
+    ServerBootstrap bootstrap =
+        new ServerBootstrap()
+            .group(cluster.bossGroup(), cluster.workerGroup())
+            .channel(NioServerSocketChannel.class)
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel channel) {
+                    channels.add(channel);
+                    channel
+                        .pipeline()
+                        .addLast("frameDecoder", new FrameDecoder())
+                        .addLast("frameEncoder", new Frame.Encoder())
+                        .addLast("requestHandler", new RequestHandler());
+                  }
+                });
+    serverChannel = bootstrap.bind(address).syncUninterruptibly().channel();
+    logger.debug("Stub node {} listening", address);
+  }
+
+  /** Closes all connections and stops accepting new ones, simulating a node going down. */
+  public synchronized void stop() {
+    if (serverChannel == null) return;
+    serverChannel.close().syncUninterruptibly();
+    channels.close().syncUninterruptibly();
+    serverChannel = null;
+    preparedQueries.clear();
+    logger.debug("Stub node {} stopped", address);
+  }
+
+  public boolean isRunning() {
+    return serverChannel != null;
+  }
+
+  /** @param systemTables the results of the driver's queries to system tables, by query string. */
+  void setSystemTables(Map<String, StubResult> systemTables) {
+    this.systemTables = systemTables;
+  }
+
+  private StubResult resultFor(String query) {
+    StubResult result = primes.get(query);
+    if (result == null) result = systemResult(query);
+    return result == null ? defaultResult : result;
+  }
+
+  private StubResult systemResult(String query) {
+    if (query.regionMatches(true, 0, "USE ", 0, 4)) {
+      String keyspace = query.substring(4).trim();
+      if (keyspace.endsWith(";")) keyspace = keyspace.substring(0, keyspace.length() - 1);
+      return StubResult.setKeyspace(
+          keyspace.startsWith("\"") ? keyspace.replace("\"", "") : keyspace.toLowerCase());
+    }
+    if (!query.regionMatches(true, 0, "SELECT ", 0, 7)) return null;
+    StubResult result = systemTables.get(query);
+    if (result != null) return result;
+    String lowerCase = query.toLowerCase();
+    if (lowerCase.contains(" from system.") || lowerCase.contains(" from system_schema."))
+      return EMPTY_ROWS;
+    return null;
+  }
+
+  private Map<String, DataType> variablesFor(String query) {
+    StubResult result = resultFor(query);
+    if (result.variables != null) return result.variables;
+    Map<String, DataType> variables = new LinkedHashMap<String, DataType>();
+    for (int i = 0; i < query.length(); i++)
+      if (query.charAt(i) == '?') variables.put("v" + variables.size(), DataType.blob());
+    return variables;
+  }
+
+  private StubResult handle(Frame request) {
+    ByteBuf body = request.body;
+    if (request.header.flags.contains(Frame.Header.Flag.CUSTOM_PAYLOAD)) CBUtil.readBytesMap(body);
+    int opcode = request.header.opcode;
+    Message.Request.Type type =
+        opcode >= 0 && opcode < REQUEST_TYPES.length ? REQUEST_TYPES[opcode] : null;
+    if (type == null) return StubResult.protocolError("Unknown opcode " + opcode);
+    switch (type) {
+      case STARTUP:
+        Map<String, String> options = CBUtil.readStringMap(body);
+        if (options.containsKey(Requests.Startup.COMPRESSION_OPTION))
+          return StubResult.protocolError("Compression is not supported by the stub server");
+        return READY;
+      case REGISTER:
+        return READY;
+      case OPTIONS:
+        return SUPPORTED;
+      case QUERY:
+        return resultFor(CBUtil.readLongString(body));
+      case PREPARE:
+        String query = CBUtil.readLongString(body);
+        MD5Digest id = MD5Digest.wrap(Hashing.md5().hashString(query, Charsets.UTF_8).asBytes());
+        preparedQueries.put(id, query);
+        return StubResult.prepared(id, variablesFor(query), request.header.version);
+      case EXECUTE:
+        id = MD5Digest.wrap(CBUtil.readBytes(body));
+        query = preparedQueries.get(id);
+        return query == null ? StubResult.unprepared(id) : resultFor(query);
+      case BATCH:
+        return StubResult.voidResult();
+      default:
+        return StubResult.protocolError(type + " requests are not supported by the stub server");
+    }
+  }
+
+  private class RequestHandler extends SimpleChannelInboundHandler<Frame> {
+
+    private boolean flushNeeded;
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, Frame request) {
+      requestCount.incrementAndGet();
+      StubResult result;
+      try {
+        result = handle(request);
+      } finally {
+        request.body.release();
+      }
+      final Frame response =
+          Frame.create(
+              request.header.version,
+              result.type.opcode,
+              request.header.streamId,
+              EnumSet.noneOf(Frame.Header.Flag.class),
+              result.body());
+      long delay = (result.latency == null ? latency : result.latency).nextDelayNanos();
+      if (delay <= 0) {
+        ctx.write(response);
+        flushNeeded = true;
+      } else {
+        Response delayed = new Response(ctx, response, delay);
+        int maxConcurrentRequests = StubNode.this.maxConcurrentRequests;
+        if (maxConcurrentRequests > 0) {
+          delayed.holdsSlot = true;
+          synchronized (StubNode.this) {
+            if (processing >= maxConcurrentRequests) {
+              waiting.add(delayed);
+              return;
+            }
+            processing += 1;
+          }
+        }
+        delayed.schedule();
+      }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+      // Coalesce the responses to all the requests read from the socket in one syscall
+      if (flushNeeded) {
+        flushNeeded = false;
+        ctx.flush();
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      logger.warn("Unexpected error on stub node " + address + ", closing connection", cause);
+      ctx.close();
+    }
+  }
+
+  /** A response sent after a delay, that holds a processing slot if the node has a capacity. */
+  private class Response implements Runnable {
+    private final ChannelHandlerContext ctx;
+    private final Frame frame;
+    private final long delay;
+    private boolean holdsSlot;
+
+    Response(ChannelHandlerContext ctx, Frame frame, long delay) {
+      this.ctx = ctx;
+      this.frame = frame;
+      this.delay = delay;
+    }
+
+    void schedule() {
+      ctx.executor().schedule(this, delay, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+      ctx.writeAndFlush(frame);
+      if (!holdsSlot) return;
+      // Hand the slot over to the next waiting request, its delay starts now
+      Response next;
+      synchronized (StubNode.this) {
+        next = waiting.poll();
+        if (next == null) processing -= 1;
+      }
+      if (next != null) next.schedule();
+    }
+  }
+
+  /**
+   * Splits the incoming bytes into request frames. The driver's {@code Frame.Decoder} can't be used
+   * since it only accepts responses.
+   */
+  private static class FrameDecoder extends ByteToMessageDecoder {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      if (in.readableBytes() < 8) return;
+      int index = in.readerIndex();
+      int version = in.getByte(index) & 0x7F;
+      if (version < 3 || version > 5) {
+        rejectVersion(ctx, in, version);
+        return;
+      }
+      if (in.readableBytes() < 9) return;
+      int length = in.getInt(index + 5);
+      if (in.readableBytes() < 9 + length) return;
+
+      int flags = in.getByte(index + 1);
+      int streamId = in.getShort(index + 2);
+      int opcode = in.getByte(index + 4);
+      in.skipBytes(9);
+      ByteBuf body = in.readSlice(length).retain();
+      out.add(
+          Frame.create(
+              ProtocolVersion.fromInt(version),
+              opcode,
+              streamId,
+              Frame.Header.Flag.deserialize(flags),
+              body));
+    }
+
+    /**
+     * Responds like Cassandra to a protocol version it doesn't support, so that the driver
+     * negotiates down.
+     */
+    private void rejectVersion(ChannelHandlerContext ctx, ByteBuf in, int version) {
+      // v1 and v2 headers have a single byte stream id, answer with the same format
+      ProtocolVersion responseVersion =
+          version == 1 || version == 2 ? ProtocolVersion.fromInt(version) : ProtocolVersion.V4;
+      int streamId =
+          version < 3 ? in.getByte(in.readerIndex() + 2) : in.getShort(in.readerIndex() + 2);
+      in.skipBytes(in.readableBytes());
+      StubResult error =
+          StubResult.protocolError(
+              String.format(
+                  "Invalid or unsupported protocol version (%d); "
+                      + "supported versions are (3/v3, 4/v4, 5/v5-beta)",
+                  version));
+      // Write from the tail of the pipeline, the encoder is after this handler
+      ctx.channel()
+          .writeAndFlush(
+              Frame.create(
+                  responseVersion,
+                  error.type.opcode,
+                  streamId,
+                  EnumSet.noneOf(Frame.Header.Flag.class),
+                  error.body()));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StubNode(" + address + ", " + datacenter + ")";
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A canned response of a {@link StubNode}.
+ *
+ * <p>The body of the response is encoded once, when the result is created, so that serving it costs
+ * almost nothing to the stub: rows results in particular should be built once and primed, not
+ * rebuilt for each request.
+ */
+public class StubResult {
+
+  private static final int VOID = 1;
+  private static final int ROWS = 2;
+  private static final int SET_KEYSPACE = 3;
+
+  private static final String DURATION_CLASS_NAME = "org.apache.cassandra.db.marshal.DurationType";
+
+  private static final StubResult VOID_RESULT = result(VOID, null);
+
+  final Message.Response.Type type;
+  private final byte[] body;
+  final StubLatency latency;
+  final Map<String, DataType> variables;
+
+  private StubResult(
+      Message.Response.Type type,
+      byte[] body,
+      StubLatency latency,
+      Map<String, DataType> variables) {
+    this.type = type;
+    this.body = body;
+    this.latency = latency;
+    this.variables = variables;
+  }
+
+  /** A {@code VOID} result, as returned for writes. */
+  public static StubResult voidResult() {
+    return VOID_RESULT;
+  }
+
+  /** Starts building a {@code ROWS} result whose columns belong to {@code keyspace.table}. */
+  public static RowsBuilder rows(String keyspace, String table) {
+    return new RowsBuilder(keyspace, table);
+  }
+
+  public static StubResult serverError(String message) {
+    return error(ExceptionCode.SERVER_ERROR, message, null);
+  }
+
+  public static StubResult overloaded(String message) {
+    return error(ExceptionCode.OVERLOADED, message, null);
+  }
+
+  public static StubResult isBootstrapping() {
+    return error(ExceptionCode.IS_BOOTSTRAPPING, "Cannot read from a bootstrapping node", null);
+  }
+
+  public static StubResult syntaxError(String message) {
+    return error(ExceptionCode.SYNTAX_ERROR, message, null);
+  }
+
+  public static StubResult invalid(String message) {
+    return error(ExceptionCode.INVALID, message, null);
+  }
+
+  public static StubResult unavailable(ConsistencyLevel consistency, int required, int alive) {
+    ByteBuf extra = Unpooled.buffer();
+    CBUtil.writeConsistencyLevel(consistency, extra);
+    extra.writeInt(required);
+    extra.writeInt(alive);
+    return error(
+        ExceptionCode.UNAVAILABLE, "Cannot achieve consistency level " + consistency, extra);
+  }
+
+  public static StubResult readTimeout(
+      ConsistencyLevel consistency, int received, int blockFor, boolean dataPresent) {
+    ByteBuf extra = Unpooled.buffer();
+    CBUtil.writeConsistencyLevel(consistency, extra);
+    extra.writeInt(received);
+    extra.writeInt(blockFor);
+    extra.writeByte(dataPresent ? 1 : 0);
+    return error(
+        ExceptionCode.READ_TIMEOUT,
+        "Operation timed out - received only " + received + " responses.",
+        extra);
+  }
+
+  public static StubResult writeTimeout(
+      ConsistencyLevel consistency, int received, int blockFor, WriteType writeType) {
+    ByteBuf extra = Unpooled.buffer();
+    CBUtil.writeConsistencyLevel(consistency, extra);
+    extra.writeInt(received);
+    extra.writeInt(blockFor);
+    CBUtil.writeString(writeType.name(), extra);
+    return error(
+        ExceptionCode.WRITE_TIMEOUT,
+        "Operation timed out - received only " + received + " responses.",
+        extra);
+  }
+
+  /**
+   * Returns a copy of this result that is served with the given latency, instead of the default
+   * latency of the node.
+   */
+  public StubResult withLatency(StubLatency latency) {
+    return new StubResult(type, body, latency, variables);
+  }
+
+  /**
+   * Returns a copy of this result that declares the given bind variables when its query is
+   * prepared. Iteration order of the map must be the order of the markers in the query.
+   *
+   * <p>Without variables, the stub declares one {@code blob} variable per {@code ?} in the query,
+   * which is enough to bind values by index with {@code setBytesUnsafe}, but not by name.
+   */
+  public StubResult withVariables(Map<String, DataType> variables) {
+    return new StubResult(
+        type,
+        body,
+        latency,
+        Collections.unmodifiableMap(new LinkedHashMap<String, DataType>(variables)));
+  }
+
+  ByteBuf body() {
+    return Unpooled.wrappedBuffer(body);
+  }
+
+  static StubResult ready() {
+    return new StubResult(Message.Response.Type.READY, new byte[0], StubLatency.none(), null);
+  }
+
+  static StubResult supported(Map<String, List<String>> options) {
+    ByteBuf body = Unpooled.buffer();
+    CBUtil.writeStringToStringListMap(options, body);
+    return new StubResult(Message.Response.Type.SUPPORTED, toArray(body), StubLatency.none(), null);
+  }
+
+  static StubResult setKeyspace(String keyspace) {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(SET_KEYSPACE);
+    CBUtil.writeString(keyspace, body);
+    return new StubResult(Message.Response.Type.RESULT, toArray(body), null, null);
+  }
+
+  static StubResult unprepared(MD5Digest id) {
+    ByteBuf extra = Unpooled.buffer();
+    CBUtil.writeShortBytes(id.bytes, extra);
+    return error(ExceptionCode.UNPREPARED, "Unknown prepared statement " + id, extra);
+  }
+
+  static StubResult protocolError(String message) {
+    return error(ExceptionCode.PROTOCOL_ERROR, message, null);
+  }
+
+  /**
+   * Encodes the body of a {@code PREPARED} result. Result metadata is never sent, so the driver
+   * always asks for it when executing the statement.
+   */
+  static StubResult prepared(
+      MD5Digest id, Map<String, DataType> variables, ProtocolVersion version) {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(4); // PREPARED
+    CBUtil.writeShortBytes(id.bytes, body);
+    if (ProtocolFeature.PREPARED_METADATA_CHANGES.isSupportedBy(version))
+      CBUtil.writeShortBytes(id.bytes, body); // result metadata id, never changes
+    body.writeInt(variables.isEmpty() ? 0 : 0x0001); // GLOBAL_TABLES_SPEC
+    body.writeInt(variables.size());
+    if (version.compareTo(ProtocolVersion.V4) >= 0) body.writeInt(0); // no partition key indices
+    if (!variables.isEmpty()) {
+      CBUtil.writeString("stub", body);
+      CBUtil.writeString("stub", body);
+      for (Map.Entry<String, DataType> variable : variables.entrySet()) {
+        CBUtil.writeString(variable.getKey(), body);
+        writeType(variable.getValue(), body);
+      }
+    }
+    body.writeInt(0x0004); // result metadata: NO_METADATA
+    body.writeInt(0);
+    return new StubResult(Message.Response.Type.RESULT, toArray(body), null, null);
+  }
+
+  private static StubResult result(int kind, ByteBuf content) {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(kind);
+    if (content != null) body.writeBytes(content);
+    return new StubResult(Message.Response.Type.RESULT, toArray(body), null, null);
+  }
+
+  private static StubResult error(ExceptionCode code, String message, ByteBuf extra) {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(code.value);
+    CBUtil.writeString(message, body);
+    if (extra != null) body.writeBytes(extra);
+    return new StubResult(Message.Response.Type.ERROR, toArray(body), null, null);
+  }
+
+  private static byte[] toArray(ByteBuf buf) {
+    byte[] bytes = new byte[buf.readableBytes()];
+    buf.readBytes(bytes);
+    return bytes;
+  }
+
+  static void writeType(DataType type, ByteBuf body) {
+    switch (type.getName()) {
+      case DURATION:
+        // Duration is only a native type in protocol v5, the custom form works with all versions
+        body.writeShort(DataType.Name.CUSTOM.protocolId);
+        CBUtil.writeString(DURATION_CLASS_NAME, body);
+        break;
+      case CUSTOM:
+        body.writeShort(DataType.Name.CUSTOM.protocolId);
+        CBUtil.writeString(((DataType.CustomType) type).getCustomTypeClassName(), body);
+        break;
+      case LIST:
+      case SET:
+      case MAP:
+        body.writeShort(type.getName().protocolId);
+        for (DataType argument : type.getTypeArguments()) writeType(argument, body);
+        break;
+      case UDT:
+        UserType userType = (UserType) type;
+        body.writeShort(DataType.Name.UDT.protocolId);
+        CBUtil.writeString(userType.getKeyspace(), body);
+        CBUtil.writeString(userType.getTypeName(), body);
+        body.writeShort(userType.size());
+        for (UserType.Field field : userType) {
+          CBUtil.writeString(field.getName(), body);
+          writeType(field.getType(), body);
+        }
+        break;
+      case TUPLE:
+        List<DataType> components = ((TupleType) type).getComponentTypes();
+        body.writeShort(DataType.Name.TUPLE.protocolId);
+        body.writeShort(components.size());
+        for (DataType component : components) writeType(component, body);
+        break;
+      default:
+        body.writeShort(type.getName().protocolId);
+    }
+  }
+
+  /** Builds a {@code ROWS} result. Values are serialized with the default codec registry. */
+  public static class RowsBuilder {
+
+    private final String keyspace;
+    private final String table;
+    private final List<String> names = new ArrayList<String>();
+    private final List<DataType> types = new ArrayList<DataType>();
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+
+    private RowsBuilder(String keyspace, String table) {
+      this.keyspace = keyspace;
+      this.table = table;
+    }
+
+    public RowsBuilder withColumn(String name, DataType type) {
+      if (!rows.isEmpty()) throw new IllegalStateException("Columns must be added before rows");
+      names.add(name);
+      types.add(type);
+      return this;
+    }
+
+    public RowsBuilder withRow(Object... values) {
+      if (values.length != types.size())
+        throw new IllegalArgumentException(
+            String.format("Expected %d values, got %d", types.size(), values.length));
+      rows.add(values);
+      return this;
+    }
+
+    public StubResult build() {
+      ByteBuf content = Unpooled.buffer();
+      content.writeInt(0x0001); // GLOBAL_TABLES_SPEC
+      content.writeInt(names.size());
+      CBUtil.writeString(keyspace, content);
+      CBUtil.writeString(table, content);
+      for (int i = 0; i < names.size(); i++) {
+        CBUtil.writeString(names.get(i), content);
+        writeType(types.get(i), content);
+      }
+      content.writeInt(rows.size());
+      for (Object[] row : rows) {
+        for (int i = 0; i < row.length; i++)
+          CBUtil.writeValue(serialize(types.get(i), row[i]), content);
+      }
+      return result(ROWS, content);
+    }
+
+    private static ByteBuffer serialize(DataType type, Object value) {
+      if (value == null) return null;
+      return CodecRegistry.DEFAULT_INSTANCE
+          .codecFor(type, value)
+          .serialize(value, ProtocolVersion.NEWEST_SUPPORTED);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.utils.CassandraVersion;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import org.testng.annotations.Test;
+
+@CassandraVersion(value = "2.0.0", description = "uses paging")
+@CCMConfig(numberOfNodes = 3)
+public class TableScanTest extends CCMTestsSupport {
+
+  private static final int ROWS = 1000;
+
+  @Override
+  public void onTestContextInitialized() {
+    execute(
+        "CREATE TABLE scanned (k int, c int, v int, PRIMARY KEY (k, c))",
+        String.format(
+            "ALTER KEYSPACE %s WITH replication = {'class': 'SimpleStrategy', 'replication_factor': 2}",
+            keyspace));
+    for (int i = 0; i < ROWS; i++)
+      execute(String.format("INSERT INTO scanned (k, c, v) VALUES (%d, %d, %d)", i / 2, i % 2, i));
+  }
+
+  @Test(groups = "short")
+  public void should_scan_all_rows_exactly_once() {
+    should_scan_all_rows_exactly_once(new TableScanOptions());
+  }
+
+  @Test(groups = "short")
+  public void should_scan_all_rows_exactly_once_with_splits_and_small_pages() {
+    should_scan_all_rows_exactly_once(
+        new TableScanOptions()
+            .setSplitsPerRange(4)
+            .setFetchSize(7)
+            .setMaxConcurrentRangesPerHost(1)
+            .setMaxBufferedPages(2));
+  }
+
+  private void should_scan_all_rows_exactly_once(TableScanOptions options) {
+    TableScan scan = session().scan(table(), options);
+
+    Set<Integer> values = new HashSet<Integer>();
+    int count = 0;
+    for (Row row : scan) {
+      values.add(row.getInt("v"));
+      count += 1;
+    }
+
+    assertThat(count).isEqualTo(ROWS);
+    assertThat(values).hasSize(ROWS);
+    assertThat(scan.getCompletedRanges()).isEqualTo(scan.getTotalRanges());
+  }
+
+  @Test(groups = "short")
+  public void should_stop_iteration_when_cancelled() {
+    TableScan scan =
+        session().scan(table(), new TableScanOptions().setFetchSize(10).setMaxBufferedPages(1));
+
+    Iterator<Row> iterator = scan.iterator();
+    assertThat(iterator.hasNext()).isTrue();
+    scan.cancel();
+
+    int remaining = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      remaining += 1;
+    }
+    assertThat(remaining).isLessThan(ROWS);
+  }
+
+  @Test(groups = "short", expectedExceptions = IllegalStateException.class)
+  public void should_not_allow_iterating_twice() {
+    TableScan scan = session().scan(table(), new TableScanOptions());
+    scan.iterator();
+    scan.cancel();
+    scan.iterator();
+  }
+
+  private TableMetadata table() {
+    return cluster().getMetadata().getKeyspace(keyspace).getTable("scanned");
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that incremental token map rebuilds produce the same results as computing everything from
+ * scratch.
+ */
+public class TokenMapRebuildTest extends AbstractReplicationStrategyTest {
+
+  private final Cluster.Manager manager = mock(Cluster.Manager.class);
+
+  private Random random;
+  private Metadata metadata;
+  private List<Host> hosts;
+  private Map<Host, Set<Token>> allTokens;
+
+  @BeforeMethod(groups = "unit")
+  public void setup() {
+    random = new Random(42);
+    metadata = new Metadata(manager);
+    hosts = new ArrayList<Host>();
+    allTokens = new HashMap<Host, Set<Token>>();
+    addKeyspace(
+        "ks_nts", ImmutableMap.of("class", "NetworkTopologyStrategy", "dc1", "3", "dc2", "2"));
+    addKeyspace("ks_simple", ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "3"));
+    addKeyspace("ks_local", ImmutableMap.of("class", "LocalStrategy"));
+  }
+
+  @Test(groups = "unit")
+  public void should_match_full_rebuild_when_nodes_join_and_leave() {
+    for (int i = 0; i < 20; i++) addHost("dc" + (i % 2 + 1), "rack" + (i % 3));
+    rebuild();
+    assertMatchesFullRebuild();
+
+    for (int i = 0; i < 3; i++) {
+      addHost("dc1", "rack" + i);
+      rebuild();
+      assertMatchesFullRebuild();
+    }
+
+    allTokens.remove(hosts.remove(5));
+    rebuild();
+    assertMatchesFullRebuild();
+  }
+
+  @Test(groups = "unit")
+  public void should_match_full_rebuild_when_tokens_move() {
+    for (int i = 0; i < 20; i++) addHost("dc" + (i % 2 + 1), "rack" + (i % 3));
+    rebuild();
+
+    Token token = allTokens.get(hosts.get(0)).iterator().next();
+    allTokens.get(hosts.get(0)).remove(token);
+    allTokens.get(hosts.get(1)).add(token);
+    rebuild();
+    assertMatchesFullRebuild();
+  }
+
+  @Test(groups = "unit")
+  public void should_match_full_rebuild_when_topology_context_changes() {
+    // Fewer nodes than the replication factor in dc1
+    addHost("dc1", "rack1");
+    addHost("dc2", "rack1");
+    addHost("dc2", "rack2");
+    rebuild();
+    assertMatchesFullRebuild();
+
+    addHost("dc1", "rack1");
+    rebuild();
+    assertMatchesFullRebuild();
+
+    // New rack
+    addHost("dc1", "rack2");
+    rebuild();
+    assertMatchesFullRebuild();
+
+    // Existing node moved to another rack
+    hosts.get(0).setLocationInfo("dc1", "rack3");
+    rebuild();
+    assertMatchesFullRebuild();
+  }
+
+  @Test(groups = "unit")
+  public void should_match_full_rebuild_when_keyspaces_change() {
+    for (int i = 0; i < 20; i++) addHost("dc" + (i % 2 + 1), "rack" + (i % 3));
+    rebuild();
+
+    addKeyspace("ks_nts2", ImmutableMap.of("class", "NetworkTopologyStrategy", "dc1", "2"));
+    metadata.rebuildTokenMap();
+    assertMatchesFullRebuild();
+
+    addHost("dc2", "rack0");
+    rebuild();
+    assertMatchesFullRebuild();
+  }
+
+  private void addKeyspace(String name, Map<String, String> replication) {
+    metadata.keyspaces.put(name, new KeyspaceMetadata(name, true, replication));
+  }
+
+  private void addHost(String dc, String rack) {
+    Host host = host(socketAddress("127.0.0." + (hosts.size() + 1)), dc, rack);
+    Set<Token> tokens = new LinkedHashSet<Token>();
+    while (tokens.size() < 8) tokens.add(token(Long.toString(random.nextLong())));
+    hosts.add(host);
+    allTokens.put(host, tokens);
+  }
+
+  private void rebuild() {
+    metadata.rebuildTokenMap(partitioner(), new HashMap<Host, Set<Token>>(allTokens));
+  }
+
+  private void assertMatchesFullRebuild() {
+    Metadata expected = new Metadata(manager);
+    expected.keyspaces.putAll(metadata.keyspaces);
+    expected.rebuildTokenMap(partitioner(), new HashMap<Host, Set<Token>>(allTokens));
+
+    assertThat(metadata.getTokenRanges()).isEqualTo(expected.getTokenRanges());
+    for (String keyspace : metadata.keyspaces.keySet()) {
+      for (TokenRange range : expected.getTokenRanges()) {
+        // Replica order matters
+        assertThat(ImmutableList.copyOf(metadata.getReplicas(keyspace, range)))
+            .isEqualTo(ImmutableList.copyOf(expected.getReplicas(keyspace, range)));
+      }
+      for (Host host : hosts) {
+        assertThat(metadata.getTokenRanges(keyspace, host))
+            .isEqualTo(expected.getTokenRanges(keyspace, host));
+      }
+    }
+  }
+}
@@ -33,11 +33,14 @@ import com.datastax.driver.core.exceptions.InvalidTypeException;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -308,6 +311,129 @@ public class TypeCodecTest {
     assertThat(TypeCodec.cdouble()).accepts(Double.class).accepts(Double.TYPE).accepts(42.0D);
   }
 
+  @Test(groups = "unit")
+  public void should_serialize_collections_of_fixed_size_elements_like_packed_elements() {
+    List<Double> doubles = newArrayList(1.0D, -2.5D, Double.MAX_VALUE);
+    Set<UUID> uuids = Sets.newLinkedHashSet(newArrayList(UUID.randomUUID(), UUID.randomUUID()));
+    Map<String, Integer> textToInt = ImmutableMap.of("foo", 1, "bar", 2);
+    Map<Integer, String> intToText = ImmutableMap.of(1, "foo", 2, "bar");
+    Map<Integer, Long> intToBigint = ImmutableMap.of(1, 42L, 2, Long.MIN_VALUE);
+    for (ProtocolVersion version : newArrayList(ProtocolVersion.V2, ProtocolVersion.V4)) {
+      assertSerializedLikePacked(
+          TypeCodec.list(TypeCodec.cdouble()),
+          doubles,
+          pack(TypeCodec.cdouble(), doubles, version),
+          version);
+      assertSerializedLikePacked(
+          TypeCodec.set(TypeCodec.uuid()), uuids, pack(TypeCodec.uuid(), uuids, version), version);
+      assertSerializedLikePacked(
+          TypeCodec.map(TypeCodec.varchar(), TypeCodec.cint()),
+          textToInt,
+          pack(TypeCodec.varchar(), TypeCodec.cint(), textToInt, version),
+          version);
+      assertSerializedLikePacked(
+          TypeCodec.map(TypeCodec.cint(), TypeCodec.varchar()),
+          intToText,
+          pack(TypeCodec.cint(), TypeCodec.varchar(), intToText, version),
+          version);
+      assertSerializedLikePacked(
+          TypeCodec.map(TypeCodec.cint(), TypeCodec.bigint()),
+          intToBigint,
+          pack(TypeCodec.cint(), TypeCodec.bigint(), intToBigint, version),
+          version);
+    }
+  }
+
+  @Test(groups = "unit")
+  public void should_deserialize_fixed_size_elements_of_unexpected_size() {
+    // An empty element and a null element, as could be found in a collection written by another
+    // client
+    ByteBuffer bytes =
+        CodecUtils.pack(
+            new ByteBuffer[] {ByteBuffer.allocate(0), null, TypeCodec.cint().serialize(42, V3)},
+            3,
+            V3);
+    assertThat(TypeCodec.list(TypeCodec.cint()).deserialize(bytes, V3))
+        .containsExactly(null, null, 42);
+  }
+
+  @Test(groups = "unit")
+  public void should_fail_to_serialize_collection_of_non_type1_uuids() {
+    List<UUID> uuids = newArrayList(UUID.randomUUID());
+    assertThat(TypeCodec.list(TypeCodec.timeUUID())).cannotSerialize(uuids);
+  }
+
+  @Test(groups = "unit")
+  public void should_serialize_fixed_size_elements_with_codec_that_only_overrides_fixed_size() {
+    List<Integer> ints = newArrayList(1, -2, Integer.MAX_VALUE);
+    for (ProtocolVersion version : newArrayList(ProtocolVersion.V2, ProtocolVersion.V4)) {
+      assertSerializedLikePacked(
+          TypeCodec.list(new FixedSizeOnlyIntCodec()),
+          ints,
+          pack(TypeCodec.cint(), ints, version),
+          version);
+    }
+  }
+
+  private static <T> void assertSerializedLikePacked(
+      TypeCodec<T> codec, T value, ByteBuffer expected, ProtocolVersion version) {
+    ByteBuffer actual = codec.serialize(value, version);
+    assertThat(actual).isEqualTo(expected);
+    assertThat(codec.deserialize(actual, version)).isEqualTo(value);
+  }
+
+  private static <T> ByteBuffer pack(
+      TypeCodec<T> eltCodec, Collection<T> value, ProtocolVersion version) {
+    ByteBuffer[] bbs = new ByteBuffer[value.size()];
+    int i = 0;
+    for (T elt : value) bbs[i++] = eltCodec.serialize(elt, version);
+    return CodecUtils.pack(bbs, value.size(), version);
+  }
+
+  private static <K, V> ByteBuffer pack(
+      TypeCodec<K> keyCodec, TypeCodec<V> valueCodec, Map<K, V> value, ProtocolVersion version) {
+    ByteBuffer[] bbs = new ByteBuffer[2 * value.size()];
+    int i = 0;
+    for (Map.Entry<K, V> entry : value.entrySet()) {
+      bbs[i++] = keyCodec.serialize(entry.getKey(), version);
+      bbs[i++] = valueCodec.serialize(entry.getValue(), version);
+    }
+    return CodecUtils.pack(bbs, value.size(), version);
+  }
+
+  /** Reports a fixed size, but relies on the default in-place serialization methods. */
+  private static class FixedSizeOnlyIntCodec extends TypeCodec<Integer> {
+
+    private FixedSizeOnlyIntCodec() {
+      super(DataType.cint(), Integer.class);
+    }
+
+    @Override
+    int fixedSize() {
+      return 4;
+    }
+
+    @Override
+    public ByteBuffer serialize(Integer value, ProtocolVersion protocolVersion) {
+      return TypeCodec.cint().serialize(value, protocolVersion);
+    }
+
+    @Override
+    public Integer deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+      return TypeCodec.cint().deserialize(bytes, protocolVersion);
+    }
+
+    @Override
+    public Integer parse(String value) {
+      return TypeCodec.cint().parse(value);
+    }
+
+    @Override
+    public String format(Integer value) {
+      return TypeCodec.cint().format(value);
+    }
+  }
+
   private class ListVarcharToListListInteger extends TypeCodec<List<List<Integer>>> {
 
     private final TypeCodec<List<String>> codec = TypeCodec.list(TypeCodec.varchar());
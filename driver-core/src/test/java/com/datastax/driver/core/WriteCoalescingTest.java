@@ -0,0 +1,48 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class WriteCoalescingTest extends ScassandraTestBase.PerClassCluster {
+
+  @Override
+  protected Cluster.Builder createClusterBuilder() {
+    return super.createClusterBuilder()
+        .withSocketOptions(
+            new SocketOptions()
+                .setWriteCoalescingEnabled(true)
+                .setWriteCoalescingMaxFrames(16)
+                .setWriteCoalescingMaxDelayMicros(500));
+  }
+
+  @Test(groups = "short")
+  public void should_complete_all_requests_and_report_frames_per_flush() throws Exception {
+    List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+    for (int i = 0; i < 500; i++) futures.add(session.executeAsync("SELECT * FROM foo"));
+
+    assertThat(Futures.allAsList(futures).get()).hasSize(500);
+
+    Metrics metrics = cluster.getMetrics();
+    assertThat(metrics.getFramesPerFlush().getCount()).isGreaterThan(0);
+    assertThat(metrics.getFramesPerFlush().getSnapshot().getMax()).isLessThanOrEqualTo(16);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+public class ZeroCopyBodyTest {
+
+  private static final MD5Digest ID = MD5Digest.wrap(new byte[16]);
+
+  @Test(groups = "unit")
+  public void should_encode_small_and_heap_values_in_a_single_buffer() {
+    Frame frame =
+        encode(
+            execute(
+                Arrays.asList(heap(10, 1), heap(ZeroCopyBody.THRESHOLD, 2), direct(10, 3)),
+                Collections.<String, ByteBuffer>emptyMap()));
+    try {
+      assertThat(frame.body).isNotInstanceOf(ZeroCopyBody.class);
+    } finally {
+      frame.body.release();
+    }
+  }
+
+  @Test(groups = "unit")
+  public void should_wrap_large_direct_values() {
+    ByteBuffer large = direct(ZeroCopyBody.THRESHOLD, 1);
+    Requests.Execute execute =
+        execute(
+            Arrays.asList(
+                heap(5, 1),
+                large,
+                null,
+                BoundStatement.UNSET,
+                heap(ZeroCopyBody.THRESHOLD * 2, 3),
+                direct(ZeroCopyBody.THRESHOLD * 3, 4),
+                direct(100, 5)),
+            Collections.<String, ByteBuffer>emptyMap());
+    Frame frame = encode(execute);
+    try {
+      assertThat(frame.body).isInstanceOf(ZeroCopyBody.class);
+      assertThat(frame.body.isDirect()).isTrue();
+      // Two wrapped values split the pooled buffer in three
+      assertThat(((CompositeByteBuf) frame.body).numComponents()).isEqualTo(5);
+      assertThat(frame.body.capacity())
+          .isEqualTo(Requests.Execute.coder.encodedSize(execute, ProtocolVersion.V4));
+      assertThat(ByteBufUtil.equals(frame.body, copyEncode(execute))).isTrue();
+      // The user's buffer was neither copied nor consumed
+      assertThat(large.position()).isEqualTo(2);
+    } finally {
+      frame.body.release();
+    }
+    assertThat(frame.body.refCnt()).isZero();
+  }
+
+  @Test(groups = "unit")
+  public void should_wrap_large_direct_named_values_and_paging_state() {
+    Requests.QueryProtocolOptions options =
+        new Requests.QueryProtocolOptions(
+            Message.Request.Type.QUERY,
+            ConsistencyLevel.ONE,
+            Collections.<ByteBuffer>emptyList(),
+            ImmutableMap.of("a", direct(ZeroCopyBody.THRESHOLD, 1), "b", heap(1, 2)),
+            false,
+            5000,
+            direct(ZeroCopyBody.THRESHOLD + 1, 3),
+            ConsistencyLevel.SERIAL,
+            42L);
+    Requests.Query query = new Requests.Query("SELECT * FROM foo", options, false);
+    Frame frame = encode(query);
+    try {
+      assertThat(frame.body).isInstanceOf(ZeroCopyBody.class);
+      assertThat(frame.body.capacity())
+          .isEqualTo(Requests.Query.coder.encodedSize(query, ProtocolVersion.V4));
+      ByteBuf expected = Unpooled.buffer();
+      Requests.Query.coder.encode(query, expected, ProtocolVersion.V4);
+      assertThat(ByteBufUtil.equals(frame.body, expected)).isTrue();
+    } finally {
+      frame.body.release();
+    }
+  }
+
+  @Test(groups = "unit")
+  public void should_wrap_values_at_the_end_of_the_body() {
+    ByteBuffer value = direct(ZeroCopyBody.THRESHOLD, 1);
+    ZeroCopyBody body = new ZeroCopyBody(ByteBufAllocator.DEFAULT, 4);
+    body.writeInt(value.remaining());
+    body.appendValue(value);
+    try {
+      assertThat(body.readInt()).isEqualTo(ZeroCopyBody.THRESHOLD);
+      assertThat(body.nioBuffer()).isEqualTo(value);
+      assertThat(body.readableBytes()).isEqualTo(ZeroCopyBody.THRESHOLD);
+    } finally {
+      body.release();
+    }
+  }
+
+  private static Requests.Execute execute(
+      List<ByteBuffer> positionalValues, Map<String, ByteBuffer> namedValues) {
+    Requests.QueryProtocolOptions options =
+        new Requests.QueryProtocolOptions(
+            Message.Request.Type.EXECUTE,
+            ConsistencyLevel.ONE,
+            positionalValues,
+            namedValues,
+            false,
+            5000,
+            null,
+            ConsistencyLevel.SERIAL,
+            Long.MIN_VALUE);
+    return new Requests.Execute(ID, ID, options, false);
+  }
+
+  private static Frame encode(Message.Request request) {
+    EmbeddedChannel channel = new EmbeddedChannel(new Message.ProtocolEncoder(ProtocolVersion.V4));
+    channel.writeOutbound(request);
+    return (Frame) channel.readOutbound();
+  }
+
+  private static ByteBuf copyEncode(Requests.Execute execute) {
+    ByteBuf expected = Unpooled.buffer();
+    Requests.Execute.coder.encode(execute, expected, ProtocolVersion.V4);
+    return expected;
+  }
+
+  private static ByteBuffer heap(int size, int seed) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) bytes[i] = (byte) (i * 31 + seed);
+    return ByteBuffer.wrap(bytes);
+  }
+
+  /** Returns a direct buffer whose position is not 0, to check that offsets are respected. */
+  private static ByteBuffer direct(int size, int seed) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(size + 4);
+    for (int i = 0; i < size + 4; i++) buffer.put((byte) (i * 31 + seed));
+    buffer.position(2);
+    buffer.limit(2 + size);
+    return buffer;
+  }
+}
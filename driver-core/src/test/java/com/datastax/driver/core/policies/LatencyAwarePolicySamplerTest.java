@@ -0,0 +1,122 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.driver.core.policies.LatencyAwarePolicy.HostLatencyTracker;
+import com.datastax.driver.core.policies.LatencyAwarePolicy.IntervalSampler;
+import com.datastax.driver.core.policies.LatencyAwarePolicy.PercentileSampler;
+import com.datastax.driver.core.policies.LatencyAwarePolicy.StripedMeanSampler;
+import java.util.concurrent.CountDownLatch;
+import org.testng.annotations.Test;
+
+public class LatencyAwarePolicySamplerTest {
+
+  @Test(groups = "unit")
+  public void should_use_power_of_two_stripes() {
+    assertThat(StripedMeanSampler.stripes(1)).isEqualTo(1);
+    assertThat(StripedMeanSampler.stripes(3)).isEqualTo(4);
+    assertThat(StripedMeanSampler.stripes(8)).isEqualTo(8);
+    assertThat(StripedMeanSampler.stripes(64)).isEqualTo(16);
+  }
+
+  @Test(groups = "unit")
+  public void should_compute_mean_of_latencies_recorded_by_concurrent_threads()
+      throws InterruptedException {
+    final IntervalSampler sampler = new StripedMeanSampler();
+    int threads = 8;
+    final int perThread = 10000;
+    final CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      final long latency = (i + 1) * 1000;
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < perThread; j++) sampler.record(latency);
+          done.countDown();
+        }
+      }.start();
+    }
+    done.await();
+
+    assertThat(sampler.nextInterval()).isEqualTo(threads * perThread);
+    // mean of 1000, 2000, ..., 8000
+    assertThat(sampler.intervalScore()).isEqualTo(4500);
+  }
+
+  @Test(groups = "unit")
+  public void should_reset_striped_sampler_at_each_interval() {
+    IntervalSampler sampler = new StripedMeanSampler();
+    sampler.record(100);
+    sampler.record(300);
+    assertThat(sampler.nextInterval()).isEqualTo(2);
+    assertThat(sampler.intervalScore()).isEqualTo(200);
+
+    assertThat(sampler.nextInterval()).isEqualTo(0);
+
+    sampler.record(50);
+    assertThat(sampler.nextInterval()).isEqualTo(1);
+    assertThat(sampler.intervalScore()).isEqualTo(50);
+  }
+
+  @Test(groups = "unit")
+  public void should_compute_percentile_of_interval() {
+    IntervalSampler sampler = new PercentileSampler(99);
+    for (int i = 1; i <= 100; i++) sampler.record(MILLISECONDS.toNanos(i));
+    assertThat(sampler.nextInterval()).isEqualTo(100);
+    // 2 significant digits
+    assertThat(sampler.intervalScore())
+        .isBetween(MILLISECONDS.toNanos(98), MILLISECONDS.toNanos(100));
+
+    assertThat(sampler.nextInterval()).isEqualTo(0);
+
+    sampler.record(MILLISECONDS.toNanos(5));
+    assertThat(sampler.nextInterval()).isEqualTo(1);
+    assertThat(sampler.intervalScore()).isBetween(MILLISECONDS.toNanos(4), MILLISECONDS.toNanos(6));
+  }
+
+  @Test(groups = "unit")
+  public void should_keep_interval_when_clock_does_not_move_forward() {
+    HostLatencyTracker tracker = new HostLatencyTracker(MILLISECONDS.toNanos(100), 1, 0);
+    tracker.add(100);
+    tracker.fold(1000);
+    assertThat(tracker.getCurrentAverage().average).isEqualTo(100);
+
+    tracker.add(300);
+    tracker.fold(1000);
+    // Not folded yet, but not lost either
+    assertThat(tracker.getCurrentAverage().nbMeasure).isEqualTo(1);
+
+    tracker.fold(2000);
+    assertThat(tracker.getCurrentAverage().nbMeasure).isEqualTo(2);
+    assertThat(tracker.getCurrentAverage().average).isGreaterThan(100);
+  }
+
+  @Test(groups = "unit")
+  public void should_reject_invalid_percentile() {
+    for (double percentile : new double[] {0, -1, 100.1}) {
+      try {
+        LatencyAwarePolicy.builder(new RoundRobinPolicy()).withPercentileScoring(percentile);
+        fail("Expected an IllegalArgumentException for " + percentile);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
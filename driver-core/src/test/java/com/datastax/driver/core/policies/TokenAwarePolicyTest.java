@@ -18,6 +18,7 @@ package com.datastax.driver.core.policies;
 import static com.datastax.driver.core.Assertions.assertThat;
 import static com.datastax.driver.core.TestUtils.CREATE_KEYSPACE_SIMPLE_FORMAT;
 import static com.datastax.driver.core.TestUtils.nonQuietClusterCloseOptions;
+import static com.datastax.driver.core.policies.TokenAwarePolicy.ReplicaOrdering.LEAST_LOADED;
 import static com.datastax.driver.core.policies.TokenAwarePolicy.ReplicaOrdering.NEUTRAL;
 import static com.datastax.driver.core.policies.TokenAwarePolicy.ReplicaOrdering.RANDOM;
 import static com.datastax.driver.core.policies.TokenAwarePolicy.ReplicaOrdering.TOPOLOGICAL;
@@ -99,7 +100,8 @@ public class TokenAwarePolicyTest {
     return new Object[][] {
       {TokenAwarePolicy.ReplicaOrdering.TOPOLOGICAL},
       {TokenAwarePolicy.ReplicaOrdering.RANDOM},
-      {TokenAwarePolicy.ReplicaOrdering.NEUTRAL}
+      {TokenAwarePolicy.ReplicaOrdering.NEUTRAL},
+      {TokenAwarePolicy.ReplicaOrdering.LEAST_LOADED}
     };
   }
 
@@ -136,6 +138,57 @@ public class TokenAwarePolicyTest {
     assertThat(queryPlan).containsOnlyOnce(host1, host2, host3, host4).endsWith(host4, host3);
   }
 
+  @Test(groups = "unit")
+  public void should_return_replicas_in_every_order_when_random() {
+    // given
+    TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, RANDOM);
+    policy.init(cluster, null);
+    int host1First = 0;
+    // when
+    for (int i = 0; i < 1000; i++) {
+      Iterator<Host> queryPlan = policy.newQueryPlan("keyspace", statement);
+      Host first = queryPlan.next();
+      Host second = queryPlan.next();
+      assertThat(Sets.newLinkedHashSet(first, second)).containsOnly(host1, host2);
+      if (first == host1) host1First += 1;
+    }
+    // then
+    assertThat(host1First).isBetween(350, 650);
+  }
+
+  @Test(groups = "unit")
+  public void should_order_replicas_by_load() {
+    // given
+    when(host1.getInFlightQueries()).thenReturn(10);
+    when(host2.getInFlightQueries()).thenReturn(1);
+    TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, LEAST_LOADED);
+    policy.init(cluster, null);
+    // when
+    Iterator<Host> queryPlan = policy.newQueryPlan("keyspace", statement);
+    // then
+    assertThat(queryPlan).containsExactly(host2, host1, host4, host3);
+  }
+
+  @Test(groups = "unit")
+  public void should_prefer_replicas_in_local_rack() {
+    // given
+    when(host1.getRack()).thenReturn("rack1");
+    when(host2.getRack()).thenReturn("rack2");
+    when(host1.getInFlightQueries()).thenReturn(10);
+    when(host2.getInFlightQueries()).thenReturn(1);
+    TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, LEAST_LOADED, "rack1");
+    policy.init(cluster, null);
+    // when
+    Iterator<Host> queryPlan = policy.newQueryPlan("keyspace", statement);
+    // then
+    assertThat(queryPlan).containsExactly(host1, host2, host4, host3);
+  }
+
+  @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+  public void should_reject_local_rack_with_other_orderings() {
+    new TokenAwarePolicy(childPolicy, RANDOM, "rack1");
+  }
+
   /**
    * Ensures that {@link TokenAwarePolicy} will shuffle discovered replicas depending on the value
    * of shuffleReplicas used when constructing with {@link
@@ -195,10 +248,11 @@ public class TokenAwarePolicyTest {
       assertThat(queryPlan).containsOnlyElementsOf(cluster.getMetadata().getAllHosts());
 
       List<Host> firstThree = queryPlan.subList(0, 3);
-      // then: if ordering is RANDOM, the first three hosts returned should be 6,7,8 in any order.
+      // then: if ordering is RANDOM or LEAST_LOADED (all replicas are idle), the first three hosts
+      //       returned should be 6,7,8 in any order.
       //       if ordering is TOPOLOGICAL or NEUTRAL, the first three hosts returned should be 6,7,8
       // in that order.
-      if (ordering == RANDOM) {
+      if (ordering == RANDOM || ordering == LEAST_LOADED) {
         assertThat(firstThree).containsOnlyElementsOf(replicas);
       } else {
         assertThat(firstThree).containsExactlyElementsOf(replicas);
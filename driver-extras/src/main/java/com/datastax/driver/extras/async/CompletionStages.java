@@ -0,0 +1,191 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.async;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.GuavaCompatibility;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.ThreadingOptions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link CompletionStage} variants of the asynchronous methods of the driver.
+ *
+ * <p>The stages returned by this class are completed directly by the listener of the driver's
+ * future, that is on the thread that completes the request (usually a Netty I/O thread), without
+ * any intermediary callback or executor; or, if {@link
+ * ThreadingOptions#createContinuationExecutor(String)} returns an executor, on that executor. In
+ * the former case, continuations registered with the non-async methods of the stage ({@code
+ * thenApply}, {@code thenAccept}...) must not block.
+ *
+ * <p>Cancelling a stage (through {@link CompletableFuture#cancel(boolean)}) cancels the underlying
+ * request.
+ *
+ * <pre>
+ * CompletionStage&lt;ResultSet&gt; stage = CompletionStages.executeAsync(session, statement);
+ * stage.thenApply(rs -&gt; rs.one().getString("name"));
+ *
+ * // Other asynchronous methods, for example those of the object mapper:
+ * CompletionStage&lt;User&gt; user =
+ *     CompletionStages.toCompletionStage(mapper.getAsync(id), session.getCluster());
+ * </pre>
+ */
+@IgnoreJDK6Requirement
+@SuppressWarnings("Since15")
+public final class CompletionStages {
+
+  private CompletionStages() {}
+
+  /**
+   * Executes the provided query asynchronously.
+   *
+   * @see Session#executeAsync(Statement)
+   */
+  public static CompletionStage<ResultSet> executeAsync(Session session, Statement statement) {
+    return toCompletionStage(session.executeAsync(statement), session.getCluster());
+  }
+
+  /**
+   * Executes the provided query asynchronously.
+   *
+   * @see Session#executeAsync(String)
+   */
+  public static CompletionStage<ResultSet> executeAsync(Session session, String query) {
+    return executeAsync(session, new SimpleStatement(query));
+  }
+
+  /**
+   * Executes the provided query asynchronously using the provided values.
+   *
+   * @see Session#executeAsync(String, Object...)
+   */
+  public static CompletionStage<ResultSet> executeAsync(
+      Session session, String query, Object... values) {
+    return executeAsync(session, new SimpleStatement(query, values));
+  }
+
+  /**
+   * Prepares the provided query string asynchronously.
+   *
+   * @see Session#prepareAsync(String)
+   */
+  public static CompletionStage<PreparedStatement> prepareAsync(Session session, String query) {
+    return toCompletionStage(session.prepareAsync(query), session.getCluster());
+  }
+
+  /**
+   * Prepares the provided query asynchronously.
+   *
+   * @see Session#prepareAsync(RegularStatement)
+   */
+  public static CompletionStage<PreparedStatement> prepareAsync(
+      Session session, RegularStatement statement) {
+    return toCompletionStage(session.prepareAsync(statement), session.getCluster());
+  }
+
+  /**
+   * Converts a future returned by the driver (or by any other library that uses Guava) to a stage
+   * that is completed on the continuation executor of the given cluster.
+   *
+   * @param future the future to convert.
+   * @param cluster the cluster whose {@link Cluster#getContinuationExecutor() continuation
+   *     executor} completes the stage.
+   * @return the stage, which is also a {@link CompletableFuture}.
+   */
+  public static <T> CompletableFuture<T> toCompletionStage(
+      ListenableFuture<T> future, Cluster cluster) {
+    return toCompletionStage(future, cluster.getContinuationExecutor());
+  }
+
+  /**
+   * Converts a future returned by the driver (or by any other library that uses Guava) to a stage.
+   *
+   * @param future the future to convert.
+   * @param executor the executor that completes the stage, or {@code null} to complete it on the
+   *     thread that completes {@code future}.
+   * @return the stage, which is also a {@link CompletableFuture}.
+   */
+  public static <T> CompletableFuture<T> toCompletionStage(
+      ListenableFuture<T> future, Executor executor) {
+    ListenableCompletableFuture<T> stage = new ListenableCompletableFuture<T>(future, executor);
+    if (future.isDone()) stage.completeFromSource();
+    else future.addListener(stage, GuavaCompatibility.INSTANCE.sameThreadExecutor());
+    return stage;
+  }
+
+  /**
+   * A stage that is its own listener on the source future, so that the conversion costs a single
+   * allocation (plus the listener node of the source).
+   */
+  private static class ListenableCompletableFuture<T> extends CompletableFuture<T>
+      implements Runnable {
+
+    private final ListenableFuture<T> source;
+    private final Executor executor;
+    // Whether run() was already invoked by the listener, so that the next run is on the executor
+    private volatile boolean dispatched;
+
+    private ListenableCompletableFuture(ListenableFuture<T> source, Executor executor) {
+      this.source = source;
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      if (executor != null && !dispatched) {
+        dispatched = true;
+        try {
+          executor.execute(this);
+          return;
+        } catch (RejectedExecutionException e) {
+          // The cluster is shutting down, complete on this thread rather than never
+        }
+      }
+      completeFromSource();
+    }
+
+    private void completeFromSource() {
+      try {
+        complete(Uninterruptibles.getUninterruptibly(source));
+      } catch (ExecutionException e) {
+        completeExceptionally(e.getCause());
+      } catch (CancellationException e) {
+        super.cancel(false);
+      } catch (Throwable t) {
+        completeExceptionally(t);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) source.cancel(mayInterruptIfRunning);
+      return cancelled;
+    }
+  }
+}
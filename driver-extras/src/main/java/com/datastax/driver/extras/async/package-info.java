@@ -0,0 +1,25 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package contains a {@link java.util.concurrent.CompletionStage CompletionStage} flavor of
+ * the asynchronous API of the driver, for applications that build on Java 8's {@link
+ * java.util.concurrent.CompletableFuture CompletableFuture} rather than Guava's {@link
+ * com.google.common.util.concurrent.ListenableFuture ListenableFuture}.
+ *
+ * <p>Note that, while the driver remains globally compatible with older JDKs, classes in this
+ * package require the presence of a Java 8 or higher at runtime.
+ */
+package com.datastax.driver.extras.async;
@@ -0,0 +1,178 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.codahale.metrics.Counter;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link TypeCodec} that deduplicates the strings it deserializes, for low-cardinality text
+ * columns such as status codes, country codes or tenant ids.
+ *
+ * <p>Decoded strings are kept in a bounded cache keyed by their serialized form, so that reading a
+ * value that was already seen returns the same {@link String} instance, without decoding it or
+ * allocating anything. The cache is direct-mapped: each serialized value maps to a single slot, and
+ * a new value evicts whatever was in its slot. Values longer than a given size are not cached.
+ *
+ * <p>This codec targets the same CQL and Java types as {@link TypeCodec#varchar()} (or {@link
+ * TypeCodec#ascii()}), so it can't be registered in a {@link com.datastax.driver.core.CodecRegistry
+ * CodecRegistry}; it is meant to be used explicitly for the columns that benefit from it:
+ *
+ * <pre>{@code
+ * InterningStringCodec countryCodec = new InterningStringCodec(TypeCodec.varchar(), 256, 64);
+ * String country = row.get("country", countryCodec);
+ * }</pre>
+ *
+ * It is safe to share an instance between threads, and between columns that have similar values.
+ *
+ * <p>Its effectiveness can be monitored with {@link #getHits()}, {@link #getMisses()} and {@link
+ * #getBytesSaved()}, which can also be added to the driver's metric registry:
+ *
+ * <pre>{@code
+ * MetricRegistry registry = cluster.getMetrics().getRegistry();
+ * registry.register("country-codec-hits", countryCodec.getHits());
+ * }</pre>
+ */
+public class InterningStringCodec extends TypeCodec<String> {
+
+  /**
+   * Approximate size of a {@link String} instance, excluding its characters: the object header and
+   * fields of the string and of its backing array.
+   */
+  private static final int STRING_OVERHEAD = 40;
+
+  private final TypeCodec<String> innerCodec;
+  private final int maxValueSize;
+  private final Entry[] entries;
+  private final int mask;
+
+  private final Counter hits = new Counter();
+  private final Counter misses = new Counter();
+  private final Counter bytesSaved = new Counter();
+
+  /**
+   * @param innerCodec the codec that decodes values that are not in the cache, and handles
+   *     serialization and formatting. Usually {@link TypeCodec#varchar()} or {@link
+   *     TypeCodec#ascii()}.
+   * @param maxEntries the maximum number of strings to keep in the cache. It is rounded up to the
+   *     next power of two.
+   * @param maxValueSize the maximum size of a serialized value for it to be cached, in bytes.
+   */
+  public InterningStringCodec(TypeCodec<String> innerCodec, int maxEntries, int maxValueSize) {
+    super(innerCodec.getCqlType(), String.class);
+    checkArgument(
+        maxEntries > 0 && maxEntries <= 1 << 30,
+        "maxEntries must be between 1 and 2^30 (got %s)",
+        maxEntries);
+    checkArgument(maxValueSize >= 0, "maxValueSize cannot be negative (got %s)", maxValueSize);
+    this.innerCodec = innerCodec;
+    this.maxValueSize = maxValueSize;
+    int capacity = Integer.highestOneBit(maxEntries);
+    if (capacity < maxEntries) capacity <<= 1;
+    this.entries = new Entry[capacity];
+    this.mask = capacity - 1;
+  }
+
+  @Override
+  public ByteBuffer serialize(String value, ProtocolVersion protocolVersion)
+      throws InvalidTypeException {
+    return innerCodec.serialize(value, protocolVersion);
+  }
+
+  @Override
+  public String deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion)
+      throws InvalidTypeException {
+    if (bytes == null || bytes.remaining() == 0 || bytes.remaining() > maxValueSize)
+      return innerCodec.deserialize(bytes, protocolVersion);
+
+    // ByteBuffer's hashCode and equals only read the remaining bytes, without moving the position
+    int hash = bytes.hashCode();
+    int index = (hash ^ (hash >>> 16)) & mask;
+    // Entries are immutable, so a racy read sees either a complete entry or null
+    Entry entry = entries[index];
+    if (entry != null && entry.hash == hash && entry.bytes.equals(bytes)) {
+      hits.inc();
+      bytesSaved.inc(entry.size);
+      return entry.value;
+    }
+
+    misses.inc();
+    String value = innerCodec.deserialize(bytes, protocolVersion);
+    if (value != null) {
+      ByteBuffer key = ByteBuffer.allocate(bytes.remaining());
+      key.put(bytes.duplicate()).flip();
+      entries[index] = new Entry(hash, key, value);
+    }
+    return value;
+  }
+
+  @Override
+  public String parse(String value) throws InvalidTypeException {
+    return innerCodec.parse(value);
+  }
+
+  @Override
+  public String format(String value) throws InvalidTypeException {
+    return innerCodec.format(value);
+  }
+
+  /** @return the number of values that were found in the cache. */
+  public Counter getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of values that were looked up in the cache but not found. Values that are
+   *     not eligible (null, empty or too large) are not counted.
+   */
+  public Counter getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return an estimate of the memory that would have been allocated for the values that were found
+   *     in the cache, in bytes.
+   */
+  public Counter getBytesSaved() {
+    return bytesSaved;
+  }
+
+  /** @return the ratio of cache lookups that were hits, or 0 if there was no lookup yet. */
+  public double getHitRatio() {
+    long hitCount = hits.getCount();
+    long total = hitCount + misses.getCount();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+
+  private static class Entry {
+    final int hash;
+    final ByteBuffer bytes;
+    final String value;
+    final int size;
+
+    Entry(int hash, ByteBuffer bytes, String value) {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.value = value;
+      this.size = STRING_OVERHEAD + 2 * value.length();
+    }
+  }
+}
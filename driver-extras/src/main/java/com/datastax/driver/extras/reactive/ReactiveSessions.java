@@ -0,0 +1,65 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.reactive;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import org.reactivestreams.Publisher;
+
+/**
+ * <a href="http://www.reactive-streams.org/">Reactive Streams</a> variants of the query methods of
+ * {@link Session}.
+ *
+ * <pre>
+ * Publisher&lt;Row&gt; rows = ReactiveSessions.executeReactive(session, statement);
+ * Flowable.fromPublisher(rows).map(row -&gt; row.getString("name"));
+ * </pre>
+ */
+public final class ReactiveSessions {
+
+  private ReactiveSessions() {}
+
+  /**
+   * Executes the provided query and publishes its rows as a Reactive Streams {@code Publisher}.
+   *
+   * <p>This method does not block, and does not execute the query until a subscriber requests rows;
+   * the query is executed again for each new subscriber. Pages are fetched as the subscriber
+   * requests rows: the next page is only queried once the rows of the pages already fetched have
+   * all been requested, and cancelling the subscription stops paging. Errors (including the failure
+   * to fetch a page) are signaled through {@code onError}.
+   *
+   * <p>The publisher can be adapted to {@code java.util.concurrent.Flow} with {@code
+   * org.reactivestreams.FlowAdapters} (reactive-streams 1.0.3 and above).
+   *
+   * @param session the session to execute the query with.
+   * @param statement the CQL query to execute (that can be any {@code Statement}).
+   * @return a publisher of the rows returned by the query.
+   */
+  public static Publisher<Row> executeReactive(Session session, Statement statement) {
+    return new RowPublisher(session, statement);
+  }
+
+  /**
+   * Executes the provided query and publishes its rows as a Reactive Streams {@code Publisher}.
+   *
+   * @see #executeReactive(Session, Statement)
+   */
+  public static Publisher<Row> executeReactive(Session session, String query) {
+    return executeReactive(session, new SimpleStatement(query));
+  }
+}
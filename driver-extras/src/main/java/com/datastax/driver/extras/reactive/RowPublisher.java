@@ -0,0 +1,200 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.reactive;
+
+import com.datastax.driver.core.GuavaCompatibility;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A publisher of the rows of a statement, that fetches pages as its subscribers request rows.
+ *
+ * <p>The statement is executed when a subscriber first requests rows (and again for each new
+ * subscriber). The next page is only queried once the subscriber has requested more rows than there
+ * are left in the pages already fetched, so at most one page beyond the demand is held in memory
+ * (plus the pages that are read ahead, if {@link Statement#setPrefetchPages(int)} is enabled).
+ * Cancelling the subscription stops paging: a page that is being fetched is discarded when it
+ * arrives.
+ *
+ * <p>Rows are emitted either from the thread that calls {@link Subscription#request(long)}, or from
+ * a driver I/O thread when a page arrives; subscribers must not block in {@code onNext}.
+ *
+ * @see ReactiveSessions#executeReactive(Session, Statement)
+ */
+class RowPublisher implements Publisher<Row> {
+
+  private static final Logger logger = LoggerFactory.getLogger(RowPublisher.class);
+
+  private final Session session;
+  private final Statement statement;
+
+  RowPublisher(Session session, Statement statement) {
+    this.session = session;
+    this.statement = statement;
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Row> subscriber) {
+    if (subscriber == null) throw new NullPointerException("subscriber can't be null");
+    subscriber.onSubscribe(new RowSubscription(subscriber));
+  }
+
+  private class RowSubscription implements Subscription {
+
+    private final Subscriber<? super Row> subscriber;
+
+    // Rows requested and not emitted yet, Long.MAX_VALUE means unbounded
+    private final AtomicLong demand = new AtomicLong();
+    // Serializes the signals to the subscriber: only the thread that moves it from 0 drains
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // The result set, set once the first page has arrived
+    private volatile ResultSet rs;
+    // Whether the first page or the next page is being fetched
+    private volatile boolean fetching;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    // Only accessed by the draining thread
+    private boolean done;
+
+    RowSubscription(Subscriber<? super Row> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        error =
+            new IllegalArgumentException(
+                "Number of requested rows must be positive (reactive streams rule 3.9), got " + n);
+      } else {
+        while (true) {
+          long current = demand.get();
+          if (current == Long.MAX_VALUE) break;
+          long updated = current + n;
+          if (updated < 0) updated = Long.MAX_VALUE;
+          if (demand.compareAndSet(current, updated)) break;
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    private void drain() {
+      if (wip.getAndIncrement() != 0) return;
+      int missed = 1;
+      do {
+        if (cancelled) {
+          rs = null;
+        } else if (!done) {
+          try {
+            emit();
+          } catch (Throwable t) {
+            // The subscriber is not supposed to throw, there is not much we can do except stop
+            logger.warn("Unexpected error while emitting rows, cancelling the subscription", t);
+            cancelled = true;
+            rs = null;
+          }
+        }
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void emit() {
+      if (error != null) {
+        done = true;
+        rs = null;
+        subscriber.onError(error);
+        return;
+      }
+
+      ResultSet rs = this.rs;
+      if (rs == null) {
+        if (!fetching && demand.get() > 0) {
+          fetching = true;
+          ListenableFuture<ResultSet> future;
+          try {
+            future = session.executeAsync(statement);
+          } catch (RuntimeException e) {
+            fetching = false;
+            error = e;
+            emit();
+            return;
+          }
+          fetch(future);
+        }
+        return;
+      }
+
+      long requested = demand.get();
+      long emitted = 0;
+      while (emitted < requested && !cancelled && rs.getAvailableWithoutFetching() > 0) {
+        subscriber.onNext(rs.one());
+        emitted += 1;
+      }
+      if (emitted > 0 && requested != Long.MAX_VALUE) demand.addAndGet(-emitted);
+      if (cancelled) return;
+
+      // Read this first: a page is buffered before the result set is marked as fully fetched
+      boolean fullyFetched = rs.isFullyFetched();
+      if (rs.getAvailableWithoutFetching() > 0) return;
+      if (fullyFetched) {
+        done = true;
+        this.rs = null;
+        subscriber.onComplete();
+      } else if (!fetching && demand.get() > 0) {
+        fetching = true;
+        fetch(rs.fetchMoreResults());
+      }
+    }
+
+    private void fetch(ListenableFuture<ResultSet> future) {
+      GuavaCompatibility.INSTANCE.addCallback(
+          future,
+          new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+              rs = result;
+              fetching = false;
+              drain();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              error = t;
+              fetching = false;
+              drain();
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package exposes the results of queries as <a href="http://www.reactive-streams.org/">Reactive
+ * Streams</a> publishers, that can be consumed by any compatible library (RxJava 2, Reactor, Akka
+ * Streams...).
+ *
+ * <p>Classes in this package require the {@code org.reactivestreams:reactive-streams} library in
+ * the classpath; it is an optional dependency of the driver.
+ */
+package com.datastax.driver.extras.reactive;
@@ -0,0 +1,185 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.async;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.StubCluster;
+import com.datastax.driver.core.StubResult;
+import com.datastax.driver.core.TestUtils;
+import com.datastax.driver.core.ThreadingOptions;
+import com.datastax.driver.core.exceptions.SyntaxError;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("Since15")
+public class CompletionStagesTest {
+
+  private StubCluster stub;
+  private Cluster cluster;
+  private Session session;
+
+  @BeforeClass(groups = "short")
+  public void setUp() {
+    stub =
+        StubCluster.builder()
+            .withIpPrefix(TestUtils.IP_PREFIX)
+            .withPort(TestUtils.findAvailablePort())
+            .build()
+            .init();
+    stub.prime(
+        "SELECT v FROM ks.t WHERE k = ?",
+        StubResult.rows("ks", "t")
+            .withColumn("v", DataType.text())
+            .withRow("foo")
+            .build()
+            .withVariables(ImmutableMap.<String, DataType>of("k", DataType.cint())));
+    stub.prime("SELECT error", StubResult.syntaxError("line 1:0 no viable alternative"));
+    cluster =
+        stub.clusterBuilder()
+            .withThreadingOptions(
+                new ThreadingOptions() {
+                  @Override
+                  public ExecutorService createContinuationExecutor(final String clusterName) {
+                    return Executors.newSingleThreadExecutor(
+                        new ThreadFactory() {
+                          @Override
+                          public Thread newThread(Runnable r) {
+                            return new Thread(r, clusterName + "-continuation");
+                          }
+                        });
+                  }
+                })
+            .build();
+    session = cluster.connect();
+  }
+
+  @AfterClass(groups = "short", alwaysRun = true)
+  public void tearDown() {
+    if (cluster != null) cluster.close();
+    if (stub != null) stub.stop();
+  }
+
+  @Test(groups = "short")
+  public void should_prepare_and_execute_on_continuation_executor() throws Exception {
+    PreparedStatement ps =
+        CompletionStages.prepareAsync(session, "SELECT v FROM ks.t WHERE k = ?")
+            .toCompletableFuture()
+            .get(10, TimeUnit.SECONDS);
+
+    final AtomicReference<String> thread = new AtomicReference<String>();
+    CompletableFuture<String> value =
+        CompletionStages.executeAsync(session, ps.bind(1))
+            .thenApply(
+                new java.util.function.Function<ResultSet, String>() {
+                  @Override
+                  public String apply(ResultSet rs) {
+                    thread.set(Thread.currentThread().getName());
+                    return rs.one().getString("v");
+                  }
+                })
+            .toCompletableFuture();
+
+    assertThat(value.get(10, TimeUnit.SECONDS)).isEqualTo("foo");
+    assertThat(thread.get()).endsWith("-continuation");
+  }
+
+  @Test(groups = "short")
+  public void should_complete_exceptionally_when_query_fails() throws Exception {
+    CompletableFuture<ResultSet> future =
+        CompletionStages.executeAsync(session, "SELECT error").toCompletableFuture();
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("Expected an ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(SyntaxError.class);
+    }
+  }
+
+  @Test(groups = "unit")
+  public void should_complete_on_completing_thread_without_executor() throws Exception {
+    SettableFuture<String> source = SettableFuture.create();
+    CompletableFuture<String> stage = CompletionStages.toCompletionStage(source, (Executor) null);
+    assertThat(stage.isDone()).isFalse();
+
+    source.set("foo");
+
+    // completed synchronously by the listener
+    assertThat(stage.isDone()).isTrue();
+    assertThat(stage.get()).isEqualTo("foo");
+  }
+
+  @Test(groups = "unit")
+  public void should_complete_when_source_already_done() throws Exception {
+    SettableFuture<String> source = SettableFuture.create();
+    source.set("foo");
+    assertThat(CompletionStages.toCompletionStage(source, (Executor) null).get()).isEqualTo("foo");
+  }
+
+  @Test(groups = "unit")
+  public void should_propagate_failure() throws Exception {
+    SettableFuture<String> source = SettableFuture.create();
+    CompletableFuture<String> stage = CompletionStages.toCompletionStage(source, (Executor) null);
+    IllegalStateException error = new IllegalStateException("test");
+
+    source.setException(error);
+
+    assertThat(stage.isCompletedExceptionally()).isTrue();
+    try {
+      stage.get();
+      fail("Expected an ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isSameAs(error);
+    }
+  }
+
+  @Test(groups = "unit")
+  public void should_cancel_source_when_cancelled() {
+    SettableFuture<String> source = SettableFuture.create();
+    CompletableFuture<String> stage = CompletionStages.toCompletionStage(source, (Executor) null);
+
+    assertThat(stage.cancel(true)).isTrue();
+
+    assertThat(source.isCancelled()).isTrue();
+  }
+
+  @Test(groups = "unit")
+  public void should_be_cancelled_when_source_is_cancelled() {
+    SettableFuture<String> source = SettableFuture.create();
+    CompletableFuture<String> stage = CompletionStages.toCompletionStage(source, (Executor) null);
+
+    source.cancel(true);
+
+    assertThat(stage.isCancelled()).isTrue();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.codecs;
+
+import static com.datastax.driver.core.ProtocolVersion.V4;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TypeCodec;
+import java.nio.ByteBuffer;
+import org.testng.annotations.Test;
+
+public class InterningStringCodecTest {
+
+  @Test(groups = "unit")
+  public void should_return_same_instance_for_same_bytes() {
+    InterningStringCodec codec = new InterningStringCodec(TypeCodec.varchar(), 16, 64);
+    // Two cells of the same page
+    byte[] page = "__FRANCE__FRANCE__".getBytes();
+    ByteBuffer cell1 = ByteBuffer.wrap(page, 2, 6).slice();
+    ByteBuffer cell2 = ByteBuffer.wrap(page, 10, 6).slice();
+
+    String value1 = codec.deserialize(cell1, V4);
+    String value2 = codec.deserialize(cell2, V4);
+
+    assertThat(value1).isEqualTo("FRANCE");
+    assertThat(value2).isSameAs(value1);
+    assertThat(cell2.position()).isEqualTo(0);
+    assertThat(codec.getHits().getCount()).isEqualTo(1);
+    assertThat(codec.getMisses().getCount()).isEqualTo(1);
+    assertThat(codec.getBytesSaved().getCount()).isGreaterThan(0);
+    assertThat(codec.getHitRatio()).isEqualTo(0.5);
+  }
+
+  @Test(groups = "unit")
+  public void should_match_direct_and_heap_buffers() {
+    InterningStringCodec codec = new InterningStringCodec(TypeCodec.varchar(), 16, 64);
+    ByteBuffer direct = ByteBuffer.allocateDirect(6);
+    direct.put("FRANCE".getBytes()).flip();
+
+    String value1 = codec.deserialize(ByteBuffer.wrap("FRANCE".getBytes()), V4);
+    String value2 = codec.deserialize(direct, V4);
+
+    assertThat(value2).isSameAs(value1);
+  }
+
+  @Test(groups = "unit")
+  public void should_not_cache_ineligible_values() {
+    InterningStringCodec codec = new InterningStringCodec(TypeCodec.varchar(), 16, 4);
+
+    assertThat(codec.deserialize(null, V4)).isNull();
+    assertThat(codec.deserialize(ByteBuffer.allocate(0), V4)).isEmpty();
+    String value1 = codec.deserialize(ByteBuffer.wrap("FRANCE".getBytes()), V4);
+    String value2 = codec.deserialize(ByteBuffer.wrap("FRANCE".getBytes()), V4);
+
+    assertThat(value2).isEqualTo(value1).isNotSameAs(value1);
+    assertThat(codec.getHits().getCount()).isEqualTo(0);
+    assertThat(codec.getMisses().getCount()).isEqualTo(0);
+    assertThat(codec.getHitRatio()).isEqualTo(0);
+  }
+
+  @Test(groups = "unit")
+  public void should_evict_colliding_values() {
+    // A single slot: every new value evicts the previous one
+    InterningStringCodec codec = new InterningStringCodec(TypeCodec.varchar(), 1, 64);
+
+    String fr = codec.deserialize(ByteBuffer.wrap("FR".getBytes()), V4);
+    codec.deserialize(ByteBuffer.wrap("DE".getBytes()), V4);
+
+    assertThat(codec.deserialize(ByteBuffer.wrap("DE".getBytes()), V4)).isEqualTo("DE");
+    assertThat(codec.deserialize(ByteBuffer.wrap("FR".getBytes()), V4))
+        .isEqualTo("FR")
+        .isNotSameAs(fr);
+    assertThat(codec.getHits().getCount()).isEqualTo(1);
+    assertThat(codec.getMisses().getCount()).isEqualTo(3);
+  }
+
+  @Test(groups = "unit")
+  public void should_delegate_to_inner_codec() {
+    InterningStringCodec codec = new InterningStringCodec(TypeCodec.ascii(), 16, 64);
+
+    assertThat(codec.getCqlType()).isEqualTo(DataType.ascii());
+    assertThat(codec.format("foo")).isEqualTo("'foo'");
+    assertThat(codec.parse("'foo'")).isEqualTo("foo");
+    assertThat(codec.serialize("foo", V4)).isEqualTo(ByteBuffer.wrap("foo".getBytes()));
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.driver.extras.reactive;
+
+import static com.datastax.driver.extras.reactive.ReactiveSessions.executeReactive;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.driver.core.CCMTestsSupport;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.utils.CassandraVersion;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.testng.annotations.Test;
+
+@CassandraVersion(value = "2.0.0", description = "uses paging")
+public class RowPublisherTest extends CCMTestsSupport {
+
+  private static final int ROWS = 100;
+
+  @Override
+  public void onTestContextInitialized() {
+    execute("CREATE TABLE published (k int, c int, v int, PRIMARY KEY (k, c))");
+    for (int i = 0; i < ROWS; i++)
+      execute(String.format("INSERT INTO published (k, c, v) VALUES (0, %d, %d)", i, i));
+  }
+
+  @Test(groups = "short")
+  public void should_publish_all_rows_across_pages() throws InterruptedException {
+    RecordingSubscriber subscriber = new RecordingSubscriber(7);
+    executeReactive(session(), select(10)).subscribe(subscriber);
+
+    assertThat(subscriber.awaitTermination()).isTrue();
+    assertThat(subscriber.error).isNull();
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.rows).hasSize(ROWS);
+    for (int i = 0; i < ROWS; i++) assertThat(subscriber.rows.get(i).getInt("v")).isEqualTo(i);
+  }
+
+  @Test(groups = "short")
+  public void should_only_emit_requested_rows() throws InterruptedException {
+    RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    executeReactive(session(), select(10)).subscribe(subscriber);
+
+    subscriber.subscription.request(15);
+    subscriber.awaitRows(15);
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertThat(subscriber.rows).hasSize(15);
+    assertThat(subscriber.completed).isFalse();
+
+    subscriber.subscription.request(Long.MAX_VALUE);
+    assertThat(subscriber.awaitTermination()).isTrue();
+    assertThat(subscriber.rows).hasSize(ROWS);
+    assertThat(subscriber.completed).isTrue();
+  }
+
+  @Test(groups = "short")
+  public void should_stop_paging_when_cancelled() throws InterruptedException {
+    RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    executeReactive(session(), select(10)).subscribe(subscriber);
+
+    subscriber.subscription.request(15);
+    subscriber.awaitRows(15);
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(100);
+    TimeUnit.MILLISECONDS.sleep(200);
+
+    assertThat(subscriber.rows).hasSize(15);
+    assertThat(subscriber.completed).isFalse();
+    assertThat(subscriber.error).isNull();
+  }
+
+  @Test(groups = "short")
+  public void should_not_execute_query_until_rows_are_requested() throws InterruptedException {
+    Publisher<Row> publisher =
+        executeReactive(session(), new SimpleStatement("SELECT * FROM not_a_table"));
+    RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    publisher.subscribe(subscriber);
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertThat(subscriber.error).isNull();
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.awaitTermination()).isTrue();
+    assertThat(subscriber.error).isInstanceOf(InvalidQueryException.class);
+  }
+
+  @Test(groups = "short")
+  public void should_signal_error_when_requesting_non_positive_number_of_rows()
+      throws InterruptedException {
+    RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    executeReactive(session(), select(10)).subscribe(subscriber);
+
+    subscriber.subscription.request(0);
+    assertThat(subscriber.awaitTermination()).isTrue();
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    assertThat(subscriber.rows).isEmpty();
+  }
+
+  private Statement select(int fetchSize) {
+    return new SimpleStatement("SELECT v FROM published WHERE k = 0").setFetchSize(fetchSize);
+  }
+
+  /** Requests {@code batch} rows at a time, or nothing if it is 0. */
+  private static class RecordingSubscriber implements Subscriber<Row> {
+
+    private final int batch;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    final List<Row> rows = new CopyOnWriteArrayList<Row>();
+    volatile Subscription subscription;
+    volatile boolean completed;
+    volatile Throwable error;
+    private int remaining;
+
+    RecordingSubscriber(int batch) {
+      this.batch = batch;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      if (batch > 0) {
+        remaining = batch;
+        subscription.request(batch);
+      }
+    }
+
+    @Override
+    public void onNext(Row row) {
+      rows.add(row);
+      if (batch > 0 && --remaining == 0) {
+        remaining = batch;
+        subscription.request(batch);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+
+    boolean awaitTermination() throws InterruptedException {
+      return terminated.await(10, TimeUnit.SECONDS);
+    }
+
+    void awaitRows(int count) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (rows.size() < count && System.nanoTime() < deadline) TimeUnit.MILLISECONDS.sleep(10);
+    }
+  }
+}
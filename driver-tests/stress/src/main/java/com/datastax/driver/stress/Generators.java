@@ -16,13 +16,18 @@
 package com.datastax.driver.stress;
 
 import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.StubCluster;
+import com.datastax.driver.core.StubResult;
 import com.datastax.driver.core.exceptions.QueryValidationException;
 import com.datastax.driver.core.utils.Bytes;
 import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -120,6 +125,28 @@ public class Generators {
           session.execute(sb.toString());
         }
 
+        @Override
+        public void primeStub(OptionSet options, StubCluster stub) {
+          // Unprimed queries, including the schema and the simple inserts, get a VOID result
+          int columnsPerRow = (Integer) options.valueOf("columns-per-row");
+          Map<String, DataType> variables = new LinkedHashMap<String, DataType>();
+          for (int i = 0; i < columnsPerRow; ++i) variables.put("c" + i, DataType.blob());
+          variables.put("key", DataType.bigint());
+          stub.prime(
+              preparedQuery(columnsPerRow), StubResult.voidResult().withVariables(variables));
+        }
+
+        private String preparedQuery(int columnsPerRow) {
+          StringBuilder sb = new StringBuilder();
+          sb.append("UPDATE standard1 SET ");
+          for (int i = 0; i < columnsPerRow; ++i) {
+            if (i > 0) sb.append(", ");
+            sb.append('C').append(i).append("=?");
+          }
+          sb.append(" WHERE key = ?");
+          return sb.toString();
+        }
+
         @Override
         public QueryGenerator create(int id, int iterations, OptionSet options, Session session) {
 
@@ -160,15 +187,7 @@ public class Generators {
           final int columnsPerRow = (Integer) options.valueOf("columns-per-row");
           final long prefix = (long) id << 32;
 
-          StringBuilder sb = new StringBuilder();
-          sb.append("UPDATE standard1 SET ");
-          for (int i = 0; i < columnsPerRow; ++i) {
-            if (i > 0) sb.append(", ");
-            sb.append('C').append(i).append("=?");
-          }
-          sb.append(" WHERE key = ?");
-
-          final PreparedStatement stmt = session.prepare(sb.toString());
+          final PreparedStatement stmt = session.prepare(preparedQuery(columnsPerRow));
 
           return new AbstractGenerator(iterations) {
             @Override
@@ -186,6 +205,8 @@ public class Generators {
   public static final QueryGenerator.Builder READER =
       new QueryGenerator.Builder() {
 
+        private static final String PREPARED_QUERY = "SELECT * FROM standard1 WHERE key = ?";
+
         @Override
         public String name() {
           return "read";
@@ -204,7 +225,8 @@ public class Generators {
         @Override
         public void prepare(OptionSet options, Session session) {
           KeyspaceMetadata ks = session.getCluster().getMetadata().getKeyspace("stress");
-          if (ks == null || ks.getTable("standard1") == null) {
+          // A stub cluster has no schema, but answers reads anyway
+          if (!options.has("stub-nodes") && (ks == null || ks.getTable("standard1") == null)) {
             System.err.println(
                 "There is nothing to reads, please run insert/insert_prepared first.");
             System.exit(1);
@@ -213,6 +235,24 @@ public class Generators {
           session.execute("USE stress");
         }
 
+        @Override
+        public void primeStub(OptionSet options, StubCluster stub) {
+          // A row as written by the insert generator with its default options
+          StubResult.RowsBuilder row =
+              StubResult.rows("stress", "standard1").withColumn("key", DataType.bigint());
+          Object[] values = new Object[6];
+          values[0] = 0L;
+          for (int i = 0; i < 5; ++i) {
+            row.withColumn("c" + i, DataType.blob());
+            values[i + 1] = makeValue(34);
+          }
+          StubResult result = row.withRow(values).build();
+          stub.setDefaultResult(result);
+          Map<String, DataType> variables = new LinkedHashMap<String, DataType>();
+          variables.put("key", DataType.bigint());
+          stub.prime(PREPARED_QUERY, result.withVariables(variables));
+        }
+
         @Override
         public QueryGenerator create(int id, int iterations, OptionSet options, Session session) {
           return options.has("no-prepare")
@@ -235,7 +275,7 @@ public class Generators {
 
         public QueryGenerator createPrepared(long id, int iterations, Session session) {
           final long prefix = (long) id << 32;
-          final PreparedStatement stmt = session.prepare("SELECT * FROM standard1 WHERE key = ?");
+          final PreparedStatement stmt = session.prepare(PREPARED_QUERY);
 
           return new AbstractGenerator(iterations) {
             @Override
@@ -20,6 +20,7 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.StubCluster;
 import java.util.Iterator;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -45,6 +46,12 @@ public abstract class QueryGenerator implements Iterator<QueryGenerator.Request>
 
     public void prepare(OptionSet options, Session session);
 
+    /**
+     * Primes the results of the queries of this generator, when running against a stub cluster
+     * (--stub-nodes).
+     */
+    public void primeStub(OptionSet options, StubCluster stub);
+
     public QueryGenerator create(int id, int iterations, OptionSet options, Session session);
   }
 
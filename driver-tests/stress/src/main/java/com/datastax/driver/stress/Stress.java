@@ -24,11 +24,14 @@ import com.datastax.driver.core.ProtocolOptions;
 import com.datastax.driver.core.QueryOptions;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.StubCluster;
+import com.datastax.driver.core.StubLatency;
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import joptsimple.BuiltinHelpFormatter;
 import joptsimple.HelpFormatter;
 import joptsimple.OptionDescriptor;
@@ -92,6 +95,17 @@ public class Stress {
                 .withValuesConvertedBy(new ConsistencyLevelConverter())
                 .ofType(ConsistencyLevel.class)
                 .defaultsTo(ConsistencyLevel.LOCAL_ONE);
+            accepts(
+                    "stub-nodes",
+                    "Run against an in-process stub cluster of that many nodes instead of Cassandra, "
+                        + "to measure the driver alone (ignores --ip, does not support --compression)")
+                .withRequiredArg()
+                .ofType(Integer.class);
+            accepts(
+                    "stub-latency",
+                    "The latency of the stub nodes, as <median>:<p99> in microseconds (default: none)")
+                .withRequiredArg()
+                .ofType(String.class);
           }
         };
     String msg =
@@ -193,6 +207,10 @@ public class Stress {
       genBuilder.prepare(options, session);
     }
 
+    public void primeStub(StubCluster stub) {
+      genBuilder.primeStub(options, stub);
+    }
+
     public QueryGenerator newGenerator(int id, Session session, int iterations) {
       return genBuilder.create(id, iterations, options, session);
     }
@@ -266,11 +284,32 @@ public class Stress {
     System.out.println("  compression:          " + options.has("compression"));
     System.out.println("  consistency-level:    " + consistencyLevel.name());
 
+    StubCluster stub = null;
+    if (options.has("stub-nodes")) {
+      stub =
+          StubCluster.builder()
+              .withNodes((Integer) options.valueOf("stub-nodes"))
+              .withPort(0)
+              .build();
+      if (options.has("stub-latency")) {
+        String[] latency = ((String) options.valueOf("stub-latency")).split(":");
+        stub.setLatency(
+            StubLatency.logNormal(
+                Long.parseLong(latency[0]), Long.parseLong(latency[1]), TimeUnit.MICROSECONDS));
+      }
+      stresser.primeStub(stub);
+      stub.init();
+      System.out.println("  stub nodes:           " + stub.nodes());
+    }
+
     try {
       // Create session to hosts
+      Cluster.Builder builder =
+          stub == null
+              ? new Cluster.Builder().addContactPoints(String.valueOf(options.valueOf("ip")))
+              : stub.clusterBuilder();
       Cluster cluster =
-          new Cluster.Builder()
-              .addContactPoints(String.valueOf(options.valueOf("ip")))
+          builder
               .withPoolingOptions(pools)
               .withSocketOptions(new SocketOptions().setTcpNoDelay(true))
               .withQueryOptions(new QueryOptions().setConsistencyLevel(consistencyLevel))